@@ -45,6 +45,7 @@ public final class WebFxCLI extends CommonCommand {
     public static int executeCommand(String... args) {
         return new CommandLine(new WebFxCLI())
                 .setHelpFactory(new HelpFactory())
+                .setExecutionStrategy(CommonCommand::executeAndReportMissingArtifacts)
                 .setExecutionExceptionHandler((ex, commandLine, parseResult) -> {
                     // Removing the stack trace if this is raised by the cli tool (just showing the short message)
                     if (ex instanceof CliException)
@@ -1,6 +1,8 @@
 package dev.webfx.cli.commands;
 
 import dev.webfx.cli.core.DevProjectModule;
+import dev.webfx.cli.core.Logger;
+import dev.webfx.cli.core.MavenOutputParser;
 import dev.webfx.cli.core.MavenUtil;
 import dev.webfx.cli.core.WebFXHiddenFolder;
 import dev.webfx.cli.util.os.OperatingSystem;
@@ -85,7 +87,11 @@ public final class Build extends CommonSubcommand implements Runnable {
         if (!fatjar && !gwt && !openJfxDesktop && !gluon)
             throw new CommandLine.ParameterException(new CommandLine(this), "Missing required build option");
 */
-        String command = "mvn " +
+        String mavenArgs =
+                // The output is observed (see below), so Maven doesn't see a terminal, but as the output is forwarded unchanged,
+                // the colors are still requested when there is one (the property is not passed on Windows as PowerShell would
+                // split it at the dot)
+                (System.console() != null && !OperatingSystem.isWindows() ? "-Dstyle.color=always " : "") +
                 (gluonModule != null ? "install " : "package ") +
                 (brc.fatjar ? "-P openjfx-fatjar " : "") +
                 (brc.openJfxDesktop ? "-P openjfx-desktop " : "") +
@@ -102,13 +108,18 @@ public final class Build extends CommonSubcommand implements Runnable {
                 if (innoResultLine.startsWith("\""))
                     innoResultLine = innoResultLine.substring(1);
             }
-            processCall.setPowershellCommand("$env:PATH += \";$env:WIX\\bin" + (innoResultLine != null ? ";" + innoResultLine : "") + "\"; " + command);
+            processCall.setPowershellCommand("$env:PATH += \";$env:WIX\\bin" + (innoResultLine != null ? ";" + innoResultLine : "") + "\"; " + MavenUtil.getMavenShellCommand(mavenArgs));
         } else
-            processCall.setCommand(command);
+            MavenUtil.setMavenCommand(processCall, mavenArgs);
+        // Observing the Maven output (still displayed as is, with the input inherited) to report the slowest modules at the
+        // end of the build
+        MavenOutputParser mavenOutputParser = new MavenOutputParser();
         int exitCode = processCall
                 .setWorkingDirectory(workspace.getTopRootModule().getHomeDirectory())
+                .setOutputObserver(mavenOutputParser)
                 .executeAndWait()
                 .getExitCode();
+        Logger.log(mavenOutputParser.getReport(5));
         if (gluonModule != null && exitCode == 0) {
             if (brc.gluonDesktop) {
                 if (OperatingSystem.isWindows()) {
@@ -123,7 +134,7 @@ public final class Build extends CommonSubcommand implements Runnable {
                                         .setPowershellCommand(
                                                 (resultLine == null ? "" : resultLine.substring(resultLine.indexOf("&{Import-Module") + 2, resultLine.lastIndexOf('}')).replaceAll("\"\"\"", "'") + " -DevCmdArguments '-arch=x64'; ") +
                                                         (graalVmHome == null ? "" : "$env:GRAALVM_HOME = '" + graalVmHome + "'; ") +
-                                                        "mvn -P gluon-desktop gluonfx:build gluonfx:package")
+                                                        MavenUtil.getMavenShellCommand("-P gluon-desktop gluonfx:build gluonfx:package"))
                                         .setWorkingDirectory(gluonModule.getHomeDirectory())
                                         .executeAndWait()
                                         .getExitCode();
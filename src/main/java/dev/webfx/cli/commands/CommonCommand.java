@@ -2,8 +2,11 @@ package dev.webfx.cli.commands;
 
 import dev.webfx.cli.core.JavaFile;
 import dev.webfx.cli.core.Logger;
+import dev.webfx.cli.core.M2MissingArtifacts;
+import dev.webfx.cli.core.MavenUtil;
 import dev.webfx.cli.core.Module;
 import dev.webfx.cli.core.ModuleDependency;
+import dev.webfx.cli.util.zip.ZipIndex;
 import picocli.CommandLine;
 import picocli.CommandLine.Help.Ansi.IStyle;
 import picocli.CommandLine.Option;
@@ -66,14 +69,36 @@ public class CommonCommand {
         return moduleName != null || parentCommand == null ? moduleName : parentCommand.getModuleName();
     }
 
+    @Option(names = {"--offline"}, description = "Work only from the local Maven repository (no download).")
+    private boolean offline;
+
+    public boolean isOffline() {
+        return offline || parentCommand != null && parentCommand.isOffline();
+    }
+
     private CommandWorkspace workspace;
 
     public CommandWorkspace getWorkspace() {
-        if (workspace == null)
+        if (workspace == null) {
+            MavenUtil.setOffline(isOffline());
             workspace = new CommandWorkspace(getProjectDirectory(), getModuleName());
+        }
         return workspace;
     }
 
+    // Execution strategy of the commands (see WebFxCLI), which reports the artifacts that were missing in offline mode
+    // at the end of any command, including when it failed because of them, and closes the jar files still open
+    public static int executeAndReportMissingArtifacts(CommandLine.ParseResult parseResult) {
+        M2MissingArtifacts.clear();
+        try {
+            return new CommandLine.RunLast().execute(parseResult);
+        } finally {
+            if (!M2MissingArtifacts.isEmpty())
+                log(M2MissingArtifacts.getReport());
+            ZipIndex.closeAll();
+        }
+    }
+
     protected void setUpLogger() {
         Logger.setLogConsumer(object -> {
             String message = null;
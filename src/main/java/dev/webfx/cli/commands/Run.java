@@ -3,6 +3,7 @@ package dev.webfx.cli.commands;
 import dev.webfx.cli.core.CliException;
 import dev.webfx.cli.core.DevProjectModule;
 import dev.webfx.cli.core.Logger;
+import dev.webfx.cli.core.MavenOutputParser;
 import dev.webfx.cli.core.MavenUtil;
 import dev.webfx.cli.util.os.OperatingSystem;
 import dev.webfx.cli.util.process.ProcessCall;
@@ -105,9 +106,13 @@ public final class Run extends CommonSubcommand implements Runnable {
                 Path gluonModulePath = executableFilePath.getParent();
                 while (gluonModulePath != null && !Files.exists(gluonModulePath.resolve("pom.xml")))
                     gluonModulePath = gluonModulePath.getParent();
-                if (gluonModulePath != null)
+                if (gluonModulePath != null) {
+                    // Observing the Maven output (still displayed as is, with the input inherited) like Build does
+                    MavenOutputParser mavenOutputParser = new MavenOutputParser();
                     MavenUtil.invokeMavenGoal("-P gluon-" + (android ? "android" : "ios") + " gluonfx:install gluonfx:nativerun"
-                            , new ProcessCall().setWorkingDirectory(gluonModulePath));
+                            , new ProcessCall().setWorkingDirectory(gluonModulePath).setOutputObserver(mavenOutputParser));
+                    Logger.log(mavenOutputParser.getReport(5));
+                }
             } else if (fileName.endsWith(".deb")) {
                 int exitCode = ProcessCall.executeCommandTokens("sudo", "apt", "install", pathName);
                 if (exitCode == 0 && fileName.contains("_")) {
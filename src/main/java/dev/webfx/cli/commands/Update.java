@@ -1,6 +1,7 @@
 package dev.webfx.cli.commands;
 
 import dev.webfx.cli.core.*;
+import dev.webfx.cli.modulefiles.abstr.XmlDocumentCache;
 import dev.webfx.cli.sourcegenerators.GluonFilesGenerator;
 import dev.webfx.cli.sourcegenerators.GwtFilesGenerator;
 import dev.webfx.cli.sourcegenerators.JavaFilesGenerator;
@@ -38,6 +39,7 @@ public final class Update extends CommonSubcommand implements Runnable {
 
         boolean previousCleanSnapshots = MavenUtil.isCleanM2Snapshots();
         MavenUtil.setCleanM2Snapshots(cleanSnapshots);
+        M2DependencyTreeCache.resetStatistics();
 
         try (TextFileThreadTransaction transaction = TextFileThreadTransaction.open()) {
 
@@ -50,11 +52,21 @@ public final class Update extends CommonSubcommand implements Runnable {
             else
                 log(operationsCount + " files updated");
         }
+        if (M2DependencyTreeCache.getAvoidedInvocationsCount() > 0 || M2DependencyTreeCache.getInvocationsCount() > 0)
+            log("VERBOSE: " + M2DependencyTreeCache.getStatistics());
+        // Reporting the XML documents cache activity when the memory budget has been reached
+        if (XmlDocumentCache.getEvictionCount() > 0)
+            log("VERBOSE: XML documents cache: " + XmlDocumentCache.getStatistics());
 
         MavenUtil.setCleanM2Snapshots(previousCleanSnapshots);
     }
 
     static void executeUpdateTasks(DevProjectModule workingModule, UpdateTasks tasks) {
+        // Resolving the dependencies of the executable modules first (with the source code analysis run in parallel), but
+        // only if the source code of all modules will be analysed anyway by the update tasks (otherwise it stays lazy)
+        if (tasks.mavenPom || tasks.moduleInfoJava || tasks.metaInfServices)
+            ParallelSourceAnalysis.analyseSourcesAndResolveExecutableModules(getWorkingAndChildrenModulesInDepth(workingModule));
+
         // Update webfx.xml if the working file is a root file
         getWorkingAndChildrenModules(workingModule)
                 .filter(RootModule.class::isInstance)
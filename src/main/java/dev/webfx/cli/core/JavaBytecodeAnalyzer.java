@@ -0,0 +1,122 @@
+package dev.webfx.cli.core;
+
+import dev.webfx.cli.util.javabytecode.JavaClassFile;
+import dev.webfx.cli.util.zip.ZipIndex;
+import dev.webfx.lib.reusablestream.ReusableStream;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.*;
+
+/**
+ * Analyzer of the .class files of a binary jar, used for the M2 modules that have no sources jar (see
+ * M2ProjectModule.getBinaryJarAnalyzer()). It provides the same information as the java source files analyze (declared
+ * packages, used packages & classes, used required & optional services), but read from the bytecode, and feeds the
+ * same caches in JavaSourceRootAnalyzer.
+ * <p>
+ * The used packages are computed the same way as the source analyzer: the packages of the classes referenced by each
+ * class, except java.lang and the package of the class itself (which don't appear in the source imports), plus the
+ * packages of the services provided in META-INF/services.
+ * <p>
+ * The declared packages are read from the package table of the jar index (so they don't require to read the class
+ * files), and the class files are read all at once by the first query of the other information, after which the jar
+ * file is closed.
+ *
+ * @author Bruno Salmon
+ */
+final class JavaBytecodeAnalyzer {
+
+    private final ZipIndex jarIndex;
+    private List<String> packages;
+    private Set<String> classes, usedClasses, usedPackages, requiredServices, optionalServices;
+
+    JavaBytecodeAnalyzer(ZipIndex jarIndex) {
+        this.jarIndex = jarIndex;
+    }
+
+    private synchronized void analyze() {
+        if (classes != null)
+            return;
+        Set<String> classes = new LinkedHashSet<>(), usedClasses = new LinkedHashSet<>(),
+                usedPackages = new LinkedHashSet<>(), requiredServices = new LinkedHashSet<>(), optionalServices = new LinkedHashSet<>();
+        try {
+            for (String entryName : jarIndex.getEntryNames()) {
+                // Ignoring module-info & package-info, and the META-INF directory (which contains the multi-release classes)
+                if (!entryName.endsWith(".class") || entryName.endsWith("-info.class") || entryName.startsWith("META-INF/"))
+                    continue;
+                JavaClassFile classFile = new JavaClassFile(jarIndex.readEntry(entryName));
+                classes.add(classFile.getClassName().replace('$', '.'));
+                String packageName = classFile.getPackageName();
+                for (String referencedClass : classFile.getReferencedClasses()) {
+                    usedClasses.add(referencedClass.replace('$', '.'));
+                    String referencedPackage = JavaClassFile.getPackageName(referencedClass);
+                    if (!referencedPackage.equals(packageName) && !referencedPackage.equals("java.lang") && !referencedPackage.isEmpty())
+                        usedPackages.add(referencedPackage);
+                }
+                // The services are reported with their source name (ex: a.b.Outer.Inner instead of a.b.Outer$Inner)
+                classFile.getRequiredServices().forEach(service -> requiredServices.add(service.replace('$', '.')));
+                classFile.getOptionalServices().forEach(service -> optionalServices.add(service.replace('$', '.')));
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } finally {
+            // All the class files have been read, so the jar file can be closed now
+            try {
+                jarIndex.close();
+            } catch (IOException ignored) {
+            }
+        }
+        // Same as the source analyzer which adds the packages of the provided services
+        for (String service : jarIndex.getServices())
+            usedPackages.add(JavaClassFile.getPackageName(service));
+        this.usedClasses = usedClasses;
+        this.usedPackages = usedPackages;
+        this.requiredServices = requiredServices;
+        this.optionalServices = optionalServices;
+        this.classes = classes; // last as it indicates that the analyze is complete
+    }
+
+    ReusableStream<String> getPackages() {
+        return ReusableStream.create(() -> getPackagesFromJarIndex().spliterator());
+    }
+
+    private synchronized List<String> getPackagesFromJarIndex() {
+        if (packages == null) {
+            List<String> packages = new ArrayList<>();
+            for (String packageName : jarIndex.getPackages()) {
+                // Same filter as analyze() (the packages with at least one class file other than module & package info)
+                if (packageName.equals("META-INF") || packageName.startsWith("META-INF."))
+                    continue;
+                for (String entryName : jarIndex.getPackageEntryNames(packageName))
+                    if (entryName.endsWith(".class") && !entryName.endsWith("-info.class")) {
+                        packages.add(packageName);
+                        break;
+                    }
+            }
+            this.packages = packages;
+        }
+        return packages;
+    }
+
+    ReusableStream<String> getUsedPackages() {
+        return ReusableStream.create(() -> { analyze(); return usedPackages.spliterator(); });
+    }
+
+    ReusableStream<String> getUsedRequiredServices() {
+        return ReusableStream.create(() -> { analyze(); return requiredServices.spliterator(); });
+    }
+
+    ReusableStream<String> getUsedOptionalServices() {
+        return ReusableStream.create(() -> { analyze(); return optionalServices.spliterator(); });
+    }
+
+    boolean declaresClass(String javaClass) {
+        analyze();
+        return classes.contains(javaClass);
+    }
+
+    boolean usesJavaClass(String javaClass) {
+        analyze();
+        return usedClasses.contains(javaClass);
+    }
+}
@@ -4,6 +4,7 @@ import dev.webfx.cli.util.javacode.JavaCode;
 import dev.webfx.cli.util.javacode.JavaCodePackagesFinder;
 import dev.webfx.cli.util.javacode.OptionalJavaServicesFinder;
 import dev.webfx.cli.util.javacode.RequiredJavaServicesFinder;
+import dev.webfx.cli.util.textfile.TextFileReaderWriter;
 import dev.webfx.lib.reusablestream.ReusableStream;
 
 import java.nio.file.Path;
@@ -15,7 +16,7 @@ public final class JavaFile implements Comparable<JavaFile> {
 
     private final Path path;
     private final ProjectModule projectModule;
-    private final JavaCode javaCode = new JavaCode(this::getPath);
+    private final JavaCode javaCode = new JavaCode(this::getPath, this::readJavaFile);
     private String packageName;
     private String className;
     private final ReusableStream<String> usedJavaPackagesCache =
@@ -54,6 +55,13 @@ public final class JavaFile implements Comparable<JavaFile> {
         return path;
     }
 
+    private String readJavaFile(Path path) {
+        // The m2 sources are virtual paths read from the sources jar
+        if (projectModule instanceof M2ProjectModule)
+            return ((M2ProjectModule) projectModule).readSourcesJarFile(path);
+        return TextFileReaderWriter.readTextFile(path);
+    }
+
     ProjectModule getProjectModule() {
         return projectModule;
     }
@@ -5,6 +5,7 @@ import dev.webfx.cli.modulefiles.M2WebFxModuleFile;
 import dev.webfx.cli.modulefiles.abstr.WebFxModuleFile;
 import dev.webfx.cli.util.hashlist.HashList;
 import dev.webfx.cli.util.splitfiles.SplitFiles;
+import dev.webfx.cli.util.stream.FreezableCaches;
 import dev.webfx.lib.reusablestream.ReusableStream;
 
 import java.nio.file.FileSystems;
@@ -29,21 +30,25 @@ public final class JavaSourceRootAnalyzer {
     private final Supplier<Path> javaSourceRootPathSupplier;
     private final ProjectModuleImpl projectModule;
 
+    // The caches that can be frozen once this analyzer is fully resolved (see freeze())
+    private final FreezableCaches freezableCaches = new FreezableCaches();
+
     /**
      * Returns all java source files present in this module (or empty if this is not a java source module).
      * Note: they are not captured in the export snapshot.
      */
-    private final ReusableStream<JavaFile> javaSourceFilesCache =
+    private final ReusableStream<JavaFile> javaSourceFilesCache = freezableCaches.add(
             ReusableStream.create(() -> // Using deferred creation because we can't call these methods before the constructor is executed
-                            getJavaSourceRootPath() != null ? SplitFiles.uncheckedWalk(getJavaSourceRootPath()) : Spliterators.emptySpliterator())
+                            getJavaSourceRootPath() == null ? Spliterators.emptySpliterator()
+                            // The m2 sources are listed from the central directory of the sources jar (Gwt super sources excluded)
+                            : getProjectModule() instanceof M2ProjectModule ? ((M2ProjectModule) getProjectModule()).walkSourcesJarJavaFiles()
+                            : SplitFiles.uncheckedWalk(getJavaSourceRootPath()))
                     .filter(JAVA_FILE_MATCHER::matches)
-                    // Ignoring Gwt super sources (required for m2 sources artifacts only)
-                    .filter(path -> !path.startsWith("/super/"))
                     // Ignoring module-info.java and package-info.java files
                     .filter(path -> !path.getFileName().toString().endsWith("-info.java"))
                     .map(path -> new JavaFile(path, getProjectModule()))
                     .cache()
-                    .name("javaSourceFilesCache");
+                    .name("javaSourceFilesCache"));
 
     /**
      * Returns all java source packages present in this module (or empty if this is not a java source module). These
@@ -57,6 +62,9 @@ public final class JavaSourceRootAnalyzer {
                 WebFxModuleFile webFxModuleFile = projectModule.getWebFxModuleFile();
                 if (projectModule instanceof M2ProjectModule && ((M2WebFxModuleFile) webFxModuleFile).isExported())
                     return webFxModuleFile.javaSourcePackagesFromExportSnapshot();
+                JavaBytecodeAnalyzer binaryJarAnalyzer = getBinaryJarAnalyzer();
+                if (binaryJarAnalyzer != null)
+                    return binaryJarAnalyzer.getPackages();
                 return javaSourceFilesCache
                         .map(JavaFile::getPackageName)
                         .distinct();
@@ -67,35 +75,39 @@ public final class JavaSourceRootAnalyzer {
      * Returns all java services directly used by this module and that are required. Each service is returned as the
      * full name of the SPI class.
      */
-    private final ReusableStream<String> usedRequiredJavaServicesCache =
+    private final ReusableStream<String> usedRequiredJavaServicesCache = freezableCaches.add(
             ReusableStream.create(() -> {
                         ProjectModule projectModule = getProjectModule();
                         ReusableStream<String> fromExportSnapshot = projectModule.getWebFxModuleFile().usedRequiredJavaServicesFromExportSnapshot().cache();
+                        JavaBytecodeAnalyzer binaryJarAnalyzer = getWebFxLibraryBinaryJarAnalyzer();
+                        if (binaryJarAnalyzer != null)
+                            return binaryJarAnalyzer.getUsedRequiredServices();
                         if (projectModule instanceof M2ProjectModule || !fromExportSnapshot.isEmpty())
                             return fromExportSnapshot;
                         return javaSourceFilesCache.flatMap(JavaFile::getUsedRequiredJavaServices);
                     })
                     .distinct()
                     .cache()
-                    .name("usedRequiredJavaServicesCache")
-            ;
+                    .name("usedRequiredJavaServicesCache"));
 
     /**
      * Returns all java services directly used by this module and that are optional. Each service is returned as the
      * full name of the SPI class.
      */
-    private final ReusableStream<String> usedOptionalJavaServicesCache =
+    private final ReusableStream<String> usedOptionalJavaServicesCache = freezableCaches.add(
             ReusableStream.create(() -> {
                         ProjectModule projectModule = getProjectModule();
                         ReusableStream<String> fromExportSnapshot = projectModule.getWebFxModuleFile().usedOptionalJavaServicesFromExportSnapshot().cache();
+                        JavaBytecodeAnalyzer binaryJarAnalyzer = getWebFxLibraryBinaryJarAnalyzer();
+                        if (binaryJarAnalyzer != null)
+                            return binaryJarAnalyzer.getUsedOptionalServices();
                         if (projectModule instanceof M2ProjectModule || !fromExportSnapshot.isEmpty())
                             return fromExportSnapshot;
                         return javaSourceFilesCache.flatMap(JavaFile::getUsedOptionalJavaServices);
                     })
                     .distinct()
                     .cache()
-                    .name("usedOptionalJavaServicesCache")
-            ;
+                    .name("usedOptionalJavaServicesCache"));
 
     /**
      * Returns all java services directly used by this module (both required and optional). Each service is returned as
@@ -111,11 +123,12 @@ public final class JavaSourceRootAnalyzer {
      * Returns all java services declared in this module (they are the directly used java services that are also a
      * java class declared in this module)
      */
-    private final ReusableStream<String> declaredJavaServicesCache =
+    private final ReusableStream<String> declaredJavaServicesCache = freezableCaches.add(
             usedJavaServicesCache
-                    .filter(s -> javaSourceFilesCache.anyMatch(javaFile -> s.equals(javaFile.getClassName())))
+                    .filter(s -> javaSourceFilesCache.anyMatch(javaFile -> s.equals(javaFile.getClassName()))
+                                 || getWebFxLibraryBinaryJarAnalyzer() != null && getWebFxLibraryBinaryJarAnalyzer().declaresClass(s))
                     .cache()
-                    .name("declaredJavaServicesCache");
+                    .name("declaredJavaServicesCache"));
 
 
     /**
@@ -127,15 +140,17 @@ public final class JavaSourceRootAnalyzer {
      * will report an error on the provider declaration because the module of the SPI won't be listed in the required modules.
      * TODO Remove this addition once the java source analyser will be able to find implicit java packages
      */
-    private final ReusableStream<String> usedJavaPackagesCache =
+    private final ReusableStream<String> usedJavaPackagesCache = freezableCaches.add(
             ReusableStream.create(() -> ReusableStream.concat(
                                      javaSourceFilesCache.flatMap(JavaFile::getUsedJavaPackages),
+                                     // Packages used by the bytecode for the WebFX libraries without sources
+                                     ReusableStream.create(() -> getWebFxLibraryBinaryJarAnalyzer() != null ? getWebFxLibraryBinaryJarAnalyzer().getUsedPackages().spliterator() : Spliterators.emptySpliterator()),
                                      getProjectModule().getProvidedJavaServices().map(spi -> spi.substring(0, spi.lastIndexOf('.'))) // package of the SPI (ex: javafx.application if SPI = javafx.application.Application)
                             )
                     )
                     .distinct()
                     .cache()
-                    .name("usedJavaPackagesCache");
+                    .name("usedJavaPackagesCache"));
 
 
     /**
@@ -182,7 +197,7 @@ public final class JavaSourceRootAnalyzer {
      * platform-storage-gwt for a gwt application using webfx-platform-storage service module). This final missing
      * modules will be added later.
      */
-    private final ReusableStream<ModuleDependency> directDependenciesWithoutEmulationAndImplicitProvidersCache =
+    private final ReusableStream<ModuleDependency> directDependenciesWithoutEmulationAndImplicitProvidersCache = freezableCaches.add(
             ReusableStream.create(() ->
                 ReusableStream.concat(
                             sourceDirectDependenciesCache,
@@ -192,26 +207,26 @@ public final class JavaSourceRootAnalyzer {
                     )
                     .distinct()
                     .cache()
-            ).name("directDependenciesWithoutEmulationAndImplicitProvidersCache");
+            ).name("directDependenciesWithoutEmulationAndImplicitProvidersCache"));
 
     /**
      * Returns all the transitive dependencies without emulation and implicit providers modules.
      */
-    private final ReusableStream<ModuleDependency> transitiveDependenciesWithoutEmulationAndImplicitProvidersCache =
+    private final ReusableStream<ModuleDependency> transitiveDependenciesWithoutEmulationAndImplicitProvidersCache = freezableCaches.add(
             directDependenciesWithoutEmulationAndImplicitProvidersCache
                     .flatMap(ModuleDependency::collectThisAndTransitiveDependencies)
                     .distinct()
                     .cache()
-                    .name("transitiveDependenciesWithoutEmulationAndImplicitProvidersCache");
+                    .name("transitiveDependenciesWithoutEmulationAndImplicitProvidersCache"));
 
     /**
      * Returns the emulation modules required for this executable module (returns nothing if this module is not executable).
      */
-    private final ReusableStream<ModuleDependency> executableEmulationDependenciesCaches =
+    private final ReusableStream<ModuleDependency> executableEmulationDependenciesCaches = freezableCaches.add(
             ReusableStream.create(this::collectExecutableEmulationModules)
                     .map(m -> ModuleDependency.createEmulationDependency(getProjectModule(), m))
                     .cache()
-                    .name("executableEmulationDependenciesCaches");
+                    .name("executableEmulationDependenciesCaches"));
 
 
     /**
@@ -226,34 +241,34 @@ public final class JavaSourceRootAnalyzer {
      * Resolves and returns all implicit providers required by this executable module (returns nothing if this
      * module is not executable).
      */
-    private final ReusableStream<Providers> executableImplicitProvidersCache =
+    private final ReusableStream<Providers> executableImplicitProvidersCache = freezableCaches.add(
             ReusableStream.create(this::collectExecutableProviders)
                     .sorted()
                     .cache()
-                    .name("executableImplicitProvidersCache");
+                    .name("executableImplicitProvidersCache"));
 
     /**
      * Returns all direct dependencies without the implicit providers (but with emulation modules). This intermediate
      * step is required in case the emulation modules use additional services (which will be resolved in the next step).
      */
-    private final ReusableStream<ModuleDependency> directDependenciesWithoutImplicitProvidersCache =
+    private final ReusableStream<ModuleDependency> directDependenciesWithoutImplicitProvidersCache = freezableCaches.add(
             ReusableStream.concat(
                             directDependenciesWithoutEmulationAndImplicitProvidersCache,
                             executableEmulationDependenciesCaches
                     )
                     .distinct()
                     .cache()
-                    .name("directDependenciesWithoutImplicitProvidersCache");
+                    .name("directDependenciesWithoutImplicitProvidersCache"));
 
     /**
      * Returns the transitive dependencies without the implicit providers.
      */
-    private final ReusableStream<ModuleDependency> transitiveDependenciesWithoutImplicitProvidersCache =
+    private final ReusableStream<ModuleDependency> transitiveDependenciesWithoutImplicitProvidersCache = freezableCaches.add(
             directDependenciesWithoutImplicitProvidersCache
                     .flatMap(ModuleDependency::collectThisAndTransitiveDependencies)
                     .distinct()
                     .cache()
-                    .name("transitiveDependenciesWithoutImplicitProvidersCache");
+                    .name("transitiveDependenciesWithoutImplicitProvidersCache"));
 
     /**
      * Returns the transitive project modules without the implicit providers.
@@ -301,44 +316,59 @@ public final class JavaSourceRootAnalyzer {
     private final ReusableStream<ProjectModule> requiredProvidersModulesSearchScopeCache =
             autoInjectedOrRequiredProvidersModulesSearchScopeCache;
 
+    /**
+     * Index of the candidate implementations of the interface modules (the compatible modules of the required providers
+     * search scope, with their target grades precomputed for this executable module). It's built on demand when
+     * resolving interface dependencies.
+     */
+    private List<GradedModule> gradedImplementationCandidates;
+    private final Map<String /* interface module name */, List<GradedModule>> interfaceImplementationsIndex = new HashMap<>();
+
+    /**
+     * Final resolution of the interface dependencies (dependencies to the concrete module and its providers).
+     */
+    private final Map<String /* interface module name */, ReusableStream<ModuleDependency>> resolvedInterfaceDependencies = new HashMap<>();
+
+    private ProvidersResolutionStatistics providersResolutionStatistics;
+
 
     /**
      * Returns the additional dependencies needed to integrate the implicit providers into this executable module
      * (returns nothing if this module is not executable).
      */
-    private final ReusableStream<ModuleDependency> executableImplicitProvidersDependenciesCache =
+    private final ReusableStream<ModuleDependency> executableImplicitProvidersDependenciesCache = freezableCaches.add(
             executableImplicitProvidersCache
                     .flatMap(Providers::getProviderModules)
                     // Removing modules already in transitive dependencies (no need to repeat them)
                     .filter(m -> m != getProjectModule() && transitiveDependenciesWithoutImplicitProvidersCache.noneMatch(dep -> dep.getDestinationModule() == m))
                     .map(m -> ModuleDependency.createImplicitProviderDependency(getProjectModule(), m))
                     .cache()
-                    .name("executableImplicitProvidersDependenciesCache");
+                    .name("executableImplicitProvidersDependenciesCache"));
 
 
     /**
      * Returns all the direct module dependencies (including the final emulation and implicit provider modules) but
      * without the final resolutions required for executable modules.
      */
-    private final ReusableStream<ModuleDependency> directDependenciesWithoutFinalExecutableResolutionsCache =
+    private final ReusableStream<ModuleDependency> directDependenciesWithoutFinalExecutableResolutionsCache = freezableCaches.add(
             ReusableStream.concat(
                             directDependenciesWithoutImplicitProvidersCache,
                             executableImplicitProvidersDependenciesCache
                     )
                     .distinct()
                     .cache()
-                    .name("directDependenciesWithoutFinalExecutableResolutionsCache");
+                    .name("directDependenciesWithoutFinalExecutableResolutionsCache"));
 
     /**
      * Returns all the transitive module dependencies (including the final emulation and implicit provider modules) but
      * without the final resolutions required for executable modules.
      */
-    private final ReusableStream<ModuleDependency> transitiveDependenciesWithoutFinalExecutableResolutionsCache =
+    private final ReusableStream<ModuleDependency> transitiveDependenciesWithoutFinalExecutableResolutionsCache = freezableCaches.add(
             directDependenciesWithoutFinalExecutableResolutionsCache
                     .flatMap(ModuleDependency::collectThisAndTransitiveDependencies)
                     .distinct()
                     .cache()
-                    .name("transitiveDependenciesWithoutFinalExecutableResolutionsCache");
+                    .name("transitiveDependenciesWithoutFinalExecutableResolutionsCache"));
 
     /**
      * Returns the final list of all the direct module dependencies. There are 2 changes made in this last step.
@@ -355,7 +385,7 @@ public final class JavaSourceRootAnalyzer {
      * a final web application. For making this replacement work with the java module system, the concrete modules will
      * be declared using the same name as the interface module in their module-info.java (See {@link DevJavaModuleInfoFile} ).
      */
-    private final ReusableStream<ModuleDependency> unfilteredDirectDependenciesCache =
+    private final ReusableStream<ModuleDependency> unfilteredDirectDependenciesCache = freezableCaches.add(
             ReusableStream.concat(
                             directDependenciesWithoutFinalExecutableResolutionsCache,
                             // Moving transitive dependencies declared with an executable target to here (ie direct dependencies)
@@ -365,27 +395,27 @@ public final class JavaSourceRootAnalyzer {
                     .flatMap(this::resolveInterfaceDependencyIfExecutable) // Resolving interface modules
                     .distinct()
                     .cache()
-                    .name("unfilteredDirectDependenciesCache");
+                    .name("unfilteredDirectDependenciesCache"));
 
-    private final ReusableStream<ModuleDependency> directDependenciesCache =
+    private final ReusableStream<ModuleDependency> directDependenciesCache = freezableCaches.add(
             unfilteredDirectDependenciesCache
                     // Removing dependencies declared with an executable target if this module is not executable or with incompatible target
                     .filter(dep -> dep.getExecutableTarget() == null || getProjectModule().isExecutable() && dep.getExecutableTarget().gradeTargetMatch(getProjectModule().getTarget()) >= 0)
                     .cache()
-                    .name("directDependenciesCache");
+                    .name("directDependenciesCache"));
 
 
     /**
      * Returns the final list of all the transitive module dependencies. @See {@link JavaSourceRootAnalyzer#directDependenciesCache}
      * for an explanation of the changes made in this last step.
      */
-    private final ReusableStream<ModuleDependency> transitiveDependenciesCache =
+    private final ReusableStream<ModuleDependency> transitiveDependenciesCache = freezableCaches.add(
             transitiveDependenciesWithoutFinalExecutableResolutionsCache
                     .filter(dep -> dep.getExecutableTarget() == null) // Removing dependencies declared with an executable target (because moved to direct dependencies)
                     .flatMap(this::resolveInterfaceDependencyIfExecutable) // Resolving interface modules
                     .distinct()
                     .cache()
-                    .name("transitiveDependenciesCache");
+                    .name("transitiveDependenciesCache"));
 
 
     public JavaSourceRootAnalyzer(Supplier<Path> javaSourceRootPathSupplier, ProjectModuleImpl projectModule) {
@@ -393,6 +423,20 @@ public final class JavaSourceRootAnalyzer {
         this.projectModule = projectModule;
     }
 
+    /**
+     * Freezes this analyzer once its module is fully resolved: the caches computed by the resolution (and the ones
+     * computed later) are materialised into plain arrays at their next complete iteration (see FreezableCaches), so the
+     * subsequent queries (from the generators and reporters) iterate these arrays instead of going again through the
+     * composed lazy streams. This should be called only after the resolution phase (see ParallelSourceAnalysis).
+     */
+    public void freeze() {
+        freezableCaches.freezeComputedCaches();
+    }
+
+    public boolean isFrozen() {
+        return freezableCaches.isFrozen();
+    }
+
     public Path getJavaSourceRootPath() {
         return javaSourceRootPathSupplier.get();
     }
@@ -401,6 +445,18 @@ public final class JavaSourceRootAnalyzer {
         return projectModule;
     }
 
+    private JavaBytecodeAnalyzer getBinaryJarAnalyzer() {
+        return projectModule instanceof M2ProjectModule ? ((M2ProjectModule) projectModule).getBinaryJarAnalyzer() : null;
+    }
+
+    // The bytecode replaces the export snapshot for the WebFX libraries that have none (and no sources), but it is not
+    // considered for the other M2 modules (the third-party libraries are not analysed, so their jar is not downloaded)
+    private JavaBytecodeAnalyzer getWebFxLibraryBinaryJarAnalyzer() {
+        if (projectModule instanceof M2ProjectModule && ((M2ProjectModule) projectModule).isWebFxModuleFileExpected() && !((M2WebFxModuleFile) projectModule.getWebFxModuleFile()).isExported())
+            return getBinaryJarAnalyzer();
+        return null;
+    }
+
     ///// Java classes
 
     public ReusableStream<JavaFile> getSourceFiles() {
@@ -440,7 +496,12 @@ public final class JavaSourceRootAnalyzer {
         boolean excludeWebFxKit = packageName.startsWith("javafx.");
         if (excludeWebFxKit && projectModule.getName().startsWith("webfx-kit-"))
             return false;
-        return usesJavaPackage(packageName) && getSourceFiles().anyMatch(jc -> jc.usesJavaClass(javaClass));
+        if (!usesJavaPackage(packageName))
+            return false;
+        JavaBytecodeAnalyzer binaryJarAnalyzer = getWebFxLibraryBinaryJarAnalyzer();
+        if (binaryJarAnalyzer != null)
+            return binaryJarAnalyzer.usesJavaClass(javaClass);
+        return getSourceFiles().anyMatch(jc -> jc.usesJavaClass(javaClass));
     }
 
     ///// Services
@@ -551,91 +612,154 @@ public final class JavaSourceRootAnalyzer {
 
     /**
      * If the module is executable, this method returns the list of all providers required for its execution.
+     * <p>
+     * This is a fixpoint computation: the modules added for the providers may themselves use additional services, and
+     * so on. It's implemented as a worklist algorithm that processes only the deltas on each iteration: the services
+     * are collected only from the newly added (walking) modules, and the services still to resolve are searched only
+     * among the walking modules added since their last search (the search scopes are searched only once per service).
      *
      * @return a stream of all providers (empty for non-executable modules)
      */
     private ReusableStream<Providers> collectExecutableProviders() {
-        return collectExecutableModuleProviders(this, this);
-    }
-
-    /**
-     * This is the static implementation of collectExecutableModuleProviders() that takes 2 arguments:
-     * @param executableSourceRoot the source root analyzer of the executable module
-     * @param collectingSourceRoot the source root analyzer of the module we are collecting the provider for
-     * @return a stream of all providers (empty for non-executable modules)
-     */
-    private static ReusableStream<Providers> collectExecutableModuleProviders(JavaSourceRootAnalyzer executableSourceRoot, JavaSourceRootAnalyzer collectingSourceRoot) {
         // Returning an empty stream if the module is not executable
-        ProjectModuleImpl executableModule = executableSourceRoot.getProjectModule();
+        ProjectModuleImpl executableModule = getProjectModule();
         if (!executableModule.isExecutable())
             return ReusableStream.empty();
 
-        ProjectModuleImpl collectingModule = collectingSourceRoot.getProjectModule();
+        Target executableTarget = executableModule.getTarget();
         List<ProjectModule> walkingModules = new HashList<>();
-        walkingModules.add(collectingModule);
-        walkingModules.addAll(ProjectModule.filterProjectModules(mapDestinationModules(collectingSourceRoot.getTransitiveDependenciesWithoutImplicitProviders())).collect(Collectors.toList()));
-        List<String/* SPI */> requiredServices = new HashList<>();
-        ReusableStream<ProjectModule> requiredSearchScope = executableSourceRoot.getRequiredProvidersModulesSearchScope();
-        List<String/* SPI */> optionalServices = new HashList<>();
-        ReusableStream<ProjectModule> optionalSearchScope = executableSourceRoot.getOptionalProvidersModulesSearchScope();
+        walkingModules.add(executableModule);
+        walkingModules.addAll(ProjectModule.filterProjectModules(mapDestinationModules(getTransitiveDependenciesWithoutImplicitProviders())).collect(Collectors.toList()));
+        // Unresolved required services, with the number of walking modules already searched for each of them
+        Map<String/* SPI */, Integer> requiredServices = new LinkedHashMap<>();
+        ReusableStream<ProjectModule> requiredSearchScope = getRequiredProvidersModulesSearchScope();
+        // Optional services, with the number of walking modules already searched for each of them
+        Map<String/* SPI */, Integer> optionalServices = new LinkedHashMap<>();
+        ReusableStream<ProjectModule> optionalSearchScope = getOptionalProvidersModulesSearchScope();
         Map<String/* SPI */, List<ProjectModule>> providerModules = new HashMap<>();
+        ProvidersResolutionStatistics statistics = new ProvidersResolutionStatistics();
 
         int walkingIndex = 0;
 
         while (walkingIndex < walkingModules.size()) {
+            statistics.iterations++;
 
-            // Collecting the required and optional services (SPI) used by this module and transitive dependencies
+            // Collecting the new required and optional services (SPI) used by the newly added walking modules
             for (; walkingIndex < walkingModules.size(); walkingIndex++) {
-                ProjectModule projectModule = walkingModules.get(walkingIndex);
-                JavaSourceRootAnalyzer projectAnalyzer = projectModule.getMainJavaSourceRootAnalyzer();
-                requiredServices.addAll(projectAnalyzer.getUsedRequiredJavaServices().collect(Collectors.toList()));
-                optionalServices.addAll(projectAnalyzer.getUsedOptionalJavaServices().collect(Collectors.toList()));
+                JavaSourceRootAnalyzer walkingAnalyzer = walkingModules.get(walkingIndex).getMainJavaSourceRootAnalyzer();
+                walkingAnalyzer.getUsedRequiredJavaServices().forEach(spi -> {
+                    if (!providerModules.containsKey(spi))
+                        requiredServices.putIfAbsent(spi, 0);
+                });
+                walkingAnalyzer.getUsedOptionalJavaServices().forEach(spi -> optionalServices.putIfAbsent(spi, 0));
             }
 
             // Resolving the required services (finding the most relevant modules that implement these SPIs - only one module per SPI)
-            for (Iterator<String> it = requiredServices.iterator(); it.hasNext(); ) {
-                String spi = it.next();
-                if (providerModules.get(spi) != null) // already resolved
-                    it.remove(); // We remove this service from requiredServices, so this list contains only unresolved services
+            for (Iterator<Map.Entry<String, Integer>> it = requiredServices.entrySet().iterator(); it.hasNext(); ) {
+                Map.Entry<String, Integer> entry = it.next();
+                String spi = entry.getKey();
+                if (providerModules.get(spi) != null) { // already resolved
+                    it.remove(); // We remove this service from requiredServices, so this map contains only unresolved services
+                    continue;
+                }
+                int searchedCount = entry.getValue();
+                // Searching only among the walking modules added since the last search (the previous ones don't provide that service)
+                ProjectModule requiredModule = RootModule.findModulesProvidingJavaService(ReusableStream.fromIterable(walkingModules.subList(searchedCount, walkingModules.size())), spi, executableTarget, true)
+                        .findFirst().orElse(null);
+                statistics.searches++;
+                if (requiredModule == null && searchedCount == 0) { // The search scope needs to be searched only once
+                    requiredModule = RootModule.findModulesProvidingJavaService(requiredSearchScope, spi, executableTarget, true)
+                            .findFirst().orElse(null);
+                    statistics.searches++;
+                }
+                if (requiredModule == null)
+                    entry.setValue(walkingModules.size());
                 else {
-                    ReusableStream<ProjectModule> requiredModules = RootModule.findModulesProvidingJavaService(ReusableStream.fromIterable(walkingModules), spi, executableModule.getTarget(), true);
-                    if (requiredModules.isEmpty())
-                        requiredModules = RootModule.findModulesProvidingJavaService(requiredSearchScope, spi, executableModule.getTarget(), true);
-                    requiredModules.findFirst().ifPresent(requiredModule -> {
-                        providerModules.put(spi, Collections.singletonList(requiredModule)); // singleton list because there only 1 instance for required services
-                        if (collectingSourceRoot == executableSourceRoot) {
-                            // Adding the module implementing the service to the walking modules (for subsequent research on next loop)
-                            walkingModules.add(requiredModule);
-                            // Also adding all its transitive dependencies
-                            walkingModules.addAll(ProjectModule.filterProjectModules(mapDestinationModules(requiredModule.getMainJavaSourceRootAnalyzer().getTransitiveDependenciesWithoutImplicitProviders())).collect(Collectors.toList()));
-                        }
-                        it.remove(); // We remove this service because it is now resolved
-                    });
+                    providerModules.put(spi, Collections.singletonList(requiredModule)); // singleton list because there only 1 instance for required services
+                    // Adding the module implementing the service to the walking modules (for subsequent research on next loop)
+                    walkingModules.add(requiredModule);
+                    // Also adding all its transitive dependencies
+                    walkingModules.addAll(ProjectModule.filterProjectModules(mapDestinationModules(requiredModule.getMainJavaSourceRootAnalyzer().getTransitiveDependenciesWithoutImplicitProviders())).collect(Collectors.toList()));
+                    statistics.requiredResolved++;
+                    it.remove(); // We remove this service because it is now resolved
                 }
             }
 
             // Resolving the optional services (finding all modules that implement these SPIs)
-            optionalServices.forEach(spi -> {
+            for (Map.Entry<String, Integer> entry : optionalServices.entrySet()) {
+                int searchedCount = entry.getValue();
+                if (searchedCount == walkingModules.size()) // No new walking modules since the last search
+                    continue;
+                String spi = entry.getKey();
                 List<ProjectModule> optionalModules = providerModules.get(spi);
-                if (optionalModules == null)
-                    providerModules.put(spi, optionalModules = new HashList<>(RootModule.findModulesProvidingJavaService(optionalSearchScope, spi, collectingModule.getTarget(), false).collect(Collectors.toList())));
-                List<ProjectModule> additionalOptionalModules = RootModule.findModulesProvidingJavaService(ReusableStream.fromIterable(walkingModules), spi, collectingModule.getTarget(), false).collect(Collectors.toList());
+                if (optionalModules == null) {
+                    providerModules.put(spi, optionalModules = new HashList<>(RootModule.findModulesProvidingJavaService(optionalSearchScope, spi, executableTarget, false).collect(Collectors.toList())));
+                    statistics.searches++;
+                    statistics.optionalResolved++;
+                }
+                List<ProjectModule> additionalOptionalModules = RootModule.findModulesProvidingJavaService(ReusableStream.fromIterable(walkingModules.subList(searchedCount, walkingModules.size())), spi, executableTarget, false).collect(Collectors.toList());
+                statistics.searches++;
                 optionalModules.addAll(additionalOptionalModules);
-                if (collectingSourceRoot == executableSourceRoot)
-                    walkingModules.addAll(additionalOptionalModules);
-            });
+                walkingModules.addAll(additionalOptionalModules);
+                entry.setValue(walkingModules.size());
+            }
+
+            // We loop for collecting the possible subsequent providers (because the modules we just added for the
+            // providers may themselves require additional providers)
+        }
+
+        statistics.walkingModules = walkingModules.size();
+        statistics.unresolvedRequired = requiredServices.size();
+        providersResolutionStatistics = statistics;
+        Logger.verbose("Providers resolution for " + executableModule + ": " + statistics);
 
-            // We don't collect subsequent providers when the collecting source root differs from the executable source
-            // root - which happens when this method is called from resolveInterfaceDependencyIfExecutable().
-            if (collectingSourceRoot != executableSourceRoot)
-                break;
+        requiredServices.keySet().forEach(spi -> Logger.verbose("No provider found for " + spi + " among " + requiredSearchScope.map(ProjectModule::getName).sorted().collect(Collectors.toList())));
 
-            // Otherwise, we loop for collecting the possible subsequent providers (because the modules we just added
-            // for the providers may themselves require additional providers)
+        return ReusableStream.fromIterable(providerModules.entrySet())
+                .map(entry -> new Providers(entry.getKey(), ReusableStream.fromIterable(entry.getValue())));
+    }
+
+    /**
+     * Returns the statistics of the providers resolution of this executable module (convergence cost of the fixpoint
+     * computation), or null if the providers haven't been resolved yet (or if this module is not executable).
+     */
+    public ProvidersResolutionStatistics getProvidersResolutionStatistics() {
+        return providersResolutionStatistics;
+    }
+
+    /**
+     * Returns the providers required by a concrete module that replaces an interface module in this executable module.
+     * Unlike collectExecutableProviders(), subsequent providers are not collected. The part of the work that doesn't
+     * depend on this executable module (walking the concrete module and its transitive dependencies, and searching
+     * the providers among them) is shared through the module registry with the other executable modules having the
+     * same target.
+     *
+     * @param concreteSourceRoot the source root analyzer of the concrete module
+     * @return a stream of all providers required by the concrete module
+     */
+    private ReusableStream<Providers> collectInterfaceConcreteModuleProviders(JavaSourceRootAnalyzer concreteSourceRoot) {
+        Target executableTarget = projectModule.getTarget();
+        ConcreteModuleServices services = projectModule.getModuleRegistry().getOrComputeConcreteModuleServices(executableTarget, concreteSourceRoot.getProjectModule(),
+                () -> new ConcreteModuleServices(concreteSourceRoot, executableTarget));
+        Map<String/* SPI */, List<ProjectModule>> providerModules = new HashMap<>();
+
+        // Resolving the required services (those not found among the concrete module and its transitive dependencies
+        // are searched in the required providers search scope of this executable module)
+        for (String spi : services.requiredServices) {
+            ProjectModule requiredModule = services.walkingRequiredProviders.get(spi);
+            if (requiredModule == null)
+                requiredModule = RootModule.findModulesProvidingJavaService(getRequiredProvidersModulesSearchScope(), spi, executableTarget, true).findFirst().orElse(null);
+            if (requiredModule != null)
+                providerModules.put(spi, Collections.singletonList(requiredModule)); // singleton list because there only 1 instance for required services
         }
 
-        if (collectingSourceRoot == executableSourceRoot)
-            requiredServices.forEach(spi -> Logger.verbose("No provider found for " + spi + " among " + requiredSearchScope.map(ProjectModule::getName).sorted().collect(Collectors.toList())));
+        // Resolving the optional services (finding all modules that implement these SPIs)
+        services.walkingOptionalProviders.forEach((spi, additionalOptionalModules) -> {
+            List<ProjectModule> optionalModules = providerModules.get(spi);
+            if (optionalModules == null)
+                providerModules.put(spi, optionalModules = new HashList<>(RootModule.findModulesProvidingJavaService(getOptionalProvidersModulesSearchScope(), spi, services.collectingTarget, false).collect(Collectors.toList())));
+            optionalModules.addAll(additionalOptionalModules);
+        });
 
         return ReusableStream.fromIterable(providerModules.entrySet())
                 .map(entry -> new Providers(entry.getKey(), ReusableStream.fromIterable(entry.getValue())));
@@ -645,42 +769,80 @@ public final class JavaSourceRootAnalyzer {
         if (projectModule.isExecutable() && dependency.getDestinationModule() instanceof ProjectModule) {
             ProjectModule module = (ProjectModule) dependency.getDestinationModule();
             if (module.isInterface()) {
-                ReusableStream<ProjectModule> searchScope = getRequiredProvidersModulesSearchScope();
-                ProjectModule concreteModule = searchScope
-                        .filter(m -> m.implementsModule(module))
-                        .filter(m -> m.isCompatibleWithTargetModule(projectModule))
-                        .max(Comparator.comparingInt(m -> m.gradeTargetMatch(projectModule.getTarget())))
-                        .orElse(null);
-                if (concreteModule != null) {
-                    // Creating the dependency to this concrete module and adding transitive dependencies
-                    ReusableStream<ModuleDependency> concreteModuleDependencies = ModuleDependency.createImplicitProviderDependency(projectModule, concreteModule)
-                            .collectThisAndTransitiveDependencies();
-                    // In case these dependencies have a SPI, collecting the providers and adding their associated implicit dependencies
-                    // Ex: interface = [webfx-extras-visual-]grid-registry, concrete = [...]-grid-registry-spi, provider = [...]-grid-peers-javafx
-                    // TODO: See if we can move this up to the generic steps when building dependencies
-                    if (concreteModule instanceof ProjectModuleImpl) // Added to solve cast problem, is it OK?
-                        concreteModuleDependencies = ReusableStream.concat(
-                                concreteModuleDependencies,
-                                collectExecutableModuleProviders(this, concreteModule.getMainJavaSourceRootAnalyzer())
-                                        .flatMap(Providers::getProviderModules)
-                                        //.filter(m -> transitiveDependenciesWithoutImplicitProvidersCache.noneMatch(dep -> dep.getDestinationModule() == m)) // Removing modules already in transitive dependencies (no need to repeat them)
-                                        .map(m -> ModuleDependency.createImplicitProviderDependency(projectModule, m))
-                        );
-                    return concreteModuleDependencies
-                            .filter(dep -> !(dep.getDestinationModule() instanceof ProjectModule && ((ProjectModule) dep.getDestinationModule()).isInterface()))
-                            .distinct()
-                            ;
-                }
-                String message = "No concrete module found for interface module " + module + " in executable module " + this + " among " + searchScope.map(ProjectModule::getName).sorted().collect(Collectors.toList());
-                //if (isModuleUnderRootHomeDirectory(this))
-                Logger.warning(message);
-                //else
-                //    Logger.verbose(message);
+                // The resolution doesn't depend on the dependency itself, only on the interface module, so we memorise it
+                // (a null value means that no concrete module was found)
+                ReusableStream<ModuleDependency> resolvedDependencies;
+                if (resolvedInterfaceDependencies.containsKey(module.getName()))
+                    resolvedDependencies = resolvedInterfaceDependencies.get(module.getName());
+                else
+                    resolvedInterfaceDependencies.put(module.getName(), resolvedDependencies = resolveInterfaceModule(module));
+                if (resolvedDependencies != null)
+                    return resolvedDependencies;
             }
         }
         return ReusableStream.of(dependency);
     }
 
+    private ReusableStream<ModuleDependency> resolveInterfaceModule(ProjectModule module) {
+        ProjectModule concreteModule = findInterfaceConcreteModule(module);
+        if (concreteModule != null) {
+            // Creating the dependency to this concrete module and adding transitive dependencies
+            ReusableStream<ModuleDependency> concreteModuleDependencies = ModuleDependency.createImplicitProviderDependency(projectModule, concreteModule)
+                    .collectThisAndTransitiveDependencies();
+            // In case these dependencies have a SPI, collecting the providers and adding their associated implicit dependencies
+            // Ex: interface = [webfx-extras-visual-]grid-registry, concrete = [...]-grid-registry-spi, provider = [...]-grid-peers-javafx
+            // TODO: See if we can move this up to the generic steps when building dependencies
+            if (concreteModule instanceof ProjectModuleImpl) // Added to solve cast problem, is it OK?
+                concreteModuleDependencies = ReusableStream.concat(
+                        concreteModuleDependencies,
+                        collectInterfaceConcreteModuleProviders(concreteModule.getMainJavaSourceRootAnalyzer())
+                                .flatMap(Providers::getProviderModules)
+                                //.filter(m -> transitiveDependenciesWithoutImplicitProvidersCache.noneMatch(dep -> dep.getDestinationModule() == m)) // Removing modules already in transitive dependencies (no need to repeat them)
+                                .map(m -> ModuleDependency.createImplicitProviderDependency(projectModule, m))
+                );
+            return concreteModuleDependencies
+                    .filter(dep -> !(dep.getDestinationModule() instanceof ProjectModule && ((ProjectModule) dep.getDestinationModule()).isInterface()))
+                    .distinct()
+                    .cache();
+        }
+        String message = "No concrete module found for interface module " + module + " in executable module " + this + " among " + getRequiredProvidersModulesSearchScope().map(ProjectModule::getName).sorted().collect(Collectors.toList());
+        //if (isModuleUnderRootHomeDirectory(this))
+        Logger.warning(message);
+        //else
+        //    Logger.verbose(message);
+        return null;
+    }
+
+    /**
+     * Returns the best concrete module implementing the interface module for this executable module, using the
+     * implementations index (built on first call).
+     */
+    private ProjectModule findInterfaceConcreteModule(ProjectModule interfaceModule) {
+        if (gradedImplementationCandidates == null) {
+            // Grading once all modules of the required providers search scope that are compatible with this executable
+            // module (a negative grade means incompatible)
+            Target target = projectModule.getTarget();
+            gradedImplementationCandidates = getRequiredProvidersModulesSearchScope()
+                    .map(m -> new GradedModule(m, m.gradeTargetMatch(target)))
+                    .filter(gm -> gm.grade >= 0)
+                    .collect(Collectors.toList());
+        }
+        List<GradedModule> candidates = interfaceImplementationsIndex.get(interfaceModule.getName());
+        if (candidates == null) {
+            candidates = new ArrayList<>(1);
+            for (GradedModule gm : gradedImplementationCandidates)
+                if (gm.module.implementsModule(interfaceModule))
+                    candidates.add(gm);
+            interfaceImplementationsIndex.put(interfaceModule.getName(), candidates);
+        }
+        // Keeping the first candidate with the best grade (as Stream.max() does)
+        GradedModule best = null;
+        for (GradedModule gm : candidates)
+            if (best == null || gm.grade > best.grade)
+                best = gm;
+        return best == null ? null : best.module;
+    }
+
     private ReusableStream<Module> collectExecutableEmulationModules() {
         RootModule rootModule = projectModule.getRootModule();
         if (projectModule.isExecutable(Platform.GWT))
@@ -707,4 +869,89 @@ public final class JavaSourceRootAnalyzer {
         return ReusableStream.empty();
     }
 
+    /**
+     * Statistics about the providers resolution of an executable module (see collectExecutableProviders()).
+     */
+    public static final class ProvidersResolutionStatistics {
+        private int iterations;
+        private int walkingModules;
+        private int searches;
+        private int requiredResolved;
+        private int unresolvedRequired;
+        private int optionalResolved;
+
+        public int getIterations() {
+            return iterations;
+        }
+
+        public int getWalkingModules() {
+            return walkingModules;
+        }
+
+        public int getSearches() {
+            return searches;
+        }
+
+        public int getRequiredResolved() {
+            return requiredResolved;
+        }
+
+        public int getUnresolvedRequired() {
+            return unresolvedRequired;
+        }
+
+        public int getOptionalResolved() {
+            return optionalResolved;
+        }
+
+        @Override
+        public String toString() {
+            return iterations + " iterations, " + walkingModules + " walking modules, " + searches + " provider searches, "
+                    + requiredResolved + " required SPIs resolved (" + unresolvedRequired + " unresolved), "
+                    + optionalResolved + " optional SPIs resolved";
+        }
+    }
+
+    private static final class GradedModule {
+        private final ProjectModule module;
+        private final int grade;
+
+        private GradedModule(ProjectModule module, int grade) {
+            this.module = module;
+            this.grade = grade;
+        }
+    }
+
+    /**
+     * The services used by a concrete module (and its transitive dependencies) with the providers found among them,
+     * for a requested target. This doesn't depend on the executable module, so this can be shared by all executable
+     * modules having the same target (see {@link ModuleRegistry#getOrComputeConcreteModuleServices}).
+     */
+    static final class ConcreteModuleServices {
+        private final Target collectingTarget;
+        private final List<String /* SPI */> requiredServices = new HashList<>();
+        private final Map<String /* SPI */, ProjectModule> walkingRequiredProviders = new HashMap<>();
+        private final Map<String /* SPI */, List<ProjectModule>> walkingOptionalProviders = new LinkedHashMap<>();
+
+        private ConcreteModuleServices(JavaSourceRootAnalyzer concreteSourceRoot, Target executableTarget) {
+            ProjectModuleImpl concreteModule = concreteSourceRoot.getProjectModule();
+            collectingTarget = concreteModule.getTarget();
+            List<ProjectModule> walkingModules = new HashList<>();
+            walkingModules.add(concreteModule);
+            walkingModules.addAll(ProjectModule.filterProjectModules(mapDestinationModules(concreteSourceRoot.getTransitiveDependenciesWithoutImplicitProviders())).collect(Collectors.toList()));
+            List<String/* SPI */> optionalServices = new HashList<>();
+            for (ProjectModule walkingModule : walkingModules) {
+                JavaSourceRootAnalyzer walkingAnalyzer = walkingModule.getMainJavaSourceRootAnalyzer();
+                requiredServices.addAll(walkingAnalyzer.getUsedRequiredJavaServices().collect(Collectors.toList()));
+                optionalServices.addAll(walkingAnalyzer.getUsedOptionalJavaServices().collect(Collectors.toList()));
+            }
+            ReusableStream<ProjectModule> walkingScope = ReusableStream.fromIterable(walkingModules);
+            for (String spi : requiredServices)
+                RootModule.findModulesProvidingJavaService(walkingScope, spi, executableTarget, true).findFirst()
+                        .ifPresent(m -> walkingRequiredProviders.put(spi, m));
+            for (String spi : optionalServices)
+                walkingOptionalProviders.put(spi, RootModule.findModulesProvidingJavaService(walkingScope, spi, collectingTarget, false).collect(Collectors.toList()));
+        }
+    }
+
 }
@@ -0,0 +1,115 @@
+package dev.webfx.cli.core;
+
+import dev.webfx.cli.util.digest.DigestUtil;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collection;
+import java.util.Properties;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Validation of the dependency:tree outputs cached by M2RootModule. Each cached output is recorded with a digest of
+ * every pom reached during its resolution (the library pom, the poms of the artifacts in the tree, and their parents
+ * and imported boms), stored in a sidecar file next to it. The cached output is reused only if none of these poms has
+ * changed on disk since (so it's also reused for snapshots, and a released pom that is downloaded again or edited
+ * invalidates it). A cached output without digest sidecar (written by a previous version of the CLI) is not reused.
+ * <p>
+ * It also counts the dependency:tree invocations that have been avoided (see getStatistics()).
+ *
+ * @author Bruno Salmon
+ */
+public final class M2DependencyTreeCache {
+
+    private static final String MISSING_POM = "missing";
+
+    private static final AtomicInteger CACHE_HITS = new AtomicInteger();
+    private static final AtomicInteger IN_PROCESS_RESOLUTIONS = new AtomicInteger();
+    private static final AtomicInteger MAVEN_INVOCATIONS = new AtomicInteger();
+
+    static Path getDigestPath(Path cachePath) {
+        return cachePath.resolveSibling(cachePath.getFileName() + ".digest");
+    }
+
+    static boolean isValid(Path cachePath) {
+        Path digestPath = getDigestPath(cachePath);
+        if (!Files.exists(cachePath) || !Files.exists(digestPath))
+            return false;
+        Properties digest = new Properties();
+        try (Reader reader = Files.newBufferedReader(digestPath, StandardCharsets.UTF_8)) {
+            digest.load(reader);
+        } catch (IOException | IllegalArgumentException e) { // IllegalArgumentException = malformed digest
+            return false;
+        }
+        if (digest.isEmpty())
+            return false;
+        for (String pomPath : digest.stringPropertyNames())
+            if (!digest.getProperty(pomPath).equals(hashPom(Path.of(pomPath))))
+                return false;
+        return true;
+    }
+
+    static void recordDigest(Path cachePath, Collection<Path> reachedPomPaths) {
+        Properties digest = new Properties();
+        for (Path pomPath : reachedPomPaths)
+            digest.setProperty(pomPath.toAbsolutePath().normalize().toString(), hashPom(pomPath));
+        try (Writer writer = Files.newBufferedWriter(getDigestPath(cachePath), StandardCharsets.UTF_8)) {
+            digest.store(writer, "Poms reached by the dependency tree");
+        } catch (IOException e) {
+            // Not a problem, the dependency tree will just be computed again next time
+        }
+    }
+
+    static void forget(Path cachePath) {
+        try {
+            Files.deleteIfExists(getDigestPath(cachePath));
+            Files.deleteIfExists(cachePath);
+        } catch (IOException ignored) {
+        }
+    }
+
+    private static String hashPom(Path pomPath) {
+        if (!Files.exists(pomPath))
+            return MISSING_POM;
+        try {
+            return DigestUtil.sha256Hex(Files.readAllBytes(pomPath));
+        } catch (IOException e) {
+            return MISSING_POM;
+        }
+    }
+
+    static void onCacheHit() {
+        CACHE_HITS.incrementAndGet();
+    }
+
+    static void onInProcessResolution() {
+        IN_PROCESS_RESOLUTIONS.incrementAndGet();
+    }
+
+    static void onMavenInvocation() {
+        MAVEN_INVOCATIONS.incrementAndGet();
+    }
+
+    public static int getAvoidedInvocationsCount() {
+        return CACHE_HITS.get() + IN_PROCESS_RESOLUTIONS.get();
+    }
+
+    public static int getInvocationsCount() {
+        return MAVEN_INVOCATIONS.get();
+    }
+
+    public static void resetStatistics() {
+        CACHE_HITS.set(0);
+        IN_PROCESS_RESOLUTIONS.set(0);
+        MAVEN_INVOCATIONS.set(0);
+    }
+
+    public static String getStatistics() {
+        return "Maven dependency:tree: " + getAvoidedInvocationsCount() + " invocations avoided (" + CACHE_HITS.get()
+                + " from cache, " + IN_PROCESS_RESOLUTIONS.get() + " resolved in-process), " + MAVEN_INVOCATIONS.get() + " invoked";
+    }
+}
@@ -0,0 +1,210 @@
+package dev.webfx.cli.core;
+
+import dev.webfx.cli.util.process.ProcessCall;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+
+/**
+ * Plans the downloads of the missing M2 artifacts, so they are fetched in a single Maven invocation instead of one
+ * "mvn dependency:get" per artifact (each invocation costing a few seconds for the JVM and Maven startup).
+ * <p>
+ * When an artifact is missing, the planner walks the M2 modules registered so far and collects all the artifacts that
+ * are missing and that will be needed for sure (the poms of all modules, the webfx.xml files of the WebFX libraries),
+ * together with the requested one. These artifacts are then declared as dependencies of a generated resolution pom
+ * (with a *:* exclusion, so Maven doesn't resolve their transitive dependencies), and fetched with a single
+ * "mvn dependency:resolve". As new modules are registered while the dependency graph is explored, a new plan is made
+ * on the next missing artifact (so the number of Maven invocations is about the depth of the libraries graph, and not
+ * the number of artifacts).
+ * <p>
+ * The sources jars and binary jars are not planned, as we don't know before reading the poms and webfx.xml files if
+ * they will be needed (the sources jar is read only if the sources of the module are analysed, and the binary jar only
+ * if there is no sources jar, see M2ProjectModule.getBinaryJarAnalyzer()). They are requested when needed, which makes
+ * a new plan with the other missing artifacts at that time.
+ * <p>
+ * Maven resolves all the artifacts of the plan even if some of them don't exist. The artifacts fetched by the plan,
+ * and the ones that Maven reported as not existing in the repositories (ex: third-party library without webfx.xml),
+ * are not requested again. The other ones (ex: network error) are not planned again (as they would make the next plans
+ * fail too), but they are still downloaded individually as before when requested, which is also what happens to the
+ * requested artifact if the plan didn't fetch it for another reason than its absence.
+ * <p>
+ * In offline mode, nothing is downloaded and the requested artifacts are reported as missing (see M2MissingArtifacts).
+ *
+ * @author Bruno Salmon
+ */
+final class M2DownloadPlanner {
+
+    private final ModuleRegistry moduleRegistry;
+    // Artifacts fetched or reported as not existing by a plan, that are not requested again
+    private final Set<String> plannedArtifacts = new HashSet<>();
+    // Artifacts that a failed plan couldn't fetch for another reason than their absence, that are not planned again
+    private final Set<String> unresolvedArtifacts = new HashSet<>();
+    private final Path planDirectory; // where the resolution pom is generated
+
+    M2DownloadPlanner(ModuleRegistry moduleRegistry) {
+        this(moduleRegistry, WebFXHiddenFolder.getMavenWorkspace().resolve("download-plan"));
+    }
+
+    M2DownloadPlanner(ModuleRegistry moduleRegistry, Path planDirectory) {
+        this.moduleRegistry = moduleRegistry;
+        this.planDirectory = planDirectory;
+    }
+
+    synchronized void downloadArtifactClassifier(M2ProjectModule module, String classifier) {
+        Artifact requested = new Artifact(module, classifier);
+        if (requested.isPresent() || plannedArtifacts.contains(requested.getCoordinates()))
+            return;
+        if (MavenUtil.isOffline()) { // No download attempt, the artifact is just reported as missing
+            M2MissingArtifacts.register(requested.getCoordinates(), module.getRequiringModule());
+            return;
+        }
+        Map<String, Artifact> plan = new LinkedHashMap<>();
+        if (!unresolvedArtifacts.contains(requested.getCoordinates())) {
+            plan.put(requested.getCoordinates(), requested);
+            for (M2ProjectModule m2Module : moduleRegistry.getRegisteredM2ProjectModules())
+                collectMissingArtifacts(m2Module, plan);
+        }
+        if (plan.size() > 1) {
+            boolean resolved = executePlan(plan.values());
+            plan.forEach((coordinates, artifact) -> {
+                if (artifact.isPresent() || artifact.isAbsent())
+                    plannedArtifacts.add(coordinates);
+                else if (!resolved)
+                    unresolvedArtifacts.add(coordinates);
+            });
+        }
+        // Individual download (as before) if there was no plan, or if the plan didn't fetch the requested artifact for
+        // another reason than its absence (ex: network error)
+        if (!requested.isPresent() && !plannedArtifacts.contains(requested.getCoordinates()))
+            downloadArtifact(requested);
+    }
+
+    private void collectMissingArtifacts(M2ProjectModule module, Map<String, Artifact> plan) {
+        // The snapshots will be cleaned on their first access if requested, so they are not downloaded before
+        if (module.isSnapshotVersion() && MavenUtil.isCleanM2Snapshots())
+            return;
+        // The pom is always read (parent, aggregate, children, etc...)
+        addIfMissing(new Artifact(module, "pom"), plan);
+        // The webfx.xml file is read for the WebFX libraries roots (the children modules may be described in the
+        // export snapshot of the root instead, which we don't know before reading it, so they are not planned)
+        if (module instanceof M2RootModule && module.isWebFxModuleFileExpected())
+            addIfMissing(new Artifact(module, "xml:webfx"), plan);
+    }
+
+    private void addIfMissing(Artifact artifact, Map<String, Artifact> plan) {
+        String coordinates = artifact.getCoordinates();
+        if (!plan.containsKey(coordinates) && !plannedArtifacts.contains(coordinates) && !unresolvedArtifacts.contains(coordinates) && !artifact.isPresent())
+            plan.put(coordinates, artifact);
+    }
+
+    private void downloadArtifact(Artifact artifact) {
+        // Also executed in the plan directory, so Maven runs with the same configuration as for the plans
+        try {
+            Files.createDirectories(planDirectory);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        MavenUtil.invokeMavenGoal("dependency:get -N -Dtransitive=false -Dartifact=" + artifact.getCoordinates(), new ProcessCall()
+                .setWorkingDirectory(planDirectory)
+                .setLogLineFilter(line -> line.startsWith("Downloading")));
+    }
+
+    // Returns false if the plan couldn't be executed or if Maven failed (expected if some artifacts of the plan don't
+    // exist, in which case Maven still fetches all the other ones)
+    private boolean executePlan(Collection<Artifact> plan) {
+        StringBuilder sb = new StringBuilder()
+                .append("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n")
+                .append("<project xmlns=\"http://maven.apache.org/POM/4.0.0\" xmlns:xsi=\"http://www.w3.org/2001/XMLSchema-instance\" xsi:schemaLocation=\"http://maven.apache.org/POM/4.0.0 http://maven.apache.org/xsd/maven-4.0.0.xsd\">\n")
+                .append("    <modelVersion>4.0.0</modelVersion>\n")
+                .append("    <groupId>dev.webfx.cli</groupId>\n")
+                .append("    <artifactId>download-plan</artifactId>\n")
+                .append("    <version>1</version>\n")
+                .append("    <packaging>pom</packaging>\n")
+                .append("    <dependencies>\n");
+        for (Artifact artifact : plan) {
+            sb.append("        <dependency>\n")
+                    .append("            <groupId>").append(artifact.module.getGroupId()).append("</groupId>\n")
+                    .append("            <artifactId>").append(artifact.module.getArtifactId()).append("</artifactId>\n")
+                    .append("            <version>").append(artifact.module.getVersion()).append("</version>\n")
+                    .append("            <type>").append(artifact.type).append("</type>\n");
+            if (artifact.classifier != null)
+                sb.append("            <classifier>").append(artifact.classifier).append("</classifier>\n");
+            sb.append("            <exclusions>\n")
+                    .append("                <exclusion>\n")
+                    .append("                    <groupId>*</groupId>\n")
+                    .append("                    <artifactId>*</artifactId>\n")
+                    .append("                </exclusion>\n")
+                    .append("            </exclusions>\n")
+                    .append("        </dependency>\n");
+        }
+        sb.append("    </dependencies>\n").append("</project>\n");
+        try { // Written immediately (not through the text file transaction of the update command)
+            Files.createDirectories(planDirectory);
+            Files.writeString(planDirectory.resolve("pom.xml"), sb.toString(), StandardCharsets.UTF_8);
+        } catch (IOException e) {
+            return false;
+        }
+        ProcessCall processCall = new ProcessCall()
+                .setWorkingDirectory(planDirectory)
+                .setLogLineFilter(line -> line.startsWith("Downloading"));
+        try {
+            return MavenUtil.invokeMavenGoal("-N dependency:resolve", processCall) == 0;
+        } catch (CliException e) {
+            if (processCall.isCancelled()) // The whole download is cancelled (not just this plan)
+                throw e;
+            return false;
+        }
+    }
+
+    private static final class Artifact {
+        private final M2ProjectModule module;
+        private final String type;
+        private final String classifier; // null if none
+        private final String suffix; // suffix of the artifact file in the local repository
+
+        private Artifact(M2ProjectModule module, String typeAndClassifier) { // same syntax as downloadArtifactClassifier()
+            this.module = module;
+            int colonIndex = typeAndClassifier.indexOf(':');
+            type = colonIndex < 0 ? typeAndClassifier : typeAndClassifier.substring(0, colonIndex);
+            classifier = colonIndex < 0 ? null : typeAndClassifier.substring(colonIndex + 1);
+            suffix = (classifier == null ? "" : "-" + classifier) + "." + type;
+        }
+
+        private boolean isPresent() {
+            return Files.exists(module.getM2ArtifactSubPath(suffix));
+        }
+
+        // Returns true if Maven has recorded that the artifact doesn't exist in the repositories. Maven writes a
+        // .lastUpdated file for the artifacts it couldn't fetch, with an empty error for each repository that doesn't
+        // have the artifact, and the error message for the other failures (ex: network error).
+        private boolean isAbsent() {
+            Path lastUpdatedPath = module.getM2ArtifactSubPath(suffix + ".lastUpdated");
+            if (!Files.exists(lastUpdatedPath))
+                return false;
+            Properties properties = new Properties();
+            try (Reader reader = Files.newBufferedReader(lastUpdatedPath, StandardCharsets.ISO_8859_1)) {
+                properties.load(reader);
+            } catch (IOException e) {
+                return false;
+            }
+            boolean hasRepositoryError = false;
+            for (String key : properties.stringPropertyNames()) {
+                if (key.endsWith(".error")) {
+                    if (!properties.getProperty(key).isEmpty())
+                        return false;
+                    hasRepositoryError = true;
+                }
+            }
+            return hasRepositoryError;
+        }
+
+        private String getCoordinates() {
+            return module.getGroupId() + ":" + module.getArtifactId() + ":" + module.getVersion() + ":" + type + (classifier == null ? "" : ":" + classifier);
+        }
+    }
+}
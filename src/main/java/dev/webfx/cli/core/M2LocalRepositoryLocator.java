@@ -0,0 +1,249 @@
+package dev.webfx.cli.core;
+
+import dev.webfx.cli.util.os.OperatingSystem;
+import dev.webfx.cli.util.xml.XmlUtil;
+
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.InvalidPathException;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.function.Function;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * In-process locator of the Maven local repository, returning the same path as "mvn help:evaluate
+ * -Dexpression=settings.localRepository" (which takes a few seconds) in the usual configurations. The sources are
+ * read in the Maven precedence order:
+ * <ol>
+ * <li>the maven.repo.local property passed on the command line, i.e. in .mvn/maven.config, MAVEN_OPTS or
+ * .mvn/jvm.config (the .mvn directory is searched from the working directory up to the root, as Maven does)</li>
+ * <li>the localRepository of the user settings (~/.m2/settings.xml, or the file passed with -s in .mvn/maven.config)</li>
+ * <li>the localRepository of the global settings (${maven.conf}/settings.xml, with maven.conf = ${maven.home}/conf,
+ * or the file passed with -gs in .mvn/maven.config)</li>
+ * <li>the default path: ${user.home}/.m2/repository</li>
+ * </ol>
+ * The values are interpolated with the environment variables (${env.XXX}) and the system properties (ex:
+ * ${user.home}). The Maven home is taken from the maven.home system property, the MAVEN_HOME or M2_HOME environment
+ * variables, or the location of the mvn executable in the PATH.
+ * <p>
+ * As the Maven invocations of the CLI are not always launched in the working directory (ex: Maven workspace), the
+ * located path is passed to all of them (see MavenUtil.getRepoLocalArgument()), so Maven always uses the same local
+ * repository as the CLI.
+ *
+ * @author Bruno Salmon
+ */
+final class M2LocalRepositoryLocator {
+
+    private static final Pattern PROPERTY_PATTERN = Pattern.compile("\\$\\{([^}]+)}");
+    private static final String REPO_LOCAL_PROPERTY = "-Dmaven.repo.local=";
+
+    private final Path workingDirectory;
+    private final Path userHome;
+    private final Function<String, String> environment;
+    private final Function<String, String> systemProperties;
+
+    M2LocalRepositoryLocator() {
+        this(Path.of(System.getProperty("user.dir")), Path.of(System.getProperty("user.home")), System::getenv, System::getProperty);
+    }
+
+    M2LocalRepositoryLocator(Path workingDirectory, Path userHome, Function<String, String> environment, Function<String, String> systemProperties) {
+        this.workingDirectory = workingDirectory.toAbsolutePath();
+        this.userHome = userHome;
+        this.environment = environment;
+        this.systemProperties = systemProperties;
+    }
+
+    Path locateLocalRepository() {
+        Path mvnDirectory = findMvnDirectory();
+        List<String> mavenConfigArgs = mvnDirectory == null ? Collections.emptyList() : readArgs(mvnDirectory.resolve("maven.config"));
+        // 1) -Dmaven.repo.local (the last definition wins, and the maven.config args come after MAVEN_OPTS & jvm.config)
+        String repoLocal = null;
+        if (mvnDirectory != null)
+            repoLocal = findRepoLocalProperty(readArgs(mvnDirectory.resolve("jvm.config")), null);
+        repoLocal = findRepoLocalProperty(splitArgs(environment.apply("MAVEN_OPTS")), repoLocal);
+        repoLocal = findRepoLocalProperty(mavenConfigArgs, repoLocal);
+        if (repoLocal != null)
+            return toAbsolutePath(interpolate(repoLocal, mvnDirectory));
+        // 2) User settings
+        String userSettings = findOptionValue(mavenConfigArgs, "-s", "--settings");
+        repoLocal = readSettingsLocalRepository(userSettings != null ? toAbsolutePath(interpolate(userSettings, mvnDirectory))
+                : userHome.resolve(".m2").resolve("settings.xml"), mvnDirectory);
+        // 3) Global settings
+        if (repoLocal == null) {
+            String globalSettings = findOptionValue(mavenConfigArgs, "-gs", "--global-settings");
+            Path mavenConf = getMavenConf();
+            Path globalSettingsPath = globalSettings != null ? toAbsolutePath(interpolate(globalSettings, mvnDirectory))
+                    : mavenConf == null ? null : mavenConf.resolve("settings.xml");
+            repoLocal = readSettingsLocalRepository(globalSettingsPath, mvnDirectory);
+        }
+        if (repoLocal != null)
+            return toAbsolutePath(repoLocal);
+        // 4) Default path
+        return userHome.resolve(".m2").resolve("repository");
+    }
+
+    private Path findMvnDirectory() {
+        for (Path directory = workingDirectory; directory != null; directory = directory.getParent()) {
+            Path mvnDirectory = directory.resolve(".mvn");
+            if (Files.isDirectory(mvnDirectory))
+                return mvnDirectory;
+        }
+        return null;
+    }
+
+    private static String findRepoLocalProperty(List<String> args, String previousValue) {
+        String value = previousValue;
+        for (String arg : args)
+            if (arg.startsWith(REPO_LOCAL_PROPERTY))
+                value = arg.substring(REPO_LOCAL_PROPERTY.length());
+        return value;
+    }
+
+    private static String findOptionValue(List<String> args, String shortOption, String longOption) {
+        String value = null;
+        for (int i = 0; i < args.size(); i++) {
+            String arg = args.get(i);
+            if ((arg.equals(shortOption) || arg.equals(longOption)) && i + 1 < args.size())
+                value = args.get(++i);
+            else if (arg.startsWith(longOption + "="))
+                value = arg.substring(longOption.length() + 1);
+        }
+        return value;
+    }
+
+    private static List<String> readArgs(Path configFile) {
+        if (!Files.isRegularFile(configFile))
+            return Collections.emptyList();
+        try {
+            List<String> args = new ArrayList<>();
+            for (String line : Files.readAllLines(configFile)) {
+                line = line.trim();
+                if (!line.startsWith("#")) // Comment lines (supported since Maven 3.9)
+                    args.addAll(splitArgs(line));
+            }
+            return args;
+        } catch (IOException e) {
+            return Collections.emptyList();
+        }
+    }
+
+    // Splits the args on the white spaces, except in the quoted parts (ex: -Dmaven.repo.local="/path with spaces")
+    private static List<String> splitArgs(String line) {
+        if (line == null)
+            return Collections.emptyList();
+        List<String> args = new ArrayList<>();
+        StringBuilder sb = new StringBuilder();
+        char quote = 0;
+        boolean inArg = false;
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (quote != 0) {
+                if (c == quote)
+                    quote = 0;
+                else
+                    sb.append(c);
+            } else if (c == '"' || c == '\'') {
+                quote = c;
+                inArg = true;
+            } else if (Character.isWhitespace(c)) {
+                if (inArg)
+                    args.add(sb.toString());
+                sb.setLength(0);
+                inArg = false;
+            } else {
+                sb.append(c);
+                inArg = true;
+            }
+        }
+        if (inArg)
+            args.add(sb.toString());
+        return args;
+    }
+
+    private String readSettingsLocalRepository(Path settingsPath, Path mvnDirectory) {
+        if (settingsPath == null || !Files.isRegularFile(settingsPath))
+            return null;
+        // Only the localRepository element (at the beginning of the settings) is read, so a StAX reader is used
+        try (InputStream inputStream = Files.newInputStream(settingsPath)) {
+            XMLStreamReader reader = XmlUtil.createXmlStreamReader(inputStream);
+            try {
+                int depth = 0;
+                while (reader.hasNext()) {
+                    int event = reader.next();
+                    if (event == XMLStreamConstants.START_ELEMENT) {
+                        if (++depth == 2 && "localRepository".equals(reader.getLocalName())) {
+                            String localRepository = interpolate(reader.getElementText().trim(), mvnDirectory);
+                            return localRepository.isEmpty() ? null : localRepository;
+                        }
+                    } else if (event == XMLStreamConstants.END_ELEMENT)
+                        depth--;
+                }
+            } finally {
+                reader.close();
+            }
+        } catch (IOException | XMLStreamException e) {
+            Logger.log("WARNING: Couldn't read " + settingsPath + ": " + e.getMessage());
+        }
+        return null;
+    }
+
+    private Path getMavenConf() {
+        String mavenConf = systemProperties.apply("maven.conf");
+        if (mavenConf != null)
+            return Path.of(mavenConf);
+        Path mavenHome = getMavenHome();
+        return mavenHome == null ? null : mavenHome.resolve("conf");
+    }
+
+    private Path getMavenHome() {
+        for (String mavenHome : new String[] { systemProperties.apply("maven.home"), environment.apply("MAVEN_HOME"), environment.apply("M2_HOME") })
+            if (mavenHome != null && !mavenHome.isBlank())
+                return Path.of(mavenHome);
+        // Otherwise, the Maven home is the parent of the bin directory containing the mvn executable
+        String path = environment.apply("PATH");
+        if (path != null) {
+            String mvnExecutable = OperatingSystem.isWindows() ? "mvn.cmd" : "mvn";
+            for (String directory : path.split(java.io.File.pathSeparator)) {
+                try {
+                    Path mvnPath = Path.of(directory, mvnExecutable);
+                    if (Files.isRegularFile(mvnPath)) {
+                        Path binDirectory = mvnPath.toRealPath().getParent(); // Resolving the symbolic links (ex: Homebrew)
+                        return binDirectory.getParent();
+                    }
+                } catch (IOException | InvalidPathException ignored) {
+                }
+            }
+        }
+        return null;
+    }
+
+    private String interpolate(String value, Path mvnDirectory) {
+        Matcher matcher = PROPERTY_PATTERN.matcher(value);
+        StringBuilder sb = new StringBuilder();
+        while (matcher.find()) {
+            String name = matcher.group(1);
+            String replacement;
+            if (name.startsWith("env."))
+                replacement = environment.apply(name.substring(4));
+            else if (name.equals("user.home"))
+                replacement = userHome.toString();
+            else if (mvnDirectory != null && (name.equals("maven.multiModuleProjectDirectory") || name.equals("session.rootDirectory")))
+                replacement = mvnDirectory.getParent().toString();
+            else
+                replacement = systemProperties.apply(name);
+            matcher.appendReplacement(sb, Matcher.quoteReplacement(replacement != null ? replacement : matcher.group()));
+        }
+        matcher.appendTail(sb);
+        return sb.toString();
+    }
+
+    private Path toAbsolutePath(String path) {
+        return workingDirectory.resolve(path).normalize();
+    }
+}
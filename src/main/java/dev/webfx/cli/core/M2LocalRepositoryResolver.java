@@ -0,0 +1,403 @@
+package dev.webfx.cli.core;
+
+import dev.webfx.cli.util.xml.XmlUtil;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.Node;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+/**
+ * In-process resolver of the Maven dependency tree of a library, for the common case where all the poms it requires
+ * are already in the local repository. This prevents invoking "mvn dependency:tree" (a few seconds for the JVM and
+ * Maven startup) just to read files that are already on the disk. Maven is still invoked on a real cache miss.
+ * <p>
+ * The effective model of each pom is built as Maven does for the parts that matter for the dependency tree: parent
+ * inheritance (groupId, version, properties, dependencies and dependency management), property interpolation (project
+ * properties, declared properties, system properties and environment variables), dependency management (including
+ * the imported boms) and then the tree itself, with the Maven rules: all scopes for the direct dependencies, only the
+ * compile and runtime non-optional dependencies for the transitive ones, exclusions, root dependency management
+ * applied to the transitive dependencies, and conflicts mediation (nearest wins, and then first declaration wins).
+ * <p>
+ * The resolution is abandoned (null result => Maven is invoked) as soon as something is missing or is not supported,
+ * such as a missing pom, a version range, an unresolved property, a relocation, or a profile that is activated by the
+ * environment and that may change the dependencies. The snapshots are resolved only if they have been installed
+ * locally (maven-metadata-local.xml present and pom coming from no remote repository according to
+ * _remote.repositories), because Maven may otherwise fetch a more recent snapshot from the remote repository.
+ *
+ * @author Bruno Salmon
+ */
+final class M2LocalRepositoryResolver {
+
+    private static final Pattern PROPERTY_PATTERN = Pattern.compile("\\$\\{([^}]+)}");
+    private static final Set<String> TRANSITIVE_SCOPES = Set.of("compile", "runtime");
+    private static M2LocalRepositoryResolver INSTANCE;
+
+    private final Path localRepository;
+    // Effective models memoised by groupId:artifactId:version (the failures are not memoised, as the missing poms may
+    // have been downloaded by Maven since)
+    private final Map<String, Model> effectiveModels = new ConcurrentHashMap<>();
+
+    static M2LocalRepositoryResolver getInstance() {
+        if (INSTANCE == null)
+            INSTANCE = new M2LocalRepositoryResolver(MavenUtil.getM2LocalRepository());
+        return INSTANCE;
+    }
+
+    M2LocalRepositoryResolver(Path localRepository) {
+        this.localRepository = localRepository;
+    }
+
+    /**
+     * Returns the artifacts of the dependency tree of the specified pom, in the dependency:tree order and in the same
+     * format as in its output (groupId:artifactId:type[:classifier]:version), or null if it can't be resolved in-process.
+     */
+    List<String> resolveDependencyTree(String groupId, String artifactId, String version) {
+        Model root = getEffectiveModel(groupId, artifactId, version);
+        if (root == null)
+            return null;
+        // Breadth-first collection, so the first node found for each artifact is the nearest one (the other ones lose
+        // the conflict and are not expanded), and then depth-first listing of the winners (dependency:tree order)
+        Map<String, TreeNode> winners = new HashMap<>();
+        TreeNode rootNode = new TreeNode(null, Collections.emptyList());
+        winners.put(root.getConflictKey(), rootNode);
+        ArrayDeque<TreeNode> queue = new ArrayDeque<>();
+        queue.add(rootNode);
+        while (!queue.isEmpty()) {
+            TreeNode node = queue.poll();
+            Model model = node.dependency == null ? root : getEffectiveModel(node.dependency.groupId, node.dependency.artifactId, node.dependency.version);
+            if (model == null)
+                return null;
+            boolean direct = node.dependency == null;
+            for (Dependency dependency : model.dependencies) {
+                if (!direct && (dependency.optional || !TRANSITIVE_SCOPES.contains(dependency.scope)))
+                    continue;
+                if (node.isExcluding(dependency))
+                    continue;
+                if (!direct) // Only the root dependency management applies to the transitive dependencies
+                    dependency = root.manage(dependency);
+                if (!isResolvableVersion(dependency.version) || "system".equals(dependency.scope))
+                    return null;
+                String key = dependency.getConflictKey();
+                if (winners.containsKey(key))
+                    continue;
+                List<String[]> exclusions = new ArrayList<>(node.exclusions);
+                exclusions.addAll(dependency.exclusions);
+                TreeNode child = new TreeNode(dependency, exclusions);
+                winners.put(key, child);
+                node.children.add(child);
+                queue.add(child);
+            }
+        }
+        List<String> artifacts = new ArrayList<>();
+        rootNode.collectArtifacts(artifacts);
+        return artifacts;
+    }
+
+    /**
+     * Collects the paths of the poms reached when resolving the specified artifact (its pom, its parents and the boms
+     * they import), including the ones reached before failing if its model can't be built in-process (such as a
+     * missing parent pom).
+     */
+    void collectReachedPomPaths(String groupId, String artifactId, String version, Set<Path> pomPaths) {
+        Model model = getEffectiveModel(groupId, artifactId, version);
+        if (model != null)
+            pomPaths.addAll(model.pomPaths);
+        else
+            buildEffectiveModel(groupId, artifactId, version, new HashSet<>(), pomPaths);
+    }
+
+    private Model getEffectiveModel(String groupId, String artifactId, String version) {
+        String gav = groupId + ':' + artifactId + ':' + version;
+        Model model = effectiveModels.get(gav);
+        if (model == null) { // Not computed in computeIfAbsent() as it's recursive (parents and imported boms)
+            model = buildEffectiveModel(groupId, artifactId, version, new HashSet<>(), new HashSet<>());
+            if (model != null)
+                effectiveModels.putIfAbsent(gav, model);
+        }
+        return model;
+    }
+
+    private Model buildEffectiveModel(String groupId, String artifactId, String version, Set<String> visitedGavs, Set<Path> reachedPomPaths) {
+        if (groupId == null || artifactId == null || !visitedGavs.add(groupId + ':' + artifactId + ':' + version) || !isResolvableVersion(version))
+            return null;
+        Path versionDirectory = localRepository.resolve(groupId.replace('.', '/')).resolve(artifactId).resolve(version);
+        String pomFileName = artifactId + '-' + version + ".pom";
+        Path pomPath = versionDirectory.resolve(pomFileName);
+        reachedPomPaths.add(pomPath);
+        if (!Files.exists(pomPath) || version.endsWith("-SNAPSHOT") && !isInstalledLocally(versionDirectory, pomFileName))
+            return null;
+        Document document = XmlUtil.parseXmlFile(pomPath.toFile());
+        Element project = document == null ? null : document.getDocumentElement();
+        if (project == null || childElement(childElement(project, "distributionManagement"), "relocation") != null || hasEnvironmentActivatedProfile(project))
+            return null;
+        // Parent inheritance (on the raw model, as Maven interpolates the model only once inherited)
+        Model model = new Model();
+        model.pomPaths.add(pomPath);
+        Element parent = childElement(project, "parent");
+        Model parentModel = null;
+        if (parent != null) {
+            parentModel = buildEffectiveModel(childText(parent, "groupId"), childText(parent, "artifactId"), childText(parent, "version"), visitedGavs, reachedPomPaths);
+            if (parentModel == null)
+                return null;
+            model.pomPaths.addAll(parentModel.pomPaths);
+            model.properties.putAll(parentModel.properties);
+        }
+        model.groupId = orElse(childText(project, "groupId"), parentModel == null ? null : parentModel.groupId);
+        model.artifactId = childText(project, "artifactId");
+        model.version = orElse(childText(project, "version"), parentModel == null ? null : parentModel.version);
+        for (Element property : childElements(childElement(project, "properties"), null))
+            model.properties.put(property.getTagName(), property.getTextContent().trim());
+        model.properties.put("project.groupId", model.groupId);
+        model.properties.put("project.artifactId", model.artifactId);
+        model.properties.put("project.version", model.version);
+        if (parentModel != null) {
+            model.properties.put("project.parent.groupId", parentModel.groupId);
+            model.properties.put("project.parent.artifactId", parentModel.artifactId);
+            model.properties.put("project.parent.version", parentModel.version);
+        }
+        // The dependencies (and dependency management) of the pom first, and then the ones inherited from the parent
+        // which are not overridden
+        for (Element element : childElements(childElement(project, "dependencies"), "dependency"))
+            Dependency.addIfAbsent(readDependency(element), model.rawDependencies);
+        for (Element element : childElements(childElement(childElement(project, "dependencyManagement"), "dependencies"), "dependency"))
+            Dependency.addIfAbsent(readDependency(element), model.rawManagedDependencies);
+        if (parentModel != null) {
+            parentModel.rawDependencies.forEach(dependency -> Dependency.addIfAbsent(dependency, model.rawDependencies));
+            parentModel.rawManagedDependencies.forEach(managed -> Dependency.addIfAbsent(managed, model.rawManagedDependencies));
+        }
+        // Interpolation
+        model.groupId = interpolate(model.groupId, model.properties);
+        model.version = interpolate(model.version, model.properties);
+        // The explicit managed dependencies (of the pom and its parents) first, so they win over the imported ones
+        List<Dependency> imports = new ArrayList<>();
+        for (Dependency raw : model.rawManagedDependencies) {
+            Dependency managed = raw.interpolate(model.properties);
+            if (managed.isUnresolved())
+                return null;
+            if ("import".equals(managed.scope) && "pom".equals(managed.type))
+                imports.add(managed);
+            else
+                model.managedDependencies.putIfAbsent(managed.getConflictKey(), managed);
+        }
+        // And then the dependency management of the imported boms (the boms declared first win)
+        for (Dependency managed : imports) {
+            Model bom = buildEffectiveModel(managed.groupId, managed.artifactId, managed.version, new HashSet<>(visitedGavs), reachedPomPaths);
+            if (bom == null)
+                return null;
+            model.pomPaths.addAll(bom.pomPaths);
+            bom.managedDependencies.values().forEach(m -> model.managedDependencies.putIfAbsent(m.getConflictKey(), m));
+        }
+        // Dependency management injection into the declared dependencies (only the missing version, scope and exclusions)
+        for (Dependency raw : model.rawDependencies) {
+            Dependency dependency = model.inject(raw.interpolate(model.properties)).withDefaultScope();
+            if (dependency.isUnresolved())
+                return null;
+            model.dependencies.add(dependency);
+        }
+        if (model.groupId == null || model.groupId.contains("${"))
+            return null;
+        return model;
+    }
+
+    private static boolean isInstalledLocally(Path versionDirectory, String pomFileName) {
+        if (!Files.exists(versionDirectory.resolve("maven-metadata-local.xml")))
+            return false;
+        Path remoteRepositories = versionDirectory.resolve("_remote.repositories");
+        if (!Files.exists(remoteRepositories))
+            return true;
+        // Lines such as "artifact-1.0-SNAPSHOT.pom>=" (installed locally) or "artifact-1.0-SNAPSHOT.pom>central=" (downloaded)
+        try (Stream<String> lines = Files.lines(remoteRepositories)) {
+            return lines.map(String::trim)
+                    .filter(line -> line.startsWith(pomFileName + ">"))
+                    .allMatch(line -> line.equals(pomFileName + ">="));
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    private static boolean hasEnvironmentActivatedProfile(Element project) {
+        for (Element profile : childElements(childElement(project, "profiles"), "profile")) {
+            // Profiles without activation are never active (they need -P), and profiles that don't touch the
+            // dependencies or properties don't change the dependency tree
+            if (childElement(profile, "activation") != null && (childElement(profile, "dependencies") != null
+                    || childElement(profile, "dependencyManagement") != null || childElement(profile, "properties") != null))
+                return true;
+        }
+        return false;
+    }
+
+    private static boolean isResolvableVersion(String version) {
+        return version != null && !version.isEmpty() && !version.contains("${") && !version.startsWith("[") && !version.startsWith("(")
+                && !"LATEST".equals(version) && !"RELEASE".equals(version);
+    }
+
+    private static Dependency readDependency(Element element) {
+        List<String[]> exclusions = new ArrayList<>();
+        for (Element exclusion : childElements(childElement(element, "exclusions"), "exclusion"))
+            exclusions.add(new String[] { childText(exclusion, "groupId"), childText(exclusion, "artifactId") });
+        return new Dependency(childText(element, "groupId"), childText(element, "artifactId"), childText(element, "version"),
+                orElse(childText(element, "type"), "jar"), childText(element, "classifier"), childText(element, "scope"),
+                "true".equals(childText(element, "optional")), exclusions);
+    }
+
+    private static String interpolate(String value, Map<String, String> properties) {
+        // Several passes for the properties defined with other properties (limited in case of cyclic definitions)
+        for (int pass = 0; value != null && value.contains("${") && pass < 10; pass++) {
+            Matcher matcher = PROPERTY_PATTERN.matcher(value);
+            StringBuilder sb = new StringBuilder();
+            boolean replaced = false;
+            while (matcher.find()) {
+                String name = matcher.group(1);
+                String replacement = properties.get(name.startsWith("pom.") ? "project." + name.substring(4) : name);
+                if (replacement == null)
+                    replacement = name.startsWith("env.") ? System.getenv(name.substring(4)) : System.getProperty(name);
+                replaced |= replacement != null;
+                matcher.appendReplacement(sb, Matcher.quoteReplacement(replacement != null ? replacement : matcher.group()));
+            }
+            matcher.appendTail(sb);
+            value = sb.toString();
+            if (!replaced)
+                break;
+        }
+        return value;
+    }
+
+    private static String orElse(String value, String defaultValue) {
+        return value == null || value.isEmpty() ? defaultValue : value;
+    }
+
+    private static Element childElement(Element parent, String tagName) {
+        List<Element> children = childElements(parent, tagName);
+        return children.isEmpty() ? null : children.get(0);
+    }
+
+    private static List<Element> childElements(Element parent, String tagName) { // tagName = null for all
+        if (parent == null)
+            return Collections.emptyList();
+        List<Element> elements = new ArrayList<>();
+        for (Node child = parent.getFirstChild(); child != null; child = child.getNextSibling())
+            if (child instanceof Element && (tagName == null || tagName.equals(((Element) child).getTagName())))
+                elements.add((Element) child);
+        return elements;
+    }
+
+    private static String childText(Element parent, String tagName) {
+        Element child = childElement(parent, tagName);
+        return child == null ? null : child.getTextContent().trim();
+    }
+
+    private static final class Model {
+        private String groupId, artifactId, version;
+        private final Map<String, String> properties = new HashMap<>(); // raw (interpolated on use)
+        private final List<Dependency> rawDependencies = new ArrayList<>(); // not interpolated (inherited by children)
+        private final List<Dependency> rawManagedDependencies = new ArrayList<>(); // not interpolated (inherited by children)
+        private final List<Dependency> dependencies = new ArrayList<>(); // effective
+        private final Map<String, Dependency> managedDependencies = new LinkedHashMap<>(); // effective (imports included)
+        private final Set<Path> pomPaths = new LinkedHashSet<>(); // this pom + parents + imported boms
+
+        private String getConflictKey() {
+            return groupId + ':' + artifactId + ":pom:";
+        }
+
+        // Management of a transitive dependency (the managed version overrides the declared one)
+        private Dependency manage(Dependency dependency) {
+            Dependency managed = managedDependencies.get(dependency.getConflictKey());
+            return managed == null ? dependency : dependency.managedBy(managed, true);
+        }
+
+        // Management injection into a declared dependency (the declared version is kept)
+        private Dependency inject(Dependency dependency) {
+            Dependency managed = managedDependencies.get(dependency.getConflictKey());
+            return managed == null ? dependency : dependency.managedBy(managed, false);
+        }
+    }
+
+    private static final class Dependency {
+        private final String groupId, artifactId, version, type, classifier, scope;
+        private final boolean optional;
+        private final List<String[]> exclusions; // groupId and artifactId pairs (* = any)
+
+        private Dependency(String groupId, String artifactId, String version, String type, String classifier, String scope, boolean optional, List<String[]> exclusions) {
+            this.groupId = groupId;
+            this.artifactId = artifactId;
+            this.version = version;
+            this.type = type;
+            this.classifier = classifier == null || classifier.isEmpty() ? null : classifier;
+            this.scope = scope == null || scope.isEmpty() ? null : scope;
+            this.optional = optional;
+            this.exclusions = exclusions;
+        }
+
+        private String getConflictKey() {
+            return groupId + ':' + artifactId + ':' + type + ':' + (classifier == null ? "" : classifier);
+        }
+
+        private static void addIfAbsent(Dependency dependency, List<Dependency> dependencies) {
+            String key = dependency.getConflictKey();
+            if (dependencies.stream().noneMatch(d -> d.getConflictKey().equals(key)))
+                dependencies.add(dependency);
+        }
+
+        private Dependency interpolate(Map<String, String> properties) {
+            List<String[]> interpolatedExclusions = new ArrayList<>();
+            for (String[] exclusion : exclusions)
+                interpolatedExclusions.add(new String[] { M2LocalRepositoryResolver.interpolate(exclusion[0], properties), M2LocalRepositoryResolver.interpolate(exclusion[1], properties) });
+            return new Dependency(M2LocalRepositoryResolver.interpolate(groupId, properties), M2LocalRepositoryResolver.interpolate(artifactId, properties),
+                    M2LocalRepositoryResolver.interpolate(version, properties), M2LocalRepositoryResolver.interpolate(type, properties),
+                    M2LocalRepositoryResolver.interpolate(classifier, properties), M2LocalRepositoryResolver.interpolate(scope, properties),
+                    optional, interpolatedExclusions);
+        }
+
+        private Dependency managedBy(Dependency managed, boolean overrideVersion) {
+            boolean managedVersion = managed.version != null && (overrideVersion || version == null);
+            return new Dependency(groupId, artifactId, managedVersion ? managed.version : version, type, classifier,
+                    scope != null ? scope : managed.scope, optional, exclusions.isEmpty() ? managed.exclusions : exclusions);
+        }
+
+        private Dependency withDefaultScope() {
+            return scope != null ? this : new Dependency(groupId, artifactId, version, type, classifier, "compile", optional, exclusions);
+        }
+
+        private boolean isUnresolved() {
+            return groupId == null || artifactId == null || groupId.contains("${") || artifactId.contains("${")
+                    || version != null && version.contains("${") || classifier != null && classifier.contains("${");
+        }
+
+        private String getArtifact() { // same format as in the dependency:tree output
+            return groupId + ':' + artifactId + ':' + type + (classifier == null ? "" : ":" + classifier) + ':' + version;
+        }
+    }
+
+    private static final class TreeNode {
+        private final Dependency dependency; // null for the root
+        private final List<String[]> exclusions; // accumulated from the root
+        private final List<TreeNode> children = new ArrayList<>();
+
+        private TreeNode(Dependency dependency, List<String[]> exclusions) {
+            this.dependency = dependency;
+            this.exclusions = exclusions;
+        }
+
+        private boolean isExcluding(Dependency dependency) {
+            for (String[] exclusion : exclusions)
+                if (("*".equals(exclusion[0]) || exclusion[0].equals(dependency.groupId)) && ("*".equals(exclusion[1]) || exclusion[1].equals(dependency.artifactId)))
+                    return true;
+            return false;
+        }
+
+        private void collectArtifacts(List<String> artifacts) {
+            for (TreeNode child : children) {
+                artifacts.add(child.dependency.getArtifact());
+                child.collectArtifacts(artifacts);
+            }
+        }
+    }
+}
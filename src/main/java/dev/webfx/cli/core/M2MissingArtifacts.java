@@ -0,0 +1,49 @@
+package dev.webfx.cli.core;
+
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+/**
+ * Artifacts that were required but are missing from the local Maven repository while working offline (see
+ * MavenUtil.isOffline()). Instead of failing on the first missing artifact (or waiting for each download to time out),
+ * the CLI works with what is in the local repository, and these artifacts are reported together at the end of the
+ * command, with the modules that required them (see getReport()).
+ *
+ * @author Bruno Salmon
+ */
+public final class M2MissingArtifacts {
+
+    // Missing artifact => names of the modules that required it (both sorted for a stable report)
+    private static final Map<String, Set<String>> MISSING_ARTIFACTS = new TreeMap<>();
+
+    // requiringModule = the module that required the missing artifact (null if unknown, ex: library imported directly)
+    static synchronized void register(String artifact, Module requiringModule) {
+        Set<String> modules = MISSING_ARTIFACTS.computeIfAbsent(artifact, k -> new TreeSet<>());
+        if (requiringModule instanceof M2ProjectModule) {
+            RootModule library = ((M2ProjectModule) requiringModule).getRootModule();
+            modules.add(library == null || library == requiringModule ? requiringModule.getName() : requiringModule.getName() + " (library " + library.getName() + ")");
+        } else if (requiringModule != null)
+            modules.add(requiringModule.getName());
+    }
+
+    public static synchronized boolean isEmpty() {
+        return MISSING_ARTIFACTS.isEmpty();
+    }
+
+    public static synchronized void clear() {
+        MISSING_ARTIFACTS.clear();
+    }
+
+    public static synchronized String getReport() {
+        StringBuilder sb = new StringBuilder()
+                .append(MISSING_ARTIFACTS.size()).append(" artifacts are missing in the local Maven repository (offline mode):");
+        MISSING_ARTIFACTS.forEach((artifact, modules) -> {
+            sb.append("\n  ").append(artifact);
+            if (!modules.isEmpty())
+                sb.append(" required by ").append(String.join(", ", modules));
+        });
+        return sb.append("\nThe result may be incomplete. Run the command again online to download them.").toString();
+    }
+}
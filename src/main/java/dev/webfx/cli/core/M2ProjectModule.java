@@ -2,12 +2,14 @@ package dev.webfx.cli.core;
 
 import dev.webfx.cli.modulefiles.M2MavenPomModuleFile;
 import dev.webfx.cli.modulefiles.M2WebFxModuleFile;
+import dev.webfx.cli.util.zip.ZipIndex;
 import dev.webfx.lib.reusablestream.ReusableStream;
 
 import java.io.IOException;
-import java.nio.file.FileSystems;
+import java.io.UncheckedIOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.util.Spliterator;
 
 /**
  * @author Bruno Salmon
@@ -20,6 +22,10 @@ public class M2ProjectModule extends ProjectModuleImpl {
     private M2WebFxModuleFile webFxModuleFile;
     private Boolean hasSourceDirectory;
     private Path sourceDirectory;
+    private ZipIndex sourcesJarIndex;
+    private Boolean hasBinaryJarAnalyzer;
+    private JavaBytecodeAnalyzer binaryJarAnalyzer;
+    private Module requiringModule; // the module that required this library (first one), see ModuleRegistry.importLibrary()
 
     public M2ProjectModule(String name, M2ProjectModule parentModule) {
         this(name, parentModule.getGroupId(), name, parentModule.getVersion(), null, parentModule);
@@ -37,7 +43,7 @@ public class M2ProjectModule extends ProjectModuleImpl {
         this.artifactId = artifactId;
         this.version = version;
         this.type = type;
-        m2ProjectHomeDirectory = MavenUtil.M2_LOCAL_REPOSITORY.resolve(groupId.replace('.', '/')).resolve(artifactId).resolve(version);
+        m2ProjectHomeDirectory = MavenUtil.getM2LocalRepository().resolve(groupId.replace('.', '/')).resolve(artifactId).resolve(version);
     }
 
     public Path getM2ProjectHomeDirectory() {
@@ -53,6 +59,15 @@ public class M2ProjectModule extends ProjectModuleImpl {
         return (M2ProjectModule) super.fetchParentModule();
     }
 
+    void setRequiringModule(Module requiringModule) {
+        if (this.requiringModule == null)
+            this.requiringModule = requiringModule;
+    }
+
+    public Module getRequiringModule() { // The children of a library are required through their parent (aggregate) module
+        return requiringModule != null || getParentModule() == null ? requiringModule : fetchParentModule();
+    }
+
     public boolean isWebFxModuleFileExpected() { // Should be overridden in M2RootModule
         return fetchParentModule().isWebFxModuleFileExpected();
     }
@@ -74,7 +89,7 @@ public class M2ProjectModule extends ProjectModuleImpl {
     public M2WebFxModuleFile getWebFxModuleFileWithExportSnapshotContainingThisModule() {
         M2ProjectModule moduleWithExport = this;
         while ((moduleWithExport.getParentModule() != null && (moduleWithExport = moduleWithExport.fetchParentModule()) != null)) {
-            if (moduleWithExport.getWebFxModuleFile().lookupExportedSnapshotProjectElement(this) != null)
+            if (moduleWithExport.getWebFxModuleFile().isModuleInExportSnapshot(this))
                 return moduleWithExport.getWebFxModuleFile();
         }
         return null;
@@ -135,14 +150,71 @@ public class M2ProjectModule extends ProjectModuleImpl {
                 if (!Files.exists(m2SourcesJarPath))
                     return null;
             }
-            // At this point the source jar should be there, and the source directory corresponds to the root of this jar
+            // At this point the source jar should be there, and the source directory corresponds to the root of this
+            // jar. We don't open a zip file system on it (which would keep the jar open until the end of the command),
+            // but use the jar path itself as root for the sources paths, which are virtual paths (jar path + entry
+            // name) listed from the central directory of the jar and read on demand (see getSourcesJarIndex()).
+            sourceDirectory = m2SourcesJarPath;
+        }
+        return sourceDirectory;
+    }
+
+    ZipIndex getSourcesJarIndex() {
+        if (sourcesJarIndex == null) {
             try {
-                sourceDirectory = FileSystems.newFileSystem(m2SourcesJarPath).getPath("/");
+                sourcesJarIndex = ZipIndex.load(getSourceDirectory());
             } catch (IOException e) {
-                throw new RuntimeException(e);
+                throw new UncheckedIOException(e);
             }
         }
-        return sourceDirectory;
+        return sourcesJarIndex;
+    }
+
+    Spliterator<Path> walkSourcesJarJavaFiles() {
+        Path sourcesJarPath = getSourceDirectory();
+        ZipIndex index = getSourcesJarIndex();
+        return index.getEntryNames().stream()
+                .filter(entryName -> entryName.endsWith(".java"))
+                // Ignoring Gwt super sources
+                .filter(entryName -> !entryName.startsWith("super/"))
+                .map(sourcesJarPath::resolve)
+                .spliterator();
+    }
+
+    String readSourcesJarFile(Path path) {
+        String entryName = getSourceDirectory().relativize(path).toString().replace('\\', '/');
+        try {
+            return getSourcesJarIndex().readTextEntry(entryName);
+        } catch (IOException e) {
+            return null; // Same as TextFileReaderWriter.readTextFile()
+        }
+    }
+
+    /**
+     * Returns the analyzer of the binary jar of this module, used instead of the sources analyze when this module has
+     * no sources jar (the binary jar is downloaded if necessary). Returns null if there are sources or no binary jar.
+     * Apart from the source packages, the bytecode is considered only for the WebFX libraries without export snapshot
+     * (see JavaSourceRootAnalyzer), so the jar is not downloaded for the other modules.
+     */
+    JavaBytecodeAnalyzer getBinaryJarAnalyzer() {
+        if (hasBinaryJarAnalyzer == null) {
+            hasBinaryJarAnalyzer = false;
+            // Same conditions as getSourceDirectory() for the modules where no jar is expected
+            if (!hasSourceDirectory() && !isAggregate() && !getName().endsWith("-parent")) {
+                Path m2JarPath = getM2ArtifactSubPath(".jar");
+                if (!Files.exists(m2JarPath))
+                    downloadArtifactClassifier("jar");
+                if (Files.exists(m2JarPath)) {
+                    try {
+                        binaryJarAnalyzer = new JavaBytecodeAnalyzer(ZipIndex.load(m2JarPath));
+                        hasBinaryJarAnalyzer = true;
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                }
+            }
+        }
+        return binaryJarAnalyzer;
     }
 
     @Override
@@ -178,7 +250,8 @@ public class M2ProjectModule extends ProjectModuleImpl {
     }
 
     public void downloadArtifactClassifier(String classifier) {
-        MavenUtil.invokeDownloadMavenGoal("dependency:get -N -Dtransitive=false -Dartifact=" + getGroupId() + ":" + getArtifactId() + ":" + getVersion() + ":" + classifier);
+        // Batched with the other missing artifacts of the registry (see M2DownloadPlanner)
+        getModuleRegistry().getM2DownloadPlanner().downloadArtifactClassifier(this, classifier);
     }
 
 }
@@ -4,13 +4,14 @@ import dev.webfx.cli.util.process.ProcessCall;
 import dev.webfx.lib.reusablestream.ReusableStream;
 
 import java.io.BufferedWriter;
-import java.io.File;
 import java.io.IOException;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.ArrayList;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Set;
 import java.util.function.Consumer;
 import java.util.stream.Stream;
 
@@ -65,13 +66,13 @@ public final class M2RootModule extends M2ProjectModule implements RootModule {
                     if (line.startsWith("[INFO] ")) {
                         line = line.substring(7);
                         if (!treelogstart)
-                            treelogstart = line.startsWith("--- maven-dependency-plugin");
+                            treelogstart = isDependencyTreeStart(line);
                         else if (!treelogend) {
                             if (line.startsWith("-----"))
                                 treelogend = true;
                             else if (!Character.isAlphabetic(line.charAt(0))) {
                                 // Extracting the artifact
-                                String artifact = line.substring(line.lastIndexOf(' ') + 1, line.lastIndexOf(':')); // artifact
+                                String artifact = getDependencyTreeArtifact(line);
                                 tree.add(new LibraryModule(new ArtifactModule(artifact), M2RootModule.this));
                             }
                         }
@@ -80,36 +81,56 @@ public final class M2RootModule extends M2ProjectModule implements RootModule {
             };
 
             try {
-                File cacheFile = cachePath.toFile();
-                if (cacheFile.exists()) {
+                if (M2DependencyTreeCache.isValid(cachePath)) { // none of the poms reached by the cached tree has changed
                     try (Stream<String> stream = Files.lines(cachePath)) {
                         stream.forEach(mavenDependencyTreeAnalyzer);
                     }
+                    M2DependencyTreeCache.onCacheHit();
                 } else {
-                    BufferedWriter writer;
-                    if (isSnapshotVersion())
-                        writer = null;
-                    else {
-                        cacheFile.getParentFile().mkdirs();
-                        writer = Files.newBufferedWriter(cachePath, StandardCharsets.UTF_8);
+                    // Trying first to resolve the dependency tree in-process (if all the required poms are already in
+                    // the local repository), as invoking Maven takes a few seconds
+                    M2LocalRepositoryResolver resolver = M2LocalRepositoryResolver.getInstance();
+                    List<String> artifacts = resolver.resolveDependencyTree(getGroupId(), getArtifactId(), getVersion());
+                    if (artifacts != null) {
+                        artifacts.forEach(artifact -> tree.add(new LibraryModule(new ArtifactModule(artifact), M2RootModule.this)));
+                        M2DependencyTreeCache.onInProcessResolution();
+                        return ReusableStream.fromIterable(tree);
                     }
-                    MavenUtil.invokeMavenGoalOnPomModule(this, "dependency:tree", new ProcessCall().setLogLineFilter(line -> {
-                        if (line.isBlank() || line.startsWith("Progress"))
-                            return false;
-                        mavenDependencyTreeAnalyzer.accept(line);
-                        if (writer != null)
+                    M2DependencyTreeCache.onMavenInvocation();
+                    // The Maven output is cached (snapshots included), and is valid only once the digest of the poms it
+                    // depends on is recorded (so an interrupted invocation is not reused)
+                    M2DependencyTreeCache.forget(cachePath);
+                    Files.createDirectories(cachePath.getParent());
+                    int exitCode;
+                    try (BufferedWriter writer = Files.newBufferedWriter(cachePath, StandardCharsets.UTF_8)) {
+                        exitCode = MavenUtil.invokeMavenGoalOnPomModule(this, "dependency:tree", new ProcessCall().setLogLineFilter(line -> {
+                            if (line.isBlank() || line.startsWith("Progress"))
+                                return false;
+                            mavenDependencyTreeAnalyzer.accept(line);
                             try {
                                 writer.write(line);
                                 writer.write(System.getProperty("line.separator"));
                             } catch (IOException e) {
                                 throw new RuntimeException(e);
                             }
-                        return true;
-                    }));
-                    if (writer != null) {
-                        writer.flush();
-                        writer.close();
+                            return true;
+                        }));
+                    } catch (CliException e) {
+                        if (!MavenUtil.isOffline())
+                            throw e;
+                        exitCode = -1;
                     }
+                    if (exitCode != 0) { // The output is not cached, and in offline mode, we continue with the partial tree
+                        M2DependencyTreeCache.forget(cachePath);
+                        if (MavenUtil.isOffline())
+                            M2MissingArtifacts.register(getGroupId() + ":" + getArtifactId() + ":" + getVersion() + " (dependency tree)", this);
+                        return ReusableStream.fromIterable(tree);
+                    }
+                    Set<Path> reachedPomPaths = new LinkedHashSet<>();
+                    resolver.collectReachedPomPaths(getGroupId(), getArtifactId(), getVersion(), reachedPomPaths);
+                    for (LibraryModule library : tree)
+                        resolver.collectReachedPomPaths(library.getGroupId(), library.getArtifactId(), library.getVersion(), reachedPomPaths);
+                    M2DependencyTreeCache.recordDigest(cachePath, reachedPomPaths);
                 }
             } catch (IOException e) {
                 throw new RuntimeException(e);
@@ -118,4 +139,17 @@ public final class M2RootModule extends M2ProjectModule implements RootModule {
         });
     }
 
+    // Header of the dependency:tree output (the plugin is named maven-dependency-plugin before Maven 3.9)
+    static boolean isDependencyTreeStart(String line) {
+        return line.startsWith("--- maven-dependency-plugin") || line.startsWith("--- dependency:");
+    }
+
+    // Artifact of a dependency:tree output line, ex: "|  \- f:o:jar:1.0:compile (optional)" => "f:o:jar:1.0"
+    static String getDependencyTreeArtifact(String line) {
+        int end = line.indexOf(" (");
+        if (end > 0)
+            line = line.substring(0, end);
+        return line.substring(line.lastIndexOf(' ') + 1, line.lastIndexOf(':'));
+    }
+
 }
@@ -0,0 +1,187 @@
+package dev.webfx.cli.core;
+
+import dev.webfx.cli.util.process.ProcessCall;
+
+import java.util.*;
+import java.util.function.Consumer;
+
+/**
+ * Streaming parser of the Maven console output. It recognizes the reactor module boundaries, the downloads, the warnings
+ * and the errors, and reports the build duration of each module, with the slowest modules at the end of the build (see
+ * getReport()). The module durations are taken from the Maven reactor summary when present, or measured between the
+ * module boundaries otherwise (ex: single module build).
+ * <p>
+ * It only observes the output: it can be passed directly as output observer to a ProcessCall, which still forwards the
+ * output unchanged (and keeps the input inherited). The lines are recognized with simple prefix tests (no regular
+ * expression), and only the last lines are kept in a bounded ring buffer (see getLastLines()), so the memory doesn't
+ * grow with the output of long builds.
+ *
+ * @author Bruno Salmon
+ */
+public final class MavenOutputParser implements Consumer<String> {
+
+    private static final int DEFAULT_RING_BUFFER_CAPACITY = 200;
+
+    private final String[] ringBuffer;
+    private int ringBufferSize, ringBufferNext;
+
+    private final Map<String, Long> measuredModuleDurations = new LinkedHashMap<>();
+    private final Map<String, Long> summaryModuleDurations = new LinkedHashMap<>();
+    private String currentModule;
+    private long currentModuleStartNanos;
+    private boolean moduleHeaderPending, inReactorSummary, buildSuccess, buildFailure;
+    private int downloadsCount, warningsCount, errorsCount;
+    private final long buildStartNanos = System.nanoTime();
+    private long buildEndNanos;
+
+    public MavenOutputParser() {
+        this(DEFAULT_RING_BUFFER_CAPACITY);
+    }
+
+    public MavenOutputParser(int ringBufferCapacity) {
+        ringBuffer = new String[ringBufferCapacity];
+    }
+
+    @Override
+    public void accept(String line) {
+        parseLine(line);
+    }
+
+    public void parseLine(String line) {
+        ringBuffer[ringBufferNext] = line;
+        ringBufferNext = (ringBufferNext + 1) % ringBuffer.length;
+        if (ringBufferSize < ringBuffer.length)
+            ringBufferSize++;
+        line = ProcessCall.removeEscapeSequences(line);
+        String message;
+        if (line.startsWith("[INFO]"))
+            message = line.substring(Math.min(7, line.length()));
+        else if (line.startsWith("[WARNING]")) {
+            warningsCount++;
+            return;
+        } else if (line.startsWith("[ERROR]")) {
+            errorsCount++;
+            return;
+        } else if (line.startsWith("[")) // [DEBUG] or any other level
+            return;
+        else // Downloads are not prefixed with [INFO] in interactive mode
+            message = line;
+        if (message.startsWith("Downloaded from ") || message.startsWith("Downloaded: ")) {
+            downloadsCount++;
+        } else if (inReactorSummary) {
+            parseReactorSummaryLine(message);
+        } else if (message.startsWith("----")) {
+            // Module header (ex: "------< dev.webfx:webfx-platform-util >------" since Maven 3.6, or just dashes before)
+            // Note: the plugin executions start with 3 dashes only (ex: "--- maven-jar-plugin:3.2.0:jar (default-jar) @ xxx ---")
+            moduleHeaderPending = true;
+        } else if (message.startsWith("Building ") && (moduleHeaderPending || message.indexOf(':') < 0)) {
+            // Module start (ex: "Building webfx-platform-util 0.1.0-SNAPSHOT   [3/57]"), but not "Building jar: xxx.jar"
+            String module = message.substring(9).trim();
+            if (module.endsWith("]") && module.lastIndexOf('[') > 0) // Removing the reactor counter
+                module = module.substring(0, module.lastIndexOf('[')).trim();
+            if (module.lastIndexOf(' ') > 0) // Removing the version (so the module is named as in the reactor summary)
+                module = module.substring(0, module.lastIndexOf(' '));
+            endCurrentModule();
+            currentModule = module;
+            currentModuleStartNanos = System.nanoTime();
+            moduleHeaderPending = false;
+        } else if (message.startsWith("Reactor Summary")) {
+            endCurrentModule();
+            inReactorSummary = true;
+        } else if (message.equals("BUILD SUCCESS") || message.equals("BUILD FAILURE")) {
+            endCurrentModule();
+            buildSuccess = message.equals("BUILD SUCCESS");
+            buildFailure = !buildSuccess;
+            buildEndNanos = System.nanoTime();
+        } else if (!message.isEmpty())
+            moduleHeaderPending = false;
+    }
+
+    private void parseReactorSummaryLine(String message) {
+        // Ex: "webfx-platform-util ................................ SUCCESS [  1.234 s]"
+        int dotsIndex = message.indexOf(" .");
+        int bracketIndex = message.lastIndexOf('[');
+        if (dotsIndex > 0 && bracketIndex > dotsIndex && message.endsWith("]")) {
+            long durationMillis = parseDurationMillis(message.substring(bracketIndex + 1, message.length() - 1).trim());
+            if (durationMillis >= 0)
+                summaryModuleDurations.put(message.substring(0, dotsIndex), durationMillis);
+        } else if (message.startsWith("---"))
+            inReactorSummary = false;
+    }
+
+    private void endCurrentModule() {
+        if (currentModule != null)
+            measuredModuleDurations.put(currentModule, (System.nanoTime() - currentModuleStartNanos) / 1_000_000);
+        currentModule = null;
+    }
+
+    // Parses the durations of the reactor summary: "1.234 s", "1.234s" (Maven 3.3), "01:02 min" or "01:02 h"
+    static long parseDurationMillis(String duration) {
+        try {
+            if (duration.endsWith(" min") || duration.endsWith(" h")) {
+                String value = duration.substring(0, duration.lastIndexOf(' '));
+                int colonIndex = value.indexOf(':');
+                long unitMillis = duration.endsWith(" h") ? 3_600_000 : 60_000;
+                return Long.parseLong(value.substring(0, colonIndex)) * unitMillis
+                       + (long) (Double.parseDouble(value.substring(colonIndex + 1)) * unitMillis / 60);
+            }
+            if (duration.endsWith("s"))
+                return (long) (Double.parseDouble(duration.substring(0, duration.length() - 1).trim()) * 1000);
+        } catch (RuntimeException e) { // Ex: NumberFormatException, StringIndexOutOfBoundsException
+        }
+        return -1;
+    }
+
+    public List<String> getLastLines() {
+        List<String> lastLines = new ArrayList<>(ringBufferSize);
+        for (int i = 0; i < ringBufferSize; i++)
+            lastLines.add(ringBuffer[(ringBufferNext - ringBufferSize + i + ringBuffer.length) % ringBuffer.length]);
+        return lastLines;
+    }
+
+    public Map<String, Long> getModuleDurationsMillis() {
+        return Collections.unmodifiableMap(summaryModuleDurations.isEmpty() ? measuredModuleDurations : summaryModuleDurations);
+    }
+
+    public int getDownloadsCount() {
+        return downloadsCount;
+    }
+
+    public int getWarningsCount() {
+        return warningsCount;
+    }
+
+    public int getErrorsCount() {
+        return errorsCount;
+    }
+
+    public boolean isBuildSuccess() {
+        return buildSuccess;
+    }
+
+    public boolean isBuildFailure() {
+        return buildFailure;
+    }
+
+    public String getReport(int slowestModulesCount) {
+        Map<String, Long> moduleDurations = getModuleDurationsMillis();
+        long buildMillis = ((buildEndNanos != 0 ? buildEndNanos : System.nanoTime()) - buildStartNanos) / 1_000_000;
+        StringBuilder sb = new StringBuilder("Maven build: ")
+                .append(moduleDurations.size()).append(" modules in ").append(formatMillis(buildMillis))
+                .append(" (").append(downloadsCount).append(" downloads, ")
+                .append(warningsCount).append(" warnings, ").append(errorsCount).append(" errors)");
+        if (moduleDurations.size() > 1) {
+            sb.append("\nSlowest modules:");
+            moduleDurations.entrySet().stream()
+                    .sorted(Map.Entry.<String, Long>comparingByValue().reversed())
+                    .limit(slowestModulesCount)
+                    .forEach(e -> sb.append("\n  ").append(e.getKey()).append(": ").append(formatMillis(e.getValue())));
+        }
+        return sb.toString();
+    }
+
+    private static String formatMillis(long millis) {
+        return millis < 60_000 ? String.format(Locale.ROOT, "%.1f s", millis / 1000d)
+                : String.format(Locale.ROOT, "%d:%02d min", millis / 60_000, millis / 1000 % 60);
+    }
+}
@@ -9,22 +9,60 @@ import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Comparator;
+import java.util.List;
 
 /**
  * @author Bruno Salmon
  */
 public final class MavenUtil {
     //private final static boolean USE_MAVEN_INVOKER = false; // if false, just using shell invocation
-    private final static boolean ASK_MAVEN_LOCAL_REPOSITORY = false; // if false, we will use the default path: ${user.home}/.m2/repository
-    final static Path M2_LOCAL_REPOSITORY = ASK_MAVEN_LOCAL_REPOSITORY ?
-            // Maven invocation (advantage: returns the correct path 100% sure / disadvantage: takes a few seconds to execute)
-            Path.of(new ProcessCall("mvn", "-N", "help:evaluate", "-Dexpression=settings.localRepository", "-q", "-DforceStdout").getLastResultLine())
-            // Otherwise, getting the standard path  (advantage: immediate / disadvantage: not 100% sure (the developer may have changed the default Maven settings)
-            : Path.of(System.getProperty("user.home"), ".m2", "repository");
+    // Memoised for the whole run (see M2LocalRepositoryLocator)
+    private static Path M2_LOCAL_REPOSITORY;
     //private static Invoker MAVEN_INVOKER; // Will be initialised later if needed
 
     private static boolean CLEAN_M2_SNAPSHOTS;
+    private static boolean OFFLINE;
+
+    // Same path as "mvn help:evaluate -Dexpression=settings.localRepository", but resolved in-process (immediate)
+    static synchronized Path getM2LocalRepository() {
+        if (M2_LOCAL_REPOSITORY == null)
+            M2_LOCAL_REPOSITORY = new M2LocalRepositoryLocator().locateLocalRepository();
+        return M2_LOCAL_REPOSITORY;
+    }
+
+    // Passed to all the Maven invocations, so Maven uses the same local repository as the CLI whatever the directory it's
+    // launched in (ex: the Maven workspace, where the .mvn directory of the CLI working directory doesn't apply)
+    public static String getRepoLocalArgument() {
+        return "-Dmaven.repo.local=" + getM2LocalRepository();
+    }
+
+    // Shell command (for bash, or powershell & cmd on Windows) invoking Maven with the repo local argument (always quoted
+    // on Windows, as PowerShell would split it at the dot otherwise), and the offline flag in offline mode
+    public static String getMavenShellCommand(String args) {
+        String repoLocalArgument = getRepoLocalArgument();
+        return "mvn " + (OperatingSystem.isWindows() ? "\"" + repoLocalArgument + "\"" : ProcessCall.toShellLogCommandToken(repoLocalArgument))
+                + (OFFLINE ? " -o " : " ") + args;
+    }
+
+    // Sets the mvn command, the repo local argument being passed as a single token (its path may contain spaces), and
+    // the offline flag being added in offline mode
+    public static ProcessCall setMavenCommand(ProcessCall processCall, String args) {
+        List<String> commandTokens = new ArrayList<>(List.of("mvn", getRepoLocalArgument()));
+        if (OFFLINE)
+            commandTokens.add("-o");
+        commandTokens.addAll(Arrays.asList(args.trim().split(" ")));
+        return processCall
+                .setCommand(getMavenShellCommand(args)) // for the log (and the cmd invocation on Windows)
+                .setCommandTokens(commandTokens.toArray(new String[0]));
+    }
+
+    // Used by the tests to work on a fixture local repository
+    static synchronized void setM2LocalRepository(Path m2LocalRepository) {
+        M2_LOCAL_REPOSITORY = m2LocalRepository;
+    }
 
     public static void setCleanM2Snapshots(boolean cleanM2Snapshots) {
         CLEAN_M2_SNAPSHOTS = cleanM2Snapshots;
@@ -34,6 +72,16 @@ public final class MavenUtil {
         return CLEAN_M2_SNAPSHOTS;
     }
 
+    // In offline mode, the CLI works only from the local repository: no download is attempted (the missing artifacts
+    // are reported at the end instead, see M2MissingArtifacts), and the other Maven invocations are done with -o
+    public static void setOffline(boolean offline) {
+        OFFLINE = offline;
+    }
+
+    public static boolean isOffline() {
+        return OFFLINE;
+    }
+
     public static void cleanM2ModuleSnapshotIfRequested(M2ProjectModule module) {
         if (CLEAN_M2_SNAPSHOTS && module.isSnapshotVersion()) {
             Path m2Path = module.getM2ProjectHomeDirectory();
@@ -60,17 +108,19 @@ public final class MavenUtil {
     public static int invokeMavenGoal(String goal, ProcessCall processCall) {
         boolean gluonPluginCall = goal.contains("gluonfx:");
         Path graalVmHome = gluonPluginCall ? WebFXHiddenFolder.getGraalVmHome() : null;
-        processCall.setCommand("mvn " + goal);
+        setMavenCommand(processCall, goal);
         //if (!USE_MAVEN_INVOKER) {
             // Preferred way as it's not necessary to eventually call "mvn -version", so it's quicker
             if (graalVmHome != null)
                 if (OperatingSystem.isWindows())
-                    processCall.setPowershellCommand("$env:GRAALVM_HOME = " + ProcessCall.toShellLogCommandToken(graalVmHome) + "; mvn " + goal);
+                    processCall.setPowershellCommand("$env:GRAALVM_HOME = " + ProcessCall.toShellLogCommandToken(graalVmHome) + "; " + getMavenShellCommand(goal));
                 else
-                    processCall.setBashCommand("export GRAALVM_HOME=" + ProcessCall.toShellLogCommandToken(graalVmHome) + "; mvn " + goal);
+                    processCall.setBashCommand("export GRAALVM_HOME=" + ProcessCall.toShellLogCommandToken(graalVmHome) + "; " + getMavenShellCommand(goal));
             processCall
                     //.setErrorLineFilter(line -> line.contains("ERROR")) // Commented as it prevents colors
                     .executeAndWait();
+            if (processCall.isTimedOut() || processCall.isCancelled()) // The exit code is the one of the killed process
+                throw new CliException("Maven invocation " + (processCall.isTimedOut() ? "timed out" : "cancelled") + ": mvn " + goal);
             if (processCall.getLastErrorLine() != null)
                 throw new CliException("Error(s) detected during Maven invocation:\n" + String.join("\n", processCall.getErrorLines()));
             return processCall.getExitCode();
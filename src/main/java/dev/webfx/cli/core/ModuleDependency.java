@@ -29,12 +29,9 @@ public final class ModuleDependency implements Comparable<ModuleDependency> {
     private final String scope;
     private final String classifier;
     private final Target executableTarget;
+    private final int hashCode; // memorised because dependencies are massively deduplicated through hash sets
 
-    public ModuleDependency(Module sourceModule, Module destinationModule, Type type) {
-        this(sourceModule, destinationModule, type, false, false, null, null, null);
-    }
-
-    public ModuleDependency(Module sourceModule, Module destinationModule, Type type, boolean optional, boolean transitive, String scope, String classifier, Target executableTarget) {
+    private ModuleDependency(Module sourceModule, Module destinationModule, Type type, boolean optional, boolean transitive, String scope, String classifier, Target executableTarget) {
         this.sourceModule = sourceModule;
         this.destinationModule = destinationModule;
         this.type = type;
@@ -43,6 +40,7 @@ public final class ModuleDependency implements Comparable<ModuleDependency> {
         this.scope = scope;
         this.classifier = classifier;
         this.executableTarget = executableTarget;
+        hashCode = computeHashCode();
     }
 
     public Module getSourceModule() {
@@ -103,13 +101,26 @@ public final class ModuleDependency implements Comparable<ModuleDependency> {
         }
     }
 
+    /**
+     * Tells if this dependency has exactly the same attributes as the other dependency (including those not considered
+     * in equals(), such as transitive and executableTarget), which is the condition to share the same instance. The
+     * executable targets are compared with their module (getExecutableTarget().getModule() would otherwise return the
+     * module of another executable with the same tags).
+     */
+    boolean isIdenticalTo(ModuleDependency that) {
+        return equals(that)
+                && transitive == that.transitive
+                && (executableTarget == null ? that.executableTarget == null : that.executableTarget != null && executableTarget.isIdenticalTo(that.executableTarget));
+    }
+
     @Override
     public boolean equals(Object o) {
-        if (this == o) return true;
+        if (this == o) return true; // Most common case for equal dependencies since they are interned
         if (!(o instanceof ModuleDependency)) return false;
 
         ModuleDependency that = (ModuleDependency) o;
 
+        if (hashCode != that.hashCode) return false;
         if (optional != that.optional) return false;
         if (!sourceModule.equals(that.sourceModule)) return false;
         if (!destinationModule.equals(that.destinationModule)) return false;
@@ -121,6 +132,10 @@ public final class ModuleDependency implements Comparable<ModuleDependency> {
 
     @Override
     public int hashCode() {
+        return hashCode;
+    }
+
+    private int computeHashCode() {
         int result = sourceModule.hashCode();
         result = 31 * result + destinationModule.hashCode();
         result = 31 * result + type.hashCode();
@@ -136,7 +151,21 @@ public final class ModuleDependency implements Comparable<ModuleDependency> {
     }
 
     public static ModuleDependency createDependency(Module srcModule, Module dstModule, Type type) {
-        return new ModuleDependency(srcModule, dstModule, type);
+        return createDependency(srcModule, dstModule, type, false, false, null, null, null);
+    }
+
+    public static ModuleDependency createDependency(Module srcModule, Module dstModule, Type type, boolean optional, boolean transitive, String scope, String classifier, Target executableTarget) {
+        return intern(new ModuleDependency(srcModule, dstModule, type, optional, transitive, scope, classifier, executableTarget));
+    }
+
+    /**
+     * Returns the canonical instance of this dependency from the module registry (so identical dependencies created
+     * at different stages of the analysis share the same instance).
+     */
+    private static ModuleDependency intern(ModuleDependency dependency) {
+        Module srcModule = dependency.sourceModule;
+        RootModule rootModule = srcModule instanceof ProjectModule ? ((ProjectModule) srcModule).getRootModule() : null;
+        return rootModule == null ? dependency : rootModule.getModuleRegistry().internDependency(dependency);
     }
 
     public static ModuleDependency createSourceDependency(Module srcModule, Module dstModule) {
@@ -5,6 +5,7 @@ import dev.webfx.lib.reusablestream.ReusableStream;
 
 import java.nio.file.Path;
 import java.util.*;
+import java.util.function.Supplier;
 import java.util.stream.Collectors;
 
 /**
@@ -35,6 +36,7 @@ final public class ModuleRegistry {
     private final Map<String /* module name */, M2ProjectModule> m2ProjectModulesNameMap = new HashMap<>();
     private final Map<String /* module name */, LibraryModule> libraryModulesNameMap = new HashMap<>();
     private final Map<Path, DevProjectModule> devProjectModulesPathMap = new HashMap<>();
+    private final M2DownloadPlanner m2DownloadPlanner = new M2DownloadPlanner(this);
 
     private final ArrayDeque<ReusableStream<ProjectModule>> listOfRootModuleAndChildrenToRegister = new ArrayDeque<>();
     private final ArrayDeque<M2RootModule> rootThirdPartyLibrariesWithPossibleTransitiveLibrariesToRegister = new ArrayDeque<>();
@@ -75,7 +77,8 @@ final public class ModuleRegistry {
                             break; // we exit with next = null if there are no more transitive libraries to register
                         else {
                             // Otherwise, we import the transitive libraries of the next root third-party library
-                            rootThirdPartyLibrariesWithPossibleTransitiveLibrariesToRegister.poll().getTransitiveLibraries().forEach(ModuleRegistry.this::importLibrary);
+                            M2RootModule rootThirdPartyLibrary = rootThirdPartyLibrariesWithPossibleTransitiveLibrariesToRegister.poll();
+                            rootThirdPartyLibrary.getTransitiveLibraries().forEach(transitiveLibrary -> importLibrary(transitiveLibrary, rootThirdPartyLibrary));
                             // And continue the loop
                             continue;
                         }
@@ -199,6 +202,14 @@ final public class ModuleRegistry {
         return m2ProjectModulesNameMap.get(name);
     }
 
+    Collection<M2ProjectModule> getRegisteredM2ProjectModules() {
+        return m2ProjectModulesNameMap.values();
+    }
+
+    M2DownloadPlanner getM2DownloadPlanner() {
+        return m2DownloadPlanner;
+    }
+
     public M2ProjectModule getOrCreateM2ProjectModule(String name, M2ProjectModule parentModule) {
         M2ProjectModule module = getRegisteredM2ProjectModule(name);
         if (module == null)
@@ -227,14 +238,24 @@ final public class ModuleRegistry {
     private int lastDeclaredProjectModuleIndex = -1; // index of last declared project in registeredProjectModules
 
     void importProjectModuleRequiredLibraries(ProjectModule module) {
-        module.getRequiredLibraryModules().forEach(this::importLibrary);
+        module.getRequiredLibraryModules().forEach(libraryModule -> importLibrary(libraryModule, module));
     }
 
     public void importLibrary(LibraryModule libraryModule) {
+        importLibrary(libraryModule, null);
+    }
+
+    // requiringModule = the module that required this library (reported if some of its artifacts are missing offline)
+    void importLibrary(LibraryModule libraryModule, Module requiringModule) {
         String moduleName = libraryModule.getName();
         if (libraryModule.shouldBeDownloadedInM2()) {
-            if (getRegisteredModuleOrLibraryWithExportedPackages(moduleName) == null)
-                registerM2ProjectModule(new M2RootModule(libraryModule, this));
+            Module registeredModule = getRegisteredModuleOrLibraryWithExportedPackages(moduleName);
+            if (registeredModule == null) {
+                M2RootModule m2RootModule = new M2RootModule(libraryModule, this);
+                m2RootModule.setRequiringModule(requiringModule);
+                registerM2ProjectModule(m2RootModule);
+            } else if (registeredModule instanceof M2RootModule)
+                ((M2RootModule) registeredModule).setRequiringModule(requiringModule);
         } else if (getRegisteredLibrary(moduleName) == null) {
             //.out.println("Registering library " + moduleName);
             libraryModulesNameMap.put(moduleName, libraryModule);
@@ -522,6 +543,45 @@ final public class ModuleRegistry {
     }
 
 
+    /*******************************************************************************************************************
+     *                                        Module dependencies interning                                            *
+     ===================================================================================================================
+     All the stages of the dependencies analysis create module dependencies that are then deduplicated. Interning them
+     here ensures that identical dependencies share the same instance, which reduces the number of objects on large
+     graphs, and makes the deduplication mainly rely on identity checks (see ModuleDependency.equals()).
+     ******************************************************************************************************************/
+
+    private final Map<ModuleDependency, ModuleDependency> internedDependencies = new HashMap<>();
+
+    ModuleDependency internDependency(ModuleDependency dependency) {
+        ModuleDependency interned = internedDependencies.putIfAbsent(dependency, dependency);
+        if (interned == null)
+            return dependency;
+        // The interned instance can be returned only if it's identical (equals() ignores some attributes)
+        return interned.isIdenticalTo(dependency) ? interned : dependency;
+    }
+
+
+    /*******************************************************************************************************************
+     *                                     Interface modules resolution cache                                          *
+     ===================================================================================================================
+     When an executable module depends on an interface module, this interface module is replaced by a concrete module,
+     and the providers required by that concrete module are collected. The services used by the concrete module and
+     the providers found among its transitive dependencies depend only on the executable target, so we share them here
+     between all executable modules having the same target (ex: the -openjfx variants of several applications).
+     ******************************************************************************************************************/
+
+    private final Map<String /* executable target tags + concrete module name */, JavaSourceRootAnalyzer.ConcreteModuleServices> concreteModuleServicesCache = new HashMap<>();
+
+    JavaSourceRootAnalyzer.ConcreteModuleServices getOrComputeConcreteModuleServices(Target executableTarget, ProjectModule concreteModule, Supplier<JavaSourceRootAnalyzer.ConcreteModuleServices> computer) {
+        String key = Arrays.toString(executableTarget.getTags()) + concreteModule.getName();
+        JavaSourceRootAnalyzer.ConcreteModuleServices services = concreteModuleServicesCache.get(key);
+        if (services == null)
+            concreteModuleServicesCache.put(key, services = computer.get());
+        return services;
+    }
+
+
     /*******************************************************************************************************************
      *                                           Static utility methods                                                *
      ******************************************************************************************************************/
@@ -0,0 +1,114 @@
+package dev.webfx.cli.core;
+
+import dev.webfx.lib.reusablestream.ReusableStream;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+
+/**
+ * Source analysis phase run before the files generation (see the update command), when the update tasks analyse the
+ * source code of all modules anyway (pom.xml, module-info.java or META-INF/services generation). It runs the source
+ * code analysis of the modules in parallel on a bounded thread pool, when there are several processors and enough java
+ * files for the parallelism to pay off (the analysis costs about 1.5ms per java file, and starting the thread pool
+ * about 10ms). Otherwise, the java files are analysed lazily as before, during the resolution.
+ * <p>
+ * Only the source code analysis (reading and scanning the java files to find the used packages and services) is
+ * parallel. It's the costly part of the resolution, and it only depends on the java file itself, so the tasks don't
+ * share any state (each java file is analysed by one task only, and the results are published to the calling thread
+ * when joining the tasks). The dependency resolution of the executable modules (emulation, implicit providers and
+ * interface dependencies) is not: it relies on the lazily filled caches of the dependency graph (ReusableStream caches,
+ * module files and registration streams) that are shared between the executable modules and are not thread-safe. So
+ * the executable modules are then resolved one after another on the calling thread, but on already analysed sources,
+ * and each one is frozen once resolved (see ProjectModuleImpl.freeze()).
+ *
+ * @author Bruno Salmon
+ */
+public final class ParallelSourceAnalysis {
+
+    private static final int MAX_THREADS = Math.max(1, Runtime.getRuntime().availableProcessors());
+    // Under this number of java files, the parallel analysis doesn't pay off (compared to the thread pool start)
+    private static final int MIN_JAVA_FILES_FOR_PARALLEL_ANALYSIS = 50;
+
+    public static void analyseSourcesAndResolveExecutableModules(ReusableStream<? extends ProjectModule> modules) {
+        List<ProjectModule> projectModules = modules.collect(Collectors.toList());
+        List<ProjectModule> executableModules = projectModules.stream().filter(ProjectModule::isExecutable).collect(Collectors.toList());
+        if (executableModules.isEmpty())
+            return;
+
+        long t0 = System.currentTimeMillis();
+        int threads = 1, javaFilesCount = 0;
+        if (MAX_THREADS > 1) {
+            // Listing the java files to analyse (walking the source directories is done on this thread, because this
+            // fills the java source files cache of each module)
+            List<List<JavaFile>> javaFilesPerModule = projectModules.stream()
+                    .filter(ProjectModule::hasMainJavaSourceDirectory)
+                    .map(m -> m.getMainJavaSourceRootAnalyzer().getSourceFiles().collect(Collectors.toList()))
+                    .filter(javaFiles -> !javaFiles.isEmpty())
+                    .collect(Collectors.toList());
+            javaFilesCount = javaFilesPerModule.stream().mapToInt(List::size).sum();
+            if (javaFilesCount >= MIN_JAVA_FILES_FOR_PARALLEL_ANALYSIS) {
+                threads = Math.min(MAX_THREADS, javaFilesPerModule.size());
+                if (threads > 1)
+                    analyseJavaFilesInParallel(javaFilesPerModule, threads);
+            }
+        }
+        long t1 = System.currentTimeMillis();
+
+        // Resolving the executable modules dependencies on this thread (the dependency graph caches are not thread-safe)
+        for (ProjectModule executableModule : executableModules) {
+            JavaSourceRootAnalyzer analyzer = executableModule.getMainJavaSourceRootAnalyzer();
+            analyzer.getDirectDependencies().count();
+            analyzer.getTransitiveDependencies().count();
+            analyzer.getExecutableProviders().count();
+            // Now that the executable module is resolved, its caches can be frozen for the files generation
+            if (executableModule instanceof ProjectModuleImpl)
+                ((ProjectModuleImpl) executableModule).freeze();
+        }
+        long t2 = System.currentTimeMillis();
+
+        Logger.verbose("Resolution of " + executableModules.size() + " executable modules: " + (threads > 1 ?
+                "parallel source analysis of " + javaFilesCount + " java files in " + (t1 - t0) + "ms (" + threads + " threads), " : "")
+                + "dependencies resolution in " + (t2 - t1) + "ms");
+    }
+
+    private static void analyseJavaFilesInParallel(List<List<JavaFile>> javaFilesPerModule, int threads) {
+        AtomicInteger threadIndex = new AtomicInteger();
+        ExecutorService executor = Executors.newFixedThreadPool(threads, r -> {
+            Thread thread = new Thread(r, "webfx-source-analysis-" + threadIndex.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        try {
+            List<Future<?>> futures = new ArrayList<>(javaFilesPerModule.size());
+            for (List<JavaFile> javaFiles : javaFilesPerModule)
+                futures.add(executor.submit(() -> javaFiles.forEach(ParallelSourceAnalysis::analyseJavaFile)));
+            for (Future<?> future : futures)
+                future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new CliException("Parallel source analysis interrupted");
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException)
+                throw (RuntimeException) cause;
+            throw new CliException(cause.getMessage());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private static void analyseJavaFile(JavaFile javaFile) {
+        // Pulling the java file caches (these calls read and scan the source file)
+        javaFile.getPackageName();
+        javaFile.getUsedJavaPackages().count();
+        javaFile.getUsedRequiredJavaServices().count();
+        javaFile.getUsedOptionalJavaServices().count();
+    }
+
+}
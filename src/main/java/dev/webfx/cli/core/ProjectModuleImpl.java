@@ -1,6 +1,7 @@
 package dev.webfx.cli.core;
 
 import dev.webfx.cli.modulefiles.abstr.XmlGavModuleFile;
+import dev.webfx.cli.util.stream.FreezableCaches;
 import dev.webfx.lib.reusablestream.ReusableStream;
 
 /**
@@ -10,13 +11,16 @@ public abstract class ProjectModuleImpl extends ModuleImpl implements ProjectMod
 
     private JavaSourceRootAnalyzer mainJavaJavaSourceRootAnalyzer, testJavaJavaSourceRootAnalyzer;
 
+    // The caches that can be frozen once this module is fully resolved (see freeze())
+    private final FreezableCaches freezableCaches = new FreezableCaches();
+
     /**
      * Returns the children project modules if any (only first level under this module).
      */
-    private final ReusableStream<ProjectModule> childrenModulesCache =
+    private final ReusableStream<ProjectModule> childrenModulesCache = freezableCaches.add(
             getChildrenModuleNames()
                     .map(this::getOrCreateChildProjectModule)
-                    .cache();
+                    .cache());
 
     /**
      * Returns the children project modules if any (all levels under this module).
@@ -30,12 +34,12 @@ public abstract class ProjectModuleImpl extends ModuleImpl implements ProjectMod
     /**
      * Returns all java services provided by this module (returns the list of files under META-INF/services).
      */
-    private final ReusableStream<String> providedJavaServicesCache =
+    private final ReusableStream<String> providedJavaServicesCache = freezableCaches.add(
             ReusableStream.create(() -> getWebFxModuleFile().providedServiceProviders())
                     .map(ServiceProvider::getSpi)
                     .distinct()
                     .sorted()
-                    .cache();
+                    .cache());
 
 
     /**
@@ -44,26 +48,26 @@ public abstract class ProjectModuleImpl extends ModuleImpl implements ProjectMod
      * regular expressions). These source module dependencies not detected by the source code analyzer must be listed
      * in the webfx module file for now.
      */
-    final ReusableStream<ModuleDependency> undetectedByCodeAnalyzerSourceDependenciesCache =
+    final ReusableStream<ModuleDependency> undetectedByCodeAnalyzerSourceDependenciesCache = freezableCaches.add(
             ReusableStream.create(() -> getWebFxModuleFile().getUndetectedUsedBySourceModulesDependencies())
-                    .cache();
+                    .cache());
 
 
     /**
      * Returns source module dependencies explicitly mentioned in webfx.xml, which can be used to set some special
      * attribute on those dependencies (ex: optional = "true").
      */
-    final ReusableStream<ModuleDependency> explicitSourceDependenciesCache =
+    final ReusableStream<ModuleDependency> explicitSourceDependenciesCache = freezableCaches.add(
             ReusableStream.create(() -> getWebFxModuleFile().getExplicitSourceModulesDependencies())
-                    .cache();
+                    .cache());
 
     /**
      * Returns all resource module dependencies directly required by the source code of this module (must be listed in
      * the webfx module file).
      */
-    final ReusableStream<ModuleDependency> resourceDirectDependenciesCache =
+    final ReusableStream<ModuleDependency> resourceDirectDependenciesCache = freezableCaches.add(
             ReusableStream.create(() -> getWebFxModuleFile().getResourceModuleDependencies())
-                    .cache();
+                    .cache());
 
     /**
      * Returns the application module to be executed in case this module is executable (otherwise returns nothing). For
@@ -81,9 +85,9 @@ public abstract class ProjectModuleImpl extends ModuleImpl implements ProjectMod
      * Returns the plugin module dependencies to be directly added to this module (must be listed in the webfx module
      * file).
      */
-    final ReusableStream<ModuleDependency> pluginDirectDependenciesCache =
+    final ReusableStream<ModuleDependency> pluginDirectDependenciesCache = freezableCaches.add(
             ReusableStream.create(() -> getWebFxModuleFile().getPluginModuleDependencies())
-                    .cache();
+                    .cache());
 
 
     private ProjectModule parentModule;
@@ -276,10 +280,21 @@ public abstract class ProjectModuleImpl extends ModuleImpl implements ProjectMod
     @Override
     public ReusableStream<LibraryModule> getRequiredLibraryModules() {
         if (requiredLibraryModulesCache == null)
-            requiredLibraryModulesCache = ProjectModule.super.getRequiredLibraryModules().cache();
+            requiredLibraryModulesCache = freezableCaches.add(ProjectModule.super.getRequiredLibraryModules().cache());
         return requiredLibraryModulesCache;
     }
 
+    /**
+     * Freezes this module once it's fully resolved (see FreezableCaches), which includes its main java source root
+     * analyzer. Only the caches completely computed (by the resolution or later) are frozen.
+     */
+    public void freeze() {
+        if (freezableCaches.isFrozen())
+            return;
+        freezableCaches.freezeComputedCaches();
+        getMainJavaSourceRootAnalyzer().freeze();
+    }
+
     /******************************
      ***** Analyzing streams  *****
      ******************************/
@@ -13,6 +13,7 @@ public final class Providers implements Comparable<Providers> {
     private final ReusableStream<ProjectModule> providerModules;
     private final ReusableStream<String> providerClassNames;
     private List<String> providerClassNamesList;
+    private int hashCode; // memorised (0 = not yet computed)
 
     public Providers(String spiClassName, ReusableStream<ProjectModule> providerModules) {
         this.spiClassName = spiClassName;
@@ -47,15 +48,19 @@ public final class Providers implements Comparable<Providers> {
 
         Providers providers = (Providers) o;
 
+        if (hashCode() != providers.hashCode()) return false;
         if (!spiClassName.equals(providers.spiClassName)) return false;
         return getProviderClassNamesList().equals(providers.getProviderClassNamesList());
     }
 
     @Override
     public int hashCode() {
-        int result = spiClassName.hashCode();
-        result = 31 * result + providerClassNames.collect(Collectors.toList()).hashCode();
-        return result;
+        if (hashCode == 0) {
+            int result = spiClassName.hashCode();
+            result = 31 * result + getProviderClassNamesList().hashCode();
+            hashCode = result;
+        }
+        return hashCode;
     }
 
     @Override
@@ -28,6 +28,13 @@ public final class Target {
         return tags;
     }
 
+    /**
+     * Tells if this target has the same module (if any) and the same tags as the other target.
+     */
+    boolean isIdenticalTo(Target that) {
+        return module == that.module && Arrays.equals(tags, that.tags);
+    }
+
     public boolean hasTag(TargetTag tag) {
         return Arrays.asList(tags).contains(tag);
     }
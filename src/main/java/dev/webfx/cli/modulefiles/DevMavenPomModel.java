@@ -0,0 +1,133 @@
+package dev.webfx.cli.modulefiles;
+
+import dev.webfx.cli.util.xml.XmlUtil;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.Node;
+
+import java.util.List;
+
+/**
+ * Typed model of the sections generated by WebFX in a pom.xml file (packaging and modules for aggregates, dependencies
+ * otherwise, GAV and parent), computed by DevMavenPomModuleFile from the module. It can be either applied to a DOM
+ * (see applyToDocument(), used to update existing poms), or streamed directly into a new pom with its template (see
+ * DevMavenPomWriter, used when the pom is recreated).
+ *
+ * @author Bruno Salmon
+ */
+final class DevMavenPomModel {
+
+    static final class Dependency {
+        final String groupId;
+        final String artifactId;
+        final String version;
+        final String type;
+        final String scope;
+        final String classifier;
+        final boolean optional;
+
+        Dependency(String groupId, String artifactId, String version, String type, String scope, String classifier, boolean optional) {
+            this.groupId = groupId;
+            this.artifactId = artifactId;
+            this.version = version;
+            this.type = type;
+            this.scope = scope;
+            this.classifier = classifier;
+            this.optional = optional;
+        }
+    }
+
+    static final class Parent {
+        final String groupId;
+        final String artifactId;
+        final String version;
+
+        Parent(String groupId, String artifactId, String version) {
+            this.groupId = groupId;
+            this.artifactId = artifactId;
+            this.version = version;
+        }
+    }
+
+    final boolean aggregate;
+    // Children modules artifactIds (aggregate only), or null if the pom is not updated (children not listed in webfx.xml)
+    final List<String> modules;
+    // Dependencies (not aggregate only), or null if the pom is not updated (no source directory)
+    final List<Dependency> dependencies;
+    final boolean dependenciesManagedComment; // true when the pom is updated and not recreated (so maybe edited by hand)
+    final String groupId; // null if inherited from the parent
+    final String artifactId;
+    final String version; // null if inherited from the parent
+    final Parent parent; // null if no parent
+
+    DevMavenPomModel(boolean aggregate, List<String> modules, List<Dependency> dependencies, boolean dependenciesManagedComment, String groupId, String artifactId, String version, Parent parent) {
+        this.aggregate = aggregate;
+        this.modules = modules;
+        this.dependencies = dependencies;
+        this.dependenciesManagedComment = dependenciesManagedComment;
+        this.groupId = groupId;
+        this.artifactId = artifactId;
+        this.version = version;
+        this.parent = parent;
+    }
+
+    boolean isUpdated() {
+        return aggregate ? modules != null : dependencies != null;
+    }
+
+    // Returns true if the document has been updated (same contract as updateDocument())
+    boolean applyToDocument(Document document) {
+        Element projectElement = document.getDocumentElement();
+        if (aggregate) {
+            XmlUtil.appendElementWithTextContentIfNotAlreadyExists(projectElement, "packaging", "pom", true);
+            if (modules == null)
+                return false;
+            for (String module : modules)
+                XmlUtil.appendElementWithTextContentIfNotAlreadyExists(projectElement, "modules/module", module, true, false);
+        } else {
+            if (dependencies == null)
+                return false;
+            Node dependenciesNode = XmlUtil.lookupOrCreateNode(projectElement, "dependencies");
+            XmlUtil.removeChildren(dependenciesNode);
+            if (dependenciesManagedComment) {
+                dependenciesNode.appendChild(document.createTextNode(" "));
+                dependenciesNode.appendChild(document.createComment(" Dependencies managed by WebFX (DO NOT EDIT MANUALLY) "));
+            }
+            for (Dependency dependency : dependencies) {
+                Node groupNode = XmlUtil.appendElementWithTextContent(dependenciesNode, "/dependency/groupId", dependency.groupId, true, false);
+                Node dependencyNode = groupNode.getParentNode();
+                XmlUtil.appendElementWithTextContent(dependencyNode, "/artifactId", dependency.artifactId);
+                if (dependency.version != null)
+                    XmlUtil.appendElementWithTextContent(dependencyNode, "/version", dependency.version);
+                if (dependency.type != null)
+                    XmlUtil.appendElementWithTextContent(dependencyNode, "/type", dependency.type);
+                if (dependency.scope != null)
+                    XmlUtil.appendElementWithTextContent(dependencyNode, "/scope", dependency.scope);
+                if (dependency.classifier != null)
+                    XmlUtil.appendElementWithTextContent(dependencyNode, "/classifier", dependency.classifier);
+                if (dependency.optional)
+                    XmlUtil.appendElementWithTextContent(dependencyNode, "/optional", "true");
+            }
+            if (!dependencies.isEmpty() && dependenciesNode.getParentNode() == null)
+                XmlUtil.appendIndentNode(dependenciesNode, projectElement, true);
+        }
+        if (version != null)
+            XmlUtil.prependElementWithTextContentIfNotAlreadyExists(projectElement, "version", version, true);
+        XmlUtil.prependElementWithTextContentIfNotAlreadyExists(projectElement, "artifactId", artifactId, true);
+        if (groupId != null)
+            XmlUtil.prependElementWithTextContentIfNotAlreadyExists(projectElement, "groupId", groupId, true);
+        if (parent != null && XmlUtil.lookupNode(projectElement, "parent/artifactId") == null) {
+            Node parentNode = XmlUtil.lookupNode(projectElement, "parent");
+            if (parentNode == null)
+                parentNode = XmlUtil.createAndPrependElement(projectElement, "parent", true);
+            else
+                XmlUtil.removeChildren(parentNode);
+            XmlUtil.appendElementWithTextContent(parentNode, "groupId", parent.groupId);
+            XmlUtil.appendElementWithTextContent(parentNode, "artifactId", parent.artifactId);
+            XmlUtil.appendElementWithTextContent(parentNode, "version", parent.version);
+        }
+        if (XmlUtil.lookupNode(projectElement, "modelVersion") == null)
+            XmlUtil.prependElementWithTextContent(projectElement, "modelVersion", "4.0.0");
+        return true;
+    }
+}
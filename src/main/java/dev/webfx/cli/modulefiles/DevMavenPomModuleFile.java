@@ -5,6 +5,7 @@ import dev.webfx.cli.core.*;
 import dev.webfx.cli.modulefiles.abstr.DevXmlModuleFileImpl;
 import dev.webfx.cli.modulefiles.abstr.GavApi;
 import dev.webfx.cli.modulefiles.abstr.MavenPomModuleFile;
+import dev.webfx.cli.modulefiles.abstr.UpdateFingerprints;
 import dev.webfx.cli.util.textfile.ResourceTextFileReader;
 import dev.webfx.cli.util.xml.XmlUtil;
 import dev.webfx.lib.reusablestream.ReusableStream;
@@ -12,9 +13,7 @@ import org.w3c.dom.Document;
 import org.w3c.dom.Element;
 import org.w3c.dom.Node;
 
-import java.util.HashSet;
-import java.util.Map;
-import java.util.Set;
+import java.util.*;
 import java.util.stream.Collectors;
 
 /**
@@ -23,11 +22,26 @@ import java.util.stream.Collectors;
 public final class DevMavenPomModuleFile extends DevXmlModuleFileImpl implements MavenPomModuleFile {
 
     private Boolean aggregate;
+    // Content generated without DOM by the last updateAndWrite() call, parsed only if the document is requested
+    private String generatedContent;
 
     public DevMavenPomModuleFile(DevProjectModule module) {
         super(module, module.getHomeDirectory().resolve("pom.xml"));
     }
 
+    @Override
+    public Document getDocument() {
+        if (generatedContent != null)
+            setDocument(XmlUtil.parseXmlString(generatedContent));
+        return super.getDocument();
+    }
+
+    @Override
+    public void setDocument(Document document) {
+        generatedContent = null;
+        super.setDocument(document);
+    }
+
     public void setAggregate(boolean aggregate) {
         this.aggregate = aggregate;
     }
@@ -43,24 +57,46 @@ public final class DevMavenPomModuleFile extends DevXmlModuleFileImpl implements
 
     @Override
     public Document createInitialDocument() {
+        Document document = XmlUtil.parseXmlString(computeTemplate());
+        Element documentElement = document.getDocumentElement();
+        Node webFxMavenPomProjectNode = getProjectModule().getWebFxModuleFile().getMavenManualNode();
+        if (webFxMavenPomProjectNode != null) {
+            XmlUtil.appendChildren(document.importNode(webFxMavenPomProjectNode, true), documentElement);
+            XmlUtil.indentNode(documentElement, true);
+        }
+        return document;
+    }
+
+    private String getTemplateFileName() {
         DevProjectModule projectModule = getProjectModule();
         boolean isRootModule = projectModule instanceof RootModule;
         BuildInfo buildInfo = projectModule.getBuildInfo();
-        String templateFileName =
-                isRootModule ? (((RootModule) projectModule).isInlineWebFxParent() ? "pom_root_inline.xml" : "pom_root.xml")
-                        : isAggregate() ? "pom_aggregate.xml"
-                        : !buildInfo.isExecutable ? "pom_not_executable.xml"
-                        : buildInfo.isForGwt ? "pom_gwt_executable.xml"
-                        : buildInfo.isForTeaVm ? "pom_teavm_executable.xml"
-                        : buildInfo.isForGluon ? "pom_gluon_executable.xml"
-                        : buildInfo.isForVertx ? "pom_vertx_executable.xml"
-                        : "pom_openjfx_executable.xml";
-        String template = ResourceTextFileReader.readTemplate(templateFileName)
-                .replace("${groupId}", ArtifactResolver.getGroupId(projectModule))
-                .replace("${artifactId}", ArtifactResolver.getArtifactId(projectModule))
-                .replace("${version}", ArtifactResolver.getVersion(projectModule))
-                .replace("${application.name}", getApplicationName(projectModule))
-                .replace("${application.displayName}", getApplicationDisplayName(projectModule));
+        return isRootModule ? (((RootModule) projectModule).isInlineWebFxParent() ? "pom_root_inline.xml" : "pom_root.xml")
+                : isAggregate() ? "pom_aggregate.xml"
+                : !buildInfo.isExecutable ? "pom_not_executable.xml"
+                : buildInfo.isForGwt ? "pom_gwt_executable.xml"
+                : buildInfo.isForTeaVm ? "pom_teavm_executable.xml"
+                : buildInfo.isForGluon ? "pom_gluon_executable.xml"
+                : buildInfo.isForVertx ? "pom_vertx_executable.xml"
+                : "pom_openjfx_executable.xml";
+    }
+
+    private String computeTemplate() {
+        String template = ResourceTextFileReader.readTemplate(getTemplateFileName());
+        for (Map.Entry<String, String> variable : computeTemplateVariables(template).entrySet())
+            template = template.replace(variable.getKey(), variable.getValue());
+        return template;
+    }
+
+    // Returns the template variables in their replacement order
+    private Map<String, String> computeTemplateVariables(String template) {
+        DevProjectModule projectModule = getProjectModule();
+        Map<String, String> variables = new LinkedHashMap<>();
+        variables.put("${groupId}", ArtifactResolver.getGroupId(projectModule));
+        variables.put("${artifactId}", ArtifactResolver.getArtifactId(projectModule));
+        variables.put("${version}", ArtifactResolver.getVersion(projectModule));
+        variables.put("${application.name}", getApplicationName(projectModule));
+        variables.put("${application.displayName}", getApplicationDisplayName(projectModule));
         // For the executable Gluon pom, we need to add some extra configuration required by the GluonFX plugin:
         if (template.contains("${plugin.gluonfx.configuration}")) {
             // 1) <attachList> => lists all the Gluon attach modules used by the application:
@@ -93,16 +129,9 @@ public final class DevMavenPomModuleFile extends DevXmlModuleFileImpl implements
                         + "<!-- Android -->\n"
                         + "<appLabel>" + applicationLabel + "</appLabel>\n"
                         + "</releaseConfiguration>\n";
-            template = template.replace("${plugin.gluonfx.configuration}", gluonConfig);
+            variables.put("${plugin.gluonfx.configuration}", gluonConfig);
         }
-        Document document = XmlUtil.parseXmlString(template);
-        Element documentElement = document.getDocumentElement();
-        Node webFxMavenPomProjectNode = projectModule.getWebFxModuleFile().getMavenManualNode();
-        if (webFxMavenPomProjectNode != null) {
-            XmlUtil.appendChildren(document.importNode(webFxMavenPomProjectNode, true), documentElement);
-            XmlUtil.indentNode(documentElement, true);
-        }
-        return document;
+        return variables;
     }
 
     public static String getApplicationName(Module module) {
@@ -122,30 +151,44 @@ public final class DevMavenPomModuleFile extends DevXmlModuleFileImpl implements
 
     @Override
     public boolean updateDocument(Document document) {
+        return computeModel(!recreateOnUpdateAndWrite()).applyToDocument(document);
+    }
+
+    @Override
+    public String generateRecreatedXmlContent() {
+        // Streaming the pom directly from its template and the model, unless the template or the maven-pom-manual
+        // section of webfx.xml is not supported by the writer (in which case the DOM is used instead)
+        String templateFileName = getTemplateFileName();
+        Node mavenManualNode = getProjectModule().getWebFxModuleFile().getMavenManualNode();
+        if (!DevMavenPomWriter.canWrite(templateFileName, mavenManualNode))
+            return null;
+        Map<String, String> templateVariables = computeTemplateVariables(ResourceTextFileReader.readTemplate(templateFileName));
+        String content = DevMavenPomWriter.write(templateFileName, templateVariables, mavenManualNode, computeModel(false));
+        if (content != null)
+            generatedContent = content; // Replaces the document as createDocument() does in the DOM version
+        return content;
+    }
+
+    private DevMavenPomModel computeModel(boolean dependenciesManagedComment) {
         DevProjectModule module = getProjectModule();
-        if (module.isAggregate()) {
-            appendElementWithTextContentIfNotAlreadyExists("packaging", "pom", true);
+        boolean aggregate = module.isAggregate();
+        List<String> modules = null;
+        List<DevMavenPomModel.Dependency> dependencies = null;
+        if (aggregate) {
             if (module.getWebFxModuleFile().isAggregate())
-                module.getChildrenModules().forEach(this::addModule);
+                modules = module.getChildrenModules().map(ArtifactResolver::getArtifactId).collect(Collectors.toList());
             else
-                return false;
+                return new DevMavenPomModel(true, null, null, false, null, null, null, null);
         } else {
             if (!module.hasSourceDirectory()) // Ex: webfx-parent, webfx-stack-parent
-                return false;
-            Node dependenciesNode = lookupOrCreateNode("dependencies");
-            XmlUtil.removeChildren(dependenciesNode);
-            if (!recreateOnUpdateAndWrite()) {
-                dependenciesNode.appendChild(document.createTextNode(" "));
-                dependenciesNode.appendChild(document.createComment(" Dependencies managed by WebFX (DO NOT EDIT MANUALLY) "));
-            }
+                return new DevMavenPomModel(false, null, null, false, null, null, null, null);
+            dependencies = new ArrayList<>();
             Set<String> gas = new HashSet<>(); // set of groupId:artifactId listed so far in the pom dependencies - used for duplicate removal below
             // Always running the main java source root dependencies even if there is no main java source directory (ex: gwt modules)
-            addSourceRootDependencies(module.getMainJavaSourceRootAnalyzer(), false, dependenciesNode, gas);
+            addSourceRootDependencies(module.getMainJavaSourceRootAnalyzer(), false, dependencies, gas);
             // Running the test java source root dependencies only if there is a test java source directory
             if (module.hasTestJavaSourceDirectory())
-                addSourceRootDependencies(module.getTestJavaSourceRootAnalyzer(), true, dependenciesNode, gas);
-            if (!gas.isEmpty() && dependenciesNode.getParentNode() == null)
-                appendIndentNode(dependenciesNode, true);
+                addSourceRootDependencies(module.getTestJavaSourceRootAnalyzer(), true, dependencies, gas);
         }
         // Getting the GAV for this module
         String groupId = ArtifactResolver.getGroupId(module);
@@ -156,35 +199,56 @@ public final class DevMavenPomModuleFile extends DevXmlModuleFileImpl implements
                 : module.fetchParentModule(); // Otherwise, we fetch the parent module (this may invoke mvn)
         String parentGroupId = parentModule == null ? null : ArtifactResolver.getGroupId(parentModule);
         String parentVersion = parentModule == null ? null : ArtifactResolver.getVersion(parentModule);
-        if (version != null && !version.equals(parentVersion))
-            prependElementWithTextContentIfNotAlreadyExists("version", version, true);
-        prependElementWithTextContentIfNotAlreadyExists("artifactId", artifactId, true);
-        if (groupId != null && !groupId.equals(parentGroupId))
-            prependElementWithTextContentIfNotAlreadyExists("groupId", groupId, true);
-        if (parentModule != null && lookupNode("parent/artifactId") == null) {
-            Node parentNode = lookupNode("parent");
-            if (parentNode == null)
-                parentNode = createAndPrependElement("parent", true);
-            else
-                XmlUtil.removeChildren(parentNode);
-            XmlUtil.appendElementWithTextContent(parentNode, "groupId", parentGroupId);
-            XmlUtil.appendElementWithTextContent(parentNode, "artifactId", ArtifactResolver.getArtifactId(parentModule));
-            XmlUtil.appendElementWithTextContent(parentNode, "version", parentVersion);
+        return new DevMavenPomModel(aggregate, modules, dependencies, dependenciesManagedComment,
+                groupId != null && !groupId.equals(parentGroupId) ? groupId : null,
+                artifactId,
+                version != null && !version.equals(parentVersion) ? version : null,
+                parentModule == null ? null : new DevMavenPomModel.Parent(parentGroupId, ArtifactResolver.getArtifactId(parentModule), parentVersion));
+    }
+
+    @Override
+    public String computeUpdateInputsFingerprint() {
+        DevProjectModule module = getProjectModule();
+        BuildInfo buildInfo = module.getBuildInfo();
+        UpdateFingerprints.Builder fingerprint = UpdateFingerprints.newBuilder()
+                .add("recreate", recreateOnUpdateAndWrite())
+                .add("gav", ArtifactResolver.getGAV(module))
+                .add("aggregate", isAggregate() + "/" + module.isAggregate() + "/" + module.getWebFxModuleFile().isAggregate())
+                .add("build", buildInfo.isForGwt + "/" + buildInfo.isForTeaVm + "/" + buildInfo.isForOpenJfx + "/" + buildInfo.isForGluon + "/" + buildInfo.isForVertx + "/" + buildInfo.isExecutable + "/" + buildInfo.isRegistry)
+                .add("sources", module.hasSourceDirectory() + "/" + module.hasTestJavaSourceDirectory());
+        // webfx.xml files of this module and its parents (maven-pom-manual section, GAV inheritance, application info, etc...)
+        for (ProjectModule m = module; m != null; m = m.getParentModule())
+            if (m instanceof DevProjectModule)
+                fingerprint.addFile("webfx.xml", ((DevProjectModule) m).getWebFxModuleFile().getModuleFilePath());
+        Module parentModule = module instanceof DevRootModule && !module.getMavenModuleFile().fileExists() ? null : module.fetchParentModule();
+        fingerprint.add("parent", parentModule == null ? null : ArtifactResolver.getGAV(parentModule));
+        if (module.isAggregate())
+            module.getChildrenModules().forEach(m -> fingerprint.add("child", ArtifactResolver.getArtifactId(m)));
+        else if (module.hasSourceDirectory()) {
+            // The dependencies as written in the pom, because their scope and classifier also depend on the destination
+            // modules (ex: an interface module declared in its own webfx.xml file) and not only on the dependencies
+            List<DevMavenPomModel.Dependency> dependencies = new ArrayList<>();
+            Set<String> gas = new HashSet<>();
+            addSourceRootDependencies(module.getMainJavaSourceRootAnalyzer(), false, dependencies, gas);
+            if (module.hasTestJavaSourceDirectory())
+                addSourceRootDependencies(module.getTestJavaSourceRootAnalyzer(), true, dependencies, gas);
+            dependencies.forEach(dep -> fingerprint.add("dependency", dep.groupId + ":" + dep.artifactId + ":" + dep.version + ":" + dep.type + ":" + dep.scope + ":" + dep.classifier + ":" + dep.optional));
         }
-        Node modelVersionNode = lookupNode("modelVersion");
-        if (modelVersionNode == null)
-            prependElementWithTextContent("modelVersion", "4.0.0");
-        return true;
+        // The Gluon configuration lists the attach modules and the open packages of all transitive modules
+        if (buildInfo.isForGluon && buildInfo.isExecutable)
+            ProjectModule.filterProjectModules(module.getMainJavaSourceRootAnalyzer().getThisAndTransitiveModules())
+                    .forEach(m -> fingerprint.add("gluon", ArtifactResolver.getGAV(m) + m.getOpenPackages().collect(Collectors.toList())));
+        return fingerprint.build();
     }
 
-    private void addSourceRootDependencies(JavaSourceRootAnalyzer javaSourceRootAnalyzer, boolean test, Node dependenciesNode, Set<String> gas) {
+    private static void addSourceRootDependencies(JavaSourceRootAnalyzer javaSourceRootAnalyzer, boolean test, List<DevMavenPomModel.Dependency> dependencies, Set<String> gas) {
         BuildInfo buildInfo = javaSourceRootAnalyzer.getProjectModule().getBuildInfo();
-        ReusableStream<ModuleDependency> dependencies = buildInfo.isForGwt && buildInfo.isExecutable ? javaSourceRootAnalyzer.getTransitiveDependencies() :
+        ReusableStream<ModuleDependency> moduleDependencies = buildInfo.isForGwt && buildInfo.isExecutable ? javaSourceRootAnalyzer.getTransitiveDependencies() :
                 ReusableStream.concat(
                         javaSourceRootAnalyzer.getDirectDependencies(),
                         javaSourceRootAnalyzer.getTransitiveDependencies().filter(dep -> dep.getType() == ModuleDependency.Type.IMPLICIT_PROVIDER)
                 ).distinct();
-        dependencies
+        moduleDependencies
                 .collect(Collectors.groupingBy(ModuleDependency::getDestinationModule)).entrySet()
                 .stream()
                 .sorted(Map.Entry.comparingByKey())
@@ -202,24 +266,15 @@ public final class DevMavenPomModuleFile extends DevXmlModuleFileImpl implements
                         String ga = groupId + ":" + artifactId;
                         if (!gas.contains(ga)) { // Checking uniqueness to avoid malformed pom
                             gas.add(ga);
-                            Node groupNode = XmlUtil.appendElementWithTextContent(dependenciesNode, "/dependency/groupId", groupId, true, false);
-                            Node dependencyNode = groupNode.getParentNode();
-                            XmlUtil.appendElementWithTextContent(dependencyNode, "/artifactId", artifactId);
                             String version = ArtifactResolver.getVersion(destinationModule, buildInfo);
-                            if (version != null)
-                                XmlUtil.appendElementWithTextContent(dependencyNode, "/version", version);
                             String type = ArtifactResolver.getType(destinationModule);
-                            if (type != null)
-                                XmlUtil.appendElementWithTextContent(dependencyNode, "/type", type);
                             String scope = test ? "test" : ArtifactResolver.getScope(moduleGroup, buildInfo);
                             String classifier = ArtifactResolver.getClassifier(moduleGroup, buildInfo);
                             // Adding scope if provided, except if scope="runtime" and classifier="sources" (this would prevent GWT to access the source)
-                            if (scope != null && !("runtime".equals(scope) && "sources".equals(classifier)))
-                                XmlUtil.appendElementWithTextContent(dependencyNode, "/scope", scope);
-                            if (classifier != null)
-                                XmlUtil.appendElementWithTextContent(dependencyNode, "/classifier", classifier);
-                            if (moduleGroup.getValue().stream().anyMatch(ModuleDependency::isOptional))
-                                XmlUtil.appendElementWithTextContent(dependencyNode, "/optional", "true");
+                            if ("runtime".equals(scope) && "sources".equals(classifier))
+                                scope = null;
+                            boolean optional = moduleGroup.getValue().stream().anyMatch(ModuleDependency::isOptional);
+                            dependencies.add(new DevMavenPomModel.Dependency(groupId, artifactId, version, type, scope, classifier, optional));
                         }
                     }
                 });
@@ -0,0 +1,217 @@
+package dev.webfx.cli.modulefiles;
+
+import dev.webfx.cli.util.textfile.ResourceTextFileReader;
+import dev.webfx.cli.util.xml.XmlUtil;
+import org.w3c.dom.*;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Streaming writer of the pom.xml files recreated by WebFX. Instead of parsing the template into a DOM, mutating it
+ * node by node (each insertion re-indenting the whole project element) and serializing it, the pom is written in one
+ * pass from the template precompiled once (see CompiledTemplate) and the typed model of the generated sections (see
+ * DevMavenPomModel). The output is exactly the same as the DOM version (DevMavenPomModel.applyToDocument()).
+ * <p>
+ * Only the poms generated from a template are streamed. The poms that contain user-maintained sections (maven-pom-manual
+ * section of webfx.xml) are still merged through the DOM, as well as the poms whose template doesn't have the expected
+ * layout (ex: the inline root template which already contains the GAV, or the Gluon template which contains markup
+ * variables). The other templates, including the standard root template, are streamed.
+ *
+ * @author Bruno Salmon
+ */
+final class DevMavenPomWriter {
+
+    private static final Map<String, CompiledTemplate> COMPILED_TEMPLATES = new ConcurrentHashMap<>();
+    // Top-level elements generated by WebFX and that mustn't be present in the template for the streaming
+    private static final Set<String> PREPENDED_TAGS = Set.of("modelVersion", "parent", "groupId", "artifactId", "version");
+    private static final String INDENT_1 = "    ", INDENT_2 = INDENT_1 + INDENT_1, INDENT_3 = INDENT_2 + INDENT_1;
+
+    static boolean canWrite(String templateFileName, Node mavenManualNode) {
+        return mavenManualNode == null && getCompiledTemplate(templateFileName).streamable;
+    }
+
+    // Returns null if the pom can't be streamed (in which case the DOM must be used)
+    static String write(String templateFileName, Map<String, String> templateVariables, Node mavenManualNode, DevMavenPomModel model) {
+        CompiledTemplate template = getCompiledTemplate(templateFileName);
+        if (!template.streamable || mavenManualNode != null || model.dependenciesManagedComment)
+            return null;
+        String head = template.head, body = template.body;
+        // The variables are replaced in the canonical text of the template, which gives the same result as replacing
+        // them before parsing only if they don't contain any markup or escaped characters
+        for (Map.Entry<String, String> variable : templateVariables.entrySet()) {
+            if (!isPlainValue(variable.getValue()))
+                return null;
+            head = head.replace(variable.getKey(), variable.getValue());
+            body = body.replace(variable.getKey(), variable.getValue());
+        }
+        // Appended sections (in the same order as in DevMavenPomModel.applyToDocument())
+        List<String> endElements = new ArrayList<>();
+        if (model.aggregate) {
+            if (!template.hasPomPackaging)
+                endElements.add(elementWithText(new StringBuilder(), "packaging", "pom").toString());
+            if (model.modules != null && !model.modules.isEmpty()) {
+                StringBuilder sb = new StringBuilder("<modules>");
+                Set<String> addedModules = new HashSet<>();
+                for (String module : model.modules)
+                    if (module == null || module.isEmpty() || addedModules.add(module)) // Duplicates are not added by the DOM version
+                        elementWithText(sb.append('\n').append(INDENT_2), "module", module);
+                String modulesElement = sb.append('\n').append(INDENT_1).append("</modules>").toString();
+                if (template.hasModules)
+                    body = body.replace("<modules/>", modulesElement);
+                else
+                    endElements.add(modulesElement);
+            }
+        } else if (model.dependencies != null && !model.dependencies.isEmpty()) {
+            StringBuilder sb = new StringBuilder(256 * model.dependencies.size()).append("<dependencies>");
+            for (DevMavenPomModel.Dependency dependency : model.dependencies) {
+                sb.append("\n\n").append(INDENT_2).append("<dependency>");
+                elementWithText(sb.append('\n').append(INDENT_3), "groupId", dependency.groupId);
+                elementWithText(sb.append('\n').append(INDENT_3), "artifactId", dependency.artifactId);
+                if (dependency.version != null)
+                    elementWithText(sb.append('\n').append(INDENT_3), "version", dependency.version);
+                if (dependency.type != null)
+                    elementWithText(sb.append('\n').append(INDENT_3), "type", dependency.type);
+                if (dependency.scope != null)
+                    elementWithText(sb.append('\n').append(INDENT_3), "scope", dependency.scope);
+                if (dependency.classifier != null)
+                    elementWithText(sb.append('\n').append(INDENT_3), "classifier", dependency.classifier);
+                if (dependency.optional)
+                    elementWithText(sb.append('\n').append(INDENT_3), "optional", "true");
+                sb.append('\n').append(INDENT_2).append("</dependency>");
+            }
+            String dependenciesElement = sb.append("\n\n").append(INDENT_1).append("</dependencies>").toString();
+            if (template.hasDependencies)
+                body = body.replace("<dependencies/>", dependenciesElement);
+            else
+                endElements.add(dependenciesElement);
+        }
+        if (!endElements.isEmpty() && !template.endsWithBlankLine)
+            return null;
+        StringBuilder sb = new StringBuilder(head.length() + body.length() + 1024);
+        sb.append(head);
+        // Prepended sections (in the reverse order of DevMavenPomModel.applyToDocument(), as they are prepended)
+        if (model.isUpdated()) {
+            elementWithText(sb.append('\n').append(INDENT_1), "modelVersion", "4.0.0");
+            if (model.parent != null) {
+                sb.append("\n\n").append(INDENT_1).append("<parent>");
+                elementWithText(sb.append('\n').append(INDENT_2), "groupId", model.parent.groupId);
+                elementWithText(sb.append('\n').append(INDENT_2), "artifactId", model.parent.artifactId);
+                elementWithText(sb.append('\n').append(INDENT_2), "version", model.parent.version);
+                sb.append('\n').append(INDENT_1).append("</parent>");
+            }
+            if (model.groupId != null)
+                elementWithText(sb.append("\n\n").append(INDENT_1), "groupId", model.groupId);
+            elementWithText(sb.append("\n\n").append(INDENT_1), "artifactId", model.artifactId);
+            if (model.version != null)
+                elementWithText(sb.append("\n\n").append(INDENT_1), "version", model.version);
+        }
+        sb.append(body); // starts with the blank line that separates the prepended sections from the template ones
+        for (String endElement : endElements) // the body (and then each appended element) ends with a blank line
+            sb.append(INDENT_1).append(endElement).append("\n\n");
+        return sb.append("</project>").toString();
+    }
+
+    private static StringBuilder elementWithText(StringBuilder sb, String tagName, String text) {
+        if (text == null || text.isEmpty()) // No text node in the DOM version => empty element
+            return sb.append('<').append(tagName).append("/>");
+        sb.append('<').append(tagName).append('>');
+        XmlUtil.appendEscapedXmlText(sb, text);
+        return sb.append("</").append(tagName).append('>');
+    }
+
+    private static boolean isPlainValue(String value) {
+        if (value == null || value.isEmpty() || value.contains("${"))
+            return false;
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '&' || c == '<' || c == '>' || c == '"' || c == '\'' || c == '\r' || c < 0x20 && c != '\t' && c != '\n'
+                    || c >= 0x7F && c <= 0x9F || Character.isSurrogate(c))
+                return false;
+        }
+        return true;
+    }
+
+    private static CompiledTemplate getCompiledTemplate(String templateFileName) {
+        return COMPILED_TEMPLATES.computeIfAbsent(templateFileName, name -> new CompiledTemplate(ResourceTextFileReader.readTemplate(name)));
+    }
+
+    /**
+     * Template parsed and serialized once (with its variables) into its canonical text, split into the head (up to the
+     * project start tag) and the body (project content), with the info required to insert the generated sections.
+     * The template is streamable only if it has the layout expected by the writer: no generated elements (apart from
+     * empty dependencies or modules), already indented as the DOM version would do, and starting with a blank line.
+     */
+    private static final class CompiledTemplate {
+        private boolean streamable;
+        private String head, body;
+        private boolean hasPomPackaging, hasModules, hasDependencies, endsWithBlankLine;
+
+        private CompiledTemplate(String template) {
+            if (template.contains("${plugin.gluonfx.configuration}")) // markup variable
+                return;
+            Document document = XmlUtil.parseXmlString(template);
+            if (document == null) // malformed template (the DOM version will report the error)
+                return;
+            Element projectElement = document.getDocumentElement();
+            Node firstChild = projectElement.getFirstChild(), lastChild = projectElement.getLastChild();
+            if (!"project".equals(projectElement.getTagName()) || !(firstChild instanceof Text) || !(lastChild instanceof Text)
+                    || !isBlank(firstChild.getNodeValue()) || countLinefeeds(firstChild.getNodeValue()) < 2)
+                return;
+            endsWithBlankLine = "\n\n".equals(lastChild.getNodeValue()) && !(lastChild.getPreviousSibling() instanceof Text);
+            int modulesCount = 0, dependenciesCount = 0;
+            for (Node child = firstChild; child != null; child = child.getNextSibling()) {
+                if (child instanceof Text && !isBlank(child.getNodeValue()))
+                    return;
+                if (!(child instanceof Element))
+                    continue;
+                String tagName = ((Element) child).getTagName();
+                if (PREPENDED_TAGS.contains(tagName))
+                    return;
+                if ("packaging".equals(tagName)) {
+                    for (Node text = child.getFirstChild(); text != null; text = text.getNextSibling())
+                        if (text instanceof Text && "pom".equals(text.getNodeValue()))
+                            hasPomPackaging = true;
+                } else if ("modules".equals(tagName)) {
+                    if (child.hasChildNodes() || ++modulesCount > 1)
+                        return;
+                } else if ("dependencies".equals(tagName)) {
+                    if (child.hasChildNodes() || ++dependenciesCount > 1)
+                        return;
+                }
+            }
+            hasModules = modulesCount == 1;
+            hasDependencies = dependenciesCount == 1;
+            // The template must be already indented, as the DOM version re-indents it
+            String text = XmlUtil.formatXmlText(document);
+            Document indentedDocument = (Document) document.cloneNode(true);
+            XmlUtil.indentNode(indentedDocument.getDocumentElement(), true);
+            if (!text.equals(XmlUtil.formatXmlText(indentedDocument)))
+                return;
+            int headEnd = text.indexOf('>', text.indexOf("<project")) + 1;
+            if (headEnd == 0 || text.charAt(headEnd - 2) == '/' || !text.endsWith("</project>"))
+                return;
+            head = text.substring(0, headEnd);
+            body = text.substring(headEnd, text.length() - "</project>".length());
+            // The empty modules and dependencies elements must be found only once in the body (at the top level)
+            if (hasModules && countOccurrences(body, "<modules/>") != 1 || hasDependencies && countOccurrences(body, "<dependencies/>") != 1)
+                return;
+            streamable = true;
+        }
+
+        private static boolean isBlank(String text) {
+            return text.trim().isEmpty();
+        }
+
+        private static int countLinefeeds(String text) {
+            return countOccurrences(text, "\n");
+        }
+
+        private static int countOccurrences(String text, String s) {
+            int count = 0;
+            for (int i = text.indexOf(s); i >= 0; i = text.indexOf(s, i + s.length()))
+                count++;
+            return count;
+        }
+    }
+}
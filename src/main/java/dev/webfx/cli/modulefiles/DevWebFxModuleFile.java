@@ -3,6 +3,7 @@ package dev.webfx.cli.modulefiles;
 import dev.webfx.cli.core.Module;
 import dev.webfx.cli.core.*;
 import dev.webfx.cli.modulefiles.abstr.DevXmlModuleFileImpl;
+import dev.webfx.cli.modulefiles.abstr.ExportSnapshotIndex;
 import dev.webfx.cli.modulefiles.abstr.WebFxModuleFile;
 import dev.webfx.cli.util.xml.XmlUtil;
 import dev.webfx.lib.reusablestream.ReusableStream;
@@ -39,6 +40,8 @@ public final class DevWebFxModuleFile extends DevXmlModuleFileImpl implements We
 
     @Override
     public boolean updateDocument(Document document) {
+        // The export snapshot is regenerated, so its index (if any) will be obsolete
+        ExportSnapshotIndex.invalidate(document);
         Node exportNode = lookupNode(EXPORT_SNAPSHOT_TAG);
         boolean exportNodeWasPresent = exportNode != null;
         if (exportNode != null) {
@@ -72,6 +75,8 @@ public final class DevWebFxModuleFile extends DevXmlModuleFileImpl implements We
             XmlUtil.appendIndentNode(usagesElement, exportNode, true);
         appendIndentNode(document.createComment(EXPORT_SECTION_COMMENT), true);
         appendIndentNode(exportNode, true);
+        // The index may have been built again during the generation (ex: by the queries on the exported projects)
+        ExportSnapshotIndex.invalidate(document);
         return true;
     }
 
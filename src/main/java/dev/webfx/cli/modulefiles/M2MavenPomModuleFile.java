@@ -4,6 +4,7 @@ import dev.webfx.cli.core.M2ProjectModule;
 import dev.webfx.cli.core.MavenUtil;
 import dev.webfx.cli.modulefiles.abstr.MavenPomModuleFile;
 import dev.webfx.cli.modulefiles.abstr.PathBasedXmlModuleFileImpl;
+import dev.webfx.lib.reusablestream.ReusableStream;
 
 import java.nio.file.Files;
 import java.nio.file.Path;
@@ -13,10 +14,66 @@ import java.nio.file.Path;
  */
 public final class M2MavenPomModuleFile extends PathBasedXmlModuleFileImpl implements MavenPomModuleFile {
 
+    // Read-only model of the pom used for the most common queries (the DOM is built only on demand for other queries)
+    private M2MavenPomSummary summary;
+
     public M2MavenPomModuleFile(M2ProjectModule module) {
         super(module, getPomModuleFilePathAndDownloadIfMissing(module));
     }
 
+    private M2MavenPomSummary getSummary() {
+        if (summary == null)
+            summary = M2MavenPomSummary.read(getModuleFilePath());
+        return summary;
+    }
+
+    // The following queries are served by the summary (without building the DOM)
+
+    @Override
+    public String lookupGroupId() {
+        return getSummary().lookupGroupId();
+    }
+
+    @Override
+    public String lookupArtifactId() {
+        return getSummary().lookupArtifactId();
+    }
+
+    @Override
+    public String lookupVersion() {
+        return getSummary().lookupVersion();
+    }
+
+    @Override
+    public String lookupType() {
+        return getSummary().lookupType();
+    }
+
+    @Override
+    public String lookupParentGroupId() {
+        return getSummary().lookupParentGroupId();
+    }
+
+    @Override
+    public String lookupParentVersion() {
+        return getSummary().lookupParentVersion();
+    }
+
+    @Override
+    public String lookupParentName() {
+        return getSummary().lookupParentName();
+    }
+
+    @Override
+    public boolean isAggregate() {
+        return getSummary().isAggregate();
+    }
+
+    @Override
+    public ReusableStream<String> getChildrenModuleNames() {
+        return getSummary().getChildrenModuleNames();
+    }
+
     private static Path getPomModuleFilePathAndDownloadIfMissing(M2ProjectModule module) {
         MavenUtil.cleanM2ModuleSnapshotIfRequested(module);
         Path path = module.getM2ArtifactSubPath(".pom");
@@ -0,0 +1,177 @@
+package dev.webfx.cli.modulefiles;
+
+import dev.webfx.cli.util.xml.XmlUtil;
+import dev.webfx.lib.reusablestream.ReusableStream;
+
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.util.*;
+
+/**
+ * Compact read-only model of a pom.xml file from the Maven repository, which holds only the fields read by the CLI on
+ * library modules (GAV, parent GAV and children modules). It is read with a StAX streaming reader, which is much
+ * lighter than parsing the whole file into a DOM and keeping it in memory for the life of the registry. The DOM is
+ * still built on demand by M2MavenPomModuleFile for any other query (rare).
+ * <p>
+ * Because the GAV tags can be written either as child elements or as attributes (see XmlGavUtil), both are recorded
+ * (attributes with a @ prefix, as child elements take precedence over them).
+ *
+ * @author Bruno Salmon
+ */
+final class M2MavenPomSummary {
+
+    private static final Set<String> GAV_TAGS = Set.of("groupId", "artifactId", "version", "type", "name", "artifact");
+
+    private final Map<String, String> projectGav;
+    private final Map<String, String> parentGav; // null if no <parent> section
+    private final boolean hasModules;
+    private final List<String> childrenModuleNames;
+
+    private M2MavenPomSummary(Map<String, String> projectGav, Map<String, String> parentGav, boolean hasModules, List<String> childrenModuleNames) {
+        this.projectGav = projectGav;
+        this.parentGav = parentGav;
+        this.hasModules = hasModules;
+        this.childrenModuleNames = childrenModuleNames;
+    }
+
+    String lookupGroupId() {
+        return lookupGavTagContent(projectGav, "groupId", 0);
+    }
+
+    String lookupArtifactId() {
+        return lookupGavTagContent(projectGav, "artifactId", 1);
+    }
+
+    String lookupVersion() {
+        return lookupGavTagContent(projectGav, "version", 2);
+    }
+
+    String lookupType() {
+        return lookupGavTagContent(projectGav, "type", 3);
+    }
+
+    String lookupParentGroupId() {
+        return lookupGavTagContent(parentGav, "groupId", 0);
+    }
+
+    String lookupParentVersion() {
+        return lookupGavTagContent(parentGav, "version", 0);
+    }
+
+    String lookupParentName() {
+        if (parentGav == null)
+            return null;
+        String name = getTagContent(parentGav, "name");
+        return name != null ? name : lookupGavTagContent(parentGav, "artifactId", 1);
+    }
+
+    boolean isAggregate() {
+        return hasModules;
+    }
+
+    ReusableStream<String> getChildrenModuleNames() {
+        return ReusableStream.fromIterable(childrenModuleNames);
+    }
+
+    // Same logic as XmlGavUtil.lookupGavTagContent() (except the <group> lookup which doesn't apply to poms)
+    private static String lookupGavTagContent(Map<String, String> gav, String tagName, int artifactTokenIndex) {
+        if (gav == null)
+            return null;
+        String tagContent = getTagContent(gav, tagName);
+        if (tagContent == null) {
+            String artifact = getTagContent(gav, "artifact");
+            if (artifact != null) {
+                String[] split = artifact.split(":");
+                if (artifactTokenIndex < split.length)
+                    return split[artifactTokenIndex];
+            }
+        }
+        return tagContent;
+    }
+
+    private static String getTagContent(Map<String, String> gav, String tagName) {
+        String tagContent = gav.get(tagName);
+        return tagContent != null ? tagContent : gav.get('@' + tagName);
+    }
+
+    static M2MavenPomSummary read(Path pomPath) {
+        Map<String, String> projectGav = new HashMap<>();
+        Map<String, String> parentGav = null;
+        boolean hasModules = false;
+        List<String> childrenModuleNames = new ArrayList<>();
+        try (InputStream is = Files.newInputStream(pomPath)) {
+            XMLStreamReader reader = XmlUtil.createXmlStreamReader(is);
+            try {
+                int depth = 0; // 1 = project element, 2 = project children, etc...
+                String level2Name = null;
+                while (reader.hasNext()) {
+                    int event = reader.next();
+                    if (event == XMLStreamConstants.END_ELEMENT)
+                        depth--;
+                    else if (event == XMLStreamConstants.START_ELEMENT) {
+                        depth++;
+                        String localName = reader.getLocalName();
+                        if (depth == 1)
+                            recordGavAttributes(reader, projectGav);
+                        else if (depth == 2) {
+                            level2Name = localName;
+                            if ("parent".equals(localName)) {
+                                parentGav = new HashMap<>();
+                                recordGavAttributes(reader, parentGav);
+                            } else if ("modules".equals(localName))
+                                hasModules = true;
+                            else if (GAV_TAGS.contains(localName)) {
+                                projectGav.putIfAbsent(localName, readTextContent(reader));
+                                depth--; // readTextContent() consumed the end element
+                            }
+                        } else if (depth == 3 && "parent".equals(level2Name) && GAV_TAGS.contains(localName)) {
+                            parentGav.putIfAbsent(localName, readTextContent(reader));
+                            depth--;
+                        } else if (depth >= 3 && "modules".equals(level2Name) && "module".equals(localName)) {
+                            // modules//module
+                            childrenModuleNames.add(readTextContent(reader));
+                            depth--;
+                        }
+                    }
+                }
+            } finally {
+                reader.close();
+            }
+        } catch (NoSuchFileException e) {
+            // No pom => empty summary (same as the DOM behaviour)
+        } catch (IOException | XMLStreamException e) {
+            e.printStackTrace();
+        }
+        return new M2MavenPomSummary(projectGav, parentGav, hasModules, childrenModuleNames);
+    }
+
+    private static void recordGavAttributes(XMLStreamReader reader, Map<String, String> gav) {
+        for (int i = 0, n = reader.getAttributeCount(); i < n; i++) {
+            String attributeName = reader.getAttributeLocalName(i);
+            String prefix = reader.getAttributePrefix(i);
+            if (GAV_TAGS.contains(attributeName) && (prefix == null || prefix.isEmpty()))
+                gav.put('@' + attributeName, reader.getAttributeValue(i));
+        }
+    }
+
+    // Equivalent of Node.getTextContent() (concatenation of all descendant texts), ending on the element end
+    static String readTextContent(XMLStreamReader reader) throws XMLStreamException {
+        StringBuilder sb = new StringBuilder();
+        for (int depth = 1; depth > 0; ) {
+            int event = reader.next();
+            if (event == XMLStreamConstants.START_ELEMENT)
+                depth++;
+            else if (event == XMLStreamConstants.END_ELEMENT)
+                depth--;
+            else if (event == XMLStreamConstants.CHARACTERS || event == XMLStreamConstants.CDATA || event == XMLStreamConstants.SPACE)
+                sb.append(reader.getText());
+        }
+        return sb.toString();
+    }
+}
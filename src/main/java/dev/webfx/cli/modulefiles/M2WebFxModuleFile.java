@@ -3,6 +3,7 @@ package dev.webfx.cli.modulefiles;
 import dev.webfx.cli.core.MavenUtil;
 import dev.webfx.cli.modulefiles.abstr.WebFxModuleFile;
 import dev.webfx.cli.core.M2ProjectModule;
+import dev.webfx.cli.core.ServiceProvider;
 import dev.webfx.cli.modulefiles.abstr.PathBasedXmlModuleFileImpl;
 import dev.webfx.cli.util.xml.XmlUtil;
 import dev.webfx.lib.reusablestream.ReusableStream;
@@ -18,9 +19,18 @@ import java.nio.file.Path;
 public final class M2WebFxModuleFile extends PathBasedXmlModuleFileImpl implements WebFxModuleFile {
 
     private Boolean exported;
+    // Read-only model of the file used for the most common queries (the DOM is built only on demand for other queries)
+    private M2WebFxSummary summary;
 
     public M2WebFxModuleFile(M2ProjectModule module) {
-        super(module, getWebFxModuleFilePathAndDownloadIfMissing(module));
+        this(module, getWebFxModuleFileWithExportSnapshotContainingThisModule(module));
+    }
+
+    private M2WebFxModuleFile(M2ProjectModule module, M2WebFxModuleFile exportSnapshotModuleFile) {
+        super(module, getWebFxModuleFilePathAndDownloadIfMissing(module, exportSnapshotModuleFile));
+        // If this module is described in the export snapshot of a parent, we share the summary of that parent file
+        if (exportSnapshotModuleFile != null)
+            summary = exportSnapshotModuleFile.getSummary();
     }
 
     @Override
@@ -28,6 +38,16 @@ public final class M2WebFxModuleFile extends PathBasedXmlModuleFileImpl implemen
         return (M2ProjectModule) super.getProjectModule();
     }
 
+    private M2WebFxSummary getSummary() {
+        if (summary == null)
+            summary = M2WebFxSummary.read(getModuleFilePath());
+        return summary;
+    }
+
+    private M2WebFxSummary.ProjectSummary getProjectSummary() {
+        return getSummary().getExportedOrRootProject(getProjectModule().getName());
+    }
+
     @Override
     public void readFile() {
         super.readFile();
@@ -39,7 +59,7 @@ public final class M2WebFxModuleFile extends PathBasedXmlModuleFileImpl implemen
 
     public boolean isExported() {
         if (exported == null)
-            readFile();
+            exported = getSummary().getExportedProject(getProjectModule().getName()) != null;
         return exported;
     }
 
@@ -54,37 +74,111 @@ public final class M2WebFxModuleFile extends PathBasedXmlModuleFileImpl implemen
                 ;
     }
 
-    public Element lookupExportedSnapshotProjectElement(M2ProjectModule module) {
-        Node exportedProjectNode = lookupNode("/project/export-snapshot/project[@name='" + module.getName() + "']");
-        if (exportedProjectNode instanceof Element)
-            return (Element) exportedProjectNode;
-        return null;
+    /*****************************************************************************************************************
+     *                          Queries served by the summary (without building the DOM)                             *
+     ****************************************************************************************************************/
+
+    @Override
+    public boolean isExecutable() {
+        return getProjectSummary().getBooleanAttributeValue("executable");
     }
 
-    public String lookupExportedSnapshotFirstProjectName() {
-        return XmlUtil.getAttributeValue(lookupNode("(/project/export-snapshot/project[@name])[1]"), "name");
+    @Override
+    public boolean isInterface() {
+        return getProjectSummary().getBooleanAttributeValue("interface");
     }
 
-    public ReusableStream<String> modulesUsingJavaPackageFromExportSnapshot(Node javaPackageUsageNode) {
-        return XmlUtil.nodeListToTextContentReusableStream(XmlUtil.lookupNodeList(javaPackageUsageNode, "module"));
+    @Override
+    public boolean isAggregate() {
+        return getProjectSummary().isAggregate();
+    }
+
+    @Override
+    public boolean shouldSubdirectoriesChildrenModulesBeAdded() {
+        return getProjectSummary().shouldSubdirectoriesChildrenModulesBeAdded();
+    }
+
+    @Override
+    public ReusableStream<String> getChildrenModuleNames() {
+        return getProjectSummary().getChildrenModuleNames();
+    }
+
+    @Override
+    public ReusableStream<String> getExplicitExportedPackages() {
+        return getProjectSummary().getExplicitExportedPackages();
+    }
+
+    @Override
+    public ReusableStream<String> javaSourcePackagesFromExportSnapshot() {
+        return getProjectSummary().getSourcePackages();
+    }
+
+    @Override
+    public ReusableStream<String> usedRequiredJavaServicesFromExportSnapshot() {
+        return getProjectSummary().getUsedRequiredServices();
+    }
+
+    @Override
+    public ReusableStream<String> usedOptionalJavaServicesFromExportSnapshot() {
+        return getProjectSummary().getUsedOptionalServices();
+    }
+
+    @Override
+    public ReusableStream<ServiceProvider> providedServiceProviders() {
+        ReusableStream<ServiceProvider> providers = getProjectSummary().getProviders();
+        // null means a provider is declared without interface, so we let the DOM version report the error
+        return providers != null ? providers : WebFxModuleFile.super.providedServiceProviders();
+    }
+
+    public boolean isModuleInExportSnapshot(M2ProjectModule module) {
+        return getSummary().getExportedProject(module.getName()) != null;
+    }
+
+    public String lookupExportedSnapshotFirstProjectName() {
+        return getSummary().getFirstExportedProjectName();
     }
 
     public ReusableStream<String> javaPackagesFromExportSnapshotUsage() {
-        return XmlUtil.nodeListToAttributeValueReusableStream(lookupNodeList("/project/export-snapshot/usages/java-package"), "name");
+        return getSummary().getJavaPackagesWithUsage();
+    }
+
+    @Override
+    public ReusableStream<String> modulesUsingJavaPackageFromExportSnapshot(String javaPackage) {
+        return getSummary().getModulesUsingJavaPackage(javaPackage);
     }
 
     public ReusableStream<String> javaClassesFromExportSnapshotUsage() {
-        return XmlUtil.nodeListToAttributeValueReusableStream(lookupNodeList("/project/export-snapshot/usages/java-class"), "name");
+        return getSummary().getJavaClassesWithUsage();
+    }
+
+    @Override
+    public ReusableStream<String> modulesUsingJavaClassFromExportSnapshot(String javaClass) {
+        return getSummary().getModulesUsingJavaClass(javaClass);
+    }
+
+    /*****************************************************************************************************************
+     *                                           DOM-based queries                                                   *
+     ****************************************************************************************************************/
+
+    public Element lookupExportedSnapshotProjectElement(M2ProjectModule module) {
+        return getExportSnapshotIndex().getProjectElement(module.getName());
     }
 
-    private static Path getWebFxModuleFilePathAndDownloadIfMissing(M2ProjectModule module) {
+    public ReusableStream<String> modulesUsingJavaPackageFromExportSnapshot(Node javaPackageUsageNode) {
+        return XmlUtil.nodeListToTextContentReusableStream(XmlUtil.lookupNodeList(javaPackageUsageNode, "module"));
+    }
+
+    private static M2WebFxModuleFile getWebFxModuleFileWithExportSnapshotContainingThisModule(M2ProjectModule module) {
         MavenUtil.cleanM2ModuleSnapshotIfRequested(module);
+        return module.getWebFxModuleFileWithExportSnapshotContainingThisModule();
+    }
+
+    private static Path getWebFxModuleFilePathAndDownloadIfMissing(M2ProjectModule module, M2WebFxModuleFile exportSnapshotModuleFile) {
         // Before returning the standard path (which points to the "-webfx.xml" file in this maven project repository),
         // we check if there is no existing parent with an export-snapshot that already includes all info about that
         // module, because it will be much quicker to use (no additional webfx.xml or sources to download).
         // If found, we return here the path to that parent -webfx.xml path instead, knowing that the readFile() method
         // will finally look up the correct node corresponding to that module inside that file.
-        M2WebFxModuleFile exportSnapshotModuleFile = module.getWebFxModuleFileWithExportSnapshotContainingThisModule();
         if (exportSnapshotModuleFile != null)
             return exportSnapshotModuleFile.getModuleFilePath();
         // If not found, we return the standard path that points to the "-webfx.xml" file in the maven project repository
@@ -0,0 +1,427 @@
+package dev.webfx.cli.modulefiles;
+
+import dev.webfx.cli.core.Logger;
+import dev.webfx.cli.core.ServiceProvider;
+import dev.webfx.cli.util.xml.XmlUtil;
+import dev.webfx.lib.reusablestream.ReusableStream;
+
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.util.*;
+
+/**
+ * Compact read-only model of a webfx.xml file from the Maven repository, read with a StAX streaming reader. It holds
+ * the fields that are read on every library module during the dependency resolution (project attributes, children
+ * modules, exported and source packages, used services and providers), both for the root project of the file and for
+ * each project of its export snapshot (if any). M2WebFxModuleFile serves these fields from this model, and builds the
+ * DOM only on demand for the other queries (rare).
+ * <p>
+ * The export snapshot of a library can contain many projects, and all the modules of that library read their info
+ * from that same file, so the same summary instance is shared between these modules (see M2WebFxModuleFile). The
+ * summary also holds the java package and class usages of the export snapshot, and is stored in a binary sidecar next
+ * to the webfx.xml file (see M2WebFxSummaryBinaryFile), which is read instead of the XML on the next runs.
+ *
+ * @author Bruno Salmon
+ */
+final class M2WebFxSummary {
+
+    private final ProjectSummary rootProject;
+    private final Map<String, ProjectSummary> exportedProjects; // in the snapshot order
+    private Map<String, List<String>> javaPackageUsages; // java package -> modules using it (in the snapshot order)
+    private Map<String, List<String>> javaClassUsages; // java class -> modules using it (in the snapshot order)
+    // Sections not decoded yet when read from the binary sidecar (decoded on first access)
+    private final Map<String, M2WebFxSummaryBinaryFile.Decoder> exportedProjectSections;
+    private M2WebFxSummaryBinaryFile.Decoder usagesSection;
+    private final Path webFxXmlPath; // to read the XML again if a section is corrupted
+    private M2WebFxSummary xmlSummary;
+
+    private M2WebFxSummary(ProjectSummary rootProject, Map<String, ProjectSummary> exportedProjects, Map<String, List<String>> javaPackageUsages, Map<String, List<String>> javaClassUsages) {
+        this(rootProject, exportedProjects, javaPackageUsages, javaClassUsages, Collections.emptyMap(), null, null);
+    }
+
+    private M2WebFxSummary(ProjectSummary rootProject, Map<String, ProjectSummary> exportedProjects, Map<String, List<String>> javaPackageUsages, Map<String, List<String>> javaClassUsages,
+                           Map<String, M2WebFxSummaryBinaryFile.Decoder> exportedProjectSections, M2WebFxSummaryBinaryFile.Decoder usagesSection, Path webFxXmlPath) {
+        this.rootProject = rootProject;
+        this.exportedProjects = exportedProjects;
+        this.javaPackageUsages = javaPackageUsages;
+        this.javaClassUsages = javaClassUsages;
+        this.exportedProjectSections = exportedProjectSections;
+        this.usagesSection = usagesSection;
+        this.webFxXmlPath = webFxXmlPath;
+    }
+
+    synchronized ProjectSummary getExportedProject(String name) {
+        ProjectSummary project = exportedProjects.get(name);
+        if (project == null) {
+            M2WebFxSummaryBinaryFile.Decoder section = exportedProjectSections.get(name);
+            if (section != null) {
+                try {
+                    project = ProjectSummary.decode(section);
+                    section.checkEnd();
+                } catch (RuntimeException e) {
+                    project = getXmlSummary().getExportedProject(name);
+                }
+                exportedProjects.put(name, project);
+            }
+        }
+        return project;
+    }
+
+    ProjectSummary getExportedOrRootProject(String name) {
+        ProjectSummary exportedProject = getExportedProject(name);
+        return exportedProject != null ? exportedProject : rootProject;
+    }
+
+    String getFirstExportedProjectName() {
+        // Note: the sections keys are all the exported projects names (in the snapshot order) when read from the sidecar
+        Map<String, ?> projects = exportedProjectSections.isEmpty() ? exportedProjects : exportedProjectSections;
+        return projects.isEmpty() ? null : projects.keySet().iterator().next();
+    }
+
+    boolean hasExportSnapshot() {
+        return !exportedProjects.isEmpty() || !exportedProjectSections.isEmpty() || !getJavaPackageUsages().isEmpty() || !getJavaClassUsages().isEmpty();
+    }
+
+    private synchronized void decodeUsagesIfNecessary() {
+        if (usagesSection != null) {
+            try {
+                javaPackageUsages = decodeUsages(usagesSection);
+                javaClassUsages = decodeUsages(usagesSection);
+                usagesSection.checkEnd();
+            } catch (RuntimeException e) {
+                javaPackageUsages = getXmlSummary().getJavaPackageUsages();
+                javaClassUsages = getXmlSummary().getJavaClassUsages();
+            }
+            usagesSection = null;
+        }
+    }
+
+    private Map<String, List<String>> getJavaPackageUsages() {
+        decodeUsagesIfNecessary();
+        return javaPackageUsages;
+    }
+
+    private Map<String, List<String>> getJavaClassUsages() {
+        decodeUsagesIfNecessary();
+        return javaClassUsages;
+    }
+
+    // Fallback for a corrupted sidecar (not expected as it's written atomically, but a disk can still fail)
+    private M2WebFxSummary getXmlSummary() {
+        if (xmlSummary == null) {
+            Logger.log("WARNING: Ignoring corrupted " + M2WebFxSummaryBinaryFile.getBinaryFilePath(webFxXmlPath));
+            xmlSummary = readXml(webFxXmlPath);
+        }
+        return xmlSummary;
+    }
+
+    ReusableStream<String> getJavaPackagesWithUsage() {
+        return ReusableStream.fromIterable(getJavaPackageUsages().keySet());
+    }
+
+    ReusableStream<String> getModulesUsingJavaPackage(String javaPackage) {
+        return ReusableStream.fromIterable(getJavaPackageUsages().getOrDefault(javaPackage, Collections.emptyList()));
+    }
+
+    ReusableStream<String> getJavaClassesWithUsage() {
+        return ReusableStream.fromIterable(getJavaClassUsages().keySet());
+    }
+
+    ReusableStream<String> getModulesUsingJavaClass(String javaClass) {
+        return ReusableStream.fromIterable(getJavaClassUsages().getOrDefault(javaClass, Collections.emptyList()));
+    }
+
+    static final class ProjectSummary {
+        private final Map<String, String> attributes = new HashMap<>();
+        private boolean hasModules;
+        private boolean hasSubdirectoriesModules;
+        private final List<String> childrenModuleNames = new ArrayList<>();
+        private final List<String> explicitExportedPackages = new ArrayList<>();
+        private final List<String> sourcePackages = new ArrayList<>();
+        private final List<String> usedRequiredServices = new ArrayList<>();
+        private final List<String> usedOptionalServices = new ArrayList<>();
+        private final List<ServiceProvider> providers = new ArrayList<>();
+        private String firstMissingProviderInterface; // provider declared without interface attribute
+
+        boolean getBooleanAttributeValue(String attribute) {
+            return "true".equalsIgnoreCase(attributes.get(attribute));
+        }
+
+        boolean isAggregate() {
+            return hasModules;
+        }
+
+        boolean shouldSubdirectoriesChildrenModulesBeAdded() {
+            return hasSubdirectoriesModules;
+        }
+
+        ReusableStream<String> getChildrenModuleNames() {
+            return ReusableStream.fromIterable(childrenModuleNames);
+        }
+
+        ReusableStream<String> getExplicitExportedPackages() {
+            return ReusableStream.fromIterable(explicitExportedPackages);
+        }
+
+        ReusableStream<String> getSourcePackages() {
+            return ReusableStream.fromIterable(sourcePackages);
+        }
+
+        ReusableStream<String> getUsedRequiredServices() {
+            return ReusableStream.fromIterable(usedRequiredServices);
+        }
+
+        ReusableStream<String> getUsedOptionalServices() {
+            return ReusableStream.fromIterable(usedOptionalServices);
+        }
+
+        // Returns null if a provider has been declared without interface, so the DOM version reports the error
+        ReusableStream<ServiceProvider> getProviders() {
+            return firstMissingProviderInterface != null ? null : ReusableStream.fromIterable(providers);
+        }
+
+        private void recordAttributes(XMLStreamReader reader) {
+            for (int i = 0, n = reader.getAttributeCount(); i < n; i++)
+                attributes.put(reader.getAttributeLocalName(i), reader.getAttributeValue(i));
+        }
+
+        // Returns true if the element text has been read (which consumes the element end)
+        private boolean readElement(String relativePath, XMLStreamReader reader) throws XMLStreamException {
+            switch (relativePath) {
+                case "modules":
+                    hasModules = true;
+                    return false;
+                case "modules/subdirectories-modules":
+                    hasSubdirectoriesModules = true;
+                    return false;
+                case "providers/provider":
+                    String spi = reader.getAttributeValue(null, "interface");
+                    String provider = M2MavenPomSummary.readTextContent(reader);
+                    if (spi == null)
+                        firstMissingProviderInterface = provider;
+                    else
+                        providers.add(new ServiceProvider(spi, provider));
+                    return true;
+            }
+            List<String> list = getTextContentList(relativePath);
+            if (list == null)
+                return false;
+            list.add(M2MavenPomSummary.readTextContent(reader));
+            return true;
+        }
+
+        private List<String> getTextContentList(String relativePath) {
+            switch (relativePath) {
+                case "modules/module": return childrenModuleNames;
+                case "exported-packages/package": return explicitExportedPackages;
+                case "source-packages/package": return sourcePackages;
+                case "used-services/required-service": return usedRequiredServices;
+                case "used-services/optional-service": return usedOptionalServices;
+            }
+            return null;
+        }
+
+        private void encode(M2WebFxSummaryBinaryFile.Encoder encoder) {
+            encoder.writeVarInt(attributes.size());
+            attributes.forEach((name, value) -> {
+                encoder.writeString(name);
+                encoder.writeString(value);
+            });
+            encoder.writeBoolean(hasModules);
+            encoder.writeBoolean(hasSubdirectoriesModules);
+            encoder.writeStrings(childrenModuleNames);
+            encoder.writeStrings(explicitExportedPackages);
+            encoder.writeStrings(sourcePackages);
+            encoder.writeStrings(usedRequiredServices);
+            encoder.writeStrings(usedOptionalServices);
+            encoder.writeVarInt(providers.size());
+            for (ServiceProvider provider : providers) {
+                encoder.writeString(provider.getSpi());
+                encoder.writeString(provider.getImplementation());
+            }
+            encoder.writeNullableString(firstMissingProviderInterface);
+        }
+
+        private static ProjectSummary decode(M2WebFxSummaryBinaryFile.Decoder decoder) {
+            ProjectSummary project = new ProjectSummary();
+            for (int n = decoder.readVarInt(); n > 0; n--)
+                project.attributes.put(decoder.readString(), decoder.readString());
+            project.hasModules = decoder.readBoolean();
+            project.hasSubdirectoriesModules = decoder.readBoolean();
+            decoder.readStrings(project.childrenModuleNames);
+            decoder.readStrings(project.explicitExportedPackages);
+            decoder.readStrings(project.sourcePackages);
+            decoder.readStrings(project.usedRequiredServices);
+            decoder.readStrings(project.usedOptionalServices);
+            for (int n = decoder.readVarInt(); n > 0; n--)
+                project.providers.add(new ServiceProvider(decoder.readString(), decoder.readString()));
+            project.firstMissingProviderInterface = decoder.readNullableString();
+            return project;
+        }
+    }
+
+    // The exported projects and the usages are written in sections, so they can be decoded on demand
+    void encode(M2WebFxSummaryBinaryFile.Encoder encoder) {
+        rootProject.encode(encoder);
+        encoder.writeVarInt(exportedProjects.size());
+        exportedProjects.forEach((name, project) -> {
+            encoder.writeString(name);
+            encoder.writeSection(project::encode);
+        });
+        encoder.writeSection(section -> {
+            encodeUsages(getJavaPackageUsages(), section);
+            encodeUsages(getJavaClassUsages(), section);
+        });
+    }
+
+    private static void encodeUsages(Map<String, List<String>> usages, M2WebFxSummaryBinaryFile.Encoder encoder) {
+        encoder.writeVarInt(usages.size());
+        usages.forEach((name, modules) -> {
+            encoder.writeString(name);
+            encoder.writeStrings(modules);
+        });
+    }
+
+    static M2WebFxSummary decode(M2WebFxSummaryBinaryFile.Decoder decoder, Path webFxXmlPath) {
+        ProjectSummary rootProject = ProjectSummary.decode(decoder);
+        Map<String, M2WebFxSummaryBinaryFile.Decoder> exportedProjectSections = new LinkedHashMap<>();
+        for (int n = decoder.readVarInt(); n > 0; n--)
+            exportedProjectSections.put(decoder.readString(), decoder.readSection());
+        return new M2WebFxSummary(rootProject, new HashMap<>(), null, null, exportedProjectSections, decoder.readSection(), webFxXmlPath);
+    }
+
+    private static Map<String, List<String>> decodeUsages(M2WebFxSummaryBinaryFile.Decoder decoder) {
+        Map<String, List<String>> usages = new LinkedHashMap<>();
+        for (int n = decoder.readVarInt(); n > 0; n--)
+            usages.put(decoder.readString(), decoder.readStrings(new ArrayList<>()));
+        return usages;
+    }
+
+    static M2WebFxSummary read(Path webFxXmlPath) {
+        long xmlSize, xmlLastModified;
+        try {
+            xmlSize = Files.size(webFxXmlPath);
+            xmlLastModified = Files.getLastModifiedTime(webFxXmlPath).toMillis();
+        } catch (NoSuchFileException e) {
+            // No webfx.xml => empty summary (same as the DOM behaviour)
+            return emptySummary();
+        } catch (IOException e) {
+            e.printStackTrace();
+            return emptySummary();
+        }
+        // Reading the binary sidecar if present and valid for this webfx.xml file
+        Path binaryFilePath = M2WebFxSummaryBinaryFile.getBinaryFilePath(webFxXmlPath);
+        M2WebFxSummary summary = M2WebFxSummaryBinaryFile.read(binaryFilePath, xmlSize, xmlLastModified, webFxXmlPath);
+        if (summary != null)
+            return summary;
+        // Otherwise reading the XML, and writing the sidecar for the next runs if it is worth it (export snapshot)
+        summary = readXml(webFxXmlPath);
+        if (summary.hasExportSnapshot())
+            M2WebFxSummaryBinaryFile.write(binaryFilePath, xmlSize, xmlLastModified, summary);
+        return summary;
+    }
+
+    private static M2WebFxSummary readXml(Path webFxXmlPath) {
+        try (InputStream is = new BufferedInputStream(Files.newInputStream(webFxXmlPath))) {
+            return readXml(is);
+        } catch (NoSuchFileException e) {
+            return emptySummary();
+        } catch (IOException e) {
+            e.printStackTrace();
+            return emptySummary();
+        }
+    }
+
+    private static M2WebFxSummary emptySummary() {
+        return new M2WebFxSummary(new ProjectSummary(), Collections.emptyMap(), Collections.emptyMap(), Collections.emptyMap());
+    }
+
+    private static M2WebFxSummary readXml(InputStream is) {
+        ProjectSummary rootProject = new ProjectSummary();
+        Map<String, ProjectSummary> exportedProjects = new LinkedHashMap<>();
+        Map<String, List<String>> javaPackageUsages = new LinkedHashMap<>();
+        Map<String, List<String>> javaClassUsages = new LinkedHashMap<>();
+        try {
+            XMLStreamReader reader = XmlUtil.createXmlStreamReader(is);
+            try {
+                List<String> path = new ArrayList<>(); // element names from the document element to the current element
+                ProjectSummary scope = null; // the project currently read (root project or exported project)
+                int scopeDepth = 0;
+                while (reader.hasNext()) {
+                    int event = reader.next();
+                    if (event == XMLStreamConstants.END_ELEMENT) {
+                        if (path.size() == scopeDepth && scope != rootProject) {
+                            scope = rootProject;
+                            scopeDepth = 1;
+                        }
+                        path.remove(path.size() - 1);
+                    } else if (event == XMLStreamConstants.START_ELEMENT) {
+                        path.add(reader.getLocalName());
+                        int depth = path.size();
+                        if (depth == 1) {
+                            scope = rootProject;
+                            scopeDepth = 1;
+                            rootProject.recordAttributes(reader);
+                            continue;
+                        }
+                        // Only the elements at 1 or 2 levels below the project element are of interest, except the usages
+                        int relativeDepth = depth - scopeDepth;
+                        if (relativeDepth == 3 && scope == rootProject && "export-snapshot".equals(path.get(1)) && "usages".equals(path.get(2))) {
+                            // export-snapshot/usages/java-package[@name] and java-class[@name]
+                            Map<String, List<String>> usages = "java-package".equals(path.get(3)) ? javaPackageUsages : "java-class".equals(path.get(3)) ? javaClassUsages : null;
+                            String name = reader.getAttributeValue(null, "name");
+                            if (usages != null && name != null) {
+                                List<String> modules = readUsageModules(reader);
+                                usages.putIfAbsent(name, modules);
+                                path.remove(path.size() - 1); // the element end has been consumed
+                            }
+                            continue;
+                        }
+                        if (relativeDepth > 2)
+                            continue;
+                        String relativePath = relativeDepth == 1 ? path.get(depth - 1) : path.get(depth - 2) + '/' + path.get(depth - 1);
+                        if (scope == rootProject && "export-snapshot/project".equals(relativePath)) {
+                            String name = reader.getAttributeValue(null, "name");
+                            if (name != null) {
+                                scope = new ProjectSummary();
+                                scopeDepth = depth;
+                                scope.recordAttributes(reader);
+                                exportedProjects.putIfAbsent(name, scope);
+                            }
+                        } else if (scope.readElement(relativePath, reader))
+                            path.remove(path.size() - 1); // the element end has been consumed
+                    }
+                }
+            } finally {
+                reader.close();
+            }
+        } catch (XMLStreamException e) {
+            e.printStackTrace();
+        }
+        return new M2WebFxSummary(rootProject, exportedProjects, javaPackageUsages, javaClassUsages);
+    }
+
+    // Reads the text content of the module children of the usage element, ending on the usage element end
+    private static List<String> readUsageModules(XMLStreamReader reader) throws XMLStreamException {
+        List<String> modules = new ArrayList<>();
+        for (int depth = 1; depth > 0; ) {
+            int event = reader.next();
+            if (event == XMLStreamConstants.END_ELEMENT)
+                depth--;
+            else if (event == XMLStreamConstants.START_ELEMENT) {
+                if (depth == 1 && "module".equals(reader.getLocalName()))
+                    modules.add(M2MavenPomSummary.readTextContent(reader)); // consumes the module element end
+                else
+                    depth++;
+            }
+        }
+        return modules;
+    }
+}
@@ -0,0 +1,240 @@
+package dev.webfx.cli.modulefiles;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.*;
+import java.util.function.Consumer;
+
+/**
+ * Binary sidecar of a webfx.xml file from the Maven repository, which stores the summary of that file (including its
+ * export snapshot) in a compact form, so that big libraries don't have their export snapshot parsed again from XML on
+ * each run. The sidecar is stored next to the webfx.xml file in the local repository, and is keyed by the size and last
+ * modified time of that file (like ZipIndex), so it is ignored (and written again) as soon as the webfx.xml file changes
+ * (ex: new SNAPSHOT downloaded), without having to read the webfx.xml file itself.
+ * <p>
+ * Format (all integers are unsigned varints, all strings are indexes in the string table):
+ * <pre>
+ * magic "WFXS", format version (1 byte), size and last modified time of the webfx.xml file (2 x 8 bytes)
+ * string table: count, then for each string its UTF-8 length followed by its UTF-8 bytes
+ * summary body (see M2WebFxSummary.encode()), made of string indexes, adjacency lists (count followed by indexes) and
+ * sections (byte length followed by the section content)
+ * </pre>
+ * The reader checks the header with a plain read, and then maps the rest of the file in memory (no copy). Only the
+ * section boundaries are read at this point: the strings and the sections (exported projects, usages) are decoded on
+ * first access, as a run usually reads only a few projects of a big export snapshot.
+ *
+ * @author Bruno Salmon
+ */
+final class M2WebFxSummaryBinaryFile {
+
+    private static final byte[] MAGIC = { 'W', 'F', 'X', 'S' };
+    private static final byte FORMAT_VERSION = 2;
+    private static final int HEADER_LENGTH = MAGIC.length + 1 + 2 * Long.BYTES;
+
+    static Path getBinaryFilePath(Path webFxXmlPath) {
+        return webFxXmlPath.resolveSibling(webFxXmlPath.getFileName() + ".bin");
+    }
+
+    // Returns null if the sidecar doesn't exist, is not valid, or doesn't correspond to the expected webfx.xml file
+    static M2WebFxSummary read(Path binaryFilePath, long xmlSize, long xmlLastModified, Path webFxXmlPath) {
+        if (!Files.exists(binaryFilePath))
+            return null;
+        try (FileChannel channel = FileChannel.open(binaryFilePath, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size < HEADER_LENGTH || size > Integer.MAX_VALUE)
+                return null;
+            // The header is checked before mapping the file, so an outdated sidecar is never mapped (which would
+            // prevent it from being replaced on some platforms such as Windows)
+            ByteBuffer header = ByteBuffer.allocate(HEADER_LENGTH);
+            while (header.hasRemaining())
+                if (channel.read(header) < 0)
+                    return null;
+            header.flip();
+            for (byte b : MAGIC)
+                if (header.get() != b)
+                    return null;
+            if (header.get() != FORMAT_VERSION || header.getLong() != xmlSize || header.getLong() != xmlLastModified)
+                return null;
+            // The mapping remains valid once the channel is closed
+            Decoder decoder = new Decoder(channel.map(FileChannel.MapMode.READ_ONLY, HEADER_LENGTH, size - HEADER_LENGTH));
+            M2WebFxSummary summary = M2WebFxSummary.decode(decoder, webFxXmlPath);
+            return decoder.buffer.hasRemaining() ? null : summary;
+        } catch (IOException | RuntimeException e) { // RuntimeException = corrupted file (underflow, bad index, etc...)
+            return null;
+        }
+    }
+
+    static void write(Path binaryFilePath, long xmlSize, long xmlLastModified, M2WebFxSummary summary) {
+        Encoder encoder = new Encoder();
+        summary.encode(encoder);
+        // Writing into a temporary file first, so a concurrent reader never sees a partially written sidecar
+        Path tmpPath = binaryFilePath.resolveSibling(binaryFilePath.getFileName() + ".tmp");
+        try {
+            try (OutputStream os = Files.newOutputStream(tmpPath)) {
+                ByteBuffer header = ByteBuffer.allocate(HEADER_LENGTH);
+                header.put(MAGIC).put(FORMAT_VERSION).putLong(xmlSize).putLong(xmlLastModified);
+                os.write(header.array());
+                ByteArrayOutputStream table = new ByteArrayOutputStream();
+                writeVarInt(table, encoder.strings.size());
+                for (String s : encoder.strings.keySet()) {
+                    byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+                    writeVarInt(table, bytes.length);
+                    table.write(bytes);
+                }
+                table.writeTo(os);
+                encoder.body.writeTo(os);
+            }
+            Files.move(tmpPath, binaryFilePath, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            // Not a problem, the summary will just be read again from XML next time
+            try {
+                Files.deleteIfExists(tmpPath);
+            } catch (IOException ignored) {
+            }
+        }
+    }
+
+    private static void writeVarInt(ByteArrayOutputStream out, int value) {
+        while ((value & ~0x7F) != 0) {
+            out.write((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.write(value);
+    }
+
+    static final class Encoder {
+        private final Map<String, Integer> strings; // string table (string -> index), shared with the section encoders
+        private final ByteArrayOutputStream body = new ByteArrayOutputStream();
+
+        private Encoder() {
+            this(new LinkedHashMap<>());
+        }
+
+        private Encoder(Map<String, Integer> strings) {
+            this.strings = strings;
+        }
+
+        void writeVarInt(int value) {
+            M2WebFxSummaryBinaryFile.writeVarInt(body, value);
+        }
+
+        void writeBoolean(boolean value) {
+            body.write(value ? 1 : 0);
+        }
+
+        void writeString(String s) {
+            writeVarInt(strings.computeIfAbsent(s, k -> strings.size()));
+        }
+
+        // Nullable strings are encoded with index + 1 (0 = null)
+        void writeNullableString(String s) {
+            writeVarInt(s == null ? 0 : strings.computeIfAbsent(s, k -> strings.size()) + 1);
+        }
+
+        void writeStrings(Collection<String> list) {
+            writeVarInt(list.size());
+            for (String s : list)
+                writeString(s);
+        }
+
+        // Writes a section that the decoder can skip and decode later (see Decoder.readSection())
+        void writeSection(Consumer<Encoder> sectionWriter) {
+            Encoder section = new Encoder(strings);
+            sectionWriter.accept(section);
+            writeVarInt(section.body.size());
+            body.writeBytes(section.body.toByteArray());
+        }
+    }
+
+    static final class Decoder {
+        private final ByteBuffer buffer;
+        private final int end; // end position of the section read by this decoder
+        private final int[] stringPositions; // position of the UTF-8 bytes of each string in the string table
+        private final int[] stringLengths; // length of the UTF-8 bytes of each string
+        private final String[] strings; // strings decoded so far (on demand)
+
+        private Decoder(ByteBuffer buffer) {
+            this.buffer = buffer;
+            end = buffer.limit();
+            // Reading only the string boundaries, the strings themselves are decoded on first access
+            int count = readVarInt();
+            stringPositions = new int[count];
+            stringLengths = new int[count];
+            strings = new String[count];
+            for (int i = 0; i < count; i++) {
+                stringLengths[i] = readVarInt();
+                stringPositions[i] = buffer.position();
+                buffer.position(buffer.position() + stringLengths[i]); // throws IllegalArgumentException if truncated
+            }
+        }
+
+        private Decoder(Decoder parent, int position, int length) {
+            // Each section decoder has its own buffer position, so sections can be decoded independently
+            buffer = parent.buffer.duplicate().position(position);
+            end = position + length;
+            stringPositions = parent.stringPositions;
+            stringLengths = parent.stringLengths;
+            strings = parent.strings;
+        }
+
+        int readVarInt() {
+            int value = 0;
+            for (int shift = 0; shift < 32; shift += 7) {
+                byte b = buffer.get();
+                value |= (b & 0x7F) << shift;
+                if (b >= 0)
+                    return value;
+            }
+            throw new BufferUnderflowException(); // malformed varint
+        }
+
+        boolean readBoolean() {
+            return buffer.get() != 0;
+        }
+
+        String readString() {
+            return getString(readVarInt());
+        }
+
+        String readNullableString() {
+            int index = readVarInt();
+            return index == 0 ? null : getString(index - 1);
+        }
+
+        <C extends Collection<String>> C readStrings(C collection) {
+            for (int n = readVarInt(); n > 0; n--)
+                collection.add(readString());
+            return collection;
+        }
+
+        // Skips the next section and returns a decoder for it (to be used later)
+        Decoder readSection() {
+            int length = readVarInt();
+            int position = buffer.position();
+            buffer.position(position + length); // throws IllegalArgumentException if truncated
+            return new Decoder(this, position, length);
+        }
+
+        // To be called once the section is decoded, to check its content has been entirely read
+        void checkEnd() {
+            if (buffer.position() != end)
+                throw new IllegalStateException("Corrupted section");
+        }
+
+        private String getString(int index) {
+            String s = strings[index];
+            if (s == null) { // Concurrent decoding of the same string is harmless (same value)
+                byte[] bytes = new byte[stringLengths[index]];
+                buffer.duplicate().position(stringPositions[index]).get(bytes);
+                strings[index] = s = new String(bytes, StandardCharsets.UTF_8);
+            }
+            return s;
+        }
+    }
+}
@@ -1,22 +1,69 @@
 package dev.webfx.cli.modulefiles.abstr;
 
+import dev.webfx.cli.util.textfile.TextFileReaderWriter;
 import org.w3c.dom.Document;
 
+import java.nio.file.Path;
+
 public interface DevXmlModuleFile extends PathBasedXmlModuleFile, DevModuleFile {
 
     default void updateAndWrite() {
-        if (getModuleFilePath() == null)
+        Path moduleFilePath = getModuleFilePath();
+        if (moduleFilePath == null)
+            return;
+        // Skipping the whole generation (DOM construction, update and serialization) if none of the inputs changed
+        // since the last generation and if the file is still the same as generated (see UpdateFingerprints)
+        String inputsFingerprint = computeUpdateInputsFingerprint();
+        if (inputsFingerprint != null && UpdateFingerprints.isUpToDate(moduleFilePath, inputsFingerprint))
             return;
         boolean recreate = recreateOnUpdateAndWrite();
-        if (recreate)
+        if (recreate) {
+            // Generating the content directly (without DOM) if the module file supports it
+            String content = generateRecreatedXmlContent();
+            if (content != null) {
+                TextFileReaderWriter.writeTextFileIfNewOrModified(content, moduleFilePath);
+                if (inputsFingerprint != null)
+                    UpdateFingerprints.record(moduleFilePath, inputsFingerprint, content);
+                return;
+            }
             createDocument(); // The document is created AND UPDATED (so no need to call updateDocument() a second time)
+        }
+        if (!recreate)
+            markDocumentModified();
         Document document = getDocument();
-        if (document != null && (recreate || updateDocument(document)))
+        if (document == null || !(recreate || updateDocument(document))) {
+            if (inputsFingerprint != null)
+                UpdateFingerprints.forget(moduleFilePath);
+        } else if (inputsFingerprint == null)
             writeFile();
+        else {
+            String content = getXmlContent();
+            TextFileReaderWriter.writeTextFileIfNewOrModified(content, moduleFilePath);
+            UpdateFingerprints.record(moduleFilePath, inputsFingerprint, content);
+        }
     }
 
     default boolean recreateOnUpdateAndWrite() {
         return false;
     }
 
+    /**
+     * Returns the content of the recreated file generated directly without DOM, or null if the file doesn't support
+     * this (default) or can't generate this particular content, in which case the DOM is created and updated instead.
+     * The generated content must be identical to the one produced through the DOM.
+     */
+    default String generateRecreatedXmlContent() {
+        return null;
+    }
+
+    /**
+     * Returns a fingerprint of all the inputs used to generate this file (see UpdateFingerprints.newBuilder()), or null
+     * if the file doesn't support this short-circuit (default). The fingerprint must capture everything that can change
+     * the generated content (apart from the file itself when it's updated rather than recreated, because its content
+     * is checked anyway), otherwise an outdated file would be kept.
+     */
+    default String computeUpdateInputsFingerprint() {
+        return null;
+    }
+
 }
@@ -0,0 +1,167 @@
+package dev.webfx.cli.modulefiles.abstr;
+
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.Node;
+
+import java.util.*;
+
+/**
+ * Hash index of the export snapshot section of a webfx.xml document, built in a single walk of that section the first
+ * time it's needed, and then attached to the document (as user data). It serves the export snapshot queries (exported
+ * project elements and their packages, java package and class usages) in constant time, instead of running an XPath
+ * predicate over the whole snapshot for each query (which was quadratic when registering all the usages of a big
+ * snapshot).
+ * <p>
+ * The index must be invalidated if the export snapshot section of the document is modified (see invalidate()).
+ *
+ * @author Bruno Salmon
+ */
+public final class ExportSnapshotIndex {
+
+    private static final String USER_DATA_KEY = "webfx.exportSnapshotIndex";
+    private static final ExportSnapshotIndex EMPTY = new ExportSnapshotIndex();
+
+    private final Map<String, Project> projects = new LinkedHashMap<>(); // in the snapshot order
+    private final Map<String, Usage> javaPackageUsages = new LinkedHashMap<>();
+    private final Map<String, Usage> javaClassUsages = new LinkedHashMap<>();
+
+    private static final class Project {
+        private final Element projectElement;
+        private final List<String> exportedPackages; // exported-packages/package
+        private final List<String> sourcePackages; // source-packages/package
+
+        private Project(Element projectElement) {
+            this.projectElement = projectElement;
+            exportedPackages = packages(projectElement, "exported-packages");
+            sourcePackages = packages(projectElement, "source-packages");
+        }
+
+        private static List<String> packages(Element projectElement, String tagName) {
+            List<String> packages = new ArrayList<>();
+            for (Element packagesElement : childElements(projectElement, tagName))
+                for (Element packageElement : childElements(packagesElement, "package"))
+                    packages.add(packageElement.getTextContent());
+            return packages;
+        }
+    }
+
+    private static final class Usage {
+        private final Element usageElement;
+        private final List<String> modules;
+
+        private Usage(Element usageElement, List<String> modules) {
+            this.usageElement = usageElement;
+            this.modules = modules;
+        }
+    }
+
+    public static ExportSnapshotIndex of(Document document) {
+        if (document == null)
+            return EMPTY;
+        ExportSnapshotIndex index = (ExportSnapshotIndex) document.getUserData(USER_DATA_KEY);
+        if (index == null) {
+            index = new ExportSnapshotIndex();
+            index.indexDocument(document);
+            document.setUserData(USER_DATA_KEY, index, null);
+        }
+        return index;
+    }
+
+    public static void invalidate(Document document) {
+        if (document != null)
+            document.setUserData(USER_DATA_KEY, null, null);
+    }
+
+    private void indexDocument(Document document) {
+        // /project/export-snapshot
+        Element projectElement = document.getDocumentElement();
+        if (projectElement == null || !"project".equals(projectElement.getNodeName()))
+            return;
+        for (Element exportSnapshot : childElements(projectElement, "export-snapshot")) {
+            // /project/export-snapshot/project[@name]
+            for (Element project : childElements(exportSnapshot, "project")) {
+                if (project.hasAttribute("name") && !projects.containsKey(project.getAttribute("name")))
+                    projects.put(project.getAttribute("name"), new Project(project));
+            }
+            // /project/export-snapshot/usages/java-package[@name] and java-class[@name]
+            for (Element usages : childElements(exportSnapshot, "usages")) {
+                indexUsages(usages, "java-package", javaPackageUsages);
+                indexUsages(usages, "java-class", javaClassUsages);
+            }
+        }
+    }
+
+    private static void indexUsages(Element usagesElement, String tagName, Map<String, Usage> usagesMap) {
+        for (Element usage : childElements(usagesElement, tagName)) {
+            if (usage.hasAttribute("name") && !usagesMap.containsKey(usage.getAttribute("name"))) {
+                List<String> modules = new ArrayList<>();
+                for (Element module : childElements(usage, "module"))
+                    modules.add(module.getTextContent());
+                usagesMap.put(usage.getAttribute("name"), new Usage(usage, modules));
+            }
+        }
+    }
+
+    private static List<Element> childElements(Element parent, String tagName) {
+        List<Element> elements = new ArrayList<>();
+        for (Node child = parent.getFirstChild(); child != null; child = child.getNextSibling())
+            if (child instanceof Element && tagName.equals(child.getNodeName()))
+                elements.add((Element) child);
+        return elements;
+    }
+
+    public Element getProjectElement(String name) {
+        Project project = projects.get(name);
+        return project == null ? null : project.projectElement;
+    }
+
+    public String getFirstProjectName() {
+        return projects.isEmpty() ? null : projects.keySet().iterator().next();
+    }
+
+    // The packages of a project element are returned only if it is the one indexed for that project (otherwise null)
+
+    public List<String> getExportedPackages(Element projectElement) {
+        Project project = getProject(projectElement);
+        return project == null ? null : project.exportedPackages;
+    }
+
+    public List<String> getSourcePackages(Element projectElement) {
+        Project project = getProject(projectElement);
+        return project == null ? null : project.sourcePackages;
+    }
+
+    private Project getProject(Element projectElement) {
+        Project project = projectElement == null ? null : projects.get(projectElement.getAttribute("name"));
+        return project != null && project.projectElement == projectElement ? project : null;
+    }
+
+    public Collection<String> getJavaPackagesWithUsage() {
+        return javaPackageUsages.keySet();
+    }
+
+    public Element getJavaPackageUsageElement(String javaPackage) {
+        Usage usage = javaPackageUsages.get(javaPackage);
+        return usage == null ? null : usage.usageElement;
+    }
+
+    public List<String> getModulesUsingJavaPackage(String javaPackage) {
+        Usage usage = javaPackageUsages.get(javaPackage);
+        return usage == null ? Collections.emptyList() : usage.modules;
+    }
+
+    public Collection<String> getJavaClassesWithUsage() {
+        return javaClassUsages.keySet();
+    }
+
+    public Element getJavaClassUsageElement(String javaClass) {
+        Usage usage = javaClassUsages.get(javaClass);
+        return usage == null ? null : usage.usageElement;
+    }
+
+    public List<String> getModulesUsingJavaClass(String javaClass) {
+        Usage usage = javaClassUsages.get(javaClass);
+        return usage == null ? Collections.emptyList() : usage.modules;
+    }
+}
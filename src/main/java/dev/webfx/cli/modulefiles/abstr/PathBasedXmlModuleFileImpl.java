@@ -2,6 +2,7 @@ package dev.webfx.cli.modulefiles.abstr;
 
 import dev.webfx.cli.core.Module;
 import org.w3c.dom.Document;
+import org.w3c.dom.Element;
 
 import java.nio.file.Path;
 
@@ -12,6 +13,9 @@ public abstract class PathBasedXmlModuleFileImpl extends XmlModuleFileImpl imple
 
     private final Path moduleFilePath;
     private boolean readFileIfExists;
+    // Entry of the document while it's held by the XML document cache (i.e. read from the file and not modified since)
+    private XmlDocumentCache.Entry cacheEntry;
+    private boolean readingFile, documentReleased, documentModified;
 
 
     public PathBasedXmlModuleFileImpl(Module module, Path moduleFilePath) {
@@ -26,15 +30,78 @@ public abstract class PathBasedXmlModuleFileImpl extends XmlModuleFileImpl imple
 
     @Override
     public Document getDocument() {
-        if (document == null && readFileIfExists)
-            readFile();
+        Document document;
+        boolean registered = false;
+        synchronized (this) {
+            if (this.document == null && readFileIfExists) {
+                readingFile = true;
+                try {
+                    readFile();
+                } finally {
+                    readingFile = false;
+                }
+                // A document read after a modification request is kept (it's about to be modified)
+                if (this.document != null && !documentModified) {
+                    cacheEntry = XmlDocumentCache.register(this, this.document, documentReleased);
+                    registered = true;
+                }
+            } else if (cacheEntry != null)
+                cacheEntry.touch();
+            document = this.document;
+        }
+        if (registered) // Done outside this module file lock, as this may release the documents of other module files
+            XmlDocumentCache.evictOverBudget();
         return document;
     }
 
     @Override
     public void setDocument(Document document) {
-        super.setDocument(document);
-        readFileIfExists = false;
+        synchronized (this) {
+            // A document set from outside (and not by readFile()) is not a clean copy of the file, so it's kept
+            if (!readingFile)
+                unregisterCacheEntry();
+            super.setDocument(document);
+            readFileIfExists = false;
+        }
+    }
+
+    @Override
+    public Element getModuleElement() {
+        while (true) {
+            // Reading the file again if the document has been released (which also resets the module element, ex: the
+            // exported project element of M2WebFxModuleFile)
+            Document document = getDocument();
+            synchronized (this) {
+                if (document == this.document) // otherwise the document has just been released again
+                    return moduleElement != null ? moduleElement : document == null ? null : document.getDocumentElement();
+            }
+        }
+    }
+
+    @Override
+    public synchronized void markDocumentModified() {
+        // The document is now pinned to this module file (and the next one read, if it's currently released)
+        documentModified = true;
+        unregisterCacheEntry();
+    }
+
+    private void unregisterCacheEntry() {
+        if (cacheEntry != null) {
+            XmlDocumentCache.unregister(cacheEntry);
+            cacheEntry = null;
+        }
+    }
+
+    // Called by the XML document cache to release the clean document of this module file (which will be read again if
+    // requested)
+    synchronized void releaseDocument(XmlDocumentCache.Entry entry) {
+        if (cacheEntry != entry) // The document has been modified or replaced in the meantime
+            return;
+        cacheEntry = null;
+        document = null;
+        if (moduleElement != null && moduleElement.getOwnerDocument() == entry.getDocument())
+            moduleElement = null;
+        readFileIfExists = documentReleased = true;
     }
 
     @Override
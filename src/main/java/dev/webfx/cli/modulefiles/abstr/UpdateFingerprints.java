@@ -0,0 +1,138 @@
+package dev.webfx.cli.modulefiles.abstr;
+
+import dev.webfx.cli.WebFxCLI;
+import dev.webfx.cli.core.WebFXHiddenFolder;
+import dev.webfx.cli.util.digest.DigestUtil;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.util.Properties;
+
+/**
+ * Records, for each file generated by updateAndWrite(), a fingerprint of all the inputs that fed its generation
+ * (computed by the module file, see DevXmlModuleFile.computeUpdateInputsFingerprint()) together with the hash of the
+ * generated content. These records are stored as sidecar files in the WebFX hidden folder (one per generated file).
+ * <p>
+ * A generated file is considered up-to-date only if both its inputs fingerprint is unchanged and its content on disk
+ * still matches the recorded hash (so a manual edit, a failed transaction or a deleted file always causes a new
+ * generation). The CLI version is part of every fingerprint, so a new version of the CLI (or of its templates)
+ * invalidates all the records.
+ *
+ * @author Bruno Salmon
+ */
+public final class UpdateFingerprints {
+
+    private static final Path FINGERPRINTS_FOLDER = WebFXHiddenFolder.getCliSubFolder("fingerprints");
+    private static final String INPUTS_KEY = "inputs";
+    private static final String OUTPUT_KEY = "output";
+    private static String CLI_VERSION;
+
+    public static Builder newBuilder() {
+        if (CLI_VERSION == null) {
+            try {
+                CLI_VERSION = WebFxCLI.getVersion();
+            } catch (RuntimeException e) {
+                CLI_VERSION = "unknown";
+            }
+        }
+        return new Builder().add("cli", CLI_VERSION);
+    }
+
+    public static boolean isUpToDate(Path generatedFilePath, String inputsFingerprint) {
+        Properties record = readRecord(generatedFilePath);
+        if (record == null || !inputsFingerprint.equals(record.getProperty(INPUTS_KEY)) || !Files.exists(generatedFilePath))
+            return false;
+        try {
+            String content = Files.readString(generatedFilePath, StandardCharsets.UTF_8);
+            return hashContent(content).equals(record.getProperty(OUTPUT_KEY));
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    public static void record(Path generatedFilePath, String inputsFingerprint, String generatedContent) {
+        Properties record = new Properties();
+        record.setProperty(INPUTS_KEY, inputsFingerprint);
+        record.setProperty(OUTPUT_KEY, hashContent(generatedContent));
+        Path recordPath = getRecordPath(generatedFilePath);
+        try {
+            Files.createDirectories(recordPath.getParent());
+            try (Writer writer = Files.newBufferedWriter(recordPath, StandardCharsets.UTF_8)) {
+                record.store(writer, generatedFilePath.toAbsolutePath().toString());
+            }
+        } catch (IOException e) {
+            // Not a problem, the file will just be generated again next time
+        }
+    }
+
+    public static void forget(Path generatedFilePath) {
+        try {
+            Files.deleteIfExists(getRecordPath(generatedFilePath));
+        } catch (IOException ignored) {
+        }
+    }
+
+    private static Properties readRecord(Path generatedFilePath) {
+        Path recordPath = getRecordPath(generatedFilePath);
+        if (!Files.exists(recordPath))
+            return null;
+        try (Reader reader = Files.newBufferedReader(recordPath, StandardCharsets.UTF_8)) {
+            Properties record = new Properties();
+            record.load(reader);
+            return record;
+        } catch (IOException | IllegalArgumentException e) { // IllegalArgumentException = malformed record
+            return null;
+        }
+    }
+
+    private static Path getRecordPath(Path generatedFilePath) {
+        return FINGERPRINTS_FOLDER.resolve(new Builder().add("path", generatedFilePath.toAbsolutePath().normalize()).build() + ".properties");
+    }
+
+    private static String hashContent(String content) {
+        // Linefeeds are normalised as TextFileReaderWriter ignores \r when comparing contents
+        return new Builder().add("content", content.replace("\r", "")).build();
+    }
+
+    public static final class Builder {
+        private final MessageDigest digest;
+
+        private Builder() {
+            digest = DigestUtil.newSha256Digest();
+        }
+
+        public Builder add(String key, Object value) {
+            // Each entry is delimited so that different sequences of entries can't produce the same digest input
+            update(key);
+            update(String.valueOf(value));
+            return this;
+        }
+
+        public Builder addFile(String key, Path path) {
+            update(key);
+            try {
+                digest.update(path != null && Files.exists(path) ? Files.readAllBytes(path) : new byte[0]);
+                update(path != null && Files.exists(path) ? "present" : "missing");
+            } catch (IOException e) {
+                update("unreadable");
+            }
+            return this;
+        }
+
+        private void update(String s) {
+            byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+            digest.update(Integer.toString(bytes.length).getBytes(StandardCharsets.US_ASCII));
+            digest.update((byte) ':');
+            digest.update(bytes);
+        }
+
+        public String build() {
+            return DigestUtil.toHex(digest.digest());
+        }
+    }
+}
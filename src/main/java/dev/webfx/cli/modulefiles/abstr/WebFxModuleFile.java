@@ -5,10 +5,12 @@ import dev.webfx.cli.modulefiles.ArtifactResolver;
 import dev.webfx.cli.util.textfile.ResourceTextFileReader;
 import dev.webfx.cli.util.xml.XmlUtil;
 import dev.webfx.lib.reusablestream.ReusableStream;
-import org.w3c.dom.Attr;
 import org.w3c.dom.Document;
+import org.w3c.dom.Element;
 import org.w3c.dom.Node;
 
+import java.util.List;
+
 /**
  * @author Bruno Salmon
  */
@@ -51,7 +53,9 @@ public interface WebFxModuleFile extends XmlGavModuleFile {
     }
 
     default ReusableStream<String> getExplicitExportedPackages() {
-        return lookupNodeListTextContent("exported-packages/package");
+        // Served by the export snapshot index if this module is described in an export snapshot
+        List<String> exportedPackages = getExportSnapshotIndex().getExportedPackages(getModuleElement());
+        return exportedPackages != null ? ReusableStream.fromIterable(exportedPackages) : lookupNodeListTextContent("exported-packages/package");
     }
 
     default boolean areSourcePackagesAutomaticallyExported() {
@@ -149,7 +153,9 @@ public interface WebFxModuleFile extends XmlGavModuleFile {
     }
 
     default ReusableStream<String> javaSourcePackagesFromExportSnapshot() {
-        return lookupNodeListTextContent("source-packages/package");
+        // Same as getExplicitExportedPackages()
+        List<String> sourcePackages = getExportSnapshotIndex().getSourcePackages(getModuleElement());
+        return sourcePackages != null ? ReusableStream.fromIterable(sourcePackages) : lookupNodeListTextContent("source-packages/package");
     }
 
     default boolean hasDetectedUsedBySourceModulesFromExportSnapshot() {
@@ -168,12 +174,16 @@ public interface WebFxModuleFile extends XmlGavModuleFile {
         return lookupNodeListTextContent("used-services/optional-service");
     }
 
+    default ExportSnapshotIndex getExportSnapshotIndex() {
+        return ExportSnapshotIndex.of(getDocument());
+    }
+
     default Node javaPackageUsageNodeFromExportSnapshot(String javaPackage) {
-        return lookupNode("/project/export-snapshot/usages/java-package[@name='" + javaPackage + "']");
+        return getExportSnapshotIndex().getJavaPackageUsageElement(javaPackage);
     }
 
     default ReusableStream<String> modulesUsingJavaPackageFromExportSnapshot(String javaPackage) {
-        return modulesUsingJavaPackageFromExportSnapshot(javaPackageUsageNodeFromExportSnapshot(javaPackage));
+        return ReusableStream.fromIterable(getExportSnapshotIndex().getModulesUsingJavaPackage(javaPackage));
     }
 
     default ReusableStream<String> modulesUsingJavaPackageFromExportSnapshot(Node javaPackageUsageNode) {
@@ -181,11 +191,11 @@ public interface WebFxModuleFile extends XmlGavModuleFile {
     }
 
     default Node javaClassUsageNodeFromExportSnapshot(String javaClass) {
-        return lookupNode("/project/export-snapshot/usages/java-class[@name='" + javaClass + "']");
+        return getExportSnapshotIndex().getJavaClassUsageElement(javaClass);
     }
 
     default ReusableStream<String> modulesUsingJavaClassFromExportSnapshot(String javaClass) {
-        return modulesUsingJavaClassFromExportSnapshot(javaClassUsageNodeFromExportSnapshot(javaClass));
+        return ReusableStream.fromIterable(getExportSnapshotIndex().getModulesUsingJavaClass(javaClass));
     }
 
     default ReusableStream<String> modulesUsingJavaClassFromExportSnapshot(Node javaClassUsageNode) {
@@ -211,11 +221,8 @@ public interface WebFxModuleFile extends XmlGavModuleFile {
     }
 
     default void setExecutable(boolean executable) {
-        if (executable != isExecutable()) {
-            Attr attribute = getOrCreateDocument().createAttribute("executable");
-            attribute.setValue(String.valueOf(executable));
-            getModuleElement().getAttributes().setNamedItem(attribute);
-        }
+        if (executable != isExecutable())
+            ((Element) getOrCreateXmlNode()).setAttribute("executable", String.valueOf(executable));
     }
 
     default void addProvider(String spiClassName, String providerClassName) {
@@ -0,0 +1,159 @@
+package dev.webfx.cli.modulefiles.abstr;
+
+import org.w3c.dom.Document;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Memory-bounded cache of the XML documents read from the module files (see PathBasedXmlModuleFileImpl). Without it,
+ * every module file keeps its DOM alive until the end of the CLI execution, which is a problem for big workspaces (and
+ * for the libraries sharing a big export snapshot, as each module file parses its own DOM of that snapshot).
+ * <p>
+ * Only the clean documents (read from the file and not modified since) are held by this cache, with an estimated size.
+ * When the total estimated size exceeds the budget, the least recently used documents (CLOCK approximation: an access
+ * just sets a flag) are released by their module file, which will transparently read the file again if its document
+ * is requested later. Before any modification (see XmlDocumentApi.markDocumentModified(), called by the XmlNodeApi
+ * mutators and by the update of the module files), the document leaves the cache and stays pinned to its module file,
+ * so modifications are never lost.
+ * <p>
+ * The budget can be set in MB with the system property dev.webfx.cli.xmlDocumentCacheBudgetMB (default = a quarter of
+ * the max heap size).
+ *
+ * @author Bruno Salmon
+ */
+public final class XmlDocumentCache {
+
+    private static final long BUDGET_BYTES = computeBudgetBytes();
+    // Measured DOM memory footprint (Xerces) = about 5 times the XML file size + a fixed overhead per document
+    private static final int DOM_SIZE_FACTOR = 5;
+    private static final int DOM_FIXED_SIZE = 8 * 1024;
+
+    // Clean entries in the CLOCK order (the oldest first), guarded by the class lock
+    private static final LinkedHashSet<Entry> ENTRIES = new LinkedHashSet<>();
+    private static long USED_BYTES;
+
+    private static final LongAdder HITS = new LongAdder();
+    private static final LongAdder MISSES = new LongAdder();
+    private static final LongAdder EVICTIONS = new LongAdder();
+    private static final LongAdder RELOADS = new LongAdder();
+
+    private static long computeBudgetBytes() {
+        String budgetMB = System.getProperty("dev.webfx.cli.xmlDocumentCacheBudgetMB");
+        if (budgetMB != null) {
+            try {
+                return Long.parseLong(budgetMB.trim()) * 1024 * 1024;
+            } catch (NumberFormatException ignored) {
+            }
+        }
+        return Runtime.getRuntime().maxMemory() / 4;
+    }
+
+    /**
+     * Entry of a clean document read from a module file.
+     */
+    static final class Entry {
+        private final PathBasedXmlModuleFileImpl moduleFile;
+        private final Document document;
+        private final long estimatedSize;
+        private volatile boolean referenced; // CLOCK flag, set on each access
+        private boolean evicted; // guarded by the class lock
+
+        private Entry(PathBasedXmlModuleFileImpl moduleFile, Document document, long estimatedSize) {
+            this.moduleFile = moduleFile;
+            this.document = document;
+            this.estimatedSize = estimatedSize;
+        }
+
+        void touch() {
+            referenced = true;
+            HITS.increment();
+        }
+
+        Document getDocument() {
+            return document;
+        }
+    }
+
+    // Called by the module file each time it reads its file. The module file must then call evictOverBudget() (without
+    // lock).
+    static Entry register(PathBasedXmlModuleFileImpl moduleFile, Document document, boolean reload) {
+        MISSES.increment();
+        if (reload)
+            RELOADS.increment();
+        File file = moduleFile.getModuleFile();
+        Entry entry = new Entry(moduleFile, document, (file == null ? 0 : DOM_SIZE_FACTOR * file.length()) + DOM_FIXED_SIZE);
+        entry.referenced = true; // so the document just read is not the first one evicted
+        synchronized (XmlDocumentCache.class) {
+            ENTRIES.add(entry);
+            USED_BYTES += entry.estimatedSize;
+        }
+        return entry;
+    }
+
+    static void evictOverBudget() {
+        List<Entry> victims = null;
+        synchronized (XmlDocumentCache.class) {
+            // CLOCK sweep from the oldest entry: the entries accessed since the last sweep get a second chance (their
+            // flag is cleared and they are moved at the end), so each entry is visited at most twice.
+            // The last document is never evicted (even if it exceeds the budget alone) to prevent re-reading it again
+            for (int visits = 2 * ENTRIES.size(); USED_BYTES > BUDGET_BYTES && ENTRIES.size() > 1 && visits > 0; visits--) {
+                Entry e = ENTRIES.iterator().next();
+                ENTRIES.remove(e);
+                if (e.referenced) {
+                    e.referenced = false;
+                    ENTRIES.add(e);
+                } else {
+                    e.evicted = true;
+                    USED_BYTES -= e.estimatedSize;
+                    if (victims == null)
+                        victims = new ArrayList<>();
+                    victims.add(e);
+                }
+            }
+        }
+        // The documents are released outside the cache lock, as this requires the lock of their module file
+        if (victims != null) {
+            EVICTIONS.add(victims.size());
+            for (Entry victim : victims)
+                victim.moduleFile.releaseDocument(victim);
+        }
+    }
+
+    // Called by the module file when its document is modified or replaced (so it's not held by the cache anymore)
+    static void unregister(Entry entry) {
+        synchronized (XmlDocumentCache.class) {
+            if (!entry.evicted && ENTRIES.remove(entry))
+                USED_BYTES -= entry.estimatedSize;
+        }
+    }
+
+    public static long getHitCount() {
+        return HITS.sum();
+    }
+
+    public static long getMissCount() {
+        return MISSES.sum();
+    }
+
+    public static long getEvictionCount() {
+        return EVICTIONS.sum();
+    }
+
+    public static long getReloadCount() {
+        return RELOADS.sum();
+    }
+
+    public static String getStatistics() {
+        long usedBytes, count;
+        synchronized (XmlDocumentCache.class) {
+            usedBytes = USED_BYTES;
+            count = ENTRIES.size();
+        }
+        return getHitCount() + " hits, " + getMissCount() + " misses (" + getReloadCount() + " reloads), " + getEvictionCount()
+                + " evictions, " + count + " clean documents cached (" + usedBytes / 1024 + " KB estimated / " + BUDGET_BYTES / 1024 + " KB budget)";
+    }
+}
@@ -32,7 +32,7 @@ public interface XmlModuleFile extends ModuleFile, XmlDocumentApi {
 
     default ReusableStream<ModuleDependency> lookupDependencies(String xPathExpression, ModuleDependency.Type type, String defaultScope) {
         return XmlUtil.nodeListToReusableStream(lookupNodeList(xPathExpression), node ->
-                new ModuleDependency(
+                ModuleDependency.createDependency(
                         getModule(),
                         getProjectModule().getRootModule().searchRegisteredModule(node.getTextContent()),
                         type,
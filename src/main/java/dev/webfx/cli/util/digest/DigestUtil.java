@@ -0,0 +1,31 @@
+package dev.webfx.cli.util.digest;
+
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/**
+ * SHA-256 digests in their hexadecimal form, as stored by the CLI caches (ex: update fingerprints, dependency trees).
+ *
+ * @author Bruno Salmon
+ */
+public final class DigestUtil {
+
+    public static MessageDigest newSha256Digest() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) { // Never happens (SHA-256 is supported by every Java platform)
+            throw new RuntimeException(e);
+        }
+    }
+
+    public static String sha256Hex(byte[] bytes) {
+        return toHex(newSha256Digest().digest(bytes));
+    }
+
+    public static String toHex(byte[] digest) {
+        StringBuilder sb = new StringBuilder(digest.length * 2);
+        for (byte b : digest)
+            sb.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+        return sb.toString();
+    }
+}
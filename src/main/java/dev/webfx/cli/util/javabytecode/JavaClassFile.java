@@ -0,0 +1,248 @@
+package dev.webfx.cli.util.javabytecode;
+
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Minimal reader of a java .class file, extracting what the source code analyzers extract from the java source files
+ * (see JavaCodePackagesFinder, RequiredJavaServicesFinder and OptionalJavaServicesFinder), but from the bytecode:
+ * <ul>
+ * <li>the classes referenced by this class (= the CONSTANT_Class entries of its constant pool, and the classes
+ * appearing in the descriptors and generic signatures of its fields and methods, as they are imported in the source
+ * code, except the classes generated by the compiler for lambdas, string concatenations and records)</li>
+ * <li>the required services (= the class constants loaded just before a call to SingleServiceProvider.getProvider())</li>
+ * <li>the optional services (= the class constants loaded just before a call to ServiceLoader.load(), unless the
+ * service is also required by this class, as the source analyzer ignores the ServiceLoader.load() calls made in the
+ * SingleServiceProvider.getProvider() calls)</li>
+ * </ul>
+ * Only the constant pool and the code of the methods are read, all other information is skipped.
+ *
+ * @author Bruno Salmon
+ */
+public final class JavaClassFile {
+
+    private static final int CONSTANT_Utf8 = 1, CONSTANT_Integer = 3, CONSTANT_Float = 4, CONSTANT_Long = 5,
+            CONSTANT_Double = 6, CONSTANT_Class = 7, CONSTANT_String = 8, CONSTANT_Fieldref = 9, CONSTANT_Methodref = 10,
+            CONSTANT_InterfaceMethodref = 11, CONSTANT_NameAndType = 12, CONSTANT_MethodHandle = 15,
+            CONSTANT_MethodType = 16, CONSTANT_Dynamic = 17, CONSTANT_InvokeDynamic = 18, CONSTANT_Module = 19,
+            CONSTANT_Package = 20;
+
+    private static final int LDC = 0x12, LDC_W = 0x13, INVOKESTATIC = 0xb8, TABLESWITCH = 0xaa, LOOKUPSWITCH = 0xab, WIDE = 0xc4, IINC = 0x84;
+
+    // Length of each instruction (opcode included), 0 for the variable length instructions (switches & wide)
+    private static final byte[] INSTRUCTION_LENGTHS = new byte[256];
+
+    static {
+        Arrays.fill(INSTRUCTION_LENGTHS, (byte) 1);
+        setInstructionLength(2, 0x10, 0x12, 0xa9, 0xbc); // bipush, ldc, ret, newarray
+        setInstructionLength(2, 0x15, 0x16, 0x17, 0x18, 0x19, 0x36, 0x37, 0x38, 0x39, 0x3a); // loads & stores
+        setInstructionLength(3, 0x11, 0x13, 0x14, IINC, 0xbb, 0xbd, 0xc0, 0xc1, 0xc6, 0xc7); // sipush, ldc_w, ldc2_w, iinc, new, anewarray, checkcast, instanceof, ifnull, ifnonnull
+        for (int opcode = 0x99; opcode <= 0xa8; opcode++) // if<cond>, if_<cmp>, goto, jsr
+            INSTRUCTION_LENGTHS[opcode] = 3;
+        for (int opcode = 0xb2; opcode <= 0xb8; opcode++) // get/put static/field, invoke virtual/special/static
+            INSTRUCTION_LENGTHS[opcode] = 3;
+        setInstructionLength(4, 0xc5); // multianewarray
+        setInstructionLength(5, 0xb9, 0xba, 0xc8, 0xc9); // invokeinterface, invokedynamic, goto_w, jsr_w
+        setInstructionLength(0, TABLESWITCH, LOOKUPSWITCH, WIDE);
+    }
+
+    // Class types in descriptors and signatures (ex: Ljava/util/Map<Ljava/lang/String;Ljava/lang/Object;>;)
+    private static final Pattern CLASS_TYPE_PATTERN = Pattern.compile("(?<![^(\\[;<>:+\\-*^)])L([^;<>.]+)");
+
+    // Classes referenced by the bytecode generated by the compiler (and not by the source code)
+    private static final Set<String> COMPILER_GENERATED_REFERENCES = Set.of(
+            "java.lang.invoke.LambdaMetafactory", "java.lang.invoke.MethodHandles", "java.lang.invoke.MethodHandles$Lookup",
+            "java.lang.invoke.MethodHandle", "java.lang.invoke.MethodType", "java.lang.invoke.CallSite",
+            "java.lang.invoke.StringConcatFactory", "java.lang.runtime.ObjectMethods", "java.lang.runtime.SwitchBootstraps");
+
+    private static void setInstructionLength(int length, int... opcodes) {
+        for (int opcode : opcodes)
+            INSTRUCTION_LENGTHS[opcode] = (byte) length;
+    }
+
+    private final String className;
+    private final Set<String> referencedClasses = new LinkedHashSet<>();
+    private final Set<String> requiredServices = new LinkedHashSet<>();
+    private final Set<String> optionalServices = new LinkedHashSet<>();
+
+    // Constant pool
+    private final int[] tags;
+    private final Object[] values; // String for Utf8, int[] of indexes for references, null otherwise
+
+    public JavaClassFile(byte[] bytes) throws IOException {
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes));
+        if (in.readInt() != 0xCAFEBABE)
+            throw new IOException("Not a java class file");
+        in.skipBytes(4); // minor & major versions
+        int constantPoolCount = in.readUnsignedShort();
+        tags = new int[constantPoolCount];
+        values = new Object[constantPoolCount];
+        for (int i = 1; i < constantPoolCount; i++) {
+            int tag = tags[i] = in.readUnsignedByte();
+            switch (tag) {
+                case CONSTANT_Utf8: values[i] = in.readUTF(); break;
+                case CONSTANT_Integer: case CONSTANT_Float: in.skipBytes(4); break;
+                case CONSTANT_Long: case CONSTANT_Double: in.skipBytes(8); i++; break; // takes 2 entries
+                case CONSTANT_Class: case CONSTANT_String: case CONSTANT_MethodType: case CONSTANT_Module: case CONSTANT_Package:
+                    values[i] = new int[] { in.readUnsignedShort() }; break;
+                case CONSTANT_Fieldref: case CONSTANT_Methodref: case CONSTANT_InterfaceMethodref: case CONSTANT_NameAndType:
+                case CONSTANT_Dynamic: case CONSTANT_InvokeDynamic:
+                    values[i] = new int[] { in.readUnsignedShort(), in.readUnsignedShort() }; break;
+                case CONSTANT_MethodHandle: in.skipBytes(3); break;
+                default: throw new IOException("Unknown constant pool tag " + tag);
+            }
+        }
+        in.skipBytes(2); // access flags
+        className = getClassConstant(in.readUnsignedShort());
+        for (int i = 1; i < constantPoolCount; i++) {
+            if (tags[i] == CONSTANT_Class)
+                addReferencedClass(getClassConstant(i));
+        }
+        in.skipBytes(2); // super class
+        in.skipBytes(2 * in.readUnsignedShort()); // interfaces
+        readMembers(in); // fields
+        readMembers(in); // methods
+        readAttributes(in); // class attributes
+        optionalServices.removeAll(requiredServices);
+    }
+
+    private void readMembers(DataInputStream in) throws IOException {
+        int membersCount = in.readUnsignedShort();
+        for (int i = 0; i < membersCount; i++) {
+            in.skipBytes(4); // access flags & name
+            addDescriptorClasses(getUtf8(in.readUnsignedShort()));
+            readAttributes(in);
+        }
+    }
+
+    private void readAttributes(DataInputStream in) throws IOException {
+        int attributesCount = in.readUnsignedShort();
+        for (int i = 0; i < attributesCount; i++) {
+            String attributeName = getUtf8(in.readUnsignedShort());
+            int attributeLength = in.readInt();
+            if ("Signature".equals(attributeName))
+                addDescriptorClasses(getUtf8(in.readUnsignedShort()));
+            else if ("Code".equals(attributeName)) {
+                in.skipBytes(4); // max stack & locals
+                byte[] code = new byte[in.readInt()];
+                in.readFully(code);
+                in.skipBytes(attributeLength - 8 - code.length); // exception table & code attributes
+                analyzeCode(code);
+            } else
+                in.skipBytes(attributeLength);
+        }
+    }
+
+    private void addDescriptorClasses(String descriptor) {
+        if (descriptor != null)
+            for (Matcher matcher = CLASS_TYPE_PATTERN.matcher(descriptor); matcher.find(); )
+                addReferencedClass(matcher.group(1).replace('/', '.'));
+    }
+
+    private void addReferencedClass(String referencedClass) {
+        if (referencedClass != null && !referencedClass.equals(className) && !COMPILER_GENERATED_REFERENCES.contains(referencedClass))
+            referencedClasses.add(referencedClass);
+    }
+
+    private void analyzeCode(byte[] code) throws IOException {
+        String lastLoadedClass = null;
+        for (int pc = 0; pc < code.length; ) {
+            int opcode = code[pc] & 0xFF;
+            int length = INSTRUCTION_LENGTHS[opcode];
+            switch (opcode) {
+                case LDC:
+                case LDC_W: {
+                    int index = opcode == LDC ? code[pc + 1] & 0xFF : readU2(code, pc + 1);
+                    if (tags[index] == CONSTANT_Class)
+                        lastLoadedClass = getClassConstant(index);
+                    break;
+                }
+                case INVOKESTATIC:
+                    if (lastLoadedClass != null) {
+                        int[] methodRef = (int[]) values[readU2(code, pc + 1)];
+                        String owner = getClassConstant(methodRef[0]);
+                        String methodName = getUtf8(((int[]) values[methodRef[1]])[0]);
+                        if (owner != null && owner.endsWith(".SingleServiceProvider") && "getProvider".equals(methodName))
+                            requiredServices.add(lastLoadedClass);
+                        else if ("java.util.ServiceLoader".equals(owner) && "load".equals(methodName))
+                            optionalServices.add(lastLoadedClass);
+                    }
+                    break;
+                case TABLESWITCH: {
+                    int p = (pc + 4) & ~3; // skipping the padding
+                    length = p - pc + 12 + 4 * (readS4(code, p + 8) - readS4(code, p + 4) + 1);
+                    break;
+                }
+                case LOOKUPSWITCH: {
+                    int p = (pc + 4) & ~3;
+                    length = p - pc + 8 + 8 * readS4(code, p + 4);
+                    break;
+                }
+                case WIDE:
+                    length = (code[pc + 1] & 0xFF) == IINC ? 6 : 4;
+                    break;
+            }
+            if (length <= 0)
+                throw new IOException("Invalid bytecode in " + className);
+            pc += length;
+        }
+    }
+
+    private static int readU2(byte[] code, int p) {
+        return ((code[p] & 0xFF) << 8) | (code[p + 1] & 0xFF);
+    }
+
+    private static int readS4(byte[] code, int p) {
+        return (code[p] << 24) | ((code[p + 1] & 0xFF) << 16) | ((code[p + 2] & 0xFF) << 8) | (code[p + 3] & 0xFF);
+    }
+
+    private String getUtf8(int index) {
+        return index > 0 && index < tags.length && tags[index] == CONSTANT_Utf8 ? (String) values[index] : null;
+    }
+
+    // Returns the class in binary notation (ex: java.util.Map$Entry), or null for arrays of primitives
+    private String getClassConstant(int index) {
+        String internalName = getUtf8(((int[]) values[index])[0]);
+        if (internalName == null)
+            return null;
+        if (internalName.startsWith("[")) { // Array => element type
+            int elementIndex = internalName.lastIndexOf('[') + 1;
+            if (internalName.charAt(elementIndex) != 'L')
+                return null;
+            internalName = internalName.substring(elementIndex + 1, internalName.length() - 1);
+        }
+        return internalName.replace('/', '.');
+    }
+
+    public String getClassName() {
+        return className;
+    }
+
+    public String getPackageName() {
+        return getPackageName(className);
+    }
+
+    public Set<String> getReferencedClasses() {
+        return Collections.unmodifiableSet(referencedClasses);
+    }
+
+    public Set<String> getRequiredServices() {
+        return Collections.unmodifiableSet(requiredServices);
+    }
+
+    public Set<String> getOptionalServices() {
+        return Collections.unmodifiableSet(optionalServices);
+    }
+
+    public static String getPackageName(String className) {
+        int lastDotIndex = className.lastIndexOf('.');
+        return lastDotIndex < 0 ? "" : className.substring(0, lastDotIndex);
+    }
+}
@@ -3,6 +3,7 @@ package dev.webfx.cli.util.javacode;
 import dev.webfx.cli.util.textfile.TextFileReaderWriter;
 
 import java.nio.file.Path;
+import java.util.function.Function;
 import java.util.function.Supplier;
 
 /**
@@ -12,12 +13,18 @@ public final class JavaCode {
 
     private Supplier<Path> javaPathSupplier;
     private Path javaFilePath;
+    private Function<Path, String> javaFileReader = TextFileReaderWriter::readTextFile;
     private String textCode;
 
     public JavaCode(Supplier<Path> javaPathSupplier) {
         this.javaPathSupplier = javaPathSupplier;
     }
 
+    public JavaCode(Supplier<Path> javaPathSupplier, Function<Path, String> javaFileReader) {
+        this.javaPathSupplier = javaPathSupplier;
+        this.javaFileReader = javaFileReader;
+    }
+
     public JavaCode(Path javaFilePath) {
         this.javaFilePath = javaFilePath;
     }
@@ -30,7 +37,7 @@ public final class JavaCode {
         if (textCode == null) {
             if (javaFilePath == null)
                 javaFilePath = javaPathSupplier.get();
-            textCode = TextFileReaderWriter.readTextFile(javaFilePath);
+            textCode = javaFileReader.apply(javaFilePath);
         }
         return textCode;
     }
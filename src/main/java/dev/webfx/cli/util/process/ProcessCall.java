@@ -6,10 +6,16 @@ import dev.webfx.cli.util.os.OperatingSystem;
 import java.io.File;
 import java.io.IOException;
 import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Deque;
 import java.util.List;
-import java.util.concurrent.Executors;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
 import java.util.function.Consumer;
 import java.util.function.Predicate;
 import java.util.stream.Collectors;
@@ -19,6 +25,12 @@ import java.util.stream.Collectors;
  */
 public class ProcessCall {
 
+    // Default timeout (none by default) that can be set with -Ddev.webfx.cli.processTimeoutSeconds=xxx
+    private static final long DEFAULT_TIMEOUT_MILLIS = Long.getLong("dev.webfx.cli.processTimeoutSeconds", 0) * 1000;
+
+    // Number of last output lines reported when the process is killed (timeout or cancellation)
+    private static final int OUTPUT_TAIL_SIZE = 10;
+
     private File workingDirectory;
 
     private String[] commandTokens;
@@ -35,13 +47,27 @@ public class ProcessCall {
 
     private Predicate<String> resultLineFilter;
 
+    private Consumer<String> outputObserver;
+
     private String lastResultLine;
 
+    private final List<String> resultLines = new ArrayList<>(); // only collected when there is a result line filter
+
     private boolean logsCalling = true;
 
     private boolean logsCallDuration = true;
 
-    private StreamGobbler inputStreamGobbler, errorStreamGobbler;
+    private CompletableFuture<ProcessCall> completion;
+
+    private long timeoutMillis = DEFAULT_TIMEOUT_MILLIS;
+
+    private volatile Process process;
+
+    private volatile boolean cancelled, timedOut;
+
+    private volatile int killedDescendantsCount;
+
+    private final Deque<String> outputTail = new ArrayDeque<>(OUTPUT_TAIL_SIZE);
 
     private int exitCode;
 
@@ -130,36 +156,137 @@ public class ProcessCall {
         return this;
     }
 
+    /**
+     * Sets the filter of the error lines, which are collected (see getErrorLines()) but not logged for this reason: they
+     * are logged only if accepted by the log line filter (or if there is no log line filter).
+     */
     public ProcessCall setErrorLineFilter(Predicate<String> errorLineFilter) {
         this.errorLineFilter = errorLineFilter;
         return this;
     }
 
+    /**
+     * Sets an observer of the output lines (stdout & stderr merged, without the escape sequences). Unlike the filters, it
+     * doesn't change how the process interacts with the user when used alone: the input is still inherited, and the
+     * output is forwarded unchanged to the standard output as it comes (including the partial lines such as prompts, and
+     * the colors), instead of being logged line by line.
+     */
+    public ProcessCall setOutputObserver(Consumer<String> outputObserver) {
+        this.outputObserver = outputObserver;
+        return this;
+    }
+
     public ProcessCall setLogsCall(boolean logsCalling, boolean logsCallDuration) {
         this.logsCalling = logsCalling;
         this.logsCallDuration = logsCallDuration;
         return this;
     }
 
+    /**
+     * Sets a timeout for the process call (0 = no timeout). If the process is still running after that time, it is
+     * destroyed with all its descendants, and the last output lines are reported.
+     */
+    public ProcessCall setTimeout(Duration timeout) {
+        timeoutMillis = timeout == null ? 0 : timeout.toMillis();
+        return this;
+    }
+
+    /**
+     * Cancels the process call (can be called from another thread). If the process is running, it is destroyed with all
+     * its descendants, and the last output lines are reported. Cancelling the future returned by executeAsync() has the
+     * same effect.
+     */
+    public void cancel() {
+        cancelled = true;
+        killProcessTree();
+    }
+
+    public boolean isCancelled() {
+        return cancelled;
+    }
+
+    public boolean isTimedOut() {
+        return timedOut;
+    }
+
+    private void killProcessTree() {
+        Process process = this.process;
+        if (process != null && process.isAlive())
+            killedDescendantsCount = ProcessRegistry.destroyProcessTree(process);
+    }
+
     public ProcessCall executeAndWait() {
-        executeAndConsume(line -> {
-            boolean log = false;
-            if (errorLineFilter != null && errorLineFilter.test(removeEscapeSequences(line))) {
+        try {
+            executeAsync().join();
+        } catch (CompletionException e) {
+            Throwable cause = e.getCause();
+            throw cause instanceof RuntimeException ? (RuntimeException) cause : new RuntimeException(cause);
+        }
+        return this;
+    }
+
+    /**
+     * Starts the process and returns immediately. The returned future is completed with this process call once the
+     * process has exited and its output has been consumed, so the exit code, result lines and error lines are then
+     * available.
+     */
+    public CompletableFuture<ProcessCall> executeAsync() {
+        completion = executeAndConsume(line -> {
+            if (outputTail.size() == OUTPUT_TAIL_SIZE)
+                outputTail.removeFirst();
+            outputTail.addLast(line);
+            String cleanLine = removeEscapeSequences(line);
+            if (errorLineFilter != null && errorLineFilter.test(cleanLine))
                 errorLines.add(line);
-                log = true;
+            boolean log = logLineFilter == null ? !isOutputForwarded() : logLineFilter.test(cleanLine);
+            if (resultLineFilter == null || resultLineFilter.test(cleanLine)) {
+                lastResultLine = cleanLine;
+                if (resultLineFilter != null)
+                    resultLines.add(lastResultLine);
             }
-            if (logLineFilter == null || logLineFilter.test(removeEscapeSequences(line)))
-                log = true;
-            if (resultLineFilter == null || resultLineFilter.test(removeEscapeSequences(line)))
-                lastResultLine = removeEscapeSequences(line);
             if (log)
                 Logger.log(line);
+            if (outputObserver != null)
+                outputObserver.accept(cleanLine);
         });
-        return this;
-    }
-
-    private static String removeEscapeSequences(String line) {
-        return line.replaceAll("\u001B\\[[;\\d]*[ -/]*[@-~]", "");
+        completion.whenComplete((pc, e) -> {
+            if (completion.isCancelled())
+                cancel();
+        });
+        return completion;
+    }
+
+    // The output is forwarded unchanged when it's only observed (no filters)
+    private boolean isOutputForwarded() {
+        return outputObserver != null && logLineFilter == null && resultLineFilter == null && errorLineFilter == null;
+    }
+
+    /**
+     * Removes the ANSI escape sequences (ESC [ parameters intermediates final), such as colors. This is called on each
+     * output line, so it's done without regular expression, and the line is returned as is if it has no ESC character.
+     */
+    public static String removeEscapeSequences(String line) {
+        int escIndex = line.indexOf('\u001B');
+        if (escIndex < 0)
+            return line;
+        StringBuilder sb = new StringBuilder(line.length());
+        int start = 0, n = line.length();
+        while (escIndex >= 0) {
+            int i = escIndex + 1;
+            if (i < n && line.charAt(i) == '[') {
+                i++;
+                while (i < n && (line.charAt(i) >= '0' && line.charAt(i) <= '9' || line.charAt(i) == ';')) // parameters
+                    i++;
+                while (i < n && line.charAt(i) >= ' ' && line.charAt(i) <= '/') // intermediates
+                    i++;
+                if (i < n && line.charAt(i) >= '@' && line.charAt(i) <= '~') { // final => complete sequence to remove
+                    sb.append(line, start, escIndex);
+                    start = i + 1;
+                }
+            }
+            escIndex = line.indexOf('\u001B', escIndex + 1);
+        }
+        return sb.append(line, start, n).toString();
     }
 
     public ProcessCall logCallCommand() {
@@ -179,6 +306,7 @@ public class ProcessCall {
     }
 
     public int getExitCode() {
+        waitForStreamGobblerCompleted();
         return exitCode;
     }
 
@@ -187,6 +315,11 @@ public class ProcessCall {
         return lastResultLine;
     }
 
+    public List<String> getResultLines() {
+        waitForStreamGobblerCompleted();
+        return resultLines;
+    }
+
     public List<String> getErrorLines() {
         waitForStreamGobblerCompleted();
         return errorLines;
@@ -196,7 +329,7 @@ public class ProcessCall {
         return getErrorLines().isEmpty() ? null : errorLines.get(errorLines.size() - 1);
     }
 
-    private void executeAndConsume(Consumer<String> outputLineConsumer) {
+    private CompletableFuture<ProcessCall> executeAndConsume(Consumer<String> outputLineConsumer) {
         if (logsCalling)
             logCallCommand();
         // We also try here to solve 2 problems that can happen on Windows:
@@ -210,15 +343,15 @@ public class ProcessCall {
             if (OperatingSystem.isWindows() && ("explorer").equals(program))
                 throw new RuntimeException(windowsProgramNotFoundErrorToken); //  Instead we raise an exception similar to case 2) because the solution is the same
             // Otherwise, we try calling the program. If it's not found, an exception will be raised
-            tryExecuteAndConsume(outputLineConsumer, getCommandTokens());
+            return tryExecuteAndConsume(outputLineConsumer, getCommandTokens());
         } catch (Exception e) {
             // Trying the solution for cases 1) and 2)
             if (OperatingSystem.isWindows() && !"cmd".equals(program) && e.getMessage().contains(windowsProgramNotFoundErrorToken))
                 try {
                     // Trying again but via cmd
-                    tryExecuteAndConsume(outputLineConsumer, "cmd", "/c", getShellLogCommand());
+                    CompletableFuture<ProcessCall> recoveredCompletion = tryExecuteAndConsume(outputLineConsumer, "cmd", "/c", getShellLogCommand());
                     // If we reach this point, it means we recovered
-                    return; // So we can return without raising an exception
+                    return recoveredCompletion; // So we can return without raising an exception
                 } catch (Exception e2) {
                     // If we reach this point, it means the solution didn't work
                     // We do nothing here, because we just want to raise the original error
@@ -228,46 +361,66 @@ public class ProcessCall {
         }
     }
 
-    private void tryExecuteAndConsume(Consumer<String> outputLineConsumer, String... commandTokens) throws IOException, InterruptedException {
+    private CompletableFuture<ProcessCall> tryExecuteAndConsume(Consumer<String> outputLineConsumer, String... commandTokens) throws IOException {
         long t0 = System.currentTimeMillis();
         ProcessBuilder processBuilder = new ProcessBuilder()
                 .command(commandTokens)
                 .directory(workingDirectory);
         // Using inherited i/o when no filter are required (which may display ANSI colors)
         // Note 1: it is necessary to use them to display "Do you want to continue? [Y/n]" on Linux bach
-        // Note 2: this prevents the StreamGobbler working (no output lines)
-        if (logLineFilter == null && resultLineFilter == null && errorLineFilter == null)
+        // Note 2: there are no output lines to consume in that case (so no StreamGobbler)
+        // Note 3: when the output is only observed, the input is still inherited, and the output is forwarded unchanged
+        boolean outputForwarded = isOutputForwarded();
+        boolean inheritIO = !outputForwarded && logLineFilter == null && resultLineFilter == null && errorLineFilter == null;
+        if (inheritIO)
             processBuilder
                     .redirectInput(ProcessBuilder.Redirect.INHERIT)
                     .redirectOutput(ProcessBuilder.Redirect.INHERIT)
                     .redirectError(ProcessBuilder.Redirect.INHERIT);
-        Process process = processBuilder.start();
-        inputStreamGobbler = new StreamGobbler(process.getInputStream(), outputLineConsumer);
-        errorStreamGobbler = new StreamGobbler(process.getErrorStream(), outputLineConsumer);
-        Executors.newSingleThreadExecutor().submit(inputStreamGobbler);
-        Executors.newSingleThreadExecutor().submit(errorStreamGobbler);
-        exitCode = process.waitFor();
-        callDurationMillis = System.currentTimeMillis() - t0;
-        if (logsCallDuration)
-            logCallDuration();
+        else { // The error lines are consumed in the same stream as the output lines, so a single StreamGobbler is required
+            if (outputForwarded)
+                processBuilder.redirectInput(ProcessBuilder.Redirect.INHERIT);
+            processBuilder.redirectErrorStream(true);
+        }
+        Process process = this.process = processBuilder.start();
+        ProcessRegistry.register(process);
+        if (cancelled) // cancelled before the start
+            killProcessTree();
+        ScheduledFuture<?> timeoutTask = timeoutMillis <= 0 ? null : ProcessRegistry.SCHEDULER.schedule(() -> {
+            timedOut = true;
+            killProcessTree();
+        }, timeoutMillis, TimeUnit.MILLISECONDS);
+        if (timeoutTask != null)
+            process.onExit().thenRun(() -> timeoutTask.cancel(false));
+        CompletableFuture<Void> outputConsumed = inheritIO ? CompletableFuture.completedFuture(null)
+                : (outputForwarded ? StreamGobbler.startForwarding(process.getInputStream(), System.out, outputLineConsumer)
+                : StreamGobbler.start(process.getInputStream(), outputLineConsumer)).getCompletion()
+                // Destroying the process closes its output stream, so the gobbler may fail reading it after a kill (which
+                // just ends the output)
+                .exceptionally(e -> {
+                    if ((timedOut || cancelled) && (e instanceof IOException || e.getCause() instanceof IOException))
+                        return null;
+                    throw e instanceof CompletionException ? (CompletionException) e : new CompletionException(e);
+                });
+        return process.onExit().thenCombine(outputConsumed, (p, v) -> {
+            exitCode = p.exitValue();
+            callDurationMillis = System.currentTimeMillis() - t0;
+            if (timedOut || cancelled) // Reporting the partial output (the last lines may not have been logged)
+                Logger.log("ERROR: " + getShellLogCommand() + (timedOut ? " timed out after " + timeoutMillis + " ms" : " cancelled")
+                        + ", so it has been killed (with " + killedDescendantsCount + " descendant processes)"
+                        + (outputTail.isEmpty() ? "" : ". Last output lines:\n" + String.join("\n", outputTail)));
+            if (logsCallDuration)
+                logCallDuration();
+            return this;
+        });
     }
 
     private void waitForStreamGobblerCompleted() {
-        while (inputStreamGobbler != null && !inputStreamGobbler.isCompleted())
+        if (completion != null)
             try {
-                synchronized (inputStreamGobbler) {
-                    inputStreamGobbler.wait(1);
-                }
-            } catch (InterruptedException e) {
-                throw new RuntimeException(e);
-            }
-        while (errorStreamGobbler != null && !errorStreamGobbler.isCompleted())
-            try {
-                synchronized (errorStreamGobbler) {
-                    errorStreamGobbler.wait(1);
-                }
-            } catch (InterruptedException e) {
-                throw new RuntimeException(e);
+                completion.join();
+            } catch (CompletionException e) {
+                // Already reported by executeAndWait() (or to the caller of executeAsync())
             }
     }
 
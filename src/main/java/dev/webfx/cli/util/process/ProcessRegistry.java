@@ -0,0 +1,81 @@
+package dev.webfx.cli.util.process;
+
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.*;
+import java.util.stream.Collectors;
+
+/**
+ * Registry of the processes started by ProcessCall and still running. A shutdown hook destroys them (with their
+ * descendants) when the CLI exits, so an interrupted command (ex: Ctrl-C) doesn't leave orphaned processes (such as
+ * the JVMs forked by Maven) that keep consuming CPU. It also provides the scheduler used for the ProcessCall timeouts.
+ *
+ * @author Bruno Salmon
+ */
+final class ProcessRegistry {
+
+    // Delay given to the processes to terminate gracefully before being killed
+    private static final long GRACE_PERIOD_MILLIS = 2000;
+
+    private static final Set<Process> RUNNING_PROCESSES = ConcurrentHashMap.newKeySet();
+
+    static final ScheduledThreadPoolExecutor SCHEDULER = new ScheduledThreadPoolExecutor(1, runnable -> {
+        Thread thread = new Thread(runnable, "webfx-process-scheduler");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    static {
+        SCHEDULER.setRemoveOnCancelPolicy(true); // The timeouts are usually cancelled (process completed in time)
+        Runtime.getRuntime().addShutdownHook(new Thread(ProcessRegistry::destroyRunningProcesses, "webfx-process-cleanup"));
+    }
+
+    static void register(Process process) {
+        RUNNING_PROCESSES.add(process);
+        process.onExit().thenRun(() -> RUNNING_PROCESSES.remove(process));
+    }
+
+    /**
+     * Asks the process and all its descendants to terminate, and kills those still alive after the grace period.
+     * Returns the number of descendants.
+     */
+    static int destroyProcessTree(Process process) {
+        // The descendants are captured first, as they are not descendants anymore once the process is terminated. The
+        // process is destroyed before them, otherwise it could go on with its next commands in the meantime.
+        List<ProcessHandle> descendants = process.descendants().collect(Collectors.toList());
+        process.destroy();
+        descendants.forEach(ProcessHandle::destroy);
+        SCHEDULER.schedule(() -> destroyForciblyIfAlive(process, descendants), GRACE_PERIOD_MILLIS, TimeUnit.MILLISECONDS);
+        return descendants.size();
+    }
+
+    private static void destroyForciblyIfAlive(Process process, List<ProcessHandle> descendants) {
+        // A process still alive may have started new descendants during the grace period (ex: its next command once
+        // its previous one was terminated), so these are captured too, and again the process is destroyed first
+        if (process.isAlive()) {
+            List<ProcessHandle> newDescendants = process.descendants().collect(Collectors.toList());
+            process.destroyForcibly();
+            newDescendants.stream().filter(ProcessHandle::isAlive).forEach(ProcessHandle::destroyForcibly);
+        }
+        descendants.stream().filter(ProcessHandle::isAlive).forEach(ProcessHandle::destroyForcibly);
+    }
+
+    private static void destroyRunningProcesses() {
+        // Same as destroyProcessTree(), but the grace period is waited here (the scheduler may not run anymore)
+        List<Process> processes = List.copyOf(RUNNING_PROCESSES);
+        List<List<ProcessHandle>> descendants = processes.stream()
+                .map(p -> p.descendants().collect(Collectors.toList()))
+                .collect(Collectors.toList());
+        processes.forEach(Process::destroy);
+        descendants.forEach(d -> d.forEach(ProcessHandle::destroy));
+        long deadline = System.currentTimeMillis() + GRACE_PERIOD_MILLIS;
+        for (int i = 0; i < processes.size(); i++) {
+            try {
+                processes.get(i).waitFor(Math.max(0, deadline - System.currentTimeMillis()), TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            destroyForciblyIfAlive(processes.get(i), descendants.get(i));
+        }
+    }
+}
@@ -1,32 +1,123 @@
 package dev.webfx.cli.util.process;
 
-import java.io.BufferedReader;
-import java.io.InputStream;
-import java.io.InputStreamReader;
+import java.io.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.function.Consumer;
 
 /**
+ * Reads the output lines of a process and passes them to a consumer. The gobblers are executed in a shared pool of
+ * daemon threads (instead of creating new threads for each process call), and their completion is signalled through a
+ * CompletableFuture (see getCompletion()).
+ * <p>
+ * A gobbler can also forward the output unchanged (see startForwarding()): the bytes are written to the forward stream
+ * as soon as they are read (so the partial lines such as prompts are displayed immediately, and the escape sequences
+ * are kept), and the complete lines are passed to the consumer as well.
+ * <p>
+ * Note: the pool is not bounded, because a queued gobbler could wait forever: its process blocks when its output pipe
+ * is full, and the running gobblers may be waiting for it (ex: a consumer waiting for another process call). So there
+ * is one thread per process being read, but the threads are reused by the next calls and released after 10s idle.
+ *
  * @author Bruno Salmon
  */
-class StreamGobbler implements Runnable {
+final class StreamGobbler implements Runnable {
+
+    static final String THREAD_NAME_PREFIX = "webfx-stream-gobbler-";
+    private static final AtomicInteger THREAD_COUNTER = new AtomicInteger();
+    private static final ThreadPoolExecutor GOBBLER_POOL = new ThreadPoolExecutor(0, Integer.MAX_VALUE,
+            10, TimeUnit.SECONDS, new SynchronousQueue<>(), runnable -> {
+        Thread thread = new Thread(runnable, THREAD_NAME_PREFIX + THREAD_COUNTER.incrementAndGet());
+        thread.setDaemon(true); // Doesn't prevent the JVM from exiting
+        return thread;
+    });
+
     private final InputStream inputStream;
     private final Consumer<String> outputLineConsumer;
+    private final PrintStream forwardStream;
+    private final CompletableFuture<Void> completion = new CompletableFuture<>();
+    private RuntimeException consumerException;
 
-    private boolean completed;
-
-    public StreamGobbler(InputStream inputStream, Consumer<String> outputLineConsumer) {
+    private StreamGobbler(InputStream inputStream, Consumer<String> outputLineConsumer, PrintStream forwardStream) {
         this.inputStream = inputStream;
         this.outputLineConsumer = outputLineConsumer;
+        this.forwardStream = forwardStream;
+    }
+
+    static StreamGobbler start(InputStream inputStream, Consumer<String> outputLineConsumer) {
+        return start(new StreamGobbler(inputStream, outputLineConsumer, null));
+    }
+
+    static StreamGobbler startForwarding(InputStream inputStream, PrintStream forwardStream, Consumer<String> outputLineConsumer) {
+        return start(new StreamGobbler(inputStream, outputLineConsumer, forwardStream));
+    }
+
+    private static StreamGobbler start(StreamGobbler streamGobbler) {
+        GOBBLER_POOL.execute(streamGobbler);
+        return streamGobbler;
     }
 
     @Override
     public void run() {
-        new BufferedReader(new InputStreamReader(inputStream)).lines()
-                .forEach(outputLineConsumer);
-        completed = true;
+        try {
+            if (forwardStream == null)
+                readLines();
+            else
+                forwardAndReadLines();
+        } catch (IOException e) {
+            completion.completeExceptionally(e);
+            return;
+        }
+        if (consumerException != null)
+            completion.completeExceptionally(consumerException);
+        else
+            completion.complete(null);
+    }
+
+    private void readLines() throws IOException {
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(inputStream))) {
+            for (String line; (line = reader.readLine()) != null; )
+                acceptLine(line);
+        }
+    }
+
+    private void forwardAndReadLines() throws IOException {
+        try (InputStream is = inputStream) {
+            byte[] buffer = new byte[8192];
+            ByteArrayOutputStream line = new ByteArrayOutputStream();
+            for (int n; (n = is.read(buffer)) >= 0; ) {
+                forwardStream.write(buffer, 0, n);
+                forwardStream.flush();
+                int lineStart = 0;
+                for (int i = 0; i < n; i++)
+                    if (buffer[i] == '\n') {
+                        line.write(buffer, lineStart, i - lineStart);
+                        acceptLine(line);
+                        lineStart = i + 1;
+                    }
+                line.write(buffer, lineStart, n - lineStart);
+            }
+            if (line.size() > 0)
+                acceptLine(line);
+        }
+    }
+
+    private void acceptLine(ByteArrayOutputStream line) {
+        String s = line.toString(); // Same default charset as readLines()
+        line.reset();
+        acceptLine(s.endsWith("\r") ? s.substring(0, s.length() - 1) : s);
+    }
+
+    private void acceptLine(String line) {
+        // The output is still read after a consumer failure, otherwise the process could be blocked forever
+        if (consumerException == null)
+            try {
+                outputLineConsumer.accept(line);
+            } catch (RuntimeException e) {
+                consumerException = e;
+            }
     }
 
-    public boolean isCompleted() {
-        return completed;
+    CompletableFuture<Void> getCompletion() {
+        return completion;
     }
-}
\ No newline at end of file
+}
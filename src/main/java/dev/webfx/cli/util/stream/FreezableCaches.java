@@ -0,0 +1,103 @@
+package dev.webfx.cli.util.stream;
+
+import dev.webfx.lib.reusablestream.ReusableStream;
+
+import java.util.*;
+import java.util.function.Consumer;
+
+/**
+ * Registry of the ReusableStream caches of an object (ex: a module or a java source root analyzer) that can be frozen
+ * once the object is fully resolved. Until then, the stream registered for each cache goes directly to the cache (no
+ * wrapping). Once the registry is frozen, each cache is frozen at its next complete iteration: the elements are
+ * collected into a plain array during that iteration, and the subsequent queries iterate that array instead of going
+ * again through the composed lazy streams. So the caches already computed before the freeze are frozen without being
+ * computed again, the caches computed after the freeze (including the ones registered after it) are frozen too, and the
+ * caches that are never completely iterated are left untouched (they remain lazy).
+ *
+ * @author Bruno Salmon
+ */
+public final class FreezableCaches {
+
+    private boolean frozen;
+
+    /**
+     * Registers the cache and returns the stream to use in place of it.
+     */
+    public <T> ReusableStream<T> add(ReusableStream<T> cache) {
+        return new FreezableCache<>(cache).stream;
+    }
+
+    /**
+     * Freezes the caches already computed, and the ones computed from now on (only the first call has an effect).
+     */
+    public void freezeComputedCaches() {
+        frozen = true;
+    }
+
+    public boolean isFrozen() {
+        return frozen;
+    }
+
+    private final class FreezableCache<T> {
+
+        private final ReusableStream<T> cache;
+        private final ReusableStream<T> stream = ReusableStream.create(this::spliterator);
+        private Object[] frozenArray;
+
+        private FreezableCache(ReusableStream<T> cache) {
+            this.cache = cache;
+        }
+
+        @SuppressWarnings("unchecked")
+        private Spliterator<T> spliterator() {
+            if (frozenArray != null)
+                return (Spliterator<T>) Spliterators.spliterator(frozenArray, Spliterator.ORDERED | Spliterator.IMMUTABLE);
+            Spliterator<T> cacheSpliterator = cache.spliterator();
+            if (!frozen)
+                return cacheSpliterator;
+            // Frozen registry => this iteration collects the elements, and freezes the cache if it reaches the end
+            List<Object> elements = new ArrayList<>();
+            return new Spliterator<>() {
+                @Override
+                public boolean tryAdvance(Consumer<? super T> action) {
+                    boolean advanced = cacheSpliterator.tryAdvance(t -> {
+                        elements.add(t);
+                        action.accept(t);
+                    });
+                    if (!advanced) // End of the cache reached => completely computed
+                        freeze(elements);
+                    return advanced;
+                }
+
+                @Override
+                public void forEachRemaining(Consumer<? super T> action) {
+                    cacheSpliterator.forEachRemaining(t -> {
+                        elements.add(t);
+                        action.accept(t);
+                    });
+                    freeze(elements);
+                }
+
+                @Override
+                public Spliterator<T> trySplit() {
+                    return null;
+                }
+
+                @Override
+                public long estimateSize() {
+                    return cacheSpliterator.estimateSize();
+                }
+
+                @Override
+                public int characteristics() {
+                    return cacheSpliterator.characteristics() & ~(SIZED | SUBSIZED);
+                }
+            };
+        }
+
+        private void freeze(List<Object> elements) {
+            if (frozenArray == null) // Possibly already frozen by another (nested) iteration of this cache
+                frozenArray = elements.toArray();
+        }
+    }
+}
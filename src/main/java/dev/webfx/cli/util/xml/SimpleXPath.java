@@ -0,0 +1,266 @@
+package dev.webfx.cli.util.xml;
+
+import org.w3c.dom.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * Compiled form of the simple XPath expressions mostly used by the CLI, i.e. (absolute or relative) paths made of
+ * child steps only, such as "dependencies/dependency" or "/project/export-snapshot/project[@name='xxx']". Each step is
+ * an element name (or *), optionally followed by attribute value predicates ([@attribute='value']) and/or text
+ * predicates ([text()='value']), where the value can be either a literal or a variable ($variable). These expressions
+ * are evaluated by walking the DOM children directly, which is much faster than the XPath engine. Any other expression
+ * (descendant axis, functions, positional predicates, etc...) is not compiled by this class (compile() returns null),
+ * and XmlUtil falls back to javax.xml.xpath for it.
+ *
+ * @author Bruno Salmon
+ */
+final class SimpleXPath {
+
+    private final boolean absolute;
+    private final Step[] steps;
+
+    private SimpleXPath(boolean absolute, Step[] steps) {
+        this.absolute = absolute;
+        this.steps = steps;
+    }
+
+    Node evaluateNode(Node item, Function<String, Object> variableResolver) {
+        Node contextNode = getContextNode(item);
+        return contextNode == null ? null : findFirst(contextNode, 0, variableResolver);
+    }
+
+    NodeList evaluateNodeList(Node item, Function<String, Object> variableResolver) {
+        List<Node> nodes = new ArrayList<>();
+        Node contextNode = getContextNode(item);
+        if (contextNode != null)
+            collectAll(contextNode, 0, variableResolver, nodes);
+        return new NodeList() {
+            @Override
+            public Node item(int index) {
+                return index >= 0 && index < nodes.size() ? nodes.get(index) : null;
+            }
+
+            @Override
+            public int getLength() {
+                return nodes.size();
+            }
+        };
+    }
+
+    private Node getContextNode(Node item) {
+        if (!absolute)
+            return item;
+        return item instanceof Document ? item : item.getOwnerDocument();
+    }
+
+    // Depth-first walk of the steps, which returns the matching nodes in the document order (as XPath does)
+
+    private Node findFirst(Node parent, int stepIndex, Function<String, Object> variableResolver) {
+        Step step = steps[stepIndex];
+        boolean lastStep = stepIndex == steps.length - 1;
+        for (Node child = parent.getFirstChild(); child != null; child = child.getNextSibling()) {
+            if (step.matches(child, variableResolver)) {
+                Node found = lastStep ? child : findFirst(child, stepIndex + 1, variableResolver);
+                if (found != null)
+                    return found;
+            }
+        }
+        return null;
+    }
+
+    private void collectAll(Node parent, int stepIndex, Function<String, Object> variableResolver, List<Node> nodes) {
+        Step step = steps[stepIndex];
+        boolean lastStep = stepIndex == steps.length - 1;
+        for (Node child = parent.getFirstChild(); child != null; child = child.getNextSibling()) {
+            if (step.matches(child, variableResolver)) {
+                if (lastStep)
+                    nodes.add(child);
+                else
+                    collectAll(child, stepIndex + 1, variableResolver, nodes);
+            }
+        }
+    }
+
+    private static final class Step {
+        private final String name; // null for *
+        private final Predicate[] predicates;
+
+        private Step(String name, Predicate[] predicates) {
+            this.name = name;
+            this.predicates = predicates;
+        }
+
+        private boolean matches(Node node, Function<String, Object> variableResolver) {
+            if (!(node instanceof Element) || name != null && !name.equals(node.getNodeName()))
+                return false;
+            for (Predicate predicate : predicates)
+                if (!predicate.matches((Element) node, variableResolver))
+                    return false;
+            return true;
+        }
+    }
+
+    private static final class Predicate {
+        private final String attribute; // null for text()
+        private final String literal;
+        private final String variable;
+
+        private Predicate(String attribute, String literal, String variable) {
+            this.attribute = attribute;
+            this.literal = literal;
+            this.variable = variable;
+        }
+
+        private boolean matches(Element element, Function<String, Object> variableResolver) {
+            String value = literal;
+            if (variable != null) {
+                Object variableValue = variableResolver.apply(variable);
+                if (variableValue == null)
+                    return false;
+                value = variableValue.toString();
+            }
+            if (attribute != null) {
+                Attr attr = element.getAttributeNode(attribute);
+                return attr != null && value.equals(attr.getValue());
+            }
+            // XPath text() predicate: true if one of the text nodes (i.e. contiguous DOM text nodes) equals the value
+            StringBuilder sb = null;
+            for (Node child = element.getFirstChild(); child != null; child = child.getNextSibling()) {
+                if (child instanceof Text) {
+                    if (sb == null)
+                        sb = new StringBuilder();
+                    sb.append(child.getNodeValue());
+                } else if (sb != null) {
+                    if (value.contentEquals(sb))
+                        return true;
+                    sb = null;
+                }
+            }
+            return sb != null && value.contentEquals(sb);
+        }
+    }
+
+    /*****************************************************************************************************************
+     *                                                Compiler                                                       *
+     ****************************************************************************************************************/
+
+    static SimpleXPath compile(String expression) {
+        return new Compiler(expression).compile();
+    }
+
+    private static final class Compiler {
+        private final String expression;
+        private int pos;
+
+        private Compiler(String expression) {
+            this.expression = expression;
+        }
+
+        private SimpleXPath compile() {
+            int length = expression.length();
+            if (length == 0)
+                return null;
+            boolean absolute = expression.charAt(0) == '/';
+            if (absolute)
+                pos++;
+            List<Step> steps = new ArrayList<>();
+            while (true) {
+                Step step = parseStep();
+                if (step == null)
+                    return null;
+                steps.add(step);
+                if (pos == length)
+                    break;
+                if (expression.charAt(pos++) != '/')
+                    return null;
+            }
+            return new SimpleXPath(absolute, steps.toArray(new Step[0]));
+        }
+
+        private Step parseStep() {
+            String name;
+            if (pos < expression.length() && expression.charAt(pos) == '*') {
+                pos++;
+                name = null;
+            } else if ((name = parseName()) == null)
+                return null;
+            List<Predicate> predicates = new ArrayList<>();
+            while (pos < expression.length() && expression.charAt(pos) == '[') {
+                pos++;
+                Predicate predicate = parsePredicate();
+                if (predicate == null)
+                    return null;
+                predicates.add(predicate);
+            }
+            return new Step(name, predicates.toArray(new Predicate[0]));
+        }
+
+        private Predicate parsePredicate() {
+            skipSpaces();
+            String attribute;
+            if (expression.startsWith("@", pos)) {
+                pos++;
+                if ((attribute = parseName()) == null)
+                    return null;
+            } else if (expression.startsWith("text()", pos)) {
+                pos += 6;
+                attribute = null;
+            } else
+                return null;
+            skipSpaces();
+            if (!expression.startsWith("=", pos))
+                return null;
+            pos++;
+            skipSpaces();
+            String literal = null, variable = null;
+            if (expression.startsWith("$", pos)) {
+                pos++;
+                if ((variable = parseName()) == null)
+                    return null;
+            } else if ((literal = parseLiteral()) == null)
+                return null;
+            skipSpaces();
+            if (!expression.startsWith("]", pos))
+                return null;
+            pos++;
+            return new Predicate(attribute, literal, variable);
+        }
+
+        private String parseName() {
+            int start = pos;
+            while (pos < expression.length()) {
+                char c = expression.charAt(pos);
+                if (Character.isLetter(c) || c == '_' || pos > start && (Character.isDigit(c) || c == '-' || c == '.'))
+                    pos++;
+                else
+                    break;
+            }
+            // Function calls (such as comment() or text()) and node tests are not part of the simple subset
+            if (pos == start || pos < expression.length() && expression.charAt(pos) == '(')
+                return null;
+            return expression.substring(start, pos);
+        }
+
+        private String parseLiteral() {
+            if (pos >= expression.length())
+                return null;
+            char quote = expression.charAt(pos);
+            if (quote != '\'' && quote != '"')
+                return null;
+            int end = expression.indexOf(quote, pos + 1);
+            if (end < 0)
+                return null;
+            String literal = expression.substring(pos + 1, end);
+            pos = end + 1;
+            return literal;
+        }
+
+        private void skipSpaces() {
+            while (pos < expression.length() && expression.charAt(pos) == ' ')
+                pos++;
+        }
+    }
+}
@@ -26,6 +26,7 @@ public interface XmlDocumentApi extends XmlNodeApi {
     }
 
     default Node getOrCreateXmlNode() {
+        markDocumentModified(); // as the node is requested for a modification
         Node moduleElement = getXmlNode();
         return moduleElement != null ? moduleElement : getOrCreateDocument().getDocumentElement();
     }
@@ -34,6 +35,13 @@ public interface XmlDocumentApi extends XmlNodeApi {
         return false;
     }
 
+    /**
+     * Called before the document is modified (through the XmlNodeApi mutators or an update), so an implementation that
+     * doesn't keep its document in memory (ex: a cached copy of a file) can keep it from now on (default = no-op).
+     */
+    default void markDocumentModified() {
+    }
+
     default String getXmlContent() {
         return XmlUtil.formatXmlText(getOrCreateDocument());
     }
@@ -0,0 +1,216 @@
+package dev.webfx.cli.util.xml;
+
+import org.w3c.dom.*;
+
+/**
+ * Single-pass DOM serializer producing directly the canonical formatting of the XML files generated by the CLI. This
+ * is the output of the identity Transformer (no indentation, UTF-8, standalone document) with the following
+ * formatting fixes that were previously applied by string replacements over the whole output:
+ * <ul>
+ *     <li>a linefeed after the xml declaration (and processing instructions) when directly followed by markup</li>
+ *     <li>a linefeed and alignment before the xmlns:xsi and xsi:schemaLocation attributes</li>
+ *     <li>a linefeed after the end of comments directly followed by markup, if the xml declaration is followed by a
+ *     comment (typically the "File managed by WebFX" header comment)</li>
+ * </ul>
+ * The text is built in a StringBuilder reused per thread.
+ *
+ * @author Bruno Salmon
+ */
+final class XmlSerializer {
+
+    private static final ThreadLocal<XmlSerializer> SERIALIZER = ThreadLocal.withInitial(XmlSerializer::new);
+    private static final int MAX_RETAINED_CAPACITY = 1 << 20; // Not retaining more than 1M chars per thread
+    private static final String ATTRIBUTE_ALIGNMENT = "\n         ";
+
+    private final StringBuilder sb = new StringBuilder(8192);
+    private boolean linefeedAfterComments;
+    private boolean commentAfterProcessingInstruction;
+    private boolean afterProcessingInstruction;
+    private boolean afterComment;
+    private boolean startTagOpen; // true when the last start tag is not yet closed (empty elements are closed with />)
+
+    static String serialize(Node node) {
+        XmlSerializer serializer = SERIALIZER.get();
+        StringBuilder sb = serializer.sb;
+        try {
+            // The linefeeds after comments are required only when the xml declaration (or a processing instruction) is
+            // followed by a comment, which is known in advance in the common case (header comment of the document). In
+            // the other rare cases, we serialize again the node once detected.
+            boolean linefeedAfterComments = node instanceof Document && node.getFirstChild() instanceof Comment;
+            while (true) {
+                sb.setLength(0);
+                serializer.linefeedAfterComments = linefeedAfterComments;
+                serializer.commentAfterProcessingInstruction = false;
+                serializer.serializeRoot(node);
+                if (linefeedAfterComments || !serializer.commentAfterProcessingInstruction)
+                    return sb.toString();
+                linefeedAfterComments = true;
+            }
+        } finally {
+            if (sb.capacity() > MAX_RETAINED_CAPACITY)
+                SERIALIZER.remove();
+        }
+    }
+
+    private void serializeRoot(Node node) {
+        afterProcessingInstruction = afterComment = startTagOpen = false;
+        if (node instanceof Document) {
+            Document document = (Document) node;
+            sb.append("<?xml version=\"").append(document.getXmlVersion() != null ? document.getXmlVersion() : "1.0").append("\" encoding=\"UTF-8\"?>");
+            afterProcessingInstruction = true;
+        }
+        serializeNode(node);
+    }
+
+    private void serializeNode(Node node) {
+        switch (node.getNodeType()) {
+            case Node.DOCUMENT_NODE:
+            case Node.DOCUMENT_FRAGMENT_NODE:
+                serializeChildren(node);
+                break;
+            case Node.ELEMENT_NODE:
+                serializeElement((Element) node);
+                break;
+            case Node.TEXT_NODE:
+                appendText(node.getNodeValue());
+                break;
+            case Node.CDATA_SECTION_NODE:
+                String cdata = node.getNodeValue();
+                if (!cdata.isEmpty()) { // Empty CDATA sections are not output
+                    startMarkup();
+                    sb.append("<![CDATA[").append(cdata.replace("]]>", "]]]]><![CDATA[>")).append("]]>");
+                }
+                break;
+            case Node.COMMENT_NODE:
+                if (afterProcessingInstruction)
+                    commentAfterProcessingInstruction = true;
+                startMarkup();
+                sb.append("<!--");
+                appendComment(node.getNodeValue());
+                sb.append("-->");
+                afterComment = true;
+                break;
+            case Node.PROCESSING_INSTRUCTION_NODE:
+                startMarkup();
+                ProcessingInstruction pi = (ProcessingInstruction) node;
+                sb.append("<?").append(pi.getTarget());
+                String data = pi.getData();
+                if (data != null && !data.isEmpty())
+                    sb.append(' ').append(data);
+                sb.append("?>");
+                afterProcessingInstruction = true;
+                break;
+            case Node.ENTITY_REFERENCE_NODE:
+                startMarkup();
+                sb.append('&').append(node.getNodeName()).append(';');
+                break;
+            // Document types are not output by the identity transformer
+        }
+    }
+
+    // "--" is not allowed inside comments, nor a final "-", so spaces are inserted (as the identity transformer does)
+    private void appendComment(String comment) {
+        for (int i = 0, n = comment.length(); i < n; i++) {
+            char c = comment.charAt(i);
+            sb.append(c);
+            if (c == '-' && (i == n - 1 || comment.charAt(i + 1) == '-'))
+                sb.append(' ');
+        }
+    }
+
+    private void serializeChildren(Node node) {
+        for (Node child = node.getFirstChild(); child != null; child = child.getNextSibling())
+            serializeNode(child);
+    }
+
+    private void serializeElement(Element element) {
+        startMarkup();
+        String tagName = element.getTagName();
+        sb.append('<').append(tagName);
+        NamedNodeMap attributes = element.getAttributes();
+        for (int i = 0, n = attributes.getLength(); i < n; i++) {
+            Node attribute = attributes.item(i);
+            String name = attribute.getNodeName();
+            sb.append(i > 0 && ("xmlns:xsi".equals(name) || "xsi:schemaLocation".equals(name)) ? ATTRIBUTE_ALIGNMENT : " ");
+            sb.append(name).append("=\"");
+            appendAttributeValue(attribute.getNodeValue());
+            sb.append('"');
+        }
+        startTagOpen = true;
+        serializeChildren(element);
+        if (startTagOpen) { // Nothing has been output inside the element
+            sb.append("/>");
+            startTagOpen = false;
+        } else {
+            startMarkup();
+            sb.append("</").append(tagName).append('>');
+        }
+    }
+
+    private void closeStartTagIfOpen() {
+        if (startTagOpen) {
+            sb.append('>');
+            startTagOpen = false;
+        }
+    }
+
+    // Called before any markup (which starts with '<'), to add the linefeeds of the canonical formatting
+    private void startMarkup() {
+        closeStartTagIfOpen();
+        if (afterProcessingInstruction || afterComment && linefeedAfterComments)
+            sb.append('\n');
+        afterProcessingInstruction = afterComment = false;
+    }
+
+    private void appendText(String text) {
+        if (text.isEmpty())
+            return;
+        closeStartTagIfOpen();
+        afterProcessingInstruction = afterComment = false;
+        appendEscapedText(sb, text);
+    }
+
+    static void appendEscapedText(StringBuilder sb, String text) {
+        for (int i = 0, n = text.length(); i < n; i++) {
+            char c = text.charAt(i);
+            switch (c) {
+                case '<': sb.append("&lt;"); break;
+                case '>': sb.append("&gt;"); break;
+                case '&': sb.append("&amp;"); break;
+                case '\r': sb.append("&#13;"); break;
+                default:
+                    i = appendChar(sb, text, i, c, true);
+            }
+        }
+    }
+
+    private void appendAttributeValue(String value) {
+        for (int i = 0, n = value.length(); i < n; i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '<': sb.append("&lt;"); break;
+                case '>': sb.append("&gt;"); break;
+                case '&': sb.append("&amp;"); break;
+                case '"': sb.append("&quot;"); break;
+                case '\n': sb.append("&#10;"); break;
+                case '\r': sb.append("&#13;"); break;
+                case '\t': sb.append("&#9;"); break;
+                default:
+                    i = appendChar(sb, value, i, c, false);
+            }
+        }
+    }
+
+    // Appends the char (or the surrogate pair starting at index i), returning the index of the last char consumed
+    private static int appendChar(StringBuilder sb, String s, int i, char c, boolean text) {
+        if (text && c >= 0x7F && c <= 0x9F) // C1 control characters are output as character references in texts
+            sb.append("&#").append((int) c).append(';');
+        else if (Character.isHighSurrogate(c) && i + 1 < s.length() && Character.isLowSurrogate(s.charAt(i + 1))) {
+            // So are the supplementary characters (as the identity transformer does)
+            sb.append("&#").append(Character.toCodePoint(c, s.charAt(i + 1))).append(';');
+            return i + 1;
+        } else
+            sb.append(c);
+        return i;
+    }
+}
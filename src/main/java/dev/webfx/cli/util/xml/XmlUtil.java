@@ -4,9 +4,14 @@ import org.w3c.dom.*;
 import org.xml.sax.InputSource;
 import dev.webfx.lib.reusablestream.ReusableStream;
 
+import javax.xml.XMLConstants;
 import javax.xml.namespace.QName;
 import javax.xml.parsers.DocumentBuilder;
 import javax.xml.parsers.DocumentBuilderFactory;
+import javax.xml.parsers.ParserConfigurationException;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
 import javax.xml.transform.OutputKeys;
 import javax.xml.transform.Transformer;
 import javax.xml.transform.TransformerException;
@@ -16,6 +21,7 @@ import javax.xml.transform.stream.StreamResult;
 import javax.xml.xpath.*;
 import java.io.*;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.function.Consumer;
 import java.util.function.Function;
 
@@ -24,14 +30,74 @@ import java.util.function.Function;
  */
 public final class XmlUtil {
 
-    public static Document newDocument() {
+    // The JAXP factories are looked up (service discovery) and configured only once, and the builders and transformers
+    // they create are cached per thread, as they are not thread-safe (they are reset before each reuse).
+    private static final DocumentBuilderFactory DOCUMENT_BUILDER_FACTORY = createDocumentBuilderFactory();
+    private static final TransformerFactory TRANSFORMER_FACTORY = createTransformerFactory();
+    private static final ThreadLocal<DocumentBuilder> DOCUMENT_BUILDER = ThreadLocal.withInitial(() -> {
         try {
-            DocumentBuilderFactory dbFactory = DocumentBuilderFactory.newInstance();
-            DocumentBuilder dBuilder = dbFactory.newDocumentBuilder();
-            return dBuilder.newDocument();
+            synchronized (DOCUMENT_BUILDER_FACTORY) {
+                return DOCUMENT_BUILDER_FACTORY.newDocumentBuilder();
+            }
+        } catch (Exception e) {
+            throw new RuntimeException(e);
+        }
+    });
+    private static final ThreadLocal<Transformer> TRANSFORMER = ThreadLocal.withInitial(() -> {
+        try {
+            synchronized (TRANSFORMER_FACTORY) {
+                return TRANSFORMER_FACTORY.newTransformer();
+            }
         } catch (Exception e) {
             throw new RuntimeException(e);
         }
+    });
+
+    private static DocumentBuilderFactory createDocumentBuilderFactory() {
+        DocumentBuilderFactory dbFactory = DocumentBuilderFactory.newInstance();
+        // Module files never rely on external DTDs or entities, so we don't load them (this would also cost time and
+        // could trigger network access)
+        setFeatureIfSupported(dbFactory, "http://apache.org/xml/features/nonvalidating/load-external-dtd", false);
+        setFeatureIfSupported(dbFactory, "http://xml.org/sax/features/external-general-entities", false);
+        setFeatureIfSupported(dbFactory, "http://xml.org/sax/features/external-parameter-entities", false);
+        dbFactory.setXIncludeAware(false);
+        return dbFactory;
+    }
+
+    private static void setFeatureIfSupported(DocumentBuilderFactory dbFactory, String feature, boolean value) {
+        try {
+            dbFactory.setFeature(feature, value);
+        } catch (ParserConfigurationException ignored) {
+            // Not supported by this parser implementation
+        }
+    }
+
+    private static TransformerFactory createTransformerFactory() {
+        TransformerFactory transformerFactory = TransformerFactory.newInstance();
+        try {
+            transformerFactory.setAttribute(XMLConstants.ACCESS_EXTERNAL_DTD, "");
+            transformerFactory.setAttribute(XMLConstants.ACCESS_EXTERNAL_STYLESHEET, "");
+        } catch (IllegalArgumentException ignored) {
+            // Not supported by this transformer implementation
+        }
+        return transformerFactory;
+    }
+
+    // Package-private for the tests (each thread must get its own instance)
+    static DocumentBuilder getDocumentBuilder() {
+        DocumentBuilder dBuilder = DOCUMENT_BUILDER.get();
+        dBuilder.reset();
+        return dBuilder;
+    }
+
+    static Transformer getTransformer() {
+        Transformer transformer = TRANSFORMER.get();
+        transformer.reset();
+        return transformer;
+    }
+
+    public static Document newDocument() {
+        return getDocumentBuilder().newDocument();
     }
 
     public static Document parseXmlFile(File xmlFile) {
@@ -46,8 +112,7 @@ public final class XmlUtil {
 
     public static Document parseXmlSource(InputSource is) {
         try {
-            DocumentBuilderFactory dbFactory = DocumentBuilderFactory.newInstance();
-            DocumentBuilder dBuilder = dbFactory.newDocumentBuilder();
+            DocumentBuilder dBuilder = getDocumentBuilder();
             try {
                 return dBuilder.parse(is);
             } catch (FileNotFoundException ie) {
@@ -62,18 +127,37 @@ public final class XmlUtil {
         }
     }
 
+    // StAX streaming reader (used to read only a few fields of big read-only files, without building a DOM)
+
+    private static final XMLInputFactory XML_INPUT_FACTORY = XMLInputFactory.newInstance();
+    static {
+        // Module files don't need DTD or external entities (and these could trigger network access)
+        XML_INPUT_FACTORY.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+        XML_INPUT_FACTORY.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+    }
+
+    public static XMLStreamReader createXmlStreamReader(InputStream inputStream) throws XMLStreamException {
+        return XML_INPUT_FACTORY.createXMLStreamReader(inputStream);
+    }
+
     public static String formatXmlText(Node node) {
-        return formatText(node, "xml");
+        // Single-pass serialization directly in the canonical formatting (see XmlSerializer)
+        return XmlSerializer.serialize(node);
+    }
+
+    // Appends the text escaped the same way as in formatXmlText()
+    public static void appendEscapedXmlText(StringBuilder sb, String text) {
+        XmlSerializer.appendEscapedText(sb, text);
     }
 
     public static String formatHtmlText(Node node) {
+        // The html output method has its own rules (void elements, meta tag, etc...), so it's still done by Transformer
         return formatText(node, "html");
     }
 
     private static String formatText(Node node, String method) {
         try {
-            TransformerFactory transformerFactory = TransformerFactory.newInstance();
-            Transformer transformer = transformerFactory.newTransformer();
+            Transformer transformer = getTransformer();
             if (node instanceof Document)
                 ((Document) node).setXmlStandalone(true);
             else
@@ -101,11 +185,23 @@ public final class XmlUtil {
     }
 
     public static NodeList lookupNodeList(Object item, String xpathExpression) {
-        return lookup(item, xpathExpression, XPathConstants.NODESET);
+        if (item == null)
+            return null;
+        // Fast path for simple child paths (most expressions used by the CLI), evaluated by walking the DOM directly
+        SimpleXPath simpleXPath = getSimpleXPath(xpathExpression);
+        if (simpleXPath != null && item instanceof Node)
+            return simpleXPath.evaluateNodeList((Node) item, XPATH_EVALUATOR.get().variables::get);
+        return (NodeList) evaluate(item, xpathExpression, XPathConstants.NODESET);
     }
 
     public static Node lookupNode(Object item, String xpathExpression) {
-        return lookup(item, xpathExpression, XPathConstants.NODE);
+        if (item == null)
+            return null;
+        // Same fast path
+        SimpleXPath simpleXPath = getSimpleXPath(xpathExpression);
+        if (simpleXPath != null && item instanceof Node)
+            return simpleXPath.evaluateNode((Node) item, XPATH_EVALUATOR.get().variables::get);
+        return (Node) evaluate(item, xpathExpression, XPathConstants.NODE);
     }
 
     public static String lookupNodeTextContent(Object item, String xpathExpression) {
@@ -114,26 +210,83 @@ public final class XmlUtil {
     }
 
     public static Node lookupNodeWithTextContent(Object item, String xpath, String text) {
-        return lookupNode(item, xpath + "[text() = '" + text + "']");
+        // The text is passed as a variable, so the compiled expression is the same whatever the text value
+        return lookupWithVariable(item, xpath + "[text() = $" + TEXT_VARIABLE + "]", TEXT_VARIABLE, text);
     }
 
     public static Element lookupElementWithAttributeValue(Object item, String xpath, String attribute, String value) {
-        return (Element) lookupNode(item, xpath + "[@" + attribute + "='" + value + "']");
+        // Same with the attribute value (the expression is still specific to the attribute name, but these are few)
+        return (Element) lookupWithVariable(item, xpath + "[@" + attribute + " = $" + VALUE_VARIABLE + "]", VALUE_VARIABLE, value);
     }
 
-    private static <T> T lookup(Object item, String xpathExpression, QName returnType) {
+    private static final String TEXT_VARIABLE = "text";
+    private static final String VALUE_VARIABLE = "value";
+
+    private static Node lookupWithVariable(Object item, String xpathExpression, String variable, String value) {
         if (item == null)
             return null;
-        XPathFactory xpf = XPathFactory.newInstance();
-        XPath xpath = xpf.newXPath();
+        XPathEvaluator evaluator = XPATH_EVALUATOR.get();
+        evaluator.variables.put(variable, value);
+        try {
+            return lookupNode(item, xpathExpression);
+        } finally {
+            evaluator.variables.remove(variable);
+        }
+    }
+
+    // Evaluation by the XPath engine (the returned object is of the class associated with the return type)
+    private static Object evaluate(Object item, String xpathExpression, QName returnType) {
         try {
-            XPathExpression expression = xpath.compile(xpathExpression);
-            return (T) expression.evaluate(item, returnType);
+            return XPATH_EVALUATOR.get().getCompiledExpression(xpathExpression).evaluate(item, returnType);
         } catch (XPathExpressionException e) {
             throw new RuntimeException(e);
         }
     }
 
+    // Simple XPath expressions are immutable, so they can be shared between threads. The expressions that are not
+    // simple are also memorised (with the NOT_SIMPLE_XPATH marker) to not try to compile them again.
+    private static final Map<String, Object> SIMPLE_XPATHS = new ConcurrentHashMap<>();
+    private static final Object NOT_SIMPLE_XPATH = new Object();
+
+    private static SimpleXPath getSimpleXPath(String xpathExpression) {
+        Object simpleXPath = SIMPLE_XPATHS.get(xpathExpression);
+        if (simpleXPath == null) {
+            simpleXPath = SimpleXPath.compile(xpathExpression);
+            if (simpleXPath == null)
+                simpleXPath = NOT_SIMPLE_XPATH;
+            SIMPLE_XPATHS.put(xpathExpression, simpleXPath);
+        }
+        return simpleXPath == NOT_SIMPLE_XPATH ? null : (SimpleXPath) simpleXPath;
+    }
+
+    // XPath and XPathExpression instances are not thread-safe, so each thread has its own XPath and its own cache of
+    // compiled expressions (the number of distinct expressions used by the CLI is small, so are these caches).
+    private static final ThreadLocal<XPathEvaluator> XPATH_EVALUATOR = ThreadLocal.withInitial(XPathEvaluator::new);
+
+    // The factory lookup (service loader) is done only once, but the factory itself is not thread-safe
+    private static final XPathFactory XPATH_FACTORY = XPathFactory.newInstance();
+
+    private static final class XPathEvaluator {
+        private final Map<String, Object> variables = new HashMap<>();
+        private final Map<String, XPathExpression> compiledExpressions = new HashMap<>();
+        private final XPath xpath;
+
+        private XPathEvaluator() {
+            synchronized (XPATH_FACTORY) {
+                xpath = XPATH_FACTORY.newXPath();
+            }
+            // Variables are resolved at evaluation time, so the compiled expressions can be reused with other values
+            xpath.setXPathVariableResolver(qName -> variables.get(qName.getLocalPart()));
+        }
+
+        private XPathExpression getCompiledExpression(String xpathExpression) throws XPathExpressionException {
+            XPathExpression expression = compiledExpressions.get(xpathExpression);
+            if (expression == null)
+                compiledExpressions.put(xpathExpression, expression = xpath.compile(xpathExpression));
+            return expression;
+        }
+    }
+
     public static ReusableStream<String> nodeListToTextContentReusableStream(NodeList nodeList) {
         return nodeListToReusableStream(nodeList, Node::getTextContent);
     }
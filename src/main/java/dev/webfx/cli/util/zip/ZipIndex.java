@@ -0,0 +1,383 @@
+package dev.webfx.cli.util.zip;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+/**
+ * Index of a zip (or jar) file built from its central directory only, so listing the entries doesn't require to open
+ * a zip file system or to read the entries themselves. The index also provides the package => entries table (entries
+ * grouped by directory, in Java package notation), which gives the packages of a jar without reading its class files
+ * (see JavaBytecodeAnalyzer.getPackages()), and the service => provider file table (META-INF/services).
+ * <p>
+ * The entries are read on demand (see readEntry()) through a single file channel per index, opened on the first read
+ * and kept open for the next reads until close() is called (the index can still be read after that, the channel is
+ * just opened again). The indexes with an open channel are registered, so closeAll() releases all the remaining
+ * handles at the end of the command (see CommonCommand). An entry is returned as a whole in a byte array, so this is
+ * meant for small entries such as class files, source files and service files (entries bigger than MAX_ENTRY_SIZE are
+ * rejected). Only the buffer used to read the compressed data is bounded.
+ * <p>
+ * The index is cached in a sidecar file next to the zip file (see getIndexPath()), keyed by the size and last modified
+ * time of the zip file, so the central directory is parsed only once per zip file version.
+ *
+ * @author Bruno Salmon
+ */
+public final class ZipIndex implements Closeable {
+
+    private static final int END_OF_CENTRAL_DIRECTORY_SIGNATURE = 0x06054b50;
+    private static final int ZIP64_END_OF_CENTRAL_DIRECTORY_SIGNATURE = 0x06064b50;
+    private static final int ZIP64_END_OF_CENTRAL_DIRECTORY_LOCATOR_SIGNATURE = 0x07064b50;
+    private static final int CENTRAL_DIRECTORY_HEADER_SIGNATURE = 0x02014b50;
+    private static final int LOCAL_FILE_HEADER_SIGNATURE = 0x04034b50;
+    private static final int END_OF_CENTRAL_DIRECTORY_SIZE = 22;
+    private static final int MAX_COMMENT_SIZE = 0xFFFF;
+    private static final int STORED = 0, DEFLATED = 8;
+    private static final int READ_BUFFER_SIZE = 64 * 1024;
+    private static final int MAX_ENTRY_SIZE = 16 * 1024 * 1024;
+    private static final String SERVICES_DIRECTORY = "META-INF/services/";
+
+    private static final int INDEX_FILE_MAGIC = 0x5A495831; // "ZIX1"
+
+    private static final Set<ZipIndex> OPEN_INDEXES = ConcurrentHashMap.newKeySet();
+
+    private final Path zipPath;
+    private final Map<String, Entry> entries = new LinkedHashMap<>();
+    private final Map<String, List<String>> packageEntryNames = new LinkedHashMap<>();
+    private final Map<String, Entry> serviceEntries = new LinkedHashMap<>();
+    private FileChannel channel;
+
+    private ZipIndex(Path zipPath, Collection<Entry> entries) {
+        this.zipPath = zipPath;
+        for (Entry entry : entries) {
+            this.entries.put(entry.name, entry);
+            int lastSlashIndex = entry.name.lastIndexOf('/');
+            String packageName = lastSlashIndex < 0 ? "" : entry.name.substring(0, lastSlashIndex).replace('/', '.');
+            packageEntryNames.computeIfAbsent(packageName, k -> new ArrayList<>()).add(entry.name);
+            if (entry.name.startsWith(SERVICES_DIRECTORY) && lastSlashIndex == SERVICES_DIRECTORY.length() - 1)
+                serviceEntries.put(entry.name.substring(SERVICES_DIRECTORY.length()), entry);
+        }
+    }
+
+    public Path getZipPath() {
+        return zipPath;
+    }
+
+    public Collection<String> getEntryNames() {
+        return Collections.unmodifiableSet(entries.keySet());
+    }
+
+    public boolean hasEntry(String entryName) {
+        return entries.containsKey(entryName);
+    }
+
+    /**
+     * Returns the packages (directories in Java package notation, "" for the root) that directly contain entries.
+     */
+    public Collection<String> getPackages() {
+        return Collections.unmodifiableSet(packageEntryNames.keySet());
+    }
+
+    public List<String> getPackageEntryNames(String packageName) {
+        List<String> entryNames = packageEntryNames.get(packageName);
+        return entryNames == null ? Collections.emptyList() : Collections.unmodifiableList(entryNames);
+    }
+
+    public Collection<String> getServices() {
+        return Collections.unmodifiableSet(serviceEntries.keySet());
+    }
+
+    public String getServiceProviderFileEntryName(String service) {
+        Entry entry = serviceEntries.get(service);
+        return entry == null ? null : entry.name;
+    }
+
+    public List<String> readServiceProviders(String service) throws IOException {
+        Entry entry = serviceEntries.get(service);
+        if (entry == null)
+            return Collections.emptyList();
+        List<String> providers = new ArrayList<>();
+        for (String line : new String(readEntry(entry), StandardCharsets.UTF_8).split("\\R")) {
+            int commentIndex = line.indexOf('#');
+            String provider = (commentIndex < 0 ? line : line.substring(0, commentIndex)).trim();
+            if (!provider.isEmpty())
+                providers.add(provider);
+        }
+        return providers;
+    }
+
+    public String readTextEntry(String entryName) throws IOException {
+        return new String(readEntry(entryName), StandardCharsets.UTF_8);
+    }
+
+    public byte[] readEntry(String entryName) throws IOException {
+        Entry entry = entries.get(entryName);
+        if (entry == null)
+            throw new FileNotFoundException(entryName + " not found in " + zipPath);
+        return readEntry(entry);
+    }
+
+    private synchronized byte[] readEntry(Entry entry) throws IOException {
+        if (entry.uncompressedSize > MAX_ENTRY_SIZE)
+            throw new IOException(entry.name + " is too big to be read from " + zipPath);
+        FileChannel channel = getChannel();
+        // The local header has variable length fields (that may differ from the central directory ones), so we read it
+        // to know where the entry data starts
+        ByteBuffer header = readFully(channel, entry.localHeaderOffset, 30);
+        if (header.getInt(0) != LOCAL_FILE_HEADER_SIGNATURE)
+            throw new IOException("Invalid local header for " + entry.name + " in " + zipPath);
+        long dataOffset = entry.localHeaderOffset + 30 + (header.getShort(26) & 0xFFFF) + (header.getShort(28) & 0xFFFF);
+        byte[] data = new byte[(int) entry.uncompressedSize];
+        switch (entry.method) {
+            case STORED:
+                if (entry.compressedSize != entry.uncompressedSize)
+                    throw new IOException("Invalid stored entry " + entry.name + " in " + zipPath);
+                readFully(channel, dataOffset, ByteBuffer.wrap(data));
+                return data;
+            case DEFLATED:
+                return inflate(channel, dataOffset, entry, data);
+            default:
+                throw new IOException("Unsupported compression method " + entry.method + " for " + entry.name + " in " + zipPath);
+        }
+    }
+
+    // Package-private for the tests (the same channel must be reused by the reads until the index is closed)
+    synchronized FileChannel getChannel() throws IOException {
+        if (channel == null || !channel.isOpen()) {
+            channel = FileChannel.open(zipPath, StandardOpenOption.READ);
+            OPEN_INDEXES.add(this);
+        }
+        return channel;
+    }
+
+    synchronized boolean isOpen() {
+        return channel != null && channel.isOpen();
+    }
+
+    /**
+     * Closes the file channel used to read the entries (if open). The index is still usable after this call.
+     */
+    @Override
+    public synchronized void close() throws IOException {
+        OPEN_INDEXES.remove(this);
+        if (channel != null) {
+            FileChannel channelToClose = channel;
+            channel = null;
+            channelToClose.close();
+        }
+    }
+
+    /**
+     * Closes the file channels of all the indexes that are still open.
+     */
+    public static void closeAll() {
+        for (ZipIndex index : new ArrayList<>(OPEN_INDEXES)) {
+            try {
+                index.close();
+            } catch (IOException ignored) {
+            }
+        }
+    }
+
+    private byte[] inflate(FileChannel channel, long dataOffset, Entry entry, byte[] data) throws IOException {
+        Inflater inflater = new Inflater(true);
+        try {
+            ByteBuffer buffer = ByteBuffer.allocate((int) Math.min(READ_BUFFER_SIZE, Math.max(1, entry.compressedSize)));
+            long position = dataOffset, end = dataOffset + entry.compressedSize;
+            int inflated = 0;
+            while (inflated < data.length) {
+                if (inflater.needsInput()) {
+                    if (position >= end)
+                        break;
+                    buffer.clear().limit((int) Math.min(buffer.capacity(), end - position));
+                    int n = channel.read(buffer, position);
+                    if (n <= 0)
+                        break;
+                    position += n;
+                    inflater.setInput(buffer.array(), 0, n);
+                }
+                int n = inflater.inflate(data, inflated, data.length - inflated);
+                if (n == 0 && (inflater.finished() || inflater.needsDictionary()))
+                    break;
+                inflated += n;
+            }
+            if (inflated != data.length)
+                throw new IOException("Truncated entry " + entry.name + " in " + zipPath);
+            return data;
+        } catch (DataFormatException e) {
+            throw new IOException("Invalid compressed data for " + entry.name + " in " + zipPath, e);
+        } finally {
+            inflater.end();
+        }
+    }
+
+    /****************************************
+     ***** Index loading (with caching) *****
+     ****************************************/
+
+    public static Path getIndexPath(Path zipPath) {
+        return zipPath.resolveSibling(zipPath.getFileName() + ".index");
+    }
+
+    public static ZipIndex load(Path zipPath) throws IOException {
+        long zipSize = Files.size(zipPath);
+        long zipLastModified = Files.getLastModifiedTime(zipPath).toMillis();
+        Path indexPath = getIndexPath(zipPath);
+        Collection<Entry> entries = readIndexFile(indexPath, zipSize, zipLastModified);
+        if (entries == null) {
+            entries = readCentralDirectory(zipPath);
+            writeIndexFile(indexPath, zipSize, zipLastModified, entries);
+        }
+        return new ZipIndex(zipPath, entries);
+    }
+
+    private static Collection<Entry> readIndexFile(Path indexPath, long zipSize, long zipLastModified) {
+        if (!Files.exists(indexPath))
+            return null;
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(indexPath)))) {
+            if (in.readInt() != INDEX_FILE_MAGIC || in.readLong() != zipSize || in.readLong() != zipLastModified)
+                return null; // Stale index (the zip file has changed)
+            int n = in.readInt();
+            List<Entry> entries = new ArrayList<>(n);
+            for (int i = 0; i < n; i++)
+                entries.add(new Entry(in.readUTF(), in.readUnsignedShort(), in.readLong(), in.readLong(), in.readLong()));
+            return entries;
+        } catch (IOException e) { // Ex: truncated index
+            return null;
+        }
+    }
+
+    private static void writeIndexFile(Path indexPath, long zipSize, long zipLastModified, Collection<Entry> entries) {
+        // Written in a temporary file first, so a concurrent reader never sees a partial index
+        Path tmpPath = indexPath.resolveSibling(indexPath.getFileName() + ".tmp");
+        try {
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tmpPath)))) {
+                out.writeInt(INDEX_FILE_MAGIC);
+                out.writeLong(zipSize);
+                out.writeLong(zipLastModified);
+                out.writeInt(entries.size());
+                for (Entry entry : entries) {
+                    out.writeUTF(entry.name);
+                    out.writeShort(entry.method);
+                    out.writeLong(entry.compressedSize);
+                    out.writeLong(entry.uncompressedSize);
+                    out.writeLong(entry.localHeaderOffset);
+                }
+            }
+            Files.move(tmpPath, indexPath, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            // Not a problem, the central directory will just be read again next time
+            try {
+                Files.deleteIfExists(tmpPath);
+            } catch (IOException ignored) {
+            }
+        }
+    }
+
+    private static List<Entry> readCentralDirectory(Path zipPath) throws IOException {
+        try (FileChannel channel = FileChannel.open(zipPath, StandardOpenOption.READ)) {
+            long zipSize = channel.size();
+            // Searching the end of central directory record (at the end of the file, possibly followed by a comment)
+            int tailSize = (int) Math.min(zipSize, END_OF_CENTRAL_DIRECTORY_SIZE + MAX_COMMENT_SIZE);
+            ByteBuffer tail = readFully(channel, zipSize - tailSize, tailSize);
+            int eocd = tailSize - END_OF_CENTRAL_DIRECTORY_SIZE;
+            while (eocd >= 0 && tail.getInt(eocd) != END_OF_CENTRAL_DIRECTORY_SIGNATURE)
+                eocd--;
+            if (eocd < 0)
+                throw new IOException("Not a zip file: " + zipPath);
+            long entriesCount = tail.getShort(eocd + 10) & 0xFFFF;
+            long directorySize = tail.getInt(eocd + 12) & 0xFFFFFFFFL;
+            long directoryOffset = tail.getInt(eocd + 16) & 0xFFFFFFFFL;
+            // Zip64 archive (too many entries or too big) => the values are in the zip64 end of central directory
+            if ((entriesCount == 0xFFFF || directorySize == 0xFFFFFFFFL || directoryOffset == 0xFFFFFFFFL) && eocd >= 20
+                    && tail.getInt(eocd - 20) == ZIP64_END_OF_CENTRAL_DIRECTORY_LOCATOR_SIGNATURE) {
+                ByteBuffer zip64 = readFully(channel, tail.getLong(eocd - 20 + 8), 56);
+                if (zip64.getInt(0) != ZIP64_END_OF_CENTRAL_DIRECTORY_SIGNATURE)
+                    throw new IOException("Invalid zip64 end of central directory in " + zipPath);
+                entriesCount = zip64.getLong(32);
+                directorySize = zip64.getLong(40);
+                directoryOffset = zip64.getLong(48);
+            }
+            if (directoryOffset < 0 || directorySize < 0 || directoryOffset + directorySize > zipSize || directorySize > Integer.MAX_VALUE)
+                throw new IOException("Invalid central directory in " + zipPath);
+            ByteBuffer directory = readFully(channel, directoryOffset, (int) directorySize);
+            List<Entry> entries = new ArrayList<>((int) Math.min(entriesCount, 65536));
+            int p = 0;
+            while (p + 46 <= directorySize && directory.getInt(p) == CENTRAL_DIRECTORY_HEADER_SIGNATURE) {
+                int flags = directory.getShort(p + 8) & 0xFFFF;
+                int method = directory.getShort(p + 10) & 0xFFFF;
+                long compressedSize = directory.getInt(p + 20) & 0xFFFFFFFFL;
+                long uncompressedSize = directory.getInt(p + 24) & 0xFFFFFFFFL;
+                int nameLength = directory.getShort(p + 28) & 0xFFFF;
+                int extraLength = directory.getShort(p + 30) & 0xFFFF;
+                int commentLength = directory.getShort(p + 32) & 0xFFFF;
+                long localHeaderOffset = directory.getInt(p + 42) & 0xFFFFFFFFL;
+                if (p + 46 + nameLength + extraLength > directorySize)
+                    throw new IOException("Invalid central directory in " + zipPath);
+                String name = new String(directory.array(), p + 46, nameLength, StandardCharsets.UTF_8);
+                // Zip64 extended information (the sizes and offset that didn't fit are stored there, in this order)
+                int extra = p + 46 + nameLength, extraEnd = extra + extraLength;
+                while (extra + 4 <= extraEnd) {
+                    int id = directory.getShort(extra) & 0xFFFF, size = directory.getShort(extra + 2) & 0xFFFF;
+                    if (id == 0x0001) {
+                        int q = extra + 4;
+                        if (uncompressedSize == 0xFFFFFFFFL && q + 8 <= extraEnd) {
+                            uncompressedSize = directory.getLong(q);
+                            q += 8;
+                        }
+                        if (compressedSize == 0xFFFFFFFFL && q + 8 <= extraEnd) {
+                            compressedSize = directory.getLong(q);
+                            q += 8;
+                        }
+                        if (localHeaderOffset == 0xFFFFFFFFL && q + 8 <= extraEnd)
+                            localHeaderOffset = directory.getLong(q);
+                        break;
+                    }
+                    extra += 4 + size;
+                }
+                // Directories and encrypted entries (not expected in jar files) are not indexed
+                if (!name.endsWith("/") && (flags & 1) == 0)
+                    entries.add(new Entry(name, method, compressedSize, uncompressedSize, localHeaderOffset));
+                p += 46 + nameLength + extraLength + commentLength;
+            }
+            return entries;
+        }
+    }
+
+    private static ByteBuffer readFully(FileChannel channel, long position, int length) throws IOException {
+        return readFully(channel, position, ByteBuffer.allocate(length).order(ByteOrder.LITTLE_ENDIAN));
+    }
+
+    private static ByteBuffer readFully(FileChannel channel, long position, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) < 0)
+                throw new EOFException("Unexpected end of zip file");
+        }
+        return buffer;
+    }
+
+    private static final class Entry {
+        private final String name;
+        private final int method;
+        private final long compressedSize;
+        private final long uncompressedSize;
+        private final long localHeaderOffset;
+
+        private Entry(String name, int method, long compressedSize, long uncompressedSize, long localHeaderOffset) {
+            this.name = name;
+            this.method = method;
+            this.compressedSize = compressedSize;
+            this.uncompressedSize = uncompressedSize;
+            this.localHeaderOffset = localHeaderOffset;
+        }
+    }
+}
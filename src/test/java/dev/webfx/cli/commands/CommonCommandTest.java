@@ -0,0 +1,96 @@
+package dev.webfx.cli.commands;
+
+import dev.webfx.cli.WebFxCLI;
+import dev.webfx.cli.core.*;
+import dev.webfx.cli.util.xml.XmlUtil;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import picocli.CommandLine;
+import picocli.CommandLine.Command;
+import picocli.CommandLine.Option;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Checks that the artifacts missing in offline mode are reported at the end of any command (not only Update), including
+ * when the command failed because of them, and that nothing is downloaded in offline mode.
+ *
+ * @author Bruno Salmon
+ */
+class CommonCommandTest {
+
+    private static final String MISSING_LIBRARY = "fixture.offline:missing-lib:1.0";
+
+    @TempDir
+    Path tempDir;
+    private final List<String> logs = new ArrayList<>();
+
+    @BeforeEach
+    void setUp() {
+        Logger.setLogConsumer(message -> logs.add(String.valueOf(message)));
+    }
+
+    @AfterEach
+    void tearDown() {
+        Logger.setLogConsumer(System.out::println);
+        MavenUtil.setOffline(false);
+    }
+
+    @Test
+    void missingArtifactsReportedAtTheEndOfAnyCommand() {
+        assertEquals(0, execute("--offline", "fetch", "-D", tempDir.toString(), "--classifiers", "pom", "xml:webfx"));
+        assertTrue(MavenUtil.isOffline());
+        assertEquals(List.of("2 artifacts are missing in the local Maven repository (offline mode):\n" +
+                "  " + MISSING_LIBRARY + ":pom\n" +
+                "  " + MISSING_LIBRARY + ":xml:webfx\n" +
+                "The result may be incomplete. Run the command again online to download them."), logs); // No Maven invocation
+    }
+
+    @Test
+    void missingArtifactsReportedWhenTheCommandFails() {
+        assertNotEquals(0, execute("fetch", "--offline", "-D", tempDir.toString(), "--classifiers", "jar", "--fail"));
+        assertEquals(1, logs.size());
+        assertTrue(logs.get(0).startsWith("1 artifacts are missing"), logs.get(0));
+        assertTrue(logs.get(0).contains("\n  " + MISSING_LIBRARY + ":jar\n"), logs.get(0)); // Imported directly (no requiring module)
+        // The report is not repeated by the next command
+        logs.clear();
+        assertEquals(0, execute("fetch", "--offline", "-D", tempDir.toString()));
+        assertEquals(List.of(), logs);
+    }
+
+    private static int execute(String... args) {
+        return new CommandLine(new WebFxCLI())
+                .addSubcommand(new Fetch())
+                .setExecutionStrategy(CommonCommand::executeAndReportMissingArtifacts)
+                .setExecutionExceptionHandler((ex, commandLine, parseResult) -> 1)
+                .execute(args);
+    }
+
+    @Command(name = "fetch")
+    static final class Fetch extends CommonSubcommand implements Runnable {
+
+        @Option(names = "--classifiers", arity = "1..*")
+        private String[] classifiers = {};
+
+        @Option(names = "--fail")
+        private boolean fail;
+
+        @Override
+        public void run() {
+            ModuleRegistry registry = getWorkspace().getModuleRegistry();
+            registry.importLibrary(LibraryModule.createWebFxLibraryModule(
+                    XmlUtil.parseXmlString("<webfx-library artifact=\"" + MISSING_LIBRARY + "\"/>").getDocumentElement()));
+            M2ProjectModule library = (M2ProjectModule) registry.getRegisteredProjectModule("missing-lib");
+            for (String classifier : classifiers)
+                library.downloadArtifactClassifier(classifier);
+            if (fail)
+                throw new CliException("Unresolved module for package missing.lib");
+        }
+    }
+}
@@ -0,0 +1,168 @@
+package dev.webfx.cli.core;
+
+import dev.webfx.cli.util.javacode.JavaCode;
+import dev.webfx.cli.util.javacode.JavaCodePackagesFinder;
+import dev.webfx.cli.util.javacode.OptionalJavaServicesFinder;
+import dev.webfx.cli.util.javacode.RequiredJavaServicesFinder;
+import dev.webfx.cli.util.xml.XmlUtil;
+import dev.webfx.cli.util.zip.ZipIndex;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import javax.tools.JavaCompiler;
+import javax.tools.ToolProvider;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Side by side validation of the bytecode analyze with the sources analyze, on a fixture jar compiled from the fixture
+ * sources (services, lambdas, switches, long constants, inner classes, fully qualified names), and checks that the
+ * bytecode is considered only for the WebFX libraries without export snapshot (the jar of the other M2 modules is not
+ * downloaded).
+ *
+ * @author Bruno Salmon
+ */
+class JavaBytecodeAnalyzerTest {
+
+    private static final String SPI = "fx.b.Spi";
+
+    @TempDir
+    Path tempDir;
+    private Path sourcesDirectory, jarPath;
+    private Path previousLocalRepository;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        sourcesDirectory = Path.of(JavaBytecodeAnalyzerTest.class.getResource("/dev/webfx/cli/core/bytecode").toURI());
+        Path classesDirectory = tempDir.resolve("classes");
+        JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+        List<String> args = new ArrayList<>(List.of("-d", classesDirectory.toString()));
+        listFiles(sourcesDirectory, ".java").forEach(p -> args.add(p.toString()));
+        assertEquals(0, compiler.run(null, null, null, args.toArray(new String[0])));
+        jarPath = tempDir.resolve("fixture.jar");
+        try (ZipOutputStream out = new ZipOutputStream(Files.newOutputStream(jarPath))) {
+            for (Path classFile : listFiles(classesDirectory, ".class")) {
+                out.putNextEntry(new ZipEntry(classesDirectory.relativize(classFile).toString().replace('\\', '/')));
+                out.write(Files.readAllBytes(classFile));
+                out.closeEntry();
+            }
+            out.putNextEntry(new ZipEntry("META-INF/services/" + SPI));
+            out.write("fx.c.Util\n".getBytes(StandardCharsets.UTF_8));
+            out.closeEntry();
+        }
+        previousLocalRepository = MavenUtil.getM2LocalRepository();
+    }
+
+    @AfterEach
+    void tearDown() {
+        MavenUtil.setOffline(false);
+        M2MissingArtifacts.clear();
+        if (previousLocalRepository != null)
+            MavenUtil.setM2LocalRepository(previousLocalRepository);
+    }
+
+    @Test
+    void bytecodeAnalyzeMatchesSourcesAnalyze() throws Exception {
+        JavaBytecodeAnalyzer bytecode = new JavaBytecodeAnalyzer(ZipIndex.load(jarPath));
+        Set<String> packages = new TreeSet<>(), usedPackages = new TreeSet<>(), requiredServices = new TreeSet<>(), optionalServices = new TreeSet<>();
+        for (Path javaFile : listFiles(sourcesDirectory, ".java")) {
+            String packageName = sourcesDirectory.relativize(javaFile.getParent()).toString().replace('\\', '/').replace('/', '.');
+            packages.add(packageName);
+            JavaCode javaCode = new JavaCode(javaFile);
+            new JavaCodePackagesFinder(javaCode).forEach(p -> { if (!p.equals(packageName)) usedPackages.add(p); });
+            new RequiredJavaServicesFinder(javaCode).forEach(requiredServices::add);
+            new OptionalJavaServicesFinder(javaCode).forEach(optionalServices::add);
+        }
+        usedPackages.add("fx.b"); // package of the provided service (added by the sources analyze too)
+        assertEquals(packages, new TreeSet<>(toList(bytecode.getPackages())));
+        assertEquals(usedPackages, new TreeSet<>(toList(bytecode.getUsedPackages())));
+        assertEquals(requiredServices, new TreeSet<>(toList(bytecode.getUsedRequiredServices())));
+        assertEquals(optionalServices, new TreeSet<>(toList(bytecode.getUsedOptionalServices())));
+        assertEquals(Set.of(SPI), requiredServices); // checking the fixture covers the services
+        assertEquals(Set.of("fx.b.Opt"), optionalServices);
+        assertTrue(bytecode.declaresClass("fx.c.Util.Inner"));
+        assertTrue(bytecode.usesJavaClass("java.util.concurrent.atomic.AtomicInteger"));
+        assertFalse(bytecode.usesJavaClass("java.util.concurrent.atomic.AtomicLong"));
+    }
+
+    @Test
+    void packagesReadFromTheJarIndexOnly() throws Exception {
+        JavaBytecodeAnalyzer bytecode = new JavaBytecodeAnalyzer(ZipIndex.load(jarPath));
+        Set<String> expectedPackages = new TreeSet<>(toList(new JavaBytecodeAnalyzer(ZipIndex.load(jarPath)).getPackages()));
+        // The class files are not read to get the packages (so a damaged jar doesn't prevent it)
+        Files.write(jarPath, new byte[0]);
+        assertEquals(expectedPackages, new TreeSet<>(toList(bytecode.getPackages())));
+        assertThrows(UncheckedIOException.class, () -> bytecode.getUsedPackages().count());
+    }
+
+    @Test
+    void bytecodeConsideredOnlyForWebFxLibrariesWithoutExportSnapshot() throws Exception {
+        Path localRepository = tempDir.resolve("repository");
+        writeArtifact(localRepository, "webfxlib", ".pom", pom("webfxlib"));
+        writeArtifact(localRepository, "webfxlib", "-webfx.xml", "<project/>");
+        Files.copy(jarPath, artifactPath(localRepository, "webfxlib", ".jar"));
+        writeArtifact(localRepository, "thirdparty", ".pom", pom("thirdparty"));
+        MavenUtil.setM2LocalRepository(localRepository);
+        MavenUtil.setOffline(true); // The missing artifacts (sources jars & third-party jar) are just reported
+        ModuleRegistry registry = new ModuleRegistry(tempDir);
+        M2ProjectModule webFxLibrary = importLibrary(registry, "webfxlib", true);
+        M2ProjectModule thirdParty = importLibrary(registry, "thirdparty", false);
+
+        JavaSourceRootAnalyzer webFxAnalyzer = webFxLibrary.getMainJavaSourceRootAnalyzer();
+        assertTrue(webFxAnalyzer.getUsedJavaPackages().anyMatch("java.util.concurrent.atomic"::equals));
+        assertEquals(List.of(SPI), toList(webFxAnalyzer.getUsedRequiredJavaServices()));
+        assertEquals(List.of("fx.b.Opt"), toList(webFxAnalyzer.getUsedOptionalJavaServices()));
+
+        JavaSourceRootAnalyzer thirdPartyAnalyzer = thirdParty.getMainJavaSourceRootAnalyzer();
+        assertTrue(thirdPartyAnalyzer.getUsedJavaPackages().isEmpty());
+        assertTrue(thirdPartyAnalyzer.getUsedJavaServices().isEmpty());
+        assertTrue(thirdPartyAnalyzer.getDeclaredJavaServices().isEmpty());
+        assertFalse(thirdPartyAnalyzer.usesJavaClass("java.util.concurrent.atomic.AtomicInteger"));
+        // Only the sources jars have been requested (not the third-party jar)
+        String report = M2MissingArtifacts.getReport();
+        assertTrue(report.contains("bc:thirdparty:1.0:jar:sources"), report);
+        assertFalse(report.contains("bc:thirdparty:1.0:jar required"), report);
+    }
+
+    private static M2ProjectModule importLibrary(ModuleRegistry registry, String artifactId, boolean webFx) {
+        registry.importLibrary(new LibraryModule(XmlUtil.parseXmlString("<library artifact=\"bc:" + artifactId + ":1.0\"/>").getDocumentElement(), webFx));
+        return registry.getRegisteredM2ProjectModule(artifactId);
+    }
+
+    private static String pom(String artifactId) {
+        return "<project><modelVersion>4.0.0</modelVersion><groupId>bc</groupId><artifactId>" + artifactId + "</artifactId><version>1.0</version></project>";
+    }
+
+    private static Path artifactPath(Path localRepository, String artifactId, String suffix) {
+        return localRepository.resolve("bc").resolve(artifactId).resolve("1.0").resolve(artifactId + "-1.0" + suffix);
+    }
+
+    private static void writeArtifact(Path localRepository, String artifactId, String suffix, String content) throws Exception {
+        Path path = artifactPath(localRepository, artifactId, suffix);
+        Files.createDirectories(path.getParent());
+        Files.writeString(path, content);
+    }
+
+    private static List<Path> listFiles(Path directory, String extension) throws Exception {
+        try (Stream<Path> paths = Files.walk(directory)) {
+            return paths.filter(p -> p.toString().endsWith(extension)).sorted().collect(Collectors.toList());
+        }
+    }
+
+    private static List<String> toList(Iterable<String> iterable) {
+        List<String> list = new ArrayList<>();
+        iterable.forEach(list::add);
+        return list;
+    }
+}
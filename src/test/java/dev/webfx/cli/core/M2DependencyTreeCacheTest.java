@@ -0,0 +1,78 @@
+package dev.webfx.cli.core;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Checks that the digest of a cached dependency tree covers all the poms reached by its resolution, including when
+ * they were missing before the Maven invocation (that downloaded them), or when the model can't be built in-process.
+ *
+ * @author Bruno Salmon
+ */
+class M2DependencyTreeCacheTest {
+
+    @TempDir
+    Path localRepository;
+
+    @Test
+    void digestCoversPomsDownloadedByMaven() throws Exception {
+        writePom("lib", "<parent><groupId>f</groupId><artifactId>parent</artifactId><version>1.0</version></parent>");
+        M2LocalRepositoryResolver resolver = new M2LocalRepositoryResolver(localRepository);
+        // Missing parent => not resolvable in-process, so Maven is invoked (and downloads the parent and its bom)
+        assertNull(resolver.resolveDependencyTree("f", "lib", "1.0"));
+        writePom("parent", "<dependencyManagement><dependencies><dependency><groupId>f</groupId><artifactId>bom</artifactId><version>1.0</version><type>pom</type><scope>import</scope></dependency></dependencies></dependencyManagement>");
+        writePom("bom", "");
+
+        Set<Path> reachedPomPaths = new LinkedHashSet<>();
+        resolver.collectReachedPomPaths("f", "lib", "1.0", reachedPomPaths);
+        assertEquals(Set.of(pomPath("lib"), pomPath("parent"), pomPath("bom")), reachedPomPaths);
+
+        Path cachePath = localRepository.resolve("dependency-tree.txt");
+        Files.writeString(cachePath, "tree");
+        M2DependencyTreeCache.recordDigest(cachePath, reachedPomPaths);
+        assertTrue(M2DependencyTreeCache.isValid(cachePath));
+        String bom = Files.readString(pomPath("bom"));
+        Files.writeString(pomPath("bom"), bom + " ");
+        assertFalse(M2DependencyTreeCache.isValid(cachePath));
+        Files.writeString(pomPath("bom"), bom);
+        assertTrue(M2DependencyTreeCache.isValid(cachePath));
+    }
+
+    @Test
+    void digestCoversPomsReachedByUnresolvableModel() throws Exception {
+        // Missing bom => not resolvable in-process, but the poms reached before failing are still in the digest
+        writePom("lib", "<parent><groupId>f</groupId><artifactId>parent</artifactId><version>1.0</version></parent>");
+        writePom("parent", "<dependencyManagement><dependencies><dependency><groupId>f</groupId><artifactId>bom</artifactId><version>1.0</version><type>pom</type><scope>import</scope></dependency></dependencies></dependencyManagement>");
+        M2LocalRepositoryResolver resolver = new M2LocalRepositoryResolver(localRepository);
+        assertNull(resolver.resolveDependencyTree("f", "lib", "1.0"));
+
+        Set<Path> reachedPomPaths = new LinkedHashSet<>();
+        resolver.collectReachedPomPaths("f", "lib", "1.0", reachedPomPaths);
+        assertEquals(Set.of(pomPath("lib"), pomPath("parent"), pomPath("bom")), reachedPomPaths);
+
+        Path cachePath = localRepository.resolve("dependency-tree.txt");
+        Files.writeString(cachePath, "tree");
+        M2DependencyTreeCache.recordDigest(cachePath, reachedPomPaths);
+        assertTrue(M2DependencyTreeCache.isValid(cachePath));
+        writePom("bom", ""); // downloaded later
+        assertFalse(M2DependencyTreeCache.isValid(cachePath));
+    }
+
+    private Path pomPath(String artifactId) {
+        return localRepository.resolve("f").resolve(artifactId).resolve("1.0").resolve(artifactId + "-1.0.pom");
+    }
+
+    private void writePom(String artifactId, String content) throws Exception {
+        Path pomPath = pomPath(artifactId);
+        Files.createDirectories(pomPath.getParent());
+        Files.writeString(pomPath, "<project><modelVersion>4.0.0</modelVersion>" + content + "<groupId>f</groupId><artifactId>" +
+                artifactId + "</artifactId><version>1.0</version><packaging>pom</packaging></project>");
+    }
+}
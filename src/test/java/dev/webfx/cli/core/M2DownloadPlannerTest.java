@@ -0,0 +1,210 @@
+package dev.webfx.cli.core;
+
+import dev.webfx.cli.util.xml.XmlUtil;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestInfo;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+/**
+ * End-to-end test of the download plans, with Maven resolving the artifacts from a file:// repository into a new
+ * local repository (shared by the tests, which use different group ids, so the Maven plugins are downloaded only once
+ * if they are not already in the user local repository, see maven.repo.local.tail). Skipped if Maven is not installed.
+ *
+ * @author Bruno Salmon
+ */
+class M2DownloadPlannerTest {
+
+    @TempDir
+    static Path localRepository;
+    @TempDir
+    Path tempDir;
+    private String groupId;
+    private Path remoteRepository, mavenConfig;
+    private Path previousLocalRepository;
+    private final List<String> mavenCommands = new ArrayList<>(); // Maven invocations logged by ProcessCall
+
+    @BeforeEach
+    void setUp(TestInfo testInfo) throws Exception {
+        assumeTrue(isMavenInstalled(), "Maven is not installed");
+        groupId = "fixture." + testInfo.getTestMethod().orElseThrow().getName();
+        remoteRepository = tempDir.resolve("remote");
+        // WebFX library with a webfx.xml file, and a transitive dependency that doesn't exist in the repository
+        writeRemoteArtifact("lib", "pom", pom("lib", "<dependencies><dependency><groupId>" + groupId + "</groupId><artifactId>missing-transitive</artifactId><version>1.0</version></dependency></dependencies>"));
+        writeRemoteArtifact("lib", "-webfx.xml", "<project><exported-packages><package>fixture.lib</package></exported-packages></project>");
+        // Library declared as WebFX library but without webfx.xml file
+        writeRemoteArtifact("nowebfx", "pom", pom("nowebfx", ""));
+        // Third-party library (its webfx.xml file is not planned)
+        writeRemoteArtifact("thirdparty", "pom", pom("thirdparty", ""));
+        Path settings = tempDir.resolve("settings.xml");
+        Files.writeString(settings, "<settings><profiles><profile><id>fixture</id>" +
+                "<activation><activeByDefault>true</activeByDefault></activation>" +
+                "<repositories><repository><id>fixture</id><url>" + remoteRepository.toUri() + "</url></repository></repositories>" +
+                "</profile></profiles></settings>");
+        // Maven looks for .mvn from its working directory (the plan directory) up to the root (one arg per line)
+        mavenConfig = tempDir.resolve(".mvn").resolve("maven.config");
+        Files.createDirectories(mavenConfig.getParent());
+        Files.writeString(mavenConfig, String.join("\n", "-B", "-s", settings.toString(),
+                "-Dmaven.repo.local=" + localRepository,
+                "-Dmaven.repo.local.tail=" + Path.of(System.getProperty("user.home"), ".m2", "repository")));
+        previousLocalRepository = MavenUtil.getM2LocalRepository();
+        MavenUtil.setM2LocalRepository(localRepository);
+        Logger.setLogConsumer(message -> {
+            String line = String.valueOf(message);
+            if (line.contains("mvn ") && line.contains(" dependency:"))
+                mavenCommands.add(line);
+            System.out.println(line);
+        });
+    }
+
+    @AfterEach
+    void tearDown() {
+        Logger.setLogConsumer(System.out::println);
+        if (previousLocalRepository != null)
+            MavenUtil.setM2LocalRepository(previousLocalRepository);
+        MavenUtil.setOffline(false);
+        M2MissingArtifacts.clear();
+    }
+
+    @Test
+    void planFetchesAllMissingArtifactsWithoutTransitiveDependencies() throws Exception {
+        ModuleRegistry registry = new ModuleRegistry(tempDir);
+        M2RootModule lib = importLibrary(registry, "lib", true);
+        M2RootModule nowebfx = importLibrary(registry, "nowebfx", true);
+        M2RootModule thirdparty = importLibrary(registry, "thirdparty", false);
+        M2DownloadPlanner planner = new M2DownloadPlanner(registry, tempDir.resolve("download-plan"));
+
+        planner.downloadArtifactClassifier(lib, "pom");
+
+        // A single plan has fetched all the poms and the WebFX library webfx.xml files
+        assertTrue(Files.exists(lib.getM2ArtifactSubPath(".pom")));
+        assertTrue(Files.exists(lib.getM2ArtifactSubPath("-webfx.xml")));
+        assertTrue(Files.exists(nowebfx.getM2ArtifactSubPath(".pom")));
+        assertTrue(Files.exists(thirdparty.getM2ArtifactSubPath(".pom")));
+        assertFalse(Files.exists(thirdparty.getM2ArtifactSubPath("-webfx.xml.lastUpdated"))); // not planned
+        // The transitive dependencies are not resolved
+        assertFalse(Files.exists(localRepository.resolve(groupId.replace('.', '/')).resolve("missing-transitive")));
+
+        // The artifacts fetched by the plan, or reported as not existing, are not requested again
+        mavenCommands.clear();
+        planner.downloadArtifactClassifier(thirdparty, "pom");
+        planner.downloadArtifactClassifier(nowebfx, "xml:webfx");
+        assertEquals(List.of(), mavenCommands);
+        // But an artifact that wasn't part of a plan is still requested (individually as there is nothing else missing)
+        Files.writeString(mavenConfig, "--no-such-option"); // Fails immediately (no need to actually resolve it)
+        planner.downloadArtifactClassifier(lib, "jar:sources");
+        assertEquals(1, mavenCommands.size());
+        assertTrue(mavenCommands.get(0).contains("dependency:get"), mavenCommands.get(0));
+    }
+
+    @Test
+    void artifactsNotFetchedForAnotherReasonAreRequestedAgain() throws Exception {
+        ModuleRegistry registry = new ModuleRegistry(tempDir);
+        M2RootModule lib = importLibrary(registry, "lib", true);
+        M2RootModule nowebfx = importLibrary(registry, "nowebfx", true);
+        M2DownloadPlanner planner = new M2DownloadPlanner(registry, tempDir.resolve("download-plan"));
+        // Simulating a network error on the remote repository
+        Path settings = tempDir.resolve("settings.xml");
+        Files.writeString(settings, Files.readString(settings).replace(remoteRepository.toUri().toString(), "https://127.0.0.1:1/"));
+
+        planner.downloadArtifactClassifier(lib, "pom");
+        assertFalse(Files.exists(nowebfx.getM2ArtifactSubPath(".pom")));
+
+        // The nowebfx pom is not reported as not existing, so it's requested again
+        mavenCommands.clear();
+        Files.writeString(mavenConfig, "--no-such-option"); // Fails immediately (no need to actually resolve it)
+        planner.downloadArtifactClassifier(nowebfx, "pom");
+        assertFalse(mavenCommands.isEmpty());
+    }
+
+    @Test
+    void artifactsUnresolvedByAFailedPlanAreNotPlannedAgain() throws Exception {
+        ModuleRegistry registry = new ModuleRegistry(tempDir);
+        M2RootModule lib = importLibrary(registry, "lib", true);
+        M2RootModule nowebfx = importLibrary(registry, "nowebfx", true);
+        M2DownloadPlanner planner = new M2DownloadPlanner(registry, tempDir.resolve("download-plan"));
+        // Simulating a network error on the remote repository
+        Path settings = tempDir.resolve("settings.xml");
+        String workingSettings = Files.readString(settings);
+        Files.writeString(settings, workingSettings.replace(remoteRepository.toUri().toString(), "https://127.0.0.1:1/"));
+
+        planner.downloadArtifactClassifier(lib, "pom");
+        assertFalse(Files.exists(nowebfx.getM2ArtifactSubPath(".pom")));
+
+        // The artifacts of the failed plan are not part of the next plans (which would fail again)
+        Files.writeString(settings, workingSettings);
+        M2RootModule thirdparty = importLibrary(registry, "thirdparty", false);
+        mavenCommands.clear();
+        planner.downloadArtifactClassifier(thirdparty, "pom");
+        assertEquals(1, mavenCommands.size(), mavenCommands.toString());
+        assertTrue(mavenCommands.get(0).contains("dependency:get"), mavenCommands.get(0));
+        assertTrue(Files.exists(thirdparty.getM2ArtifactSubPath(".pom")));
+        // But they are still downloaded individually when requested
+        mavenCommands.clear();
+        planner.downloadArtifactClassifier(nowebfx, "pom");
+        assertEquals(1, mavenCommands.size(), mavenCommands.toString());
+        assertTrue(mavenCommands.get(0).contains("dependency:get"), mavenCommands.get(0));
+        assertTrue(Files.exists(nowebfx.getM2ArtifactSubPath(".pom")));
+    }
+
+    @Test
+    void missingArtifactsReportTheRequiringModule() throws Exception {
+        ModuleRegistry registry = new ModuleRegistry(tempDir);
+        M2RootModule app = importLibrary(registry, "app", true, null);
+        M2RootModule lib = importLibrary(registry, "lib", true, app);
+        importLibrary(registry, "lib", true, lib); // The first requiring module is kept
+        M2ProjectModule libChild = new M2ProjectModule("lib-child", lib);
+        M2DownloadPlanner planner = new M2DownloadPlanner(registry, tempDir.resolve("download-plan"));
+        MavenUtil.setOffline(true);
+
+        planner.downloadArtifactClassifier(app, "pom");
+        planner.downloadArtifactClassifier(lib, "pom");
+        planner.downloadArtifactClassifier(libChild, "pom");
+
+        assertEquals(List.of(), mavenCommands);
+        String report = M2MissingArtifacts.getReport();
+        assertTrue(report.contains("\n  " + groupId + ":app:1.0:pom\n"), report); // Imported directly, so no requiring module
+        assertTrue(report.contains("\n  " + groupId + ":lib:1.0:pom required by app\n"), report);
+        assertTrue(report.contains("\n  " + groupId + ":lib-child:1.0:pom required by lib\n"), report); // Through its aggregate
+    }
+
+    private M2RootModule importLibrary(ModuleRegistry registry, String artifactId, boolean webFx) throws Exception {
+        return importLibrary(registry, artifactId, webFx, null);
+    }
+
+    private M2RootModule importLibrary(ModuleRegistry registry, String artifactId, boolean webFx, Module requiringModule) throws Exception {
+        LibraryModule library = new LibraryModule(XmlUtil.parseXmlString("<library artifact=\"" + groupId + ":" + artifactId + ":1.0\"/>").getDocumentElement(), webFx);
+        registry.importLibrary(library, requiringModule);
+        return (M2RootModule) registry.getRegisteredM2ProjectModule(artifactId);
+    }
+
+    private void writeRemoteArtifact(String artifactId, String suffix, String content) throws Exception {
+        Path path = remoteRepository.resolve(groupId.replace('.', '/')).resolve(artifactId).resolve("1.0").resolve(artifactId + "-1.0" + (suffix.equals("pom") ? ".pom" : suffix));
+        Files.createDirectories(path.getParent());
+        Files.writeString(path, content);
+    }
+
+    private String pom(String artifactId, String dependencies) {
+        return "<project><modelVersion>4.0.0</modelVersion><groupId>" + groupId + "</groupId><artifactId>" + artifactId +
+                "</artifactId><version>1.0</version><packaging>pom</packaging>" + dependencies + "</project>";
+    }
+
+    private static boolean isMavenInstalled() {
+        String path = System.getenv("PATH");
+        if (path != null)
+            for (String directory : path.split(File.pathSeparator))
+                if (Files.isRegularFile(Path.of(directory, "mvn")) || Files.isRegularFile(Path.of(directory, "mvn.cmd")))
+                    return true;
+        return false;
+    }
+}
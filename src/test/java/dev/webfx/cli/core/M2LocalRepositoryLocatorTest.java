@@ -0,0 +1,125 @@
+package dev.webfx.cli.core;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Checks the in-process location of the Maven local repository over fixture settings, .mvn/maven.config,
+ * .mvn/jvm.config and environments, in the Maven precedence order.
+ *
+ * @author Bruno Salmon
+ */
+class M2LocalRepositoryLocatorTest {
+
+    @TempDir
+    Path root;
+    private Path home, project, mavenHome;
+    private final Map<String, String> environment = new HashMap<>(), systemProperties = new HashMap<>();
+
+    @BeforeEach
+    void setUp() throws Exception {
+        home = root.resolve("home");
+        project = root.resolve("project");
+        mavenHome = root.resolve("maven");
+        Files.createDirectories(home);
+        Files.createDirectories(project.resolve("module"));
+        Files.createDirectories(mavenHome.resolve("bin"));
+        Files.createFile(mavenHome.resolve("bin").resolve("mvn"));
+        Files.createFile(mavenHome.resolve("bin").resolve("mvn.cmd"));
+        environment.put("GLOBAL_REPO", root.resolve("global").toString());
+        writeSettings(mavenHome.resolve("conf").resolve("settings.xml"), "${env.GLOBAL_REPO}/repository");
+    }
+
+    @Test
+    void defaultRepository() {
+        assertEquals(home.resolve(".m2").resolve("repository"), locate(project));
+    }
+
+    @Test
+    void userSettings() throws Exception {
+        writeSettings(home.resolve(".m2").resolve("settings.xml"), "${user.home}/user-repository");
+        environment.put("MAVEN_HOME", mavenHome.toString()); // The user settings have precedence over the global ones
+        assertEquals(home.resolve("user-repository"), locate(project));
+    }
+
+    @Test
+    void globalSettingsFromMavenHome() {
+        environment.put("PATH", root.resolve("none") + File.pathSeparator + mavenHome.resolve("bin"));
+        assertEquals(root.resolve("global").resolve("repository"), locate(project));
+        environment.remove("PATH");
+        environment.put("M2_HOME", mavenHome.toString());
+        assertEquals(root.resolve("global").resolve("repository"), locate(project));
+        environment.remove("M2_HOME");
+        systemProperties.put("maven.home", mavenHome.toString());
+        assertEquals(root.resolve("global").resolve("repository"), locate(project));
+    }
+
+    @Test
+    void globalSettingsFromMavenConf() throws Exception {
+        writeSettings(root.resolve("conf").resolve("settings.xml"), "conf-repository");
+        systemProperties.put("maven.conf", root.resolve("conf").toString());
+        environment.put("MAVEN_HOME", mavenHome.toString());
+        assertEquals(project.resolve("conf-repository"), locate(project)); // Relative to the working directory
+    }
+
+    @Test
+    void repoLocalProperty() throws Exception {
+        writeSettings(home.resolve(".m2").resolve("settings.xml"), "${user.home}/user-repository");
+        Path mvnDirectory = Files.createDirectories(project.resolve(".mvn"));
+        Files.writeString(mvnDirectory.resolve("jvm.config"), "-Xmx1g -Dmaven.repo.local=" + root.resolve("jvm") + "\n");
+        assertEquals(root.resolve("jvm"), locate(project.resolve("module")));
+        // MAVEN_OPTS comes after jvm.config (and the quoted values may contain spaces)
+        environment.put("MAVEN_OPTS", "-Xmx1g -Dmaven.repo.local=\"" + root.resolve("opts repository") + "\"");
+        assertEquals(root.resolve("opts repository"), locate(project.resolve("module")));
+        // maven.config comes after MAVEN_OPTS (and is found from a sub-directory)
+        Files.writeString(mvnDirectory.resolve("maven.config"), "# comment\n-T 4\n-Dmaven.repo.local=${maven.multiModuleProjectDirectory}/.repository\n");
+        assertEquals(project.resolve(".repository"), locate(project.resolve("module")));
+        // Not applying outside the project
+        environment.remove("MAVEN_OPTS");
+        assertEquals(home.resolve("user-repository"), locate(root));
+    }
+
+    @Test
+    void settingsOptionsOfMavenConfig() throws Exception {
+        writeSettings(home.resolve(".m2").resolve("settings.xml"), "${user.home}/user-repository");
+        writeSettings(project.resolve("alt-settings.xml"), "${maven.multiModuleProjectDirectory}/alt-repository");
+        writeSettings(project.resolve("alt-global-settings.xml"), "alt-global-repository");
+        Path mvnDirectory = Files.createDirectories(project.resolve(".mvn"));
+        Files.writeString(mvnDirectory.resolve("maven.config"), "--settings=alt-settings.xml\n");
+        assertEquals(project.resolve("alt-repository"), locate(project));
+        // Global settings used when the user settings don't define the local repository
+        Files.writeString(mvnDirectory.resolve("maven.config"), "-s missing.xml -gs alt-global-settings.xml\n");
+        assertEquals(project.resolve("alt-global-repository"), locate(project));
+    }
+
+    @Test
+    void unreadableSettingsIgnored() throws Exception {
+        Files.createDirectories(home.resolve(".m2"));
+        Files.writeString(home.resolve(".m2").resolve("settings.xml"), "<settings><localRepository>");
+        Files.writeString(root.resolve("settings.xml"), "<settings><localRepository> </localRepository></settings>");
+        systemProperties.put("maven.conf", root.toString());
+        assertEquals(home.resolve(".m2").resolve("repository"), locate(project));
+    }
+
+    private Path locate(Path workingDirectory) {
+        return new M2LocalRepositoryLocator(workingDirectory, home, environment::get, systemProperties::get).locateLocalRepository();
+    }
+
+    private static void writeSettings(Path settingsPath, String localRepository) throws Exception {
+        Files.createDirectories(settingsPath.getParent());
+        Files.writeString(settingsPath, "<settings xmlns=\"http://maven.apache.org/SETTINGS/1.0.0\">\n" +
+                "  <!-- <localRepository>commented</localRepository> -->\n" +
+                "  <localRepository>" + localRepository + "</localRepository>\n" +
+                "  <profiles><profile><id>p</id><properties><localRepository>nested</localRepository></properties></profile></profiles>\n" +
+                "</settings>");
+    }
+}
@@ -0,0 +1,73 @@
+package dev.webfx.cli.core;
+
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URISyntaxException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Compares the in-process resolution of the fixture repository with the dependency:tree outputs recorded with Maven
+ * 3.9.11 (dependency plugin 3.7.0) on the same repository:
+ * - lib: nearest wins, dependency management of the parent and of an imported bom, exclusions, scopes and optional
+ * - lib2: snapshot coming from a remote repository (not resolvable in-process)
+ * - lib3: missing pom (not resolvable in-process)
+ * - lib4: explicit managed dependency declared after a bom import (the explicit one wins)
+ * - lib5: explicit managed dependencies of the parent versus the ones of a bom imported by the child (the explicit
+ *   ones win), and explicit version of a direct dependency (kept despite its dependency management)
+ *
+ * @author Bruno Salmon
+ */
+class M2LocalRepositoryResolverTest {
+
+    private static final String RESOURCES = "/dev/webfx/cli/core/resolver/";
+
+    @ParameterizedTest
+    @ValueSource(strings = {"lib", "lib4", "lib5"})
+    void resolvedTreeMatchesMavenTree(String artifactId) throws Exception {
+        assertEquals(readMavenTree(artifactId), newResolver().resolveDependencyTree("f", artifactId, "1.0"));
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {"lib2", "lib3"})
+    void unresolvableTreeLeftToMaven(String artifactId) throws Exception {
+        assertFalse(readMavenTree(artifactId).isEmpty());
+        assertNull(newResolver().resolveDependencyTree("f", artifactId, "1.0"));
+    }
+
+    private static M2LocalRepositoryResolver newResolver() throws URISyntaxException {
+        return new M2LocalRepositoryResolver(Path.of(M2LocalRepositoryResolverTest.class.getResource(RESOURCES + "repository").toURI()));
+    }
+
+    // Parsing of the recorded output the same way as M2RootModule does
+    private static List<String> readMavenTree(String artifactId) throws IOException {
+        List<String> artifacts = new ArrayList<>();
+        boolean treeLogStart = false;
+        for (String line : readResource(RESOURCES + "dependency-tree/" + artifactId + ".txt").split("\n")) {
+            assertTrue(line.startsWith("[INFO] "), line);
+            line = line.substring(7);
+            if (!treeLogStart)
+                treeLogStart = M2RootModule.isDependencyTreeStart(line);
+            else if (line.startsWith("-----"))
+                break;
+            else if (!Character.isAlphabetic(line.charAt(0)))
+                artifacts.add(M2RootModule.getDependencyTreeArtifact(line));
+        }
+        assertTrue(treeLogStart);
+        return artifacts;
+    }
+
+    private static String readResource(String resource) throws IOException {
+        try (InputStream is = M2LocalRepositoryResolverTest.class.getResourceAsStream(resource)) {
+            assertNotNull(is, "Missing resource " + resource);
+            return new String(is.readAllBytes(), StandardCharsets.UTF_8);
+        }
+    }
+}
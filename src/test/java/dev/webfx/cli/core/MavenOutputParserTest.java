@@ -0,0 +1,87 @@
+package dev.webfx.cli.core;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Checks the parsing of the Maven outputs recorded with Maven 3.9.11 on a fixture project:
+ * - reactor.log: 3 modules build in batch mode, with downloads and a compiler warning
+ * - reactor-failure.log: same build failing on a compilation error in the last module
+ * - single-color.log: single module build with colors (-Dstyle.color=always)
+ *
+ * @author Bruno Salmon
+ */
+class MavenOutputParserTest {
+
+    private static final String RESOURCES = "/dev/webfx/cli/core/maven-output/";
+
+    @Test
+    void reactorBuild() throws IOException {
+        MavenOutputParser parser = parse("reactor.log", 10);
+        assertEquals(List.of("fixture-parent", "fixture-lib", "fixture-app"), List.copyOf(parser.getModuleDurationsMillis().keySet()));
+        assertEquals(Map.of("fixture-parent", 2397L, "fixture-lib", 2986L, "fixture-app", 359L), parser.getModuleDurationsMillis());
+        assertEquals(4, parser.getDownloadsCount());
+        assertEquals(1, parser.getWarningsCount());
+        assertEquals(0, parser.getErrorsCount());
+        assertTrue(parser.isBuildSuccess());
+        assertFalse(parser.isBuildFailure());
+        String report = parser.getReport(2);
+        assertTrue(report.startsWith("Maven build: 3 modules in "), report);
+        assertTrue(report.endsWith(" (4 downloads, 1 warnings, 0 errors)\nSlowest modules:\n  fixture-lib: 3.0 s\n  fixture-parent: 2.4 s"), report);
+        // Only the last lines are kept
+        List<String> logLines = readLines("reactor.log");
+        assertEquals(logLines.subList(logLines.size() - 10, logLines.size()), parser.getLastLines());
+    }
+
+    @Test
+    void reactorBuildFailure() throws IOException {
+        MavenOutputParser parser = parse("reactor-failure.log", 200);
+        assertEquals(Map.of("fixture-parent", 2L, "fixture-lib", 2627L, "fixture-app", 972L), parser.getModuleDurationsMillis());
+        assertEquals(16, parser.getErrorsCount());
+        assertFalse(parser.isBuildSuccess());
+        assertTrue(parser.isBuildFailure());
+        assertEquals(readLines("reactor-failure.log"), parser.getLastLines());
+    }
+
+    @Test
+    void singleModuleBuildWithColors() throws IOException {
+        MavenOutputParser parser = parse("single-color.log", 200);
+        // No reactor summary => measured duration
+        assertEquals(List.of("fixture-single"), List.copyOf(parser.getModuleDurationsMillis().keySet()));
+        assertEquals(0, parser.getDownloadsCount());
+        assertEquals(0, parser.getWarningsCount());
+        assertEquals(0, parser.getErrorsCount());
+        assertTrue(parser.isBuildSuccess());
+        assertFalse(parser.getReport(5).contains("Slowest modules"));
+    }
+
+    @Test
+    void reactorSummaryDurations() {
+        assertEquals(1234, MavenOutputParser.parseDurationMillis("1.234 s"));
+        assertEquals(1234, MavenOutputParser.parseDurationMillis("1.234s"));
+        assertEquals(62_000, MavenOutputParser.parseDurationMillis("01:02 min"));
+        assertEquals(3_720_000, MavenOutputParser.parseDurationMillis("01:02 h"));
+        assertEquals(-1, MavenOutputParser.parseDurationMillis("jar"));
+    }
+
+    private static MavenOutputParser parse(String log, int ringBufferCapacity) throws IOException {
+        MavenOutputParser parser = new MavenOutputParser(ringBufferCapacity);
+        readLines(log).forEach(parser);
+        return parser;
+    }
+
+    private static List<String> readLines(String log) throws IOException {
+        try (InputStream is = MavenOutputParserTest.class.getResourceAsStream(RESOURCES + log)) {
+            assertNotNull(is, "Missing resource " + log);
+            return Arrays.asList(new String(is.readAllBytes(), StandardCharsets.UTF_8).split("\n"));
+        }
+    }
+}
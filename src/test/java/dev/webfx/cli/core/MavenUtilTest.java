@@ -0,0 +1,81 @@
+package dev.webfx.cli.core;
+
+import dev.webfx.cli.util.os.OperatingSystem;
+import dev.webfx.cli.util.process.ProcessCall;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+/**
+ * Checks that the Maven command lines use the local repository located by the CLI (and the offline flag in offline
+ * mode), and that a Maven invocation that timed out or has been cancelled is reported as a failure (and not just
+ * through the exit code of the killed process).
+ *
+ * @author Bruno Salmon
+ */
+class MavenUtilTest {
+
+    private final List<String> logs = new ArrayList<>();
+    private Path previousLocalRepository;
+
+    @BeforeEach
+    void setUp() {
+        Logger.setLogConsumer(message -> logs.add(String.valueOf(message)));
+        previousLocalRepository = MavenUtil.getM2LocalRepository();
+    }
+
+    @AfterEach
+    void tearDown() {
+        Logger.setLogConsumer(System.out::println);
+        MavenUtil.setM2LocalRepository(previousLocalRepository);
+        MavenUtil.setOffline(false);
+    }
+
+    @Test
+    void repoLocalArgumentPassedAsSingleToken() {
+        MavenUtil.setOffline(true); // Checking the offline flag is added to any Maven command line (ex: Build)
+        Path localRepository = Path.of("fixture repository").toAbsolutePath();
+        MavenUtil.setM2LocalRepository(localRepository);
+        ProcessCall processCall = MavenUtil.setMavenCommand(new ProcessCall(), "dependency:tree ");
+        assertEquals(List.of("mvn", "-Dmaven.repo.local=" + localRepository, "-o", "dependency:tree"), List.of(processCall.getCommandTokens()));
+        String repoLocalArgument = "-Dmaven.repo.local=" + localRepository;
+        assertEquals("mvn " + (OperatingSystem.isWindows() ? "\"" + repoLocalArgument + "\"" : repoLocalArgument.replace(" ", "\\ ")) + " -o dependency:tree",
+                MavenUtil.getMavenShellCommand("dependency:tree"));
+        MavenUtil.setOffline(false);
+        assertEquals(List.of("mvn", repoLocalArgument, "dependency:tree"), List.of(MavenUtil.setMavenCommand(new ProcessCall(), "dependency:tree").getCommandTokens()));
+    }
+
+    @Test
+    void timedOutInvocationFails() {
+        assumeMavenInstalled();
+        ProcessCall processCall = new ProcessCall().setTimeout(Duration.ofMillis(1));
+        CliException e = assertThrows(CliException.class, () -> MavenUtil.invokeMavenGoal("-version", processCall));
+        assertEquals("Maven invocation timed out: mvn -version", e.getMessage());
+        assertTrue(processCall.isTimedOut());
+    }
+
+    @Test
+    void cancelledInvocationFails() {
+        assumeMavenInstalled();
+        ProcessCall processCall = new ProcessCall();
+        processCall.cancel(); // So the process is killed as soon as it starts
+        CliException e = assertThrows(CliException.class, () -> MavenUtil.invokeMavenGoal("-version", processCall));
+        assertEquals("Maven invocation cancelled: mvn -version", e.getMessage());
+    }
+
+    private static void assumeMavenInstalled() {
+        assumeTrue(Stream.of(System.getenv().getOrDefault("PATH", "").split(File.pathSeparator))
+                .anyMatch(dir -> Files.isExecutable(Path.of(dir, "mvn"))), "mvn not in the path");
+    }
+}
@@ -0,0 +1,83 @@
+package dev.webfx.cli.core;
+
+import dev.webfx.cli.util.xml.XmlUtil;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Checks that the dependencies interning shares an instance only between identical dependencies, including their
+ * executable target module (two executables with the same target tags must not share their dependencies).
+ *
+ * @author Bruno Salmon
+ */
+class ModuleDependencyTest {
+
+    @TempDir
+    Path tempDir;
+    private Path previousLocalRepository;
+    private ModuleRegistry registry;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        Logger.setLogConsumer(message -> {});
+        previousLocalRepository = MavenUtil.getM2LocalRepository();
+        Path localRepository = tempDir.resolve("repository");
+        for (String artifactId : new String[] { "app1-openjfx", "app2-openjfx" }) {
+            Path pomPath = localRepository.resolve("dep").resolve(artifactId).resolve("1.0").resolve(artifactId + "-1.0.pom");
+            Files.createDirectories(pomPath.getParent());
+            Files.writeString(pomPath, "<project><modelVersion>4.0.0</modelVersion><groupId>dep</groupId><artifactId>" + artifactId + "</artifactId><version>1.0</version></project>");
+        }
+        MavenUtil.setM2LocalRepository(localRepository);
+        MavenUtil.setOffline(true);
+        registry = new ModuleRegistry(tempDir);
+    }
+
+    @AfterEach
+    void tearDown() {
+        MavenUtil.setOffline(false);
+        M2MissingArtifacts.clear();
+        if (previousLocalRepository != null)
+            MavenUtil.setM2LocalRepository(previousLocalRepository);
+        Logger.setLogConsumer(System.out::println);
+    }
+
+    @Test
+    void executableTargetModuleConsideredForIdentity() {
+        Target app1Target = new Target(importLibrary("app1-openjfx")), app2Target = new Target(importLibrary("app2-openjfx"));
+        assertArrayEquals(app1Target.getTags(), app2Target.getTags()); // Same tags, but different modules
+        assertTrue(app1Target.isIdenticalTo(new Target(app1Target.getModule())));
+        assertFalse(app1Target.isIdenticalTo(app2Target));
+        assertFalse(app1Target.isIdenticalTo(new Target(app1Target.getTags()))); // No module
+
+        Module source = new ArtifactModule("dep:source:1.0"), destination = new ArtifactModule("dep:destination:1.0");
+        ModuleDependency app1Dependency = createDependency(source, destination, app1Target);
+        ModuleDependency app2Dependency = createDependency(source, destination, app2Target);
+        assertEquals(app1Dependency, app2Dependency); // equals() ignores the executable target
+        assertFalse(app1Dependency.isIdenticalTo(app2Dependency));
+        assertTrue(app1Dependency.isIdenticalTo(createDependency(source, destination, new Target(app1Target.getModule()))));
+
+        // The interned instance is returned only for an identical dependency
+        assertSame(app1Dependency, registry.internDependency(app1Dependency));
+        assertSame(app1Dependency, registry.internDependency(createDependency(source, destination, app1Target)));
+        ModuleDependency interned = registry.internDependency(app2Dependency);
+        assertSame(app2Dependency, interned);
+        assertSame(app2Target.getModule(), interned.getExecutableTarget().getModule());
+    }
+
+    private ProjectModule importLibrary(String artifactId) {
+        registry.importLibrary(new LibraryModule(XmlUtil.parseXmlString("<library artifact=\"dep:" + artifactId + ":1.0\"/>").getDocumentElement(), false));
+        return registry.getRegisteredM2ProjectModule(artifactId);
+    }
+
+    private static ModuleDependency createDependency(Module source, Module destination, Target executableTarget) {
+        // Not interned, as the source module is not a project module
+        return ModuleDependency.createDependency(source, destination, ModuleDependency.Type.SOURCE, false, true, null, null, executableTarget);
+    }
+}
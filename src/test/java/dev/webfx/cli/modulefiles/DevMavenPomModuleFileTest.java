@@ -0,0 +1,119 @@
+package dev.webfx.cli.modulefiles;
+
+import dev.webfx.cli.core.DevProjectModule;
+import dev.webfx.cli.core.Logger;
+import dev.webfx.cli.core.ModuleRegistry;
+import dev.webfx.cli.modulefiles.abstr.UpdateFingerprints;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Checks the skip path of the pom.xml generation (see UpdateFingerprints) over a fixture repository where fixture-app
+ * depends on fixture-api: the generation is skipped only if the inputs are unchanged and the pom.xml is still as
+ * generated. Each run uses a new module registry, like each CLI invocation.
+ *
+ * @author Bruno Salmon
+ */
+class DevMavenPomModuleFileTest {
+
+    @TempDir
+    Path workspace;
+    private Path project, appPom;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        Logger.setLogConsumer(message -> {});
+        project = workspace.resolve("fixture");
+        write("pom.xml", "<project><modelVersion>4.0.0</modelVersion><groupId>fixture</groupId><artifactId>fixture</artifactId><version>1.0</version><packaging>pom</packaging></project>");
+        write("webfx.xml", "<project><groupId>fixture</groupId><version>1.0</version><parent name=\"fixture\"/><modules><subdirectories-modules/></modules></project>");
+        writeApiWebFxXml(false);
+        write("fixture-api/src/main/java/fixture/api/Api.java", "package fixture.api;\npublic interface Api {}\n");
+        write("fixture-app/webfx.xml", "<project><dependencies><used-by-source-modules/></dependencies></project>");
+        write("fixture-app/src/main/java/fixture/app/App.java", "package fixture.app;\nimport fixture.api.Api;\npublic class App implements Api {}\n");
+        appPom = project.resolve("fixture-app").resolve("pom.xml");
+    }
+
+    @AfterEach
+    void tearDown() {
+        Logger.setLogConsumer(System.out::println);
+        UpdateFingerprints.forget(appPom);
+    }
+
+    @Test
+    void unchangedInputs() throws Exception {
+        DevMavenPomModuleFile pomFile = generateAppPom();
+        String generated = Files.readString(appPom);
+        assertTrue(generated.contains("<artifactId>fixture-api</artifactId>"), generated);
+        assertTrue(UpdateFingerprints.isUpToDate(appPom, pomFile.computeUpdateInputsFingerprint()));
+        // Next run: same inputs => the generation is skipped
+        DevMavenPomModuleFile nextPomFile = newAppPomFile();
+        assertEquals(pomFile.computeUpdateInputsFingerprint(), nextPomFile.computeUpdateInputsFingerprint());
+        assertTrue(UpdateFingerprints.isUpToDate(appPom, nextPomFile.computeUpdateInputsFingerprint()));
+        nextPomFile.updateAndWrite();
+        assertEquals(generated, Files.readString(appPom));
+    }
+
+    @Test
+    void changedInputInDestinationModule() throws Exception {
+        DevMavenPomModuleFile pomFile = generateAppPom();
+        assertFalse(Files.readString(appPom).contains("<scope>"));
+        // fixture-api becomes an interface module => its dependency is now written with the provided scope
+        writeApiWebFxXml(true);
+        DevMavenPomModuleFile nextPomFile = newAppPomFile();
+        assertNotEquals(pomFile.computeUpdateInputsFingerprint(), nextPomFile.computeUpdateInputsFingerprint());
+        assertFalse(UpdateFingerprints.isUpToDate(appPom, nextPomFile.computeUpdateInputsFingerprint()));
+        nextPomFile.updateAndWrite();
+        assertTrue(Files.readString(appPom).contains("<scope>provided</scope>"), Files.readString(appPom));
+    }
+
+    @Test
+    void manuallyEditedPom() throws Exception {
+        generateAppPom();
+        String generated = Files.readString(appPom);
+        Files.writeString(appPom, generated.replace("<artifactId>fixture-api</artifactId>", "<artifactId>edited</artifactId>"));
+        DevMavenPomModuleFile nextPomFile = newAppPomFile();
+        assertFalse(UpdateFingerprints.isUpToDate(appPom, nextPomFile.computeUpdateInputsFingerprint()));
+        nextPomFile.updateAndWrite();
+        assertEquals(generated, Files.readString(appPom));
+    }
+
+    @Test
+    void deletedPom() throws Exception {
+        generateAppPom();
+        String generated = Files.readString(appPom);
+        Files.delete(appPom);
+        DevMavenPomModuleFile nextPomFile = newAppPomFile();
+        assertFalse(UpdateFingerprints.isUpToDate(appPom, nextPomFile.computeUpdateInputsFingerprint()));
+        nextPomFile.updateAndWrite();
+        assertEquals(generated, Files.readString(appPom));
+    }
+
+    private DevMavenPomModuleFile generateAppPom() {
+        UpdateFingerprints.forget(appPom);
+        DevMavenPomModuleFile pomFile = newAppPomFile();
+        pomFile.updateAndWrite();
+        return pomFile;
+    }
+
+    private DevMavenPomModuleFile newAppPomFile() {
+        DevProjectModule top = new ModuleRegistry(workspace).getOrCreateDevProjectModule(project);
+        return top.getOrCreateChildProjectModule("fixture-app").getMavenModuleFile();
+    }
+
+    private void writeApiWebFxXml(boolean isInterface) throws Exception {
+        write("fixture-api/webfx.xml", "<project" + (isInterface ? " interface=\"true\"" : "") + "><exported-packages><source-packages/></exported-packages></project>");
+    }
+
+    private void write(String path, String content) throws Exception {
+        Path filePath = project.resolve(path);
+        Files.createDirectories(filePath.getParent());
+        Files.writeString(filePath, content);
+    }
+}
@@ -0,0 +1,107 @@
+package dev.webfx.cli.modulefiles;
+
+import dev.webfx.cli.util.textfile.ResourceTextFileReader;
+import dev.webfx.cli.util.xml.XmlUtil;
+import org.junit.jupiter.api.Test;
+import org.w3c.dom.Document;
+
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Checks that the poms streamed by DevMavenPomWriter are identical to the ones produced through the DOM (template
+ * parsed with its variables, DevMavenPomModel.applyToDocument() and serialization, as in DevMavenPomModuleFile), for
+ * each streamed template and random models (aggregate or not, with or without parent, inherited group or version,
+ * duplicated modules, empty values and characters to escape).
+ *
+ * @author Bruno Salmon
+ */
+class DevMavenPomWriterTest {
+
+    private static final List<String> STREAMED_TEMPLATES = List.of("pom_root.xml", "pom_aggregate.xml",
+            "pom_not_executable.xml", "pom_gwt_executable.xml", "pom_teavm_executable.xml", "pom_vertx_executable.xml",
+            "pom_openjfx_executable.xml");
+    private static final String[] VALUES = {"webfx-platform", "webfx-kit-javafxgraphics", "a&b", "x<y>", "", "0.1.0-SNAPSHOT"};
+
+    @Test
+    void streamedPomsMatchDomPoms() {
+        Random random = new Random(1);
+        for (String template : STREAMED_TEMPLATES) {
+            assertTrue(DevMavenPomWriter.canWrite(template, null), template);
+            for (int k = 0; k < 200; k++) {
+                DevMavenPomModel model = randomModel(random);
+                Map<String, String> variables = templateVariables(random);
+                String streamedPom = DevMavenPomWriter.write(template, variables, null, model);
+                assertNotNull(streamedPom, template + " model " + k);
+                assertEquals(domPom(template, variables, model), streamedPom, template + " model " + k);
+            }
+        }
+    }
+
+    @Test
+    void nonStreamedPoms() {
+        // Templates not having the layout expected by the writer
+        assertFalse(DevMavenPomWriter.canWrite("pom_root_inline.xml", null)); // already contains the GAV
+        assertFalse(DevMavenPomWriter.canWrite("pom_gluon_executable.xml", null)); // contains a markup variable
+        // Updated poms (possibly edited by hand), and variables containing characters to escape
+        DevMavenPomModel model = new DevMavenPomModel(false, null, List.of(), true, null, "a", null, null);
+        assertNull(DevMavenPomWriter.write("pom_not_executable.xml", templateVariables(new Random(1)), null, model));
+        Map<String, String> variables = new LinkedHashMap<>(templateVariables(new Random(1)));
+        variables.put("${application.name}", "A&B");
+        model = new DevMavenPomModel(false, null, List.of(), false, null, "a", null, null);
+        assertNull(DevMavenPomWriter.write("pom_openjfx_executable.xml", variables, null, model));
+    }
+
+    // Same as DevMavenPomModuleFile.createInitialDocument() (without maven-pom-manual section) + updateDocument()
+    private static String domPom(String templateFileName, Map<String, String> variables, DevMavenPomModel model) {
+        String template = ResourceTextFileReader.readTemplate(templateFileName);
+        for (Map.Entry<String, String> variable : variables.entrySet())
+            template = template.replace(variable.getKey(), variable.getValue());
+        Document document = XmlUtil.parseXmlString(template);
+        model.applyToDocument(document);
+        return XmlUtil.formatXmlText(document);
+    }
+
+    private static Map<String, String> templateVariables(Random random) {
+        Map<String, String> variables = new LinkedHashMap<>();
+        variables.put("${groupId}", "dev.webfx");
+        variables.put("${artifactId}", "webfx-app" + random.nextInt(10));
+        variables.put("${version}", "0.1.0-SNAPSHOT");
+        variables.put("${application.name}", "WebfxApp");
+        variables.put("${application.displayName}", "WebFX App");
+        return variables;
+    }
+
+    private static DevMavenPomModel randomModel(Random random) {
+        boolean aggregate = random.nextBoolean();
+        List<String> modules = null;
+        List<DevMavenPomModel.Dependency> dependencies = null;
+        if (aggregate) {
+            if (random.nextInt(4) > 0) {
+                modules = new ArrayList<>();
+                for (int i = random.nextInt(5); i > 0; i--)
+                    modules.add(randomValue(random)); // may be duplicated
+            }
+        } else if (random.nextInt(4) > 0) {
+            dependencies = new ArrayList<>();
+            for (int i = random.nextInt(5); i > 0; i--)
+                dependencies.add(new DevMavenPomModel.Dependency(randomValue(random), randomValue(random),
+                        randomOptionalValue(random), random.nextBoolean() ? null : "pom",
+                        random.nextBoolean() ? null : random.nextBoolean() ? "provided" : "runtime",
+                        random.nextBoolean() ? null : "sources", random.nextBoolean()));
+        }
+        DevMavenPomModel.Parent parent = random.nextBoolean() ? null
+                : new DevMavenPomModel.Parent(randomValue(random), randomValue(random), randomValue(random));
+        return new DevMavenPomModel(aggregate, modules, dependencies, false,
+                randomOptionalValue(random), randomValue(random), randomOptionalValue(random), parent);
+    }
+
+    private static String randomValue(Random random) {
+        return VALUES[random.nextInt(VALUES.length)];
+    }
+
+    private static String randomOptionalValue(Random random) {
+        return random.nextBoolean() ? null : randomValue(random);
+    }
+}
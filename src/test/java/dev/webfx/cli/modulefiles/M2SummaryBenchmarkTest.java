@@ -0,0 +1,194 @@
+package dev.webfx.cli.modulefiles;
+
+import dev.webfx.cli.core.Logger;
+import dev.webfx.cli.util.xml.XmlUtil;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Heap and parse-time measurements of the M2 summaries against the DOM, over a synthetic Maven repository of a few
+ * hundred artifacts (pom.xml files, and webfx.xml files with an export snapshot for one library out of ten, like the
+ * WebFX libraries where the snapshot describes all the modules of the library). The retained heap is the used heap
+ * difference (after garbage collections) while all the parsed files are kept, as the registry does. The summaries are
+ * measured when read from the sidecars, and on the first run (read from the XML, and writing the sidecars). The figures
+ * are printed, and the asserted ratios are well below the measured ones (so the test is not sensitive to the machine
+ * load). The time of the first run is not asserted, as writing the sidecars makes it slower than the DOM.
+ *
+ * @author Bruno Salmon
+ */
+class M2SummaryBenchmarkTest {
+
+    private static final int ARTIFACTS_COUNT = 400;
+    private static final int RUNS = 5;
+
+    @TempDir
+    Path repository;
+    private final List<Path> pomPaths = new ArrayList<>(), webFxXmlPaths = new ArrayList<>();
+
+    @BeforeEach
+    void setUp() throws Exception {
+        Logger.setLogConsumer(message -> {});
+        for (int i = 0; i < ARTIFACTS_COUNT; i++) {
+            pomPaths.add(Files.writeString(repository.resolve("lib" + i + ".pom"), pom(i)));
+            webFxXmlPaths.add(Files.writeString(repository.resolve("lib" + i + "-webfx.xml"), webFxXml(i)));
+        }
+    }
+
+    @AfterEach
+    void tearDown() {
+        Logger.setLogConsumer(System.out::println);
+    }
+
+    @Test
+    void allArtifacts() {
+        Function<Path, Object> domReader = path -> XmlUtil.parseXmlFile(path.toFile());
+        warmUp(pomPaths, domReader, M2MavenPomSummary::read);
+        warmUp(webFxXmlPaths, domReader, M2WebFxSummary::read);
+        Measure dom = measure(() -> {}, () -> readAll(pomPaths, domReader, webFxXmlPaths, domReader));
+        Measure summaries = measure(() -> {}, () -> readAll(pomPaths, M2MavenPomSummary::read, webFxXmlPaths, M2WebFxSummary::read));
+        // First run of the CLI on these artifacts (the sidecars are written during the run)
+        Measure firstRunSummaries = measure(this::deleteSidecars, () -> readAll(pomPaths, M2MavenPomSummary::read, webFxXmlPaths, M2WebFxSummary::read));
+        System.out.printf("%d artifacts: DOM %s, summaries %s (first run: %s)%n", ARTIFACTS_COUNT, dom, summaries, firstRunSummaries);
+        // Most files are small, so the read time is mainly the file access (same for both)
+        assertTrue(summaries.retainedBytes * 5 < dom.retainedBytes, "summaries " + summaries + " vs DOM " + dom);
+        assertTrue(firstRunSummaries.retainedBytes * 2 < dom.retainedBytes, "summaries " + firstRunSummaries + " vs DOM " + dom);
+        assertTrue(summaries.nanos < dom.nanos * 2, "summaries " + summaries + " vs DOM " + dom);
+    }
+
+    @Test
+    void exportSnapshots() {
+        List<Path> exportSnapshotPaths = new ArrayList<>();
+        for (int i = 0; i < ARTIFACTS_COUNT; i += 10)
+            exportSnapshotPaths.add(webFxXmlPaths.get(i));
+        Function<Path, Object> domReader = path -> XmlUtil.parseXmlFile(path.toFile());
+        warmUp(exportSnapshotPaths, domReader, M2WebFxSummary::read);
+        Measure dom = measure(() -> {}, () -> readAll(exportSnapshotPaths, domReader, List.of(), null));
+        Measure summaries = measure(() -> {}, () -> readAll(exportSnapshotPaths, M2WebFxSummary::read, List.of(), null));
+        Measure firstRunSummaries = measure(this::deleteSidecars, () -> readAll(exportSnapshotPaths, M2WebFxSummary::read, List.of(), null));
+        System.out.printf("%d export snapshots: DOM %s, summaries %s (first run: %s)%n", exportSnapshotPaths.size(), dom, summaries, firstRunSummaries);
+        // The sidecars are decoded on demand, so reading them is mainly mapping the files
+        assertTrue(summaries.retainedBytes * 5 < dom.retainedBytes, "summaries " + summaries + " vs DOM " + dom);
+        assertTrue(summaries.nanos * 2 < dom.nanos, "summaries " + summaries + " vs DOM " + dom);
+        // The first run keeps the summaries decoded from the XML, and also pays the writing of the sidecars (about as
+        // long as the XML read itself), so it's slower than the DOM (once per downloaded snapshot)
+        assertTrue(firstRunSummaries.retainedBytes < dom.retainedBytes, "summaries " + firstRunSummaries + " vs DOM " + dom);
+    }
+
+    private static void warmUp(List<Path> paths, Function<Path, Object> domReader, Function<Path, Object> summaryReader) {
+        // Class loading and JIT of both paths (and writing of the webfx.xml sidecars)
+        for (int round = 0; round < 3; round++) {
+            readAll(paths, domReader, List.of(), null);
+            readAll(paths, summaryReader, List.of(), null);
+        }
+    }
+
+    private static List<Object> readAll(List<Path> paths1, Function<Path, Object> reader1, List<Path> paths2, Function<Path, Object> reader2) {
+        List<Object> parsedFiles = new ArrayList<>();
+        for (Path path : paths1)
+            parsedFiles.add(reader1.apply(path));
+        for (Path path : paths2)
+            parsedFiles.add(reader2.apply(path));
+        assertFalse(parsedFiles.contains(null));
+        return parsedFiles;
+    }
+
+    private void deleteSidecars() {
+        for (Path webFxXmlPath : webFxXmlPaths)
+            try {
+                Files.deleteIfExists(M2WebFxSummaryBinaryFile.getBinaryFilePath(webFxXmlPath));
+            } catch (Exception e) {
+                throw new RuntimeException(e);
+            }
+    }
+
+    private static final class Measure {
+        private final long nanos, retainedBytes;
+
+        private Measure(long nanos, long retainedBytes) {
+            this.nanos = nanos;
+            this.retainedBytes = retainedBytes;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%,d ms / %,d KB", nanos / 1_000_000, retainedBytes / 1024);
+        }
+    }
+
+    // The best time of a few runs, and the heap retained by the objects returned by the last run
+    private static Measure measure(Runnable beforeRun, Supplier<List<Object>> reader) {
+        long bestNanos = Long.MAX_VALUE;
+        List<Object> parsedFiles = null;
+        long usedBefore = 0;
+        for (int run = 0; run < RUNS; run++) {
+            parsedFiles = null;
+            beforeRun.run();
+            usedBefore = usedHeapAfterGc();
+            long start = System.nanoTime();
+            parsedFiles = reader.get();
+            bestNanos = Math.min(bestNanos, System.nanoTime() - start);
+        }
+        long retainedBytes = usedHeapAfterGc() - usedBefore;
+        assertFalse(parsedFiles.isEmpty()); // keeps the parsed files reachable until here
+        return new Measure(bestNanos, retainedBytes);
+    }
+
+    private static long usedHeapAfterGc() {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++)
+            System.gc();
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+
+    private static String pom(int i) {
+        StringBuilder sb = new StringBuilder("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n<project xmlns=\"http://maven.apache.org/POM/4.0.0\">\n" +
+                "    <modelVersion>4.0.0</modelVersion>\n" +
+                "    <parent><groupId>dev.webfx</groupId><artifactId>webfx-parent</artifactId><version>0.1.0-SNAPSHOT</version></parent>\n" +
+                "    <artifactId>lib" + i + "</artifactId>\n    <packaging>pom</packaging>\n    <modules>\n");
+        for (int m = 0; m < 10; m++)
+            sb.append("        <module>lib").append(i).append("-module").append(m).append("</module>\n");
+        sb.append("    </modules>\n    <build><plugins>\n");
+        for (int p = 0; p < 10; p++)
+            sb.append("        <plugin><groupId>org.apache.maven.plugins</groupId><artifactId>maven-plugin").append(p)
+                    .append("</artifactId><version>3.").append(p).append("</version><configuration><skip>false</skip></configuration></plugin>\n");
+        return sb.append("    </plugins></build>\n</project>").toString();
+    }
+
+    private static String webFxXml(int i) {
+        StringBuilder sb = new StringBuilder("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n<project>\n" +
+                "    <modules><subdirectories-modules/></modules>\n" +
+                "    <required-libraries><webfx-library artifact=\"dev.webfx:webfx-platform:0.1.0-SNAPSHOT\"/></required-libraries>\n" +
+                "    <maven-pom-manual><properties><java.version>13</java.version></properties></maven-pom-manual>\n");
+        if (i % 10 == 0) {
+            sb.append("    <export-snapshot>\n");
+            for (int m = 0; m < 30; m++) {
+                sb.append("        <project name=\"lib").append(i).append("-module").append(m).append("\">\n            <exported-packages>");
+                for (int p = 0; p < 5; p++)
+                    sb.append("<package>dev.webfx.lib").append(i).append(".module").append(m).append(".package").append(p).append("</package>");
+                sb.append("</exported-packages>\n            <source-packages>");
+                for (int p = 0; p < 5; p++)
+                    sb.append("<package>dev.webfx.lib").append(i).append(".module").append(m).append(".package").append(p).append("</package>");
+                sb.append("</source-packages>\n            <dependencies><used-by-source-modules><module>webfx-platform-util</module><module>java-base</module></used-by-source-modules></dependencies>\n" +
+                        "            <used-services><required-service>dev.webfx.platform.Service").append(m).append("</required-service></used-services>\n" +
+                        "            <providers><provider interface=\"dev.webfx.platform.Service\">dev.webfx.lib.Provider").append(m).append("</provider></providers>\n        </project>\n");
+            }
+            sb.append("        <usages>\n");
+            for (int p = 0; p < 100; p++)
+                sb.append("            <java-package name=\"java.package").append(p).append("\"><module>lib").append(i).append("-module").append(p % 30)
+                        .append("</module><module>lib").append(i).append("-module").append((p + 1) % 30).append("</module></java-package>\n");
+            sb.append("        </usages>\n    </export-snapshot>\n");
+        }
+        return sb.append("</project>").toString();
+    }
+}
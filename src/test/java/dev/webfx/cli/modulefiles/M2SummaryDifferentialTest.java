@@ -0,0 +1,347 @@
+package dev.webfx.cli.modulefiles;
+
+import dev.webfx.cli.core.ArtifactModule;
+import dev.webfx.cli.core.CliException;
+import dev.webfx.cli.core.Logger;
+import dev.webfx.cli.core.Module;
+import dev.webfx.cli.core.ServiceProvider;
+import dev.webfx.cli.modulefiles.abstr.ExportSnapshotIndex;
+import dev.webfx.cli.modulefiles.abstr.MavenPomModuleFile;
+import dev.webfx.cli.modulefiles.abstr.WebFxModuleFile;
+import dev.webfx.cli.util.xml.XmlUtil;
+import dev.webfx.lib.reusablestream.ReusableStream;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Differential test of the M2 summaries against the DOM: a few hundred random pom.xml and webfx.xml files (GAV tags as
+ * elements, attributes or artifact attribute, parent section, nested modules, export snapshots with duplicated project
+ * names and usages, comments, CDATA and entities in the texts, etc...) are read both ways, and each query served by
+ * M2MavenPomSummary or M2WebFxSummary must return the same result as the DOM implementation of that query (the
+ * MavenPomModuleFile and WebFxModuleFile default methods, and ExportSnapshotIndex). The webfx.xml summaries are also
+ * checked once read again from their binary sidecar.
+ *
+ * @author Bruno Salmon
+ */
+class M2SummaryDifferentialTest {
+
+    private static final int FILES_COUNT = 300;
+    private static final String[] NAMES = {"webfx-platform", "webfx-kit-javafxgraphics", "dev.webfx", "lib", "1.0", "0.1.0-SNAPSHOT"};
+
+    @TempDir
+    Path tempDir;
+    private Random random;
+
+    @BeforeEach
+    void setUp() {
+        Logger.setLogConsumer(message -> {});
+        random = new Random(1);
+    }
+
+    @AfterEach
+    void tearDown() {
+        Logger.setLogConsumer(System.out::println);
+    }
+
+    @Test
+    void pomSummariesMatchDomLookups() throws Exception {
+        for (int k = 0; k < FILES_COUNT; k++) {
+            Path pomPath = Files.writeString(tempDir.resolve("pom" + k + ".xml"), randomPom());
+            M2MavenPomSummary summary = M2MavenPomSummary.read(pomPath);
+            MavenPomModuleFile dom = new DomPomFile(XmlUtil.parseXmlFile(pomPath.toFile()));
+            String message = "pom" + k + ".xml:\n" + Files.readString(pomPath);
+            assertEquals(dom.lookupGroupId(), summary.lookupGroupId(), message);
+            assertEquals(dom.lookupArtifactId(), summary.lookupArtifactId(), message);
+            assertEquals(dom.lookupVersion(), summary.lookupVersion(), message);
+            assertEquals(dom.lookupType(), summary.lookupType(), message);
+            assertEquals(dom.lookupParentGroupId(), summary.lookupParentGroupId(), message);
+            assertEquals(dom.lookupParentVersion(), summary.lookupParentVersion(), message);
+            assertEquals(dom.lookupParentName(), summary.lookupParentName(), message);
+            assertEquals(dom.isAggregate(), summary.isAggregate(), message);
+            assertEquals(toList(dom.getChildrenModuleNames()), toList(summary.getChildrenModuleNames()), message);
+        }
+    }
+
+    @Test
+    void webFxSummariesMatchDomLookups() throws Exception {
+        int exportedProjectsCount = 0, usagesCount = 0;
+        for (int k = 0; k < FILES_COUNT; k++) {
+            Path webFxXmlPath = Files.writeString(tempDir.resolve("webfx" + k + ".xml"), randomWebFxXml());
+            Document document = XmlUtil.parseXmlFile(webFxXmlPath.toFile());
+            ExportSnapshotIndex index = ExportSnapshotIndex.of(document);
+            String message = "webfx" + k + ".xml:\n" + Files.readString(webFxXmlPath);
+            // First read from the XML (which writes the sidecar if there is an export snapshot), then from the sidecar
+            for (int read = 0; read < 2; read++) {
+                M2WebFxSummary summary = M2WebFxSummary.read(webFxXmlPath);
+                List<String> names = new ArrayList<>(index.getJavaPackagesWithUsage()); // also used as module names
+                names.add(0, "absent");
+                for (int i = 0; i < 10; i++)
+                    names.add("project" + i);
+                for (String name : names) {
+                    Element projectElement = index.getProjectElement(name);
+                    assertEquals(projectElement != null, summary.getExportedProject(name) != null, name + " in " + message);
+                    DomWebFxFile dom = new DomWebFxFile(document, projectElement != null ? projectElement : document.getDocumentElement());
+                    assertProjectSummaryMatchesDom(dom, summary.getExportedOrRootProject(name), name + " in " + message);
+                    if (projectElement != null && read == 0)
+                        exportedProjectsCount++;
+                }
+                assertEquals(index.getFirstProjectName(), summary.getFirstExportedProjectName(), message);
+                assertEquals(new ArrayList<>(index.getJavaPackagesWithUsage()), toList(summary.getJavaPackagesWithUsage()), message);
+                assertEquals(new ArrayList<>(index.getJavaClassesWithUsage()), toList(summary.getJavaClassesWithUsage()), message);
+                for (String javaPackage : names)
+                    assertEquals(index.getModulesUsingJavaPackage(javaPackage), toList(summary.getModulesUsingJavaPackage(javaPackage)), message);
+                for (String javaClass : index.getJavaClassesWithUsage())
+                    assertEquals(index.getModulesUsingJavaClass(javaClass), toList(summary.getModulesUsingJavaClass(javaClass)), message);
+                if (read == 0)
+                    usagesCount += index.getJavaPackagesWithUsage().size() + index.getJavaClassesWithUsage().size();
+            }
+        }
+        // Checking the random files cover the export snapshots enough
+        assertTrue(exportedProjectsCount > FILES_COUNT, "exported projects = " + exportedProjectsCount);
+        assertTrue(usagesCount > FILES_COUNT, "usages = " + usagesCount);
+    }
+
+    private static void assertProjectSummaryMatchesDom(WebFxModuleFile dom, M2WebFxSummary.ProjectSummary summary, String message) {
+        assertEquals(dom.isExecutable(), summary.getBooleanAttributeValue("executable"), message);
+        assertEquals(dom.isInterface(), summary.getBooleanAttributeValue("interface"), message);
+        assertEquals(dom.isAggregate(), summary.isAggregate(), message);
+        assertEquals(dom.shouldSubdirectoriesChildrenModulesBeAdded(), summary.shouldSubdirectoriesChildrenModulesBeAdded(), message);
+        assertEquals(toList(dom.getChildrenModuleNames()), toList(summary.getChildrenModuleNames()), message);
+        assertEquals(toList(dom.getExplicitExportedPackages()), toList(summary.getExplicitExportedPackages()), message);
+        assertEquals(toList(dom.javaSourcePackagesFromExportSnapshot()), toList(summary.getSourcePackages()), message);
+        assertEquals(toList(dom.usedRequiredJavaServicesFromExportSnapshot()), toList(summary.getUsedRequiredServices()), message);
+        assertEquals(toList(dom.usedOptionalJavaServicesFromExportSnapshot()), toList(summary.getUsedOptionalServices()), message);
+        // A provider declared without interface is reported by the DOM version (the summary returns null for that)
+        ReusableStream<ServiceProvider> providers = summary.getProviders();
+        if (providers == null)
+            assertThrows(CliException.class, () -> toList(dom.providedServiceProviders(), ServiceProvider::getSpi), message);
+        else
+            assertEquals(toList(dom.providedServiceProviders(), p -> p.getSpi() + "=" + p.getImplementation()),
+                    toList(providers, p -> p.getSpi() + "=" + p.getImplementation()), message);
+    }
+
+    private String randomPom() {
+        StringBuilder sb = new StringBuilder("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n<!-- pom -->\n<project");
+        String gavTags = randomGav(sb, false);
+        sb.append(">\n    <modelVersion>4.0.0</modelVersion>\n").append(gavTags);
+        if (random.nextBoolean()) {
+            sb.append("    <parent");
+            String parentGavTags = randomGav(sb, true);
+            sb.append(">").append(parentGavTags).append("</parent>\n");
+        }
+        if (random.nextInt(3) > 0) {
+            sb.append("    <modules>");
+            for (int i = random.nextInt(5); i > 0; i--) {
+                if (random.nextInt(4) == 0) // modules//module
+                    sb.append("<profile><module>").append(randomText()).append("</module></profile>");
+                else
+                    sb.append("\n        <module>").append(randomText()).append("</module>");
+            }
+            sb.append("\n    </modules>\n");
+        }
+        if (random.nextBoolean()) // GAV tags of other sections are not the project ones
+            sb.append("    <dependencies><dependency><groupId>other</groupId><artifactId>other</artifactId><version>2.0</version><module>other</module></dependency></dependencies>\n");
+        return sb.append("</project>").toString();
+    }
+
+    // Appends the GAV attributes to the element start, and returns the GAV child elements (possibly duplicated)
+    private String randomGav(StringBuilder elementStart, boolean parent) {
+        StringBuilder children = new StringBuilder();
+        for (String tag : parent ? List.of("groupId", "artifactId", "version", "name") : List.of("groupId", "artifactId", "version", "type", "name")) {
+            switch (random.nextInt(4)) {
+                case 0: break;
+                case 1: elementStart.append(' ').append(tag).append("=\"").append(randomName()).append('"'); break;
+                case 2: children.append("<").append(tag).append(">").append(randomText()).append("</").append(tag).append(">\n"); // duplicated
+                default: children.append("    <").append(tag).append(">").append(randomText()).append("</").append(tag).append(">\n");
+            }
+        }
+        if (random.nextInt(3) == 0) {
+            StringBuilder artifact = new StringBuilder(randomName());
+            for (int i = random.nextInt(4); i > 0; i--)
+                artifact.append(':').append(randomName());
+            elementStart.append(" artifact=\"").append(artifact).append('"');
+        }
+        return children.toString();
+    }
+
+    private String randomWebFxXml() {
+        StringBuilder sb = new StringBuilder("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n<project");
+        appendRandomProject(sb);
+        if (random.nextInt(3) > 0) {
+            sb.append("    <export-snapshot>\n");
+            for (int i = random.nextInt(8); i > 0; i--) {
+                sb.append("        <project");
+                if (random.nextInt(8) > 0) // Some projects without name
+                    sb.append(" name=\"project").append(random.nextInt(10)).append('"'); // Some duplicated names
+                appendRandomProject(sb);
+                sb.append("        </project>\n");
+            }
+            for (int i = random.nextInt(3); i > 0; i--) {
+                sb.append("        <usages>\n");
+                for (int j = random.nextInt(6); j > 0; j--) {
+                    String tag = random.nextBoolean() ? "java-package" : random.nextInt(4) > 0 ? "java-class" : "other";
+                    sb.append("            <").append(tag);
+                    if (random.nextInt(8) > 0)
+                        sb.append(" name=\"").append(randomName()).append('"');
+                    sb.append(">");
+                    for (int m = random.nextInt(4); m > 0; m--)
+                        sb.append(random.nextInt(6) > 0 ? "<module>" + randomText() + "</module>" : "<other>" + randomText() + "</other>");
+                    sb.append("</").append(tag).append(">\n");
+                }
+                sb.append("        </usages>\n");
+            }
+            sb.append("    </export-snapshot>\n");
+        }
+        return sb.append("</project>").toString();
+    }
+
+    // Appends the attributes and the sections of a project (root or exported)
+    private void appendRandomProject(StringBuilder sb) {
+        for (String attribute : List.of("executable", "interface", "applicationId"))
+            if (random.nextBoolean())
+                sb.append(' ').append(attribute).append("=\"").append(random.nextBoolean() ? "true" : random.nextBoolean() ? "TRUE" : "false").append('"');
+        sb.append(">\n");
+        List<String> sections = new ArrayList<>(List.of("modules", "exported-packages", "source-packages", "used-services", "providers", "dependencies"));
+        Collections.shuffle(sections, random);
+        for (String section : sections.subList(0, random.nextInt(sections.size() + 1))) {
+            sb.append("        <").append(section).append(">");
+            for (int i = random.nextInt(5); i > 0; i--) {
+                switch (section) {
+                    case "modules":
+                        appendRandomElement(sb, random.nextInt(5) == 0 ? "subdirectories-modules" : "module");
+                        break;
+                    case "exported-packages":
+                        appendRandomElement(sb, random.nextInt(5) == 0 ? "source-packages" : "package");
+                        break;
+                    case "source-packages":
+                        appendRandomElement(sb, "package");
+                        break;
+                    case "used-services":
+                        appendRandomElement(sb, random.nextBoolean() ? "required-service" : "optional-service");
+                        break;
+                    case "providers":
+                        sb.append(random.nextInt(10) > 0 ? "<provider interface=\"" + randomName() + "\">" : "<provider>").append(randomText()).append("</provider>");
+                        break;
+                    default: // Not part of the summary, but with elements of the same name at other levels
+                        sb.append("<used-by-source-modules><module>").append(randomText()).append("</module><package>p</package></used-by-source-modules>");
+                }
+            }
+            sb.append("</").append(section).append(">\n");
+        }
+    }
+
+    private void appendRandomElement(StringBuilder sb, String tag) {
+        sb.append("<").append(tag).append(">").append(randomText()).append("</").append(tag).append(">");
+    }
+
+    private String randomName() {
+        return NAMES[random.nextInt(NAMES.length)];
+    }
+
+    // Text content with comments, CDATA, entities or whitespaces
+    private String randomText() {
+        switch (random.nextInt(8)) {
+            case 0: return "";
+            case 1: return "dev.<!-- comment -->webfx";
+            case 2: return "<![CDATA[a<b]]>";
+            case 3: return "a&amp;b";
+            case 4: return "\n    " + randomName() + "\n";
+            default: return randomName();
+        }
+    }
+
+    private static List<String> toList(ReusableStream<String> stream) {
+        return toList(stream, Function.identity());
+    }
+
+    private static <T> List<String> toList(ReusableStream<T> stream, Function<T, String> toString) {
+        return stream.map(toString).collect(Collectors.toList());
+    }
+
+    // DOM implementations of the queries (the default methods of the module file interfaces)
+
+    private static final class DomPomFile implements MavenPomModuleFile {
+        private final Document document;
+
+        private DomPomFile(Document document) {
+            this.document = document;
+        }
+
+        @Override
+        public Document getDocument() {
+            return document;
+        }
+
+        @Override
+        public void setDocument(Document document) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public Module getModule() {
+            return new ArtifactModule("fixture:pom:1.0");
+        }
+
+        @Override
+        public Path getModuleFilePath() {
+            return null;
+        }
+
+        @Override
+        public void readFile() {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public void writeFile() {
+            throw new UnsupportedOperationException();
+        }
+    }
+
+    private static final class DomWebFxFile implements WebFxModuleFile {
+        private final Document document;
+        private final Element moduleElement;
+
+        private DomWebFxFile(Document document, Element moduleElement) {
+            this.document = document;
+            this.moduleElement = moduleElement;
+        }
+
+        @Override
+        public Document getDocument() {
+            return document;
+        }
+
+        @Override
+        public void setDocument(Document document) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public Element getModuleElement() {
+            return moduleElement;
+        }
+
+        @Override
+        public boolean fileExists() {
+            return true;
+        }
+
+        @Override
+        public Module getModule() {
+            return new ArtifactModule("fixture:webfx:1.0");
+        }
+    }
+}
@@ -0,0 +1,226 @@
+package dev.webfx.cli.modulefiles;
+
+import dev.webfx.cli.core.ServiceProvider;
+import dev.webfx.cli.modulefiles.abstr.ExportSnapshotIndex;
+import dev.webfx.cli.util.xml.XmlUtil;
+import dev.webfx.lib.reusablestream.ReusableStream;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.*;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Checks that the summaries read from the binary sidecar are identical to the ones read from the XML, and that the
+ * sidecar is ignored as soon as the webfx.xml file changes.
+ *
+ * @author Bruno Salmon
+ */
+class M2WebFxSummaryBinaryFileTest {
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void sidecarSummariesMatchXmlSummaries() throws Exception {
+        Random random = new Random(1);
+        int sidecars = 0;
+        for (int k = 0; k < 500; k++) {
+            List<String> exportedNames = new ArrayList<>();
+            Path xmlPath = writeWebFxXml("f" + k, randomWebFxXml(random, exportedNames));
+            M2WebFxSummary xmlSummary = M2WebFxSummary.read(xmlPath);
+            Path binaryFilePath = M2WebFxSummaryBinaryFile.getBinaryFilePath(xmlPath);
+            // The sidecar is written only for the files with an export snapshot
+            assertEquals(xmlSummary.hasExportSnapshot(), Files.exists(binaryFilePath), "file " + k);
+            if (!Files.exists(binaryFilePath))
+                continue;
+            sidecars++;
+            M2WebFxSummary binarySummary = readSidecar(xmlPath);
+            assertNotNull(binarySummary, "file " + k);
+            assertEquals(dump(xmlSummary, exportedNames), dump(binarySummary, exportedNames), "file " + k);
+            // The usages must also match the DOM index
+            ExportSnapshotIndex index = ExportSnapshotIndex.of(XmlUtil.parseXmlFile(xmlPath.toFile()));
+            assertEquals(index.getFirstProjectName(), binarySummary.getFirstExportedProjectName(), "file " + k);
+            for (String javaPackage : index.getJavaPackagesWithUsage())
+                assertEquals(index.getModulesUsingJavaPackage(javaPackage), toList(binarySummary.getModulesUsingJavaPackage(javaPackage)), "file " + k);
+            for (String javaClass : index.getJavaClassesWithUsage())
+                assertEquals(index.getModulesUsingJavaClass(javaClass), toList(binarySummary.getModulesUsingJavaClass(javaClass)), "file " + k);
+        }
+        assertTrue(sidecars > 100, "Only " + sidecars + " sidecars");
+    }
+
+    @Test
+    void sidecarReadWithoutReadingTheXml() throws Exception {
+        String xml = "<project><export-snapshot><project name=\"a\"><exported-packages><package>p</package></exported-packages></project></export-snapshot></project>";
+        Path xmlPath = writeWebFxXml("lazy", xml);
+        M2WebFxSummary.read(xmlPath); // writes the sidecar
+        // Same size & last modified time => the XML content is not read (the sidecar is trusted)
+        FileTime lastModified = Files.getLastModifiedTime(xmlPath);
+        Files.writeString(xmlPath, " ".repeat((int) Files.size(xmlPath)));
+        Files.setLastModifiedTime(xmlPath, lastModified);
+        M2WebFxSummary summary = M2WebFxSummary.read(xmlPath);
+        assertEquals("a", summary.getFirstExportedProjectName());
+        assertNotNull(summary.getExportedProject("a"));
+        assertNull(summary.getExportedProject("b"));
+    }
+
+    @Test
+    void sidecarIgnoredWhenXmlChanges() throws Exception {
+        String xml = "<project><export-snapshot><project name=\"a\"/></export-snapshot></project>";
+        Path xmlPath = writeWebFxXml("stale", xml);
+        M2WebFxSummary.read(xmlPath);
+        // Different size
+        Files.writeString(xmlPath, xml.replace("\"a\"/>", "\"a\"/><project name=\"b\"/>"));
+        assertNotNull(M2WebFxSummary.read(xmlPath).getExportedProject("b"));
+        assertNotNull(readSidecar(xmlPath).getExportedProject("b")); // sidecar written again
+        // Same size but different last modified time
+        Files.writeString(xmlPath, xml.replace("\"a\"", "\"c\""));
+        Files.setLastModifiedTime(xmlPath, FileTime.fromMillis(Files.getLastModifiedTime(xmlPath).toMillis() + 2000));
+        assertNull(readSidecar(xmlPath));
+        assertEquals("c", M2WebFxSummary.read(xmlPath).getFirstExportedProjectName());
+    }
+
+    @Test
+    void truncatedSidecarIgnored() throws Exception {
+        Path xmlPath = writeWebFxXml("truncated", "<project><export-snapshot><project name=\"a\"><source-packages><package>p</package></source-packages></project></export-snapshot></project>");
+        M2WebFxSummary.read(xmlPath);
+        Path binaryFilePath = M2WebFxSummaryBinaryFile.getBinaryFilePath(xmlPath);
+        byte[] bytes = Files.readAllBytes(binaryFilePath);
+        for (int length = bytes.length - 1; length >= 0; length--) {
+            Files.write(binaryFilePath, Arrays.copyOf(bytes, length));
+            assertNull(readSidecar(xmlPath), "length " + length);
+        }
+        assertNotNull(M2WebFxSummary.read(xmlPath).getExportedProject("a"));
+    }
+
+    private Path writeWebFxXml(String directory, String xml) throws Exception {
+        Path xmlPath = tempDir.resolve(directory).resolve("webfx.xml");
+        Files.createDirectories(xmlPath.getParent());
+        Files.writeString(xmlPath, "<?xml version=\"1.0\" encoding=\"UTF-8\"?>" + xml);
+        return xmlPath;
+    }
+
+    private static M2WebFxSummary readSidecar(Path xmlPath) throws Exception {
+        return M2WebFxSummaryBinaryFile.read(M2WebFxSummaryBinaryFile.getBinaryFilePath(xmlPath),
+                Files.size(xmlPath), Files.getLastModifiedTime(xmlPath).toMillis(), xmlPath);
+    }
+
+    private static List<String> toList(ReusableStream<String> stream) {
+        return stream.collect(Collectors.toList());
+    }
+
+    private static String dump(M2WebFxSummary summary, List<String> exportedNames) throws Exception {
+        StringBuilder sb = new StringBuilder(dump(summary.getExportedOrRootProject(null)));
+        for (String name : exportedNames)
+            sb.append('\n').append(name).append(": ").append(dump(summary.getExportedProject(name)));
+        sb.append("\nfirst: ").append(summary.getFirstExportedProjectName());
+        for (String javaPackage : toList(summary.getJavaPackagesWithUsage()))
+            sb.append("\npackage ").append(javaPackage).append(toList(summary.getModulesUsingJavaPackage(javaPackage)));
+        for (String javaClass : toList(summary.getJavaClassesWithUsage()))
+            sb.append("\nclass ").append(javaClass).append(toList(summary.getModulesUsingJavaClass(javaClass)));
+        return sb.toString();
+    }
+
+    private static String dump(M2WebFxSummary.ProjectSummary project) throws Exception {
+        if (project == null)
+            return "null";
+        StringBuilder sb = new StringBuilder();
+        for (Field field : M2WebFxSummary.ProjectSummary.class.getDeclaredFields()) {
+            if (Modifier.isStatic(field.getModifiers()))
+                continue;
+            field.setAccessible(true);
+            Object value = field.get(project);
+            if (value instanceof Map)
+                value = new TreeMap<>((Map<?, ?>) value);
+            else if (value instanceof List && !((List<?>) value).isEmpty() && ((List<?>) value).get(0) instanceof ServiceProvider)
+                value = ((List<?>) value).stream().map(p -> ((ServiceProvider) p).getSpi() + "->" + ((ServiceProvider) p).getImplementation()).collect(Collectors.toList());
+            sb.append(field.getName()).append('=').append(value).append(';');
+        }
+        return sb.toString();
+    }
+
+    private static final String[] WORDS = { "a", "b", "\u00e9", "x.y", "\u65e5\u672c", "z\u00e9", "q" };
+
+    private static String randomWord(Random random) {
+        StringBuilder sb = new StringBuilder();
+        for (int i = random.nextInt(3) + 1; i > 0; i--)
+            sb.append(WORDS[random.nextInt(WORDS.length)]);
+        return sb.toString();
+    }
+
+    private static String randomWebFxXml(Random random, List<String> exportedNames) {
+        StringBuilder sb = new StringBuilder(randomProject(random, null));
+        if (random.nextInt(4) != 0) {
+            sb.append("<export-snapshot>");
+            for (int i = random.nextInt(4); i > 0; i--) {
+                String name = randomWord(random);
+                exportedNames.add(name);
+                sb.append(randomProject(random, name)).append("</project>");
+            }
+            if (random.nextBoolean()) {
+                sb.append("<usages>");
+                for (int i = random.nextInt(5); i > 0; i--) {
+                    String tag = random.nextBoolean() ? "java-package" : "java-class";
+                    sb.append('<').append(tag).append(" name=\"").append(randomWord(random)).append("\">");
+                    for (int j = random.nextInt(3); j > 0; j--)
+                        sb.append("<module>").append(randomWord(random)).append("</module>");
+                    if (random.nextInt(5) == 0)
+                        sb.append("<other><module>zz</module></other>");
+                    sb.append("</").append(tag).append('>');
+                }
+                sb.append("</usages>");
+            }
+            sb.append("</export-snapshot>");
+        }
+        return sb.append("</project>").toString();
+    }
+
+    private static final String[][] LISTS = {
+            {"exported-packages", "package"}, {"source-packages", "package"},
+            {"used-services", "required-service"}, {"used-services", "optional-service"} };
+
+    private static String randomProject(Random random, String name) {
+        StringBuilder sb = new StringBuilder("<project");
+        if (name != null)
+            sb.append(" name=\"").append(name).append('"');
+        if (random.nextBoolean())
+            sb.append(" executable=\"true\"");
+        if (random.nextBoolean())
+            sb.append(" interface=\"TRUE\"");
+        sb.append('>');
+        if (random.nextBoolean()) {
+            sb.append("<modules>");
+            if (random.nextBoolean())
+                sb.append("<subdirectories-modules/>");
+            for (int i = random.nextInt(4); i > 0; i--)
+                sb.append("<module>").append(randomWord(random)).append("</module>");
+            sb.append("</modules>");
+        }
+        for (String[] list : LISTS) {
+            if (random.nextBoolean()) {
+                sb.append('<').append(list[0]).append('>');
+                for (int i = random.nextInt(4); i > 0; i--)
+                    sb.append('<').append(list[1]).append('>').append(randomWord(random)).append("</").append(list[1]).append('>');
+                sb.append("</").append(list[0]).append('>');
+            }
+        }
+        if (random.nextBoolean()) {
+            sb.append("<providers>");
+            for (int i = random.nextInt(3); i > 0; i--) {
+                if (random.nextInt(8) == 0)
+                    sb.append("<provider>").append(randomWord(random)).append("</provider>");
+                else
+                    sb.append("<provider interface=\"").append(randomWord(random)).append("\">").append(randomWord(random)).append("</provider>");
+            }
+            sb.append("</providers>");
+        }
+        return sb.toString();
+    }
+}
@@ -0,0 +1,131 @@
+package dev.webfx.cli.modulefiles.abstr;
+
+import dev.webfx.cli.util.xml.XmlUtil;
+import org.junit.jupiter.api.Test;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.Node;
+import org.w3c.dom.NodeList;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Measurement of the export snapshot queries on a big snapshot (tens of thousands of package entries, as in the
+ * snapshot of a library like WebFX Kit), before (an XPath predicate over the whole snapshot for each query) and after
+ * the index (built once, then a hash lookup for each query). All the queries done when registering the snapshot are
+ * measured: the project element and its exported and source packages for each project, and the modules of each java
+ * package usage. The XPath queries are too slow to be all run, so they are timed on a sample and extrapolated. The
+ * figures are printed, and the asserted speedup is far below the measured one (so the test is not sensitive to the
+ * machine load).
+ *
+ * @author Bruno Salmon
+ */
+class ExportSnapshotIndexBenchmarkTest {
+
+    private static final int PROJECTS_COUNT = 500;
+    private static final int PACKAGES_PER_PROJECT = 40; // exported and source packages
+    private static final int USAGES_COUNT = 10_000;
+    private static final int SAMPLE_SIZE = 100; // XPath queries of each kind actually run
+    private static final int RUNS = 5;
+
+    @Test
+    void allQueriesOfABigSnapshot() {
+        Document document = XmlUtil.parseXmlString(bigSnapshot());
+        // Both versions return the same results on the sample
+        ExportSnapshotIndex index = ExportSnapshotIndex.of(document);
+        for (int i = 0; i < SAMPLE_SIZE; i++) {
+            String projectName = projectName(i * PROJECTS_COUNT / SAMPLE_SIZE), javaPackage = javaPackage(i * USAGES_COUNT / SAMPLE_SIZE);
+            Element projectElement = (Element) xpathProjectElement(document, projectName);
+            assertSame(projectElement, index.getProjectElement(projectName));
+            assertEquals(textContents(projectElement, "exported-packages/package"), index.getExportedPackages(projectElement));
+            assertEquals(PACKAGES_PER_PROJECT, index.getSourcePackages(projectElement).size());
+            assertEquals(xpathModulesUsingJavaPackage(document, javaPackage), index.getModulesUsingJavaPackage(javaPackage));
+        }
+        long xpathProjectsSampleNanos = Long.MAX_VALUE, xpathUsagesSampleNanos = Long.MAX_VALUE, indexNanos = Long.MAX_VALUE;
+        for (int run = 0; run <= RUNS; run++) { // The first run is the warm-up
+            long start = System.nanoTime();
+            int count = 0;
+            for (int i = 0; i < SAMPLE_SIZE; i++) {
+                Node projectElement = xpathProjectElement(document, projectName(i * PROJECTS_COUNT / SAMPLE_SIZE));
+                count += textContents(projectElement, "exported-packages/package").size();
+                count += textContents(projectElement, "source-packages/package").size();
+            }
+            long xpathProjectsNanos = System.nanoTime() - start;
+            start = System.nanoTime();
+            for (int i = 0; i < SAMPLE_SIZE; i++)
+                count += xpathModulesUsingJavaPackage(document, javaPackage(i * USAGES_COUNT / SAMPLE_SIZE)).size();
+            long xpathUsagesNanos = System.nanoTime() - start;
+            assertEquals(SAMPLE_SIZE * (2 * PACKAGES_PER_PROJECT + 2), count);
+            start = System.nanoTime();
+            ExportSnapshotIndex.invalidate(document); // So the index build is measured too
+            index = ExportSnapshotIndex.of(document);
+            count = 0;
+            for (int i = 0; i < PROJECTS_COUNT; i++) {
+                Element projectElement = index.getProjectElement(projectName(i));
+                count += index.getExportedPackages(projectElement).size() + index.getSourcePackages(projectElement).size();
+            }
+            for (int i = 0; i < USAGES_COUNT; i++)
+                count += index.getModulesUsingJavaPackage(javaPackage(i)).size();
+            long nanos = System.nanoTime() - start;
+            assertEquals(PROJECTS_COUNT * 2 * PACKAGES_PER_PROJECT + USAGES_COUNT * 2, count);
+            if (run > 0) {
+                xpathProjectsSampleNanos = Math.min(xpathProjectsSampleNanos, xpathProjectsNanos);
+                xpathUsagesSampleNanos = Math.min(xpathUsagesSampleNanos, xpathUsagesNanos);
+                indexNanos = Math.min(indexNanos, nanos);
+            }
+        }
+        // Extrapolation of the samples to all the queries
+        double xpathNanos = (xpathProjectsSampleNanos * (double) PROJECTS_COUNT + xpathUsagesSampleNanos * (double) USAGES_COUNT) / SAMPLE_SIZE;
+        double speedup = xpathNanos / indexNanos;
+        System.out.printf("%,d projects x %,d packages and %,d usages: XPath %,.0f ms (extrapolated from %,d queries of each kind), index %,.1f ms (x%,.0f)%n",
+                PROJECTS_COUNT, PACKAGES_PER_PROJECT * 2, USAGES_COUNT, xpathNanos / 1e6, SAMPLE_SIZE, indexNanos / 1e6, speedup);
+        assertTrue(speedup > 50, "speedup = " + speedup);
+    }
+
+    // The XPath queries as done before the index
+
+    private static Node xpathProjectElement(Document document, String projectName) {
+        return XmlUtil.lookupNode(document, "/project/export-snapshot/project[@name='" + projectName + "']");
+    }
+
+    private static List<String> xpathModulesUsingJavaPackage(Document document, String javaPackage) {
+        return textContents(XmlUtil.lookupNode(document, "/project/export-snapshot/usages/java-package[@name='" + javaPackage + "']"), "module");
+    }
+
+    private static List<String> textContents(Node node, String xpath) {
+        List<String> textContents = new ArrayList<>();
+        NodeList nodeList = XmlUtil.lookupNodeList(node, xpath);
+        for (int i = 0; i < nodeList.getLength(); i++)
+            textContents.add(nodeList.item(i).getTextContent());
+        return textContents;
+    }
+
+    private static String projectName(int i) {
+        return "webfx-kit-module" + i;
+    }
+
+    private static String javaPackage(int i) {
+        return "dev.webfx.used.package" + i;
+    }
+
+    private static String bigSnapshot() {
+        StringBuilder sb = new StringBuilder("<project>\n    <export-snapshot>\n");
+        for (int m = 0; m < PROJECTS_COUNT; m++) {
+            sb.append("        <project name=\"").append(projectName(m)).append("\">\n            <exported-packages>");
+            for (int p = 0; p < PACKAGES_PER_PROJECT; p++)
+                sb.append("<package>dev.webfx.kit.module").append(m).append(".package").append(p).append("</package>");
+            sb.append("</exported-packages>\n            <source-packages>");
+            for (int p = 0; p < PACKAGES_PER_PROJECT; p++)
+                sb.append("<package>dev.webfx.kit.module").append(m).append(".package").append(p).append("</package>");
+            sb.append("</source-packages>\n        </project>\n");
+        }
+        sb.append("        <usages>\n");
+        for (int p = 0; p < USAGES_COUNT; p++)
+            sb.append("            <java-package name=\"").append(javaPackage(p)).append("\"><module>").append(projectName(p % PROJECTS_COUNT))
+                    .append("</module><module>").append(projectName((p + 1) % PROJECTS_COUNT)).append("</module></java-package>\n");
+        return sb.append("        </usages>\n    </export-snapshot>\n</project>").toString();
+    }
+}
@@ -0,0 +1,152 @@
+package dev.webfx.cli.modulefiles.abstr;
+
+import dev.webfx.cli.core.ArtifactModule;
+import dev.webfx.cli.modulefiles.ExportedWebFxModuleFile;
+import dev.webfx.cli.util.xml.XmlUtil;
+import dev.webfx.lib.reusablestream.ReusableStream;
+import org.junit.jupiter.api.Test;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.Node;
+import org.w3c.dom.NodeList;
+
+import java.util.*;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Checks the export snapshot index against the XPath lookups it replaces (exported project elements and their packages,
+ * java package and class usages) on random snapshots, the module file accessors served by the index, and the
+ * invalidation of the index once the snapshot is modified.
+ *
+ * @author Bruno Salmon
+ */
+class ExportSnapshotIndexTest {
+
+    @Test
+    void indexMatchesXPathLookups() {
+        Random random = new Random(1);
+        for (int k = 0; k < 200; k++) {
+            Document document = XmlUtil.parseXmlString(randomSnapshot(random));
+            ExportSnapshotIndex index = ExportSnapshotIndex.of(document);
+            assertSame(index, ExportSnapshotIndex.of(document)); // built once
+            String message = XmlUtil.formatXmlText(document);
+            assertEquals(XmlUtil.getAttributeValue(XmlUtil.lookupNode(document, "(/project/export-snapshot/project[@name])[1]"), "name"), index.getFirstProjectName(), message);
+            for (int i = 0; i < 10; i++) {
+                String name = "project" + i;
+                Element projectElement = (Element) XmlUtil.lookupNode(document, "/project/export-snapshot/project[@name='" + name + "']");
+                assertSame(projectElement, index.getProjectElement(name), message);
+                assertEquals(projectElement == null ? null : textContents(projectElement, "exported-packages/package"), index.getExportedPackages(projectElement), message);
+                assertEquals(projectElement == null ? null : textContents(projectElement, "source-packages/package"), index.getSourcePackages(projectElement), message);
+            }
+            for (String usage : List.of("java-package", "java-class")) {
+                List<String> names = XmlUtil.nodeListToAttributeValueReusableStream(XmlUtil.lookupNodeList(document, "/project/export-snapshot/usages/" + usage), "name")
+                        .filter(Objects::nonNull).distinct().collect(Collectors.toList());
+                assertEquals(names, new ArrayList<>(usage.equals("java-package") ? index.getJavaPackagesWithUsage() : index.getJavaClassesWithUsage()), message);
+                for (String name : List.of("dev.webfx.a", "dev.webfx.b", "dev.webfx.c", "dev.webfx.absent")) {
+                    Node usageElement = XmlUtil.lookupNode(document, "/project/export-snapshot/usages/" + usage + "[@name='" + name + "']");
+                    assertSame(usageElement, usage.equals("java-package") ? index.getJavaPackageUsageElement(name) : index.getJavaClassUsageElement(name), message);
+                    assertEquals(usageElement == null ? List.of() : textContents(usageElement, "module"),
+                            usage.equals("java-package") ? index.getModulesUsingJavaPackage(name) : index.getModulesUsingJavaClass(name), message);
+                }
+            }
+        }
+    }
+
+    @Test
+    void moduleFileAccessorsServedByTheIndex() {
+        Document document = XmlUtil.parseXmlString("<project><exported-packages><package>root</package></exported-packages>" +
+                "<export-snapshot>" +
+                "<project name=\"a\"><exported-packages><package>a1</package><package>a2</package></exported-packages><source-packages><package>a3</package></source-packages></project>" +
+                "<project name=\"a\"><exported-packages><package>duplicate</package></exported-packages></project>" +
+                "</export-snapshot></project>");
+        ExportSnapshotIndex index = ExportSnapshotIndex.of(document);
+        Element projectA = index.getProjectElement("a");
+        Element duplicateA = (Element) projectA.getNextSibling();
+        WebFxModuleFile moduleFile = new ExportedWebFxModuleFile(new ArtifactModule("fixture:a:1.0"), projectA);
+        assertEquals(List.of("a1", "a2"), toList(moduleFile.getExplicitExportedPackages()));
+        assertEquals(List.of("a3"), toList(moduleFile.javaSourcePackagesFromExportSnapshot()));
+        // The packages of the index are the ones of the indexed project element (the first one), otherwise the module
+        // element is read as usual
+        assertSame(index.getExportedPackages(projectA), index.getExportedPackages(projectA));
+        assertNull(index.getExportedPackages(duplicateA));
+        assertEquals(List.of("duplicate"), toList(new ExportedWebFxModuleFile(new ArtifactModule("fixture:a:1.0"), duplicateA).getExplicitExportedPackages()));
+        assertNull(index.getExportedPackages(document.getDocumentElement()));
+        assertEquals(List.of("root"), toList(new ExportedWebFxModuleFile(new ArtifactModule("fixture:root:1.0"), document.getDocumentElement()).getExplicitExportedPackages()));
+    }
+
+    @Test
+    void modifiedSnapshotIndexedAgainOnceInvalidated() {
+        Document document = XmlUtil.parseXmlString("<project><export-snapshot><project name=\"a\"/><usages><java-package name=\"p\"><module>a</module></java-package></usages></export-snapshot></project>");
+        ExportSnapshotIndex index = ExportSnapshotIndex.of(document);
+        Element exportSnapshot = (Element) XmlUtil.lookupNode(document.getDocumentElement(), "export-snapshot");
+        Element projectB = document.createElement("project");
+        projectB.setAttribute("name", "b");
+        exportSnapshot.insertBefore(projectB, exportSnapshot.getFirstChild());
+        XmlUtil.appendElementWithTextContent(XmlUtil.lookupNode(exportSnapshot, "usages/java-package"), "module", "b");
+        // The index is not updated by the modifications (see DevWebFxModuleFile.updateDocument())
+        assertSame(index, ExportSnapshotIndex.of(document));
+        assertNull(index.getProjectElement("b"));
+        ExportSnapshotIndex.invalidate(document);
+        ExportSnapshotIndex newIndex = ExportSnapshotIndex.of(document);
+        assertNotSame(index, newIndex);
+        assertSame(projectB, newIndex.getProjectElement("b"));
+        assertEquals("b", newIndex.getFirstProjectName());
+        assertEquals(List.of("a", "b"), newIndex.getModulesUsingJavaPackage("p"));
+    }
+
+    @Test
+    void documentsWithoutExportSnapshot() {
+        for (Document document : Arrays.asList(null, XmlUtil.newDocument(), XmlUtil.parseXmlString("<project><modules/></project>"), XmlUtil.parseXmlString("<other><export-snapshot><project name=\"a\"/></export-snapshot></other>"))) {
+            ExportSnapshotIndex index = ExportSnapshotIndex.of(document);
+            assertNull(index.getFirstProjectName());
+            assertNull(index.getProjectElement("a"));
+            assertTrue(index.getJavaPackagesWithUsage().isEmpty());
+            assertTrue(index.getModulesUsingJavaClass("a").isEmpty());
+        }
+    }
+
+    private static String randomSnapshot(Random random) {
+        StringBuilder sb = new StringBuilder("<project name=\"project0\"><exported-packages><package>root</package></exported-packages>");
+        for (int s = random.nextInt(3); s > 0; s--) { // possibly several export-snapshot sections
+            sb.append("<export-snapshot>");
+            for (int i = random.nextInt(6); i > 0; i--) {
+                sb.append(random.nextInt(8) > 0 ? "<project name=\"project" + random.nextInt(10) + "\">" : "<project>");
+                for (String tag : List.of("exported-packages", "source-packages", "modules"))
+                    if (random.nextBoolean()) {
+                        sb.append("<").append(tag).append(">");
+                        for (int p = random.nextInt(4); p > 0; p--)
+                            sb.append(random.nextInt(6) > 0 ? "<package>dev.webfx.p" + random.nextInt(100) + "</package>" : "<module>m</module>");
+                        sb.append("</").append(tag).append(">");
+                    }
+                sb.append("</project>");
+            }
+            for (int u = random.nextInt(3); u > 0; u--) {
+                sb.append("<usages>");
+                for (int i = random.nextInt(6); i > 0; i--) {
+                    String tag = random.nextBoolean() ? "java-package" : "java-class";
+                    sb.append(random.nextInt(8) > 0 ? "<" + tag + " name=\"dev.webfx." + (char) ('a' + random.nextInt(3)) + "\">" : "<" + tag + ">");
+                    for (int m = random.nextInt(4); m > 0; m--)
+                        sb.append(random.nextInt(6) > 0 ? "<module>module" + random.nextInt(10) + "</module>" : "<other>o</other>");
+                    sb.append("</").append(tag).append(">");
+                }
+                sb.append("</usages>");
+            }
+            sb.append("</export-snapshot>");
+        }
+        return sb.append("</project>").toString();
+    }
+
+    private static List<String> textContents(Node node, String xpath) {
+        List<String> textContents = new ArrayList<>();
+        NodeList nodeList = XmlUtil.lookupNodeList(node, xpath);
+        for (int i = 0; i < nodeList.getLength(); i++)
+            textContents.add(nodeList.item(i).getTextContent());
+        return textContents;
+    }
+
+    private static List<String> toList(ReusableStream<String> stream) {
+        return stream.collect(Collectors.toList());
+    }
+}
@@ -0,0 +1,167 @@
+package dev.webfx.cli.modulefiles.abstr;
+
+import dev.webfx.cli.core.LibraryModule;
+import dev.webfx.cli.core.Logger;
+import dev.webfx.cli.core.M2ProjectModule;
+import dev.webfx.cli.core.M2RootModule;
+import dev.webfx.cli.core.MavenUtil;
+import dev.webfx.cli.core.ModuleRegistry;
+import dev.webfx.cli.modulefiles.M2WebFxModuleFile;
+import dev.webfx.cli.util.xml.XmlUtil;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.w3c.dom.Element;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Checks that the documents released by the XML document cache are transparently read again (including the exported
+ * project element of a module described in the export snapshot of its parent), that the modified documents are never
+ * released, and that a synthetic repository of 5,000 modules can be queried and modified under a small heap. Each
+ * scenario runs in its own JVM, as the cache budget is read once (see dev.webfx.cli.xmlDocumentCacheBudgetMB).
+ *
+ * @author Bruno Salmon
+ */
+class XmlDocumentCacheTest {
+
+    private static final int SYNTHETIC_MODULES_COUNT = 5_000;
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void exportedModuleElementResolvedAgainAfterEviction() throws Exception {
+        assertEquals("exported module element resolved again", runScenario("exported", "-Ddev.webfx.cli.xmlDocumentCacheBudgetMB=0"));
+    }
+
+    @Test
+    void modificationsKeptAfterEviction() throws Exception {
+        assertEquals("modifications kept", runScenario("modified", "-Ddev.webfx.cli.xmlDocumentCacheBudgetMB=0"));
+    }
+
+    @Test
+    void syntheticRepositoryUnderSmallHeap() throws Exception {
+        // Without eviction, the DOM of these modules would take several hundreds of MB
+        assertEquals("synthetic repository queried", runScenario("synthetic", "-Xmx64m"));
+    }
+
+    // Runs the scenario in a new JVM (with the temporary directory as working directory, so the Maven local repository
+    // is located from the .mvn/maven.config written there) and returns its last output line
+    private String runScenario(String scenario, String jvmOption) throws Exception {
+        Path localRepository = tempDir.resolve("repository");
+        Files.createDirectories(tempDir.resolve(".mvn"));
+        Files.writeString(tempDir.resolve(".mvn").resolve("maven.config"), "-Dmaven.repo.local=" + localRepository + "\n");
+        String java = ProcessHandle.current().info().command().orElse("java");
+        ProcessBuilder processBuilder = new ProcessBuilder(java, jvmOption, "-cp", System.getProperty("java.class.path"),
+                Scenarios.class.getName(), scenario, localRepository.toString())
+                .directory(tempDir.toFile()).redirectErrorStream(true);
+        processBuilder.environment().remove("MAVEN_OPTS");
+        Process jvm = processBuilder.start();
+        String output = new String(jvm.getInputStream().readAllBytes()).trim();
+        assertTrue(jvm.waitFor(60, TimeUnit.SECONDS));
+        assertEquals(0, jvm.exitValue(), output);
+        return output.substring(output.lastIndexOf('\n') + 1);
+    }
+
+    // Main class of the JVMs started by runScenario()
+    static final class Scenarios {
+
+        private static Path localRepository;
+        private static ModuleRegistry registry;
+
+        public static void main(String[] args) throws Exception {
+            Logger.setLogConsumer(message -> {});
+            MavenUtil.setOffline(true); // All the artifacts are in the local repository
+            localRepository = Path.of(args[1]);
+            registry = new ModuleRegistry(localRepository.getParent());
+            switch (args[0]) {
+                case "exported": exported(); break;
+                case "modified": modified(); break;
+                case "synthetic": synthetic(); break;
+            }
+            System.exit(0); // Not waiting for the non-daemon threads of the CLI
+        }
+
+        private static void exported() throws Exception {
+            // lib-child is described in the export snapshot of lib (so its module file reads the lib webfx.xml file)
+            M2RootModule lib = writeLibrary("lib", "<project><export-snapshot>" +
+                    "<project name=\"lib\"><modules><module>lib-child</module></modules></project>" +
+                    "<project name=\"lib-child\" executable=\"true\"><exported-packages><package>fixture.child</package></exported-packages></project>" +
+                    "</export-snapshot></project>");
+            M2WebFxModuleFile childModuleFile = new M2ProjectModule("lib-child", lib).getWebFxModuleFile();
+            assertExportedChildElement(childModuleFile.getModuleElement());
+            // Reading other module files, so the document of lib-child is released (budget = 0)
+            long evictions = XmlDocumentCache.getEvictionCount();
+            for (int i = 0; i < 3; i++)
+                writeLibrary("other" + i, "<project/>").getWebFxModuleFile().getModuleElement();
+            assertTrue(XmlDocumentCache.getEvictionCount() > evictions, XmlDocumentCache.getStatistics());
+            // The file is read again, and the module element is the exported project element again (not the root)
+            assertExportedChildElement(childModuleFile.getModuleElement());
+            assertEquals("fixture.child", childModuleFile.lookupNodeTextContent("exported-packages/package"));
+            System.out.println("exported module element resolved again");
+        }
+
+        private static void assertExportedChildElement(Element moduleElement) {
+            assertEquals("lib-child", moduleElement.getAttribute("name"));
+            assertEquals("export-snapshot", moduleElement.getParentNode().getNodeName());
+        }
+
+        private static void modified() throws Exception {
+            List<M2WebFxModuleFile> moduleFiles = new ArrayList<>();
+            for (int i = 0; i < 10; i++)
+                moduleFiles.add(writeLibrary("lib" + i, "<project><providers/></project>").getWebFxModuleFile());
+            moduleFiles.get(0).addProvider("fixture.Spi", "fixture.Provider");
+            moduleFiles.get(1).setExecutable(true);
+            // Modifying a released document: it's read again before the modification, and then kept
+            moduleFiles.get(2).getModuleElement();
+            moduleFiles.get(3).getModuleElement(); // releases the document of lib2 (budget = 0)
+            moduleFiles.get(2).addProvider("fixture.Spi", "fixture.Provider2");
+            for (M2WebFxModuleFile moduleFile : moduleFiles) // releases all the clean documents but the last one
+                moduleFile.getModuleElement();
+            assertTrue(XmlDocumentCache.getEvictionCount() >= 8, XmlDocumentCache.getStatistics());
+            assertEquals("fixture.Provider", moduleFiles.get(0).lookupNodeTextContent("providers/provider[@interface='fixture.Spi']"));
+            assertEquals("true", moduleFiles.get(1).getModuleElement().getAttribute("executable"));
+            assertEquals("fixture.Provider2", moduleFiles.get(2).lookupNodeTextContent("providers/provider[@interface='fixture.Spi']"));
+            assertNull(moduleFiles.get(3).lookupNode("providers/provider"));
+            System.out.println("modifications kept");
+        }
+
+        private static void synthetic() throws Exception {
+            // Each webfx.xml file has an export snapshot of about 10 KB (and about 5 times more in DOM)
+            StringBuilder packages = new StringBuilder();
+            for (int p = 0; p < 200; p++)
+                packages.append("<package>fixture.synthetic.package").append(p).append("</package>");
+            List<M2WebFxModuleFile> moduleFiles = new ArrayList<>();
+            for (int i = 0; i < SYNTHETIC_MODULES_COUNT; i++)
+                moduleFiles.add(writeLibrary("lib" + i, "<project><export-snapshot><project name=\"lib" + i +
+                        "\"><exported-packages>" + packages + "</exported-packages></project></export-snapshot></project>").getWebFxModuleFile());
+            for (int pass = 0; pass < 2; pass++)
+                for (int i = 0; i < SYNTHETIC_MODULES_COUNT; i++) {
+                    M2WebFxModuleFile moduleFile = moduleFiles.get(i);
+                    assertEquals("lib" + i, moduleFile.getModuleElement().getAttribute("name"));
+                    assertEquals(200, moduleFile.lookupNodeList("exported-packages/package").getLength());
+                    if (pass == 0 && i % 100 == 0)
+                        moduleFile.setExecutable(true);
+                    else if (pass == 1)
+                        assertEquals(i % 100 == 0, moduleFile.getModuleElement().hasAttribute("executable"), "lib" + i);
+                }
+            assertTrue(XmlDocumentCache.getReloadCount() > 0, XmlDocumentCache.getStatistics());
+            System.out.println("synthetic repository queried");
+        }
+
+        private static M2RootModule writeLibrary(String artifactId, String webFxXml) throws Exception {
+            Path artifactDirectory = localRepository.resolve("fixture").resolve(artifactId).resolve("1.0");
+            Files.createDirectories(artifactDirectory);
+            Files.writeString(artifactDirectory.resolve(artifactId + "-1.0.pom"), "<project><modelVersion>4.0.0</modelVersion>" +
+                    "<groupId>fixture</groupId><artifactId>" + artifactId + "</artifactId><version>1.0</version><packaging>pom</packaging></project>");
+            Files.writeString(artifactDirectory.resolve(artifactId + "-1.0-webfx.xml"), webFxXml);
+            return new M2RootModule(new LibraryModule(XmlUtil.parseXmlString("<library artifact=\"fixture:" + artifactId + ":1.0\"/>").getDocumentElement(), true), registry);
+        }
+    }
+}
@@ -0,0 +1,251 @@
+package dev.webfx.cli.util.process;
+
+import dev.webfx.cli.core.Logger;
+import dev.webfx.cli.util.os.OperatingSystem;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.junit.jupiter.api.Assumptions.assumeFalse;
+
+/**
+ * Checks that the exit code, result lines and error lines of a process call are consistent when many process calls are
+ * executed concurrently, including when they are read from the process call without waiting for its completion, and
+ * that a process call that times out or is cancelled (or still running when the CLI exits) is destroyed with all its
+ * descendants (sleep scripts with a distinctive duration, so their remaining processes can be counted). Also checks that
+ * an observed output is forwarded unchanged (and not logged), that the error lines are collected without being logged,
+ * and that each running call has its own gobbler thread (so a short call is not delayed by long ones, and an observer
+ * waiting for another call doesn't deadlock).
+ *
+ * @author Bruno Salmon
+ */
+class ProcessCallTest {
+
+    private static final int CALLS_COUNT = 500;
+    // More long calls than a pool sized on the processors
+    private static final int LONG_CALLS_COUNT = 2 * Runtime.getRuntime().availableProcessors() + 4;
+
+    @BeforeEach
+    void setUp() {
+        assumeFalse(OperatingSystem.isWindows()); // The test processes are sh scripts
+    }
+
+    @Test
+    void concurrentCallsResultsAreConsistent() {
+        long gobblerThreadsBefore = countGobblerThreads();
+        long t0 = System.currentTimeMillis();
+        List<ProcessCall> processCalls = new ArrayList<>();
+        for (int i = 0; i < CALLS_COUNT; i++)
+            processCalls.add(newCall("for k in 1 2 3; do echo out" + i + "; done; echo err" + i + " >&2; exit " + (i % 3)));
+        processCalls.forEach(ProcessCall::executeAsync);
+        // At most one gobbler thread per running call (the idle threads of the previous tests may be reused)
+        long gobblerThreadsDuringRun = countGobblerThreads();
+        assertTrue(gobblerThreadsDuringRun <= gobblerThreadsBefore + CALLS_COUNT, "gobbler threads: " + gobblerThreadsDuringRun);
+        for (int i = 0; i < CALLS_COUNT; i++) {
+            ProcessCall processCall = processCalls.get(i);
+            // Read straight after executeAsync() (without joining the returned future)
+            assertEquals(i % 3, processCall.getExitCode(), "exit code of call " + i);
+            assertEquals(List.of("out" + i, "out" + i, "out" + i), processCall.getResultLines());
+            assertEquals("out" + i, processCall.getLastResultLine());
+            assertEquals(List.of("err" + i), processCall.getErrorLines());
+        }
+        long durationMillis = System.currentTimeMillis() - t0;
+        assertTrue(durationMillis < 30_000, CALLS_COUNT + " calls in " + durationMillis + " ms");
+    }
+
+    @Test
+    void shortCallNotDelayedByLongCalls() throws Exception {
+        long gobblerThreadsBefore = countGobblerThreads();
+        List<CompletableFuture<ProcessCall>> longCalls = new ArrayList<>();
+        for (int i = 0; i < LONG_CALLS_COUNT; i++)
+            longCalls.add(newCall("echo out; sleep 3").executeAsync());
+        Thread.sleep(300);
+        // Each running call has its own gobbler thread (none is queued)
+        long gobblerThreadsDuringRun = countGobblerThreads();
+        assertTrue(gobblerThreadsDuringRun >= LONG_CALLS_COUNT && gobblerThreadsDuringRun <= gobblerThreadsBefore + LONG_CALLS_COUNT,
+                "gobbler threads: " + gobblerThreadsDuringRun);
+        // So the output of a short call is consumed as soon as it exits
+        long t0 = System.currentTimeMillis();
+        ProcessCall shortCall = newCall("echo out").executeAndWait();
+        long latencyMillis = System.currentTimeMillis() - t0;
+        assertEquals("out", shortCall.getLastResultLine());
+        assertTrue(latencyMillis < 2000, "short call latency: " + latencyMillis + " ms");
+        for (CompletableFuture<ProcessCall> longCall : longCalls)
+            assertEquals(0, longCall.get(10, TimeUnit.SECONDS).getExitCode());
+    }
+
+    @Test
+    void observerWaitingForAnotherCallDoesNotDeadlock() throws Exception {
+        // Each observer waits for a nested call, whose output must be read while all the outer gobblers are blocked
+        List<CompletableFuture<ProcessCall>> outerCalls = new ArrayList<>();
+        List<String> nestedLines = Collections.synchronizedList(new ArrayList<>());
+        for (int i = 0; i < LONG_CALLS_COUNT; i++)
+            outerCalls.add(newCall("echo out").setOutputObserver(line ->
+                    nestedLines.add(newCall("sleep 0.5; echo out").executeAndWait().getLastResultLine())).executeAsync());
+        for (CompletableFuture<ProcessCall> outerCall : outerCalls)
+            assertEquals(0, outerCall.get(20, TimeUnit.SECONDS).getExitCode());
+        assertEquals(Collections.nCopies(LONG_CALLS_COUNT, "out"), nestedLines);
+    }
+
+    @Test
+    void errorLinesCollectedWithoutBeingLogged() {
+        List<String> logs = new ArrayList<>();
+        Logger.setLogConsumer(message -> logs.add(String.valueOf(message)));
+        try {
+            ProcessCall processCall = newCall("echo out; echo err1 >&2; echo err2 >&2").executeAndWait();
+            assertEquals(List.of("err1", "err2"), processCall.getErrorLines());
+            // The error lines are logged only if accepted by the log line filter
+            processCall = newCall("echo err1 >&2; echo err2 >&2").setLogLineFilter(line -> line.endsWith("2")).executeAndWait();
+            assertEquals(List.of("err1", "err2"), processCall.getErrorLines());
+        } finally {
+            Logger.setLogConsumer(System.out::println);
+        }
+        assertEquals(List.of("err2"), logs);
+    }
+
+    @Test
+    void sequentialCallsResultsAreConsistent() {
+        for (int i = 0; i < CALLS_COUNT / 10; i++) {
+            ProcessCall processCall = newCall("echo out" + i + "; echo err" + i + " >&2; exit " + (i % 3)).executeAndWait();
+            assertEquals(i % 3, processCall.getExitCode());
+            assertEquals("out" + i, processCall.getLastResultLine());
+            assertEquals("err" + i, processCall.getLastErrorLine());
+        }
+    }
+
+    @Test
+    void observedOutputIsForwardedUnchanged() {
+        String script = "printf 'prompt? '; sleep 0.2; printf '\\033[1;34mblue\\033[m line\\r\\n'; echo err >&2; printf last";
+        List<String> observedLines = new ArrayList<>(), logs = new ArrayList<>();
+        ByteArrayOutputStream forwarded = new ByteArrayOutputStream();
+        PrintStream systemOut = System.out;
+        System.setOut(new PrintStream(forwarded, true));
+        Logger.setLogConsumer(message -> logs.add(String.valueOf(message)));
+        try {
+            ProcessCall processCall = new ProcessCall()
+                    .setCommandTokens("sh", "-c", script)
+                    .setLogsCall(false, false)
+                    .setOutputObserver(observedLines::add)
+                    .executeAndWait();
+            assertEquals(0, processCall.getExitCode());
+        } finally {
+            System.setOut(systemOut);
+            Logger.setLogConsumer(System.out::println);
+        }
+        assertEquals("prompt? \u001B[1;34mblue\u001B[m line\r\nerr\nlast", forwarded.toString());
+        assertEquals(List.of("prompt? blue line", "err", "last"), observedLines);
+        assertEquals(List.of(), logs);
+    }
+
+    @Test
+    void timedOutCallIsKilledWithItsDescendants() {
+        long t0 = System.currentTimeMillis();
+        ProcessCall processCall = newSleepCall("31.5").setTimeout(Duration.ofSeconds(1)).executeAndWait();
+        assertTrue(System.currentTimeMillis() - t0 < 10_000);
+        assertTrue(processCall.isTimedOut());
+        assertFalse(processCall.isCancelled());
+        assertNotEquals(0, processCall.getExitCode());
+        assertEquals("started", processCall.getLastResultLine());
+        assertNoRemainingSleep("31.5");
+    }
+
+    @Test
+    void cancelledCallIsKilledWithItsDescendants() throws Exception {
+        ProcessCall processCall = newSleepCall("32.5");
+        CompletableFuture<ProcessCall> future = processCall.executeAsync();
+        Thread.sleep(300);
+        processCall.cancel();
+        future.get(10, TimeUnit.SECONDS);
+        assertTrue(processCall.isCancelled());
+        assertFalse(processCall.isTimedOut());
+        assertNoRemainingSleep("32.5");
+    }
+
+    @Test
+    void cancelledFutureKillsTheCall() throws Exception {
+        ProcessCall processCall = newSleepCall("33.5");
+        CompletableFuture<ProcessCall> future = processCall.executeAsync();
+        Thread.sleep(300);
+        future.cancel(true);
+        assertTrue(processCall.isCancelled());
+        assertNoRemainingSleep("33.5");
+    }
+
+    @Test
+    void callIgnoringTerminationIsKilledAfterGracePeriod() {
+        ProcessCall processCall = newCall("trap '' TERM; echo out; sleep 34.5; sleep 34.5").setTimeout(Duration.ofMillis(500)).executeAndWait();
+        assertTrue(processCall.isTimedOut());
+        assertNotEquals(0, processCall.getExitCode());
+        assertNoRemainingSleep("34.5");
+    }
+
+    @Test
+    void runningCallsAreKilledWhenTheCliExits() throws Exception {
+        String java = ProcessHandle.current().info().command().orElse("java");
+        Process jvm = new ProcessBuilder(java, "-cp", System.getProperty("java.class.path"), ExitingWithRunningCall.class.getName())
+                .redirectErrorStream(true).start();
+        String output = new String(jvm.getInputStream().readAllBytes());
+        assertTrue(jvm.waitFor(30, TimeUnit.SECONDS));
+        assertTrue(output.contains("running sleeps: 2"), output); // Checking the sleeps were running before the exit
+        assertNoRemainingSleep("35.5");
+    }
+
+    // Main class of the JVM started by runningCallsAreKilledWhenTheCliExits()
+    static final class ExitingWithRunningCall {
+        public static void main(String[] args) throws Exception {
+            newSleepCall("35.5").executeAsync();
+            Thread.sleep(800);
+            System.out.println("running sleeps: " + countSleeps("35.5"));
+            System.exit(0);
+        }
+    }
+
+    // The process forks a background sleep and waits for a foreground one, so there is a descendant to kill
+    private static ProcessCall newSleepCall(String duration) {
+        return newCall("echo started; sleep " + duration + " & sleep " + duration + "; echo never").setResultLineFilter(null);
+    }
+
+    private static long countSleeps(String duration) {
+        return ProcessHandle.allProcesses()
+                .filter(p -> p.info().command().map(c -> c.endsWith("sleep")).orElse(false)
+                        && p.info().arguments().map(a -> Arrays.asList(a).contains(duration)).orElse(false))
+                .count();
+    }
+
+    private static void assertNoRemainingSleep(String duration) {
+        // The processes still alive after the grace period (2s) are killed
+        long deadline = System.currentTimeMillis() + 5000;
+        while (countSleeps(duration) > 0 && System.currentTimeMillis() < deadline)
+            try {
+                Thread.sleep(100);
+            } catch (InterruptedException e) {
+                throw new RuntimeException(e);
+            }
+        assertEquals(0, countSleeps(duration), "remaining sleep " + duration + " processes");
+    }
+
+    private static long countGobblerThreads() {
+        return Thread.getAllStackTraces().keySet().stream()
+                .filter(t -> t.isAlive() && t.getName().startsWith(StreamGobbler.THREAD_NAME_PREFIX))
+                .count();
+    }
+
+    private static ProcessCall newCall(String script) {
+        return new ProcessCall()
+                .setCommandTokens("sh", "-c", script)
+                .setLogsCall(false, false)
+                .setLogLineFilter(line -> false)
+                .setResultLineFilter(line -> line.startsWith("out"))
+                .setErrorLineFilter(line -> line.startsWith("err"));
+    }
+}
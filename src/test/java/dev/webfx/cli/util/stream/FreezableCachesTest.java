@@ -0,0 +1,93 @@
+package dev.webfx.cli.util.stream;
+
+import dev.webfx.lib.reusablestream.ReusableStream;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * @author Bruno Salmon
+ */
+class FreezableCachesTest {
+
+    @Test
+    void freezesOnlyTheComputedCaches() {
+        FreezableCaches freezableCaches = new FreezableCaches();
+        AtomicInteger computedSources = new AtomicInteger(), uncomputedSources = new AtomicInteger();
+        ReusableStream<String> computed = freezableCaches.add(
+                ReusableStream.of("a", "b", "c").peek(s -> computedSources.incrementAndGet()).cache());
+        ReusableStream<String> uncomputed = freezableCaches.add(
+                ReusableStream.of("x", "y").peek(s -> uncomputedSources.incrementAndGet()).cache());
+
+        assertEquals(3, computed.count());
+        assertTrue(uncomputed.anyMatch("x"::equals)); // Partial iteration => not computed
+        int uncomputedSourcesBeforeFreeze = uncomputedSources.get();
+
+        freezableCaches.freezeComputedCaches();
+        assertTrue(freezableCaches.isFrozen());
+        assertEquals(3, computedSources.get()); // Freezing doesn't compute the cache again
+        assertEquals(uncomputedSourcesBeforeFreeze, uncomputedSources.get()); // Partially computed cache left untouched
+
+        assertEquals(List.of("a", "b", "c"), computed.collect(Collectors.toList()));
+        assertEquals(List.of("x", "y"), uncomputed.collect(Collectors.toList()));
+        assertEquals(3, computedSources.get());
+    }
+
+    @Test
+    void frozenCachesIterateTheirArray() {
+        FreezableCaches freezableCaches = new FreezableCaches();
+        AtomicInteger cacheIterations = new AtomicInteger();
+        ReusableStream<String> cache = freezableCaches.add(ReusableStream.create(() -> {
+            cacheIterations.incrementAndGet();
+            return List.of("a", "b", "c").spliterator();
+        }));
+        // Not frozen => each query goes to the cache
+        assertEquals(3, cache.count());
+        assertEquals(3, cache.count());
+        assertEquals(2, cacheIterations.get());
+
+        freezableCaches.freezeComputedCaches();
+        assertEquals(2, cacheIterations.get()); // Freezing doesn't iterate the caches
+        assertEquals("a", cache.findFirst().orElse(null)); // Partial iteration => not frozen yet
+        assertEquals(3, cacheIterations.get());
+        assertEquals(List.of("a", "b", "c"), cache.collect(Collectors.toList())); // Complete iteration => frozen
+        assertEquals(4, cacheIterations.get());
+        // Frozen => the array is iterated, not the cache
+        assertEquals(List.of("a", "b", "c"), cache.collect(Collectors.toList()));
+        assertEquals(3, cache.count());
+        assertTrue(cache.anyMatch("c"::equals));
+        assertEquals(4, cacheIterations.get());
+    }
+
+    @Test
+    void cachesComputedAfterTheFreezeAreFrozen() {
+        FreezableCaches freezableCaches = new FreezableCaches();
+        AtomicInteger sources = new AtomicInteger();
+        ReusableStream<Integer> registeredBefore = freezableCaches.add(ReusableStream.of(1, 2).peek(i -> sources.incrementAndGet()));
+        freezableCaches.freezeComputedCaches();
+        ReusableStream<Integer> registeredAfter = freezableCaches.add(ReusableStream.of(3, 4).peek(i -> sources.incrementAndGet()));
+        for (int i = 0; i < 3; i++) {
+            assertEquals(List.of(1, 2), registeredBefore.collect(Collectors.toList()));
+            // Element by element iteration (ends with the tryAdvance() that returns false)
+            List<Integer> elements = new ArrayList<>();
+            registeredAfter.iterator().forEachRemaining(elements::add);
+            assertEquals(List.of(3, 4), elements);
+        }
+        assertEquals(4, sources.get()); // Only the first iteration of each went through the streams
+    }
+
+    @Test
+    void freezeIsIdempotent() {
+        FreezableCaches freezableCaches = new FreezableCaches();
+        ReusableStream<Integer> cache = freezableCaches.add(ReusableStream.of(1, 2).cache());
+        freezableCaches.freezeComputedCaches(); // Nothing computed yet => nothing frozen
+        assertEquals(2, cache.count());
+        freezableCaches.freezeComputedCaches(); // No effect
+        assertEquals(List.of(1, 2), cache.collect(Collectors.toList()));
+    }
+}
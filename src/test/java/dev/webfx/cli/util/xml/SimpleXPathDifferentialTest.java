@@ -0,0 +1,144 @@
+package dev.webfx.cli.util.xml;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.w3c.dom.Document;
+import org.w3c.dom.Node;
+import org.w3c.dom.NodeList;
+
+import javax.xml.xpath.XPath;
+import javax.xml.xpath.XPathConstants;
+import javax.xml.xpath.XPathExpression;
+import javax.xml.xpath.XPathFactory;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Differential test of SimpleXPath against javax.xml.xpath: every XPath expression used in the code (collected from the
+ * string literals passed to the XmlUtil lookup methods and their wrappers, plus the expressions built at runtime) is
+ * evaluated by both engines on the bundled templates, from the document and from each of its elements. The variable
+ * forms ([text() = $text]) are evaluated with the text contents found in the templates. An expression not compiled by
+ * SimpleXPath is evaluated by the XPath engine anyway (see XmlUtil.lookupNode()), so it's not compared.
+ *
+ * @author Bruno Salmon
+ */
+class SimpleXPathDifferentialTest {
+
+    private static final String TEMPLATES = "/dev/webfx/cli/templates/";
+    private static final String FIXTURES = "/dev/webfx/cli/util/xml/fixtures/";
+    // pom_root_inline.xml is not listed, as it's not well-formed (it ends with 2 </project> tags)
+    private static final List<String> DOCUMENTS = List.of(
+            TEMPLATES + "pom_aggregate.xml", TEMPLATES + "pom_gluon_executable.xml", TEMPLATES + "pom_gwt_executable.xml",
+            TEMPLATES + "pom_not_executable.xml", TEMPLATES + "pom_openjfx_executable.xml", TEMPLATES + "pom_root.xml",
+            TEMPLATES + "pom_teavm_executable.xml", TEMPLATES + "pom_vertx_executable.xml", TEMPLATES + "webfx-root.xml",
+            TEMPLATES + "webfx.xml", TEMPLATES + "webfx_aggregate.xml", TEMPLATES + "module.gwt.xml",
+            "/dev/webfx/cli/jdk/webfx.xml", FIXTURES + "pom.xml", FIXTURES + "webfx.xml");
+
+    // XPath string literal passed to a lookup method (or a wrapper), possibly after a node argument
+    private static final Pattern LOOKUP_CALL = Pattern.compile(
+            "\\b(lookup\\w*|append\\w*|prepend\\w*|createAndAppend\\w*|createAndPrepend\\w*|getNodeOrAttributeTagContent|lookupGavTagContent)" +
+            "\\(\\s*(?:[\\w.()]+\\s*,\\s*)?\"([^\"]+)\"\\s*[,)]");
+    // Expressions built at runtime (WebFxModuleFile.addProvider() and DevWebFxModuleFile usages)
+    private static final List<String> RUNTIME_EXPRESSIONS = List.of(
+            "providers/provider[@interface='dev.webfx.Spi'][text() = 'dev.webfx.Provider']",
+            "java-package[@name = $value]", "java-class[@name = $value]");
+
+    private static final XPath XPATH = XPathFactory.newInstance().newXPath();
+    private static final Map<String, Object> VARIABLES = new HashMap<>();
+    private static Set<String> expressions;
+    private static List<Document> documents;
+
+    @BeforeAll
+    static void setUp() throws IOException {
+        XPATH.setXPathVariableResolver(qName -> VARIABLES.get(qName.getLocalPart()));
+        expressions = new TreeSet<>(RUNTIME_EXPRESSIONS);
+        try (Stream<Path> paths = Files.walk(Path.of("src/main/java"))) {
+            for (Path path : paths.filter(p -> p.toString().endsWith(".java")).collect(Collectors.toList())) {
+                Matcher matcher = LOOKUP_CALL.matcher(Files.readString(path));
+                while (matcher.find()) {
+                    String xpath = matcher.group(2);
+                    expressions.add(xpath);
+                    if (matcher.group(1).endsWith("IfNotAlreadyExists") || matcher.group(1).equals("lookupNodeWithTextContent"))
+                        expressions.add(xpath + "[text() = $text]"); // See XmlUtil.lookupNodeWithTextContent()
+                }
+            }
+        }
+        documents = new ArrayList<>();
+        for (String document : DOCUMENTS)
+            documents.add(XmlUtil.parseXmlString(readResource(document)));
+    }
+
+    @Test
+    void expressionsCollectedFromTheCode() {
+        // Checking the scan still finds the expressions (ex: after a rename of the lookup methods)
+        assertTrue(expressions.containsAll(List.of("modules", "exported-packages/source-packages/exclude-package",
+                "dependencies/used-by-source-modules/module", "parent/artifactId", "modules/module[text() = $text]",
+                "modules//module", "/module//comment()[2]")), expressions.toString());
+        assertTrue(expressions.stream().filter(e -> SimpleXPath.compile(e) != null).count() >= 50, expressions.toString());
+    }
+
+    @Test
+    void simpleXPathMatchesXPathEngine() throws Exception {
+        int comparisons = 0;
+        for (String expression : expressions) {
+            SimpleXPath simpleXPath = SimpleXPath.compile(expression);
+            if (simpleXPath == null)
+                continue;
+            XPathExpression xpathExpression = XPATH.compile(expression);
+            // Same expression without its variable predicates, to get the values matching these predicates
+            XPathExpression unfilteredExpression = XPATH.compile(expression.replaceAll("\\[[^]]*\\$[^]]*]", ""));
+            for (Document document : documents) {
+                List<Node> contextNodes = new ArrayList<>(List.of(document));
+                contextNodes.addAll(toList((NodeList) XPATH.evaluate("//*", document, XPathConstants.NODESET)));
+                for (Node contextNode : contextNodes)
+                    for (Map<String, Object> variables : expression.contains("$") ? variableValues(unfilteredExpression, contextNode) : List.of(Map.<String, Object>of())) {
+                        VARIABLES.clear();
+                        VARIABLES.putAll(variables);
+                        String message = expression + " from " + contextNode.getNodeName() + " with " + variables;
+                        assertSame(xpathExpression.evaluate(contextNode, XPathConstants.NODE), simpleXPath.evaluateNode(contextNode, VARIABLES::get), message);
+                        assertIterableEquals(toList((NodeList) xpathExpression.evaluate(contextNode, XPathConstants.NODESET)),
+                                toList(simpleXPath.evaluateNodeList(contextNode, VARIABLES::get)), message);
+                        comparisons++;
+                    }
+            }
+        }
+        assertTrue(comparisons > 10_000, "comparisons = " + comparisons);
+    }
+
+    // The values of the variables: the text contents and attribute values of the nodes matched without the variable
+    // predicates (so some nodes match), and a value found nowhere
+    private static List<Map<String, Object>> variableValues(XPathExpression unfilteredExpression, Node contextNode) throws Exception {
+        Set<String> values = new LinkedHashSet<>();
+        values.add("absent");
+        for (Node node : toList((NodeList) unfilteredExpression.evaluate(contextNode, XPathConstants.NODESET))) {
+            values.add(node.getTextContent());
+            for (int i = 0; node.getAttributes() != null && i < node.getAttributes().getLength(); i++)
+                values.add(node.getAttributes().item(i).getNodeValue());
+        }
+        return values.stream().map(value -> Map.<String, Object>of("text", value, "value", value)).collect(Collectors.toList());
+    }
+
+    private static List<Node> toList(NodeList nodeList) {
+        List<Node> nodes = new ArrayList<>();
+        for (int i = 0; i < nodeList.getLength(); i++)
+            nodes.add(nodeList.item(i));
+        return nodes;
+    }
+
+    private static String readResource(String path) throws IOException {
+        try (InputStream is = SimpleXPathDifferentialTest.class.getResourceAsStream(path)) {
+            assertNotNull(is, "Missing resource " + path);
+            return new String(is.readAllBytes(), StandardCharsets.UTF_8);
+        }
+    }
+}
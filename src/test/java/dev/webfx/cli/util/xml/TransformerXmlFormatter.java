@@ -0,0 +1,39 @@
+package dev.webfx.cli.util.xml;
+
+import org.w3c.dom.Document;
+import org.w3c.dom.Node;
+
+import javax.xml.transform.OutputKeys;
+import javax.xml.transform.Transformer;
+import javax.xml.transform.TransformerFactory;
+import javax.xml.transform.dom.DOMSource;
+import javax.xml.transform.stream.StreamResult;
+import java.io.StringWriter;
+
+/**
+ * Reference implementation of the XML formatting, as it was done before XmlSerializer: identity Transformer followed
+ * by string replacements over the whole output. Used by the differential tests only.
+ *
+ * @author Bruno Salmon
+ */
+final class TransformerXmlFormatter {
+
+    static String format(Node node) throws Exception {
+        Transformer transformer = TransformerFactory.newInstance().newTransformer();
+        if (node instanceof Document)
+            ((Document) node).setXmlStandalone(true);
+        else
+            transformer.setOutputProperty(OutputKeys.OMIT_XML_DECLARATION, "yes");
+        transformer.setOutputProperty(OutputKeys.METHOD, "xml");
+        transformer.setOutputProperty("{http://xml.apache.org/xslt}indent-amount", "2");
+        StringWriter sw = new StringWriter();
+        transformer.transform(new DOMSource(node), new StreamResult(sw));
+        String xmlText = sw.toString()
+                .replace("?><", "?>\n<")
+                .replace("\" xmlns:xsi=\"", "\"\n         xmlns:xsi=\"")
+                .replace("\" xsi:schemaLocation=\"", "\"\n         xsi:schemaLocation=\"");
+        if (xmlText.contains("?>\n<!--"))
+            xmlText = xmlText.replace("--><", "-->\n<");
+        return xmlText;
+    }
+}
@@ -0,0 +1,141 @@
+package dev.webfx.cli.util.xml;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Checks that XmlSerializer produces byte for byte the same output as the previous Transformer + string replacements
+ * formatting (see TransformerXmlFormatter). The golden files have been generated with that previous formatting.
+ *
+ * @author Bruno Salmon
+ */
+class XmlSerializerTest {
+
+    private static final String TEMPLATES = "/dev/webfx/cli/templates/";
+    private static final String FIXTURES = "/dev/webfx/cli/util/xml/fixtures/";
+    private static final String GOLDEN = "/dev/webfx/cli/util/xml/golden/";
+
+    // Note: pom_root_inline.xml is not listed, as it's not well-formed (it ends with 2 </project> tags)
+    @ParameterizedTest
+    @ValueSource(strings = {"pom_aggregate.xml", "pom_gluon_executable.xml", "pom_gwt_executable.xml",
+            "pom_not_executable.xml", "pom_openjfx_executable.xml", "pom_root.xml",
+            "pom_teavm_executable.xml", "pom_vertx_executable.xml", "webfx-root.xml", "webfx.xml",
+            "webfx_aggregate.xml", "module.gwt.xml"})
+    void templatesMatchGoldenFiles(String template) throws IOException {
+        Document document = XmlUtil.parseXmlString(readResource(TEMPLATES + template));
+        assertEquals(readResource(GOLDEN + template), XmlUtil.formatXmlText(document));
+        // Same document once updated the way the CLI updates the module files
+        mutate(document);
+        assertEquals(readResource(GOLDEN + template + ".mutated"), XmlUtil.formatXmlText(document));
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {"pom.xml", "webfx.xml"})
+    void generatedFilesMatchGoldenFiles(String fixture) throws IOException {
+        // Module files generated by the CLI (the ones of this project)
+        Document document = XmlUtil.parseXmlString(readResource(FIXTURES + fixture));
+        assertEquals(readResource(GOLDEN + "project-" + fixture), XmlUtil.formatXmlText(document));
+    }
+
+    @Test
+    void randomDocumentsMatchTransformerOutput() throws Exception {
+        Random random = new Random(1);
+        for (int k = 0; k < 3000; k++) {
+            Document document = XmlUtil.newDocument();
+            if (random.nextBoolean())
+                document.appendChild(document.createComment(randomUnescapedText(random)));
+            if (random.nextInt(4) == 0)
+                document.appendChild(document.createProcessingInstruction("p" + k, random.nextBoolean() ? "" : "d"));
+            Element root = document.createElement("project");
+            document.appendChild(root);
+            if (random.nextBoolean())
+                root.setAttribute("xmlns", "urn:x");
+            if (random.nextBoolean()) {
+                root.setAttribute("xmlns:xsi", "urn:xsi");
+                if (random.nextBoolean())
+                    root.setAttribute("xsi:schemaLocation", "urn:s");
+            }
+            grow(random, document, root, 3);
+            if (random.nextBoolean())
+                document.appendChild(document.createComment("t"));
+            assertEquals(TransformerXmlFormatter.format(document), XmlSerializer.serialize(document), "document " + k);
+            assertEquals(TransformerXmlFormatter.format(root), XmlSerializer.serialize(root), "root element " + k);
+        }
+    }
+
+    @Test
+    void headerCommentAddedToNewDocument() throws Exception {
+        Document template = XmlUtil.parseXmlString(readResource(TEMPLATES + "pom_not_executable.xml"));
+        mutate(template);
+        Document document = XmlUtil.newDocument();
+        document.appendChild(document.createComment(" header "));
+        document.appendChild(document.importNode(template.getDocumentElement(), true));
+        assertEquals(TransformerXmlFormatter.format(document), XmlSerializer.serialize(document));
+    }
+
+    // Typical updates of the module files: new elements with linefeeds, special characters, comments, CDATA, etc...
+    private static void mutate(Document document) {
+        Element e = document.getDocumentElement();
+        XmlUtil.appendElementWithTextContent(e, "dependencies/dependency/groupId", "g&<>\"'\r\t\u0085 \u00e9\uD83D\uDE00", true, true);
+        XmlUtil.createAndAppendElementWithAttribute(e, "a/b", "k", "v<&>\"\n\r\t'");
+        e.appendChild(document.createComment(" c "));
+        e.appendChild(document.createCDATASection("x]]>y"));
+        e.appendChild(document.createProcessingInstruction("pi", "data"));
+        e.appendChild(document.createComment("z"));
+        e.appendChild(document.createElement("q"));
+    }
+
+    private static final String ALPHABET = "ab <>&\"'\n\r\t \u0080 ]?-";
+
+    private static String randomText(Random random) {
+        StringBuilder sb = new StringBuilder();
+        for (int i = random.nextInt(6); i > 0; i--)
+            sb.append(ALPHABET.charAt(random.nextInt(ALPHABET.length())));
+        return sb.toString();
+    }
+
+    // The previous formatting corrupted the unescaped texts (comments & CDATA) containing "?><" (its replacement for
+    // the linefeed after the xml declaration) or the comments starting with '>' (its "--><" replacement matched "<!--><")
+    private static String randomUnescapedText(Random random) {
+        String text = randomText(random).replace("?><", "?>");
+        return text.startsWith(">") ? text.substring(1) : text;
+    }
+
+    private static void grow(Random random, Document document, Element element, int depth) {
+        for (int i = random.nextInt(5); i > 0; i--) {
+            switch (random.nextInt(6)) {
+                case 0:
+                case 1:
+                    if (depth > 0) {
+                        Element child = document.createElement("e" + random.nextInt(3));
+                        if (random.nextBoolean())
+                            child.setAttribute("a" + random.nextInt(2), randomText(random));
+                        element.appendChild(child);
+                        grow(random, document, child, depth - 1);
+                    }
+                    break;
+                case 2: element.appendChild(document.createTextNode(randomText(random))); break;
+                case 3: element.appendChild(document.createComment(randomUnescapedText(random))); break;
+                case 4: element.appendChild(document.createProcessingInstruction("pi", "v")); break;
+                case 5: element.appendChild(document.createCDATASection(randomUnescapedText(random))); break;
+            }
+        }
+    }
+
+    static String readResource(String resource) throws IOException {
+        try (InputStream is = XmlSerializerTest.class.getResourceAsStream(resource)) {
+            assertNotNull(is, "Missing resource " + resource);
+            return new String(is.readAllBytes(), StandardCharsets.UTF_8);
+        }
+    }
+}
@@ -0,0 +1,151 @@
+package dev.webfx.cli.util.xml;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.w3c.dom.Document;
+
+import javax.xml.parsers.DocumentBuilder;
+import javax.xml.transform.OutputKeys;
+import javax.xml.transform.Transformer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.concurrent.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Checks the per-thread DocumentBuilder and Transformer of XmlUtil: each thread has its own instance (reused by its
+ * next calls and reset before each reuse), threads parsing and formatting at the same time get the same results as a
+ * single thread, a parse error doesn't break the next parses of the thread, and the factory configuration (no external
+ * DTD or entity loading) applies to the builders of all the threads.
+ *
+ * @author Bruno Salmon
+ */
+class XmlUtilConcurrencyTest {
+
+    private static final int THREADS_COUNT = 8;
+    private static final int DOCUMENTS_PER_THREAD = 200;
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void eachThreadReusesItsOwnInstances() throws Exception {
+        Set<DocumentBuilder> builders = ConcurrentHashMap.newKeySet();
+        Set<Transformer> transformers = ConcurrentHashMap.newKeySet();
+        runConcurrently(thread -> {
+            DocumentBuilder builder = XmlUtil.getDocumentBuilder();
+            Transformer transformer = XmlUtil.getTransformer();
+            assertSame(builder, XmlUtil.getDocumentBuilder());
+            assertSame(transformer, XmlUtil.getTransformer());
+            builders.add(builder);
+            transformers.add(transformer);
+        });
+        assertEquals(THREADS_COUNT, builders.size());
+        assertEquals(THREADS_COUNT, transformers.size());
+    }
+
+    @Test
+    void instancesAreResetBeforeReuse() {
+        // formatText() sets this property only for the nodes that are not documents
+        XmlUtil.getTransformer().setOutputProperty(OutputKeys.OMIT_XML_DECLARATION, "yes");
+        assertNotEquals("yes", XmlUtil.getTransformer().getOutputProperty(OutputKeys.OMIT_XML_DECLARATION));
+        // So formatting a node doesn't affect the formatting of the next documents
+        Document document = XmlUtil.parseXmlString("<project><name>a</name></project>");
+        assertEquals("<name>a</name>", XmlUtil.formatHtmlText(document.getDocumentElement().getFirstChild()));
+        assertTrue(XmlUtil.formatHtmlText(document).startsWith("<project>"), XmlUtil.formatHtmlText(document));
+    }
+
+    @Test
+    void concurrentParsingAndFormattingMatchSingleThreaded() throws Exception {
+        // Expected results, computed by this thread only
+        Map<String, String> expectedXml = new HashMap<>(), expectedHtml = new HashMap<>();
+        for (int thread = 0; thread < THREADS_COUNT; thread++)
+            for (int i = 0; i < DOCUMENTS_PER_THREAD; i++) {
+                String id = thread + "-" + i;
+                expectedXml.put(id, XmlUtil.formatXmlText(XmlUtil.parseXmlString(xmlText(id))));
+                expectedHtml.put(id, XmlUtil.formatHtmlText(XmlUtil.parseXmlString(htmlText(id))));
+                assertTrue(expectedXml.get(id).contains("<module>module-" + id + "</module>"), expectedXml.get(id));
+            }
+        Map<String, String> xml = new ConcurrentHashMap<>(), html = new ConcurrentHashMap<>();
+        runConcurrently(thread -> {
+            // A parse error first (the builder is then reused for the next parses)
+            assertNull(XmlUtil.parseXmlString("<project><unclosed></project>"));
+            for (int i = 0; i < DOCUMENTS_PER_THREAD; i++) {
+                String id = thread + "-" + i;
+                Document document = i % 2 == 0 ? XmlUtil.parseXmlString(xmlText(id)) : XmlUtil.parseXmlFile(writeFile(id, xmlText(id)).toFile());
+                assertNotNull(document, id);
+                assertEquals("module-" + id, XmlUtil.lookupNodeTextContent(document.getDocumentElement(), "modules/module"));
+                xml.put(id, XmlUtil.formatXmlText(document));
+                html.put(id, XmlUtil.formatHtmlText(XmlUtil.parseXmlString(htmlText(id))));
+            }
+        });
+        assertEquals(expectedXml, xml);
+        assertEquals(expectedHtml, html);
+    }
+
+    @Test
+    void externalEntitiesNotLoadedByAnyThread() throws Exception {
+        Path secret = Files.writeString(tempDir.resolve("secret.txt"), "secret content");
+        String xmlWithExternalEntity = "<!DOCTYPE project [<!ENTITY secret SYSTEM \"" + secret.toUri() + "\">]><project>&secret;</project>";
+        String xmlWithMissingDtd = "<!DOCTYPE project SYSTEM \"" + tempDir.resolve("missing.dtd").toUri() + "\"><project/>";
+        runConcurrently(thread -> {
+            for (int i = 0; i < 10; i++) {
+                Document document = XmlUtil.parseXmlString(xmlWithExternalEntity);
+                assertNotNull(document);
+                assertFalse(document.getDocumentElement().getTextContent().contains("secret content"));
+                assertNotNull(XmlUtil.parseXmlString(xmlWithMissingDtd)); // the DTD is not loaded
+            }
+        });
+    }
+
+    private static String xmlText(String id) {
+        return "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n<project name=\"project-" + id + "\">\n    <!-- Project " + id +
+                " -->\n    <modules>\n        <module>module-" + id + "</module>\n        <module>other &amp; module</module>\n    </modules>\n</project>";
+    }
+
+    private static String htmlText(String id) {
+        return "<html><head><meta charset=\"UTF-8\"/><title>" + id + "</title></head><body><p>Page " + id + "<br/></p></body></html>";
+    }
+
+    private Path writeFile(String id, String content) {
+        try {
+            return Files.writeString(tempDir.resolve(id + ".xml"), content);
+        } catch (Exception e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    private interface ThreadTask {
+        void run(int thread) throws Exception;
+    }
+
+    // Runs the task in THREADS_COUNT threads, all started at the same time, and rethrows the first failure
+    private static void runConcurrently(ThreadTask task) throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS_COUNT);
+        try {
+            CyclicBarrier start = new CyclicBarrier(THREADS_COUNT);
+            List<Future<?>> futures = new ArrayList<>();
+            for (int thread = 0; thread < THREADS_COUNT; thread++) {
+                int t = thread;
+                futures.add(executor.submit(() -> {
+                    start.await();
+                    task.run(t);
+                    return null;
+                }));
+            }
+            for (Future<?> future : futures) {
+                try {
+                    future.get(60, TimeUnit.SECONDS);
+                } catch (ExecutionException e) {
+                    if (e.getCause() instanceof Error)
+                        throw (Error) e.getCause();
+                    throw (Exception) e.getCause();
+                }
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+}
@@ -0,0 +1,176 @@
+package dev.webfx.cli.util.xml;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.w3c.dom.Document;
+import org.w3c.dom.Node;
+import org.w3c.dom.NodeList;
+
+import javax.xml.namespace.QName;
+import javax.xml.xpath.XPath;
+import javax.xml.xpath.XPathConstants;
+import javax.xml.xpath.XPathFactory;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Microbenchmark of the XmlUtil lookup throughput, before (a new XPathFactory, XPath and compiled expression for each
+ * lookup, with the text values concatenated in the expression) and after the XPath caching (the simple expressions
+ * evaluated by SimpleXPath, the other ones compiled once per thread). The lookups are the ones done by the CLI on the
+ * webfx.xml and pom.xml fixtures; both versions are first checked to return the same nodes, then warmed up, and the
+ * best of several rounds is kept. The throughputs are printed, and the asserted speedups are far below the measured
+ * ones (so the test is not sensitive to the machine load), but would fail if a lookup compiled its expression again.
+ * There is no JMH in this build, hence this simple measurement.
+ *
+ * @author Bruno Salmon
+ */
+class XmlUtilLookupBenchmarkTest {
+
+    private static final String FIXTURES = "/dev/webfx/cli/util/xml/fixtures/";
+    // Simple expressions (evaluated by SimpleXPath), as used by the module files
+    private static final List<String> SIMPLE_EXPRESSIONS = List.of("exported-packages/resource-package",
+            "dependencies/used-by-source-modules", "required-libraries/library", "required-libraries/webfx-library",
+            "maven-pom-manual/properties/java.version", "modules/module", "parent/artifactId", "providers/provider");
+    // Expressions evaluated by the XPath engine (not compiled by SimpleXPath)
+    private static final List<String> ENGINE_EXPRESSIONS = List.of("required-libraries/*[last()]",
+            "maven-pom-manual//comment()[1]", "dependencies/dependency[artifactId = 'webfx-platform'][last()]");
+    private static final int ROUNDS = 5;
+    private static final long ROUND_NANOS = 200_000_000L; // 200 ms per round and per version
+
+    private static List<Node> contextNodes;
+
+    @BeforeAll
+    static void setUp() throws IOException {
+        Document webFxXml = XmlUtil.parseXmlString(readResource(FIXTURES + "webfx.xml"));
+        Document pomXml = XmlUtil.parseXmlString(readResource(FIXTURES + "pom.xml"));
+        contextNodes = List.of(webFxXml.getDocumentElement(), pomXml.getDocumentElement());
+        for (String expression : SIMPLE_EXPRESSIONS)
+            assertNotNull(SimpleXPath.compile(expression), expression);
+        for (String expression : ENGINE_EXPRESSIONS)
+            assertNull(SimpleXPath.compile(expression), expression);
+    }
+
+    @Test
+    void simpleExpressionsLookupThroughput() {
+        compare("simple expressions", 10, blackhole -> {
+            for (Node contextNode : contextNodes)
+                for (String expression : SIMPLE_EXPRESSIONS) {
+                    blackhole.accept(XmlUtil.lookupNode(contextNode, expression));
+                    blackhole.accept(XmlUtil.lookupNodeList(contextNode, expression));
+                }
+        }, blackhole -> {
+            for (Node contextNode : contextNodes)
+                for (String expression : SIMPLE_EXPRESSIONS) {
+                    blackhole.accept(oldLookup(contextNode, expression, XPathConstants.NODE));
+                    blackhole.accept(oldLookup(contextNode, expression, XPathConstants.NODESET));
+                }
+        });
+    }
+
+    @Test
+    void textContentLookupThroughput() {
+        // lookupNodeWithTextContent() was concatenating the text in the expression (so a new expression for each text)
+        compare("text content lookups", 10, blackhole -> {
+            for (Node contextNode : contextNodes)
+                for (String text : List.of("dev.webfx.cli.jdk", "dev.webfx.cli.templates", "absent"))
+                    blackhole.accept(XmlUtil.lookupNodeWithTextContent(contextNode, "exported-packages/resource-package", text));
+        }, blackhole -> {
+            for (Node contextNode : contextNodes)
+                for (String text : List.of("dev.webfx.cli.jdk", "dev.webfx.cli.templates", "absent"))
+                    blackhole.accept(oldLookup(contextNode, "exported-packages/resource-package[text() = '" + text + "']", XPathConstants.NODE));
+        });
+    }
+
+    @Test
+    void engineExpressionsLookupThroughput() {
+        // The evaluation itself is still done by the XPath engine, so the gain is only the factory lookup and compilation
+        // (about x2 measured)
+        compare("XPath engine expressions", 1.2, blackhole -> {
+            for (Node contextNode : contextNodes)
+                for (String expression : ENGINE_EXPRESSIONS)
+                    blackhole.accept(XmlUtil.lookupNode(contextNode, expression));
+        }, blackhole -> {
+            for (Node contextNode : contextNodes)
+                for (String expression : ENGINE_EXPRESSIONS)
+                    blackhole.accept(oldLookup(contextNode, expression, XPathConstants.NODE));
+        });
+    }
+
+    // Lookup as done before the XPath caching
+    private static Object oldLookup(Object item, String xpathExpression, QName returnType) {
+        try {
+            XPathFactory xpf = XPathFactory.newInstance();
+            XPath xpath = xpf.newXPath();
+            return xpath.compile(xpathExpression).evaluate(item, returnType);
+        } catch (Exception e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    private static void compare(String name, double minimumSpeedup, Consumer<Consumer<Object>> newLookups, Consumer<Consumer<Object>> oldLookups) {
+        // Both versions return the same nodes (in the same order)
+        Results newResults = new Results(), oldResults = new Results();
+        newLookups.accept(newResults);
+        oldLookups.accept(oldResults);
+        assertEquals(oldResults.nodes, newResults.nodes, name);
+        assertFalse(newResults.nodes.stream().allMatch(n -> n == null), name);
+        double newThroughput = 0, oldThroughput = 0;
+        for (int round = 0; round <= ROUNDS; round++) { // The first round is the warm-up
+            double newRound = measure(newLookups), oldRound = measure(oldLookups);
+            if (round > 0) {
+                newThroughput = Math.max(newThroughput, newRound);
+                oldThroughput = Math.max(oldThroughput, oldRound);
+            }
+        }
+        double speedup = newThroughput / oldThroughput;
+        System.out.printf("%s: %,.0f iterations/s before, %,.0f iterations/s after (x%.1f)%n", name, oldThroughput, newThroughput, speedup);
+        assertTrue(speedup >= minimumSpeedup, name + " speedup = " + speedup);
+    }
+
+    // Returns the number of iterations per second
+    private static double measure(Consumer<Consumer<Object>> lookups) {
+        Results blackhole = new Results();
+        long start = System.nanoTime(), elapsed;
+        int iterations = 0;
+        do {
+            lookups.accept(blackhole);
+            iterations++;
+        } while ((elapsed = System.nanoTime() - start) < ROUND_NANOS);
+        assertTrue(blackhole.count > 0);
+        return iterations * 1e9 / elapsed;
+    }
+
+    private static final class Results implements Consumer<Object> {
+        private final List<Object> nodes = new ArrayList<>();
+        private long count;
+
+        @Override
+        public void accept(Object result) {
+            // Collecting the first nodes only (enough for the comparison, while the measured calls are just counted)
+            if (nodes.size() < 1000) {
+                if (result instanceof NodeList) {
+                    NodeList nodeList = (NodeList) result;
+                    for (int i = 0; i < nodeList.getLength(); i++)
+                        nodes.add(nodeList.item(i));
+                    nodes.add("end of list");
+                } else
+                    nodes.add(result);
+            }
+            if (result != null)
+                count++;
+        }
+    }
+
+    private static String readResource(String path) throws IOException {
+        try (InputStream is = XmlUtilLookupBenchmarkTest.class.getResourceAsStream(path)) {
+            assertNotNull(is, "Missing resource " + path);
+            return new String(is.readAllBytes(), StandardCharsets.UTF_8);
+        }
+    }
+}
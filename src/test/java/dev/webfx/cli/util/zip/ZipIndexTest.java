@@ -0,0 +1,250 @@
+package dev.webfx.cli.util.zip;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.*;
+import java.util.zip.CRC32;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+import java.util.zip.ZipOutputStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Checks that the entries read through ZipIndex are identical to the ones read through java.util.zip.ZipFile, for
+ * stored and deflated entries, zip64 archives and zip64 entries, that the package table matches the entry names, that
+ * the reads share a single file channel until the index is closed, and that the index sidecar is ignored as soon as the
+ * zip file changes.
+ *
+ * @author Bruno Salmon
+ */
+class ZipIndexTest {
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void randomZipsMatchZipFile() throws Exception {
+        Random random = new Random(1);
+        for (int k = 0; k < 50; k++) {
+            Path zipPath = tempDir.resolve("random" + k + ".jar");
+            try (ZipOutputStream out = new ZipOutputStream(Files.newOutputStream(zipPath))) {
+                if (random.nextBoolean())
+                    out.setComment("comment " + k);
+                Set<String> names = new HashSet<>();
+                for (int i = random.nextInt(30); i > 0; i--) {
+                    String name = randomName(random);
+                    if (!names.add(name))
+                        continue;
+                    if (random.nextInt(5) == 0) // directory
+                        out.putNextEntry(new ZipEntry(name + "/"));
+                    else
+                        putEntry(out, name, randomData(random), random.nextBoolean(), random.nextBoolean() ? "entry comment" : null);
+                    out.closeEntry();
+                }
+                putEntry(out, "META-INF/services/a.Spi", "# providers\na.Impl1\n\n a.Impl2 # second\n".getBytes(StandardCharsets.UTF_8), random.nextBoolean(), null);
+            }
+            assertMatchesZipFile(zipPath, ZipIndex.load(zipPath));
+            assertMatchesZipFile(zipPath, ZipIndex.load(zipPath)); // from the index sidecar this time
+            ZipIndex index = ZipIndex.load(zipPath);
+            assertEquals(List.of("a.Spi"), new ArrayList<>(index.getServices()));
+            assertEquals(List.of("a.Impl1", "a.Impl2"), index.readServiceProviders("a.Spi"));
+        }
+    }
+
+    @Test
+    void storedEntries() throws Exception {
+        Path zipPath = tempDir.resolve("stored.jar");
+        try (ZipOutputStream out = new ZipOutputStream(Files.newOutputStream(zipPath))) {
+            putEntry(out, "empty.txt", new byte[0], true, null);
+            putEntry(out, "a/b/C.class", "stored content \u00e9".getBytes(StandardCharsets.UTF_8), true, null);
+        }
+        ZipIndex index = ZipIndex.load(zipPath);
+        assertEquals(0, index.readEntry("empty.txt").length);
+        assertEquals("stored content \u00e9", index.readTextEntry("a/b/C.class"));
+        assertMatchesZipFile(zipPath, index);
+    }
+
+    @Test
+    void zip64ArchiveWithManyEntries() throws Exception {
+        // More than 65535 entries => the entries count is in the zip64 end of central directory
+        Path zipPath = tempDir.resolve("zip64.jar");
+        try (ZipOutputStream out = new ZipOutputStream(Files.newOutputStream(zipPath))) {
+            for (int i = 0; i < 70000; i++)
+                putEntry(out, "p" + (i % 10) + "/e" + i, ("e" + i).getBytes(StandardCharsets.UTF_8), i % 2 == 0, null);
+        }
+        byte[] bytes = Files.readAllBytes(zipPath);
+        // Checking that the test covers zip64 (the entries count in the end of central directory record is 0xFFFF)
+        assertEquals(0xFFFF, ByteBuffer.wrap(bytes).order(ByteOrder.LITTLE_ENDIAN).getShort(bytes.length - 22 + 10) & 0xFFFF);
+        ZipIndex index = ZipIndex.load(zipPath);
+        assertEquals(70000, index.getEntryNames().size());
+        assertEquals("e0", index.readTextEntry("p0/e0"));
+        assertEquals("e69999", index.readTextEntry("p9/e69999"));
+        assertEquals("e34567", index.readTextEntry("p7/e34567"));
+    }
+
+    @Test
+    void zip64ExtendedInformation() throws Exception {
+        // Central directory header with sizes & offset in the zip64 extra field (as for entries bigger than 4GB or
+        // located after 4GB), and some data before the local header (so the offset is not 0)
+        byte[] name = "a/b.txt".getBytes(StandardCharsets.UTF_8), data = "zip64 entry".getBytes(StandardCharsets.UTF_8);
+        CRC32 crc = new CRC32();
+        crc.update(data);
+        ByteBuffer zip = ByteBuffer.allocate(1000).order(ByteOrder.LITTLE_ENDIAN);
+        zip.put(new byte[17]); // prefix (ex: self-extracting archive)
+        int localHeaderOffset = zip.position();
+        zip.putInt(0x04034b50).putShort((short) 45).putShort((short) 0).putShort((short) 0).putInt(0)
+                .putInt((int) crc.getValue()).putInt(data.length).putInt(data.length)
+                .putShort((short) name.length).putShort((short) 4).put(name).putShort((short) 0x9999).putShort((short) 0)
+                .put(data);
+        int directoryOffset = zip.position();
+        zip.putInt(0x02014b50).putShort((short) 45).putShort((short) 45).putShort((short) 0).putShort((short) 0).putInt(0)
+                .putInt((int) crc.getValue()).putInt(-1).putInt(-1)
+                .putShort((short) name.length).putShort((short) (4 + 4 + 28)).putShort((short) 0)
+                .putShort((short) 0).putShort((short) 0).putInt(0).putInt(-1).put(name)
+                .putShort((short) 0x5455).putShort((short) 0) // another extra field first
+                .putShort((short) 0x0001).putShort((short) 28).putLong(data.length).putLong(data.length).putLong(localHeaderOffset)
+                .putInt(0); // disk start number
+        int directorySize = zip.position() - directoryOffset;
+        zip.putInt(0x06054b50).putShort((short) 0).putShort((short) 0).putShort((short) 1).putShort((short) 1)
+                .putInt(directorySize).putInt(directoryOffset).putShort((short) 0);
+        Path zipPath = tempDir.resolve("zip64-extra.zip");
+        Files.write(zipPath, Arrays.copyOf(zip.array(), zip.position()));
+
+        ZipIndex index = ZipIndex.load(zipPath);
+        assertEquals(List.of("a/b.txt"), new ArrayList<>(index.getEntryNames()));
+        assertArrayEquals(data, index.readEntry("a/b.txt"));
+    }
+
+    @Test
+    void indexSidecarIgnoredWhenZipChanges() throws Exception {
+        Path zipPath = tempDir.resolve("changing.jar");
+        writeSingleEntryZip(zipPath, "a.txt", "a");
+        assertEquals(List.of("a.txt"), new ArrayList<>(ZipIndex.load(zipPath).getEntryNames()));
+        assertTrue(Files.exists(ZipIndex.getIndexPath(zipPath)));
+        // Different content and last modified time
+        writeSingleEntryZip(zipPath, "bb.txt", "bb");
+        Files.setLastModifiedTime(zipPath, FileTime.fromMillis(Files.getLastModifiedTime(zipPath).toMillis() + 2000));
+        ZipIndex index = ZipIndex.load(zipPath);
+        assertEquals(List.of("bb.txt"), new ArrayList<>(index.getEntryNames()));
+        assertEquals("bb", index.readTextEntry("bb.txt"));
+        // Truncated sidecar
+        byte[] sidecar = Files.readAllBytes(ZipIndex.getIndexPath(zipPath));
+        Files.write(ZipIndex.getIndexPath(zipPath), Arrays.copyOf(sidecar, sidecar.length / 2));
+        assertEquals(List.of("bb.txt"), new ArrayList<>(ZipIndex.load(zipPath).getEntryNames()));
+    }
+
+    @Test
+    void tooBigEntryRejected() throws Exception {
+        Path zipPath = tempDir.resolve("big.jar");
+        try (ZipOutputStream out = new ZipOutputStream(Files.newOutputStream(zipPath))) {
+            out.putNextEntry(new ZipEntry("big.bin"));
+            byte[] zeros = new byte[1024 * 1024];
+            for (int i = 0; i < 17; i++)
+                out.write(zeros);
+            out.closeEntry();
+            putEntry(out, "small.txt", "small".getBytes(StandardCharsets.UTF_8), false, null);
+        }
+        ZipIndex index = ZipIndex.load(zipPath);
+        assertThrows(IOException.class, () -> index.readEntry("big.bin"));
+        assertEquals("small", index.readTextEntry("small.txt"));
+    }
+
+    @Test
+    void readsShareOneChannelUntilClosed() throws Exception {
+        Path zipPath = tempDir.resolve("channel.jar");
+        try (ZipOutputStream out = new ZipOutputStream(Files.newOutputStream(zipPath))) {
+            putEntry(out, "a/A.class", "A".getBytes(StandardCharsets.UTF_8), false, null);
+            putEntry(out, "a/B.class", "B".getBytes(StandardCharsets.UTF_8), true, null);
+            putEntry(out, "META-INF/services/a.Spi", "a.A\n".getBytes(StandardCharsets.UTF_8), false, null);
+        }
+        ZipIndex index = ZipIndex.load(zipPath);
+        assertFalse(index.isOpen()); // Loading the index doesn't keep the zip file open
+        assertEquals("A", index.readTextEntry("a/A.class"));
+        FileChannel channel = index.getChannel();
+        assertEquals("B", index.readTextEntry("a/B.class"));
+        assertEquals(List.of("a.A"), index.readServiceProviders("a.Spi"));
+        assertSame(channel, index.getChannel());
+        index.close();
+        assertFalse(index.isOpen());
+        assertFalse(channel.isOpen());
+        index.close(); // No effect
+        // Still usable after being closed (a new channel is opened)
+        assertEquals("A", index.readTextEntry("a/A.class"));
+        assertTrue(index.isOpen());
+        assertNotSame(channel, index.getChannel());
+        // closeAll() releases the channels of all the open indexes
+        ZipIndex other = ZipIndex.load(zipPath);
+        assertEquals("B", other.readTextEntry("a/B.class"));
+        ZipIndex.closeAll();
+        assertFalse(index.isOpen());
+        assertFalse(other.isOpen());
+    }
+
+    private static void assertMatchesZipFile(Path zipPath, ZipIndex index) throws IOException {
+        try (ZipFile zipFile = new ZipFile(zipPath.toFile())) {
+            List<String> expectedNames = new ArrayList<>();
+            zipFile.stream().filter(e -> !e.isDirectory()).forEach(e -> expectedNames.add(e.getName()));
+            assertEquals(expectedNames, new ArrayList<>(index.getEntryNames()), zipPath.toString());
+            Map<String, List<String>> expectedPackages = new LinkedHashMap<>();
+            for (String name : expectedNames)
+                expectedPackages.computeIfAbsent(name.contains("/") ? name.substring(0, name.lastIndexOf('/')).replace('/', '.') : "", k -> new ArrayList<>()).add(name);
+            assertEquals(new ArrayList<>(expectedPackages.keySet()), new ArrayList<>(index.getPackages()), zipPath.toString());
+            expectedPackages.forEach((packageName, names) -> assertEquals(names, index.getPackageEntryNames(packageName), zipPath + " " + packageName));
+            assertTrue(index.getPackageEntryNames("absent.package").isEmpty());
+            for (String name : expectedNames)
+                assertArrayEquals(zipFile.getInputStream(zipFile.getEntry(name)).readAllBytes(), index.readEntry(name), zipPath + " " + name);
+        }
+    }
+
+    private static void putEntry(ZipOutputStream out, String name, byte[] data, boolean stored, String comment) throws IOException {
+        ZipEntry entry = new ZipEntry(name);
+        if (stored) {
+            CRC32 crc = new CRC32();
+            crc.update(data);
+            entry.setMethod(ZipEntry.STORED);
+            entry.setSize(data.length);
+            entry.setCompressedSize(data.length);
+            entry.setCrc(crc.getValue());
+        }
+        if (comment != null)
+            entry.setComment(comment);
+        out.putNextEntry(entry);
+        out.write(data);
+        out.closeEntry();
+    }
+
+    private static void writeSingleEntryZip(Path zipPath, String name, String content) throws IOException {
+        try (OutputStream os = Files.newOutputStream(zipPath); ZipOutputStream out = new ZipOutputStream(os)) {
+            putEntry(out, name, content.getBytes(StandardCharsets.UTF_8), false, null);
+        }
+    }
+
+    private static final String[] NAME_PARTS = { "a", "b", "META-INF", "x\u00e9", "\u65e5\u672c", "C.class", "D.java" };
+
+    private static String randomName(Random random) {
+        StringBuilder sb = new StringBuilder();
+        for (int i = random.nextInt(4) + 1; i > 0; i--)
+            sb.append(sb.length() == 0 ? "" : "/").append(NAME_PARTS[random.nextInt(NAME_PARTS.length)]);
+        return sb.toString();
+    }
+
+    private static byte[] randomData(Random random) {
+        ByteArrayOutputStream data = new ByteArrayOutputStream();
+        int size = random.nextInt(4) == 0 ? random.nextInt(300_000) : random.nextInt(200);
+        for (int i = 0; i < size; i++) // Compressible data
+            data.write(random.nextInt(8) == 0 ? random.nextInt(256) : 'a' + i % 7);
+        return data.toByteArray();
+    }
+}
@@ -0,0 +1,3 @@
+package dev.webfx.platform.util.serviceloader;
+import java.util.function.Supplier;
+public class SingleServiceProvider { public static <T> T getProvider(Class<T> c, Supplier<java.util.ServiceLoader<T>> s) { return null; } }
@@ -0,0 +1,22 @@
+package fx.a;
+
+import dev.webfx.platform.util.serviceloader.SingleServiceProvider;
+import fx.b.Opt;
+import fx.b.Spi;
+import fx.c.Util;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.ServiceLoader;
+
+public class Main {
+    private final List<String> list = new ArrayList<>();
+    public void go(int k) {
+        Spi spi = SingleServiceProvider.getProvider(Spi.class, () -> ServiceLoader.load(Spi.class));
+        for (Opt o : ServiceLoader.load(Opt.class)) list.add(o.toString());
+        switch (k) { case 1: list.add("a"); break; case 100: list.add("b"); break; case 5000: list.add("c"); break; }
+        switch (k) { case 1: case 2: case 3: case 4: list.add("x"); break; }
+        new Util.Inner();
+        java.util.concurrent.atomic.AtomicInteger ai = new java.util.concurrent.atomic.AtomicInteger(); long l = 5_000_000_000L; double d = 1.5;
+        spi.run();
+    }
+}
@@ -0,0 +1,2 @@
+package fx.b;
+public interface Opt { }
@@ -0,0 +1,3 @@
+package fx.c;
+import java.util.Map;
+public class Util { public static class Inner {} public static Map<String,String> map() { return null; } }